@@ -48,6 +48,7 @@ import org.apache.kylin.rest.config.initialize.ModelBrokenListener;
 import org.apache.kylin.rest.config.initialize.ProcessStatusListener;
 import org.apache.kylin.rest.config.initialize.QueryMetricsListener;
 import org.apache.kylin.rest.config.initialize.SparderStartEvent;
+import org.apache.kylin.rest.config.initialize.StorageUsageListener;
 import org.apache.kylin.rest.config.initialize.TableSchemaChangeListener;
 import org.apache.kylin.rest.service.CommonQueryCacheSupporter;
 import org.apache.kylin.rest.util.JStackDumpTask;
@@ -147,6 +148,8 @@ public class AppInitializer {
                 "table");
         // register for clean cache when delete
         EventListenerRegistry.getInstance(kylinConfig).register(new CacheCleanListener(), "cacheInManager");
+        // keep the running total of the storage tracked by projects
+        EventListenerRegistry.getInstance(kylinConfig).register(new StorageUsageListener(), "storageUsage");
 
         EventBusFactory.getInstance().register(new QueryMetricsListener(), false);
 
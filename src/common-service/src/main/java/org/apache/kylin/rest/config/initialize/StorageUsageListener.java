@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.config.initialize;
+
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.RawResource;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.persistence.transaction.EventListenerRegistry;
+import org.apache.kylin.metadata.cube.storage.ProjectStorageUsage;
+
+/**
+ * Keeps the running total of the storage tracked by a project up to date with its dataflows created, updated and
+ * deleted, so the total is not summed up from all the dataflows on every access.
+ */
+public class StorageUsageListener implements EventListenerRegistry.ResourceEventListener {
+
+    // /{project}/dataflow/{dataflow}.json
+    private static final Pattern DATAFLOW_PATTERN = Pattern
+            .compile("^/([^/]+)" + ResourceStore.DATAFLOW_RESOURCE_ROOT + "/([^/]+)\\.json$");
+
+    @Override
+    public void onUpdate(KylinConfig config, RawResource rawResource) {
+        if (Objects.isNull(rawResource)) {
+            return;
+        }
+        Matcher matcher = DATAFLOW_PATTERN.matcher(rawResource.getResPath());
+        if (matcher.find()) {
+            ProjectStorageUsage.getInstance(matcher.group(1)).onDataflowUpdate(config, matcher.group(2),
+                    rawResource.getMvcc());
+        }
+    }
+
+    @Override
+    public void onDelete(KylinConfig config, String resPath) {
+        if (Objects.isNull(resPath)) {
+            return;
+        }
+        Matcher matcher = DATAFLOW_PATTERN.matcher(resPath);
+        if (matcher.find()) {
+            ProjectStorageUsage.getInstance(matcher.group(1)).onDataflowDelete(matcher.group(2));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.service.task;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.kylin.metadata.query.QueryHistory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The query histories recently read by the tasks of a project. The acceleration task and the statistics task
+ * consume the same query histories one after the other, so the batches read by the leading task are kept
+ * in memory and the other one does not read them from the database again.
+ *
+ * The buffer holds the query histories with ids in (startOffset, endOffset] as they were read. A query history
+ * may be committed after the ones with greater ids, so before serving a batch from the buffer, the query histories
+ * in its range are counted in the database, and the batch is read from the database again if any is missing.
+ */
+public class QueryHistoryReadBuffer {
+
+    public interface BatchReader {
+        List<QueryHistory> read(long idOffset, int batchSize);
+
+        /**
+         * @return the count of the query histories with ids in (idOffset, maxId]
+         */
+        long count(long idOffset, long maxId);
+    }
+
+    private final int capacity;
+    private final TreeMap<Long, QueryHistory> histories = new TreeMap<>();
+    private long startOffset = -1L;
+    private long endOffset = -1L;
+
+    public QueryHistoryReadBuffer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return at most batchSize query histories with ids greater than idOffset, in the order of ids
+     */
+    public synchronized List<QueryHistory> read(long idOffset, int batchSize, BatchReader reader) {
+        if (capacity <= 0) {
+            return reader.read(idOffset, batchSize);
+        }
+        if (startOffset < 0 || idOffset < startOffset || idOffset > endOffset) {
+            reset(idOffset);
+        }
+        List<QueryHistory> result = Lists.newArrayList();
+        for (QueryHistory history : histories.tailMap(idOffset, false).values()) {
+            if (result.size() >= batchSize) {
+                break;
+            }
+            result.add(history);
+        }
+        if (!result.isEmpty() && reader.count(idOffset, result.get(result.size() - 1).getId()) != result.size()) {
+            // some query histories were committed after the buffered ones were read
+            reset(idOffset);
+            result.clear();
+        }
+        if (result.size() < batchSize) {
+            List<QueryHistory> fetched = reader.read(endOffset, batchSize - result.size());
+            if (CollectionUtils.isNotEmpty(fetched)) {
+                for (QueryHistory history : fetched) {
+                    histories.put(history.getId(), history);
+                    endOffset = Math.max(endOffset, history.getId());
+                }
+                result.addAll(fetched);
+            }
+        }
+        while (histories.size() > capacity) {
+            startOffset = histories.pollFirstEntry().getKey();
+        }
+        return result;
+    }
+
+    private void reset(long idOffset) {
+        histories.clear();
+        startOffset = idOffset;
+        endOffset = idOffset;
+    }
+
+    /**
+     * Drop the query histories consumed by all the tasks.
+     */
+    public synchronized void release(long idOffset) {
+        if (startOffset < 0 || idOffset <= startOffset) {
+            return;
+        }
+        Map<Long, QueryHistory> consumed = histories.headMap(Math.min(idOffset, endOffset), true);
+        consumed.clear();
+        startOffset = Math.min(idOffset, endOffset);
+    }
+
+    public synchronized int size() {
+        return histories.size();
+    }
+}
@@ -31,6 +31,9 @@ import java.util.function.Consumer;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.metrics.MetricsCategory;
+import org.apache.kylin.common.metrics.MetricsGroup;
+import org.apache.kylin.common.metrics.MetricsName;
 import org.apache.kylin.common.util.ExecutorServiceUtil;
 import org.apache.kylin.common.util.NamedThreadFactory;
 import org.apache.kylin.common.util.Pair;
@@ -78,6 +81,7 @@ public class QueryHistoryTaskScheduler {
     private QuerySmartSupporter querySmartSupporter;
     private long epochId;
     private IUserGroupService userGroupService;
+    private final QueryHistoryReadBuffer queryHistoryReadBuffer;
 
     private final QueryHistoryAccelerateRunner queryHistoryAccelerateRunner;
     private final QueryHistoryMetaUpdateRunner queryHistoryMetaUpdateRunner;
@@ -88,6 +92,8 @@ public class QueryHistoryTaskScheduler {
         this.project = project;
         queryHistoryDAO = RDBMSQueryHistoryDAO.getInstance();
         accelerateRuleUtil = new AccelerateRuleUtil();
+        queryHistoryReadBuffer = new QueryHistoryReadBuffer(
+                KylinConfig.getInstanceFromEnv().getQueryHistoryReadBufferSize());
         if (userGroupService == null && SpringContext.getApplicationContext() != null) {
             userGroupService = (IUserGroupService) SpringContext.getApplicationContext().getBean("userGroupService");
         }
@@ -119,6 +125,7 @@ public class QueryHistoryTaskScheduler {
                 KylinConfig.getInstanceFromEnv().getQueryHistoryAccelerateInterval(), TimeUnit.MINUTES);
         taskScheduler.scheduleWithFixedDelay(queryHistoryMetaUpdateRunner, 0,
                 KylinConfig.getInstanceFromEnv().getQueryHistoryStatMetaUpdateInterval(), TimeUnit.MINUTES);
+        registerLagGauges(project);
 
         hasStarted = true;
         AsyncTaskManager.resetAccelerationTagMap(project);
@@ -138,6 +145,29 @@ public class QueryHistoryTaskScheduler {
         if (taskScheduler != null) {
             ExecutorServiceUtil.forceShutdown(taskScheduler);
         }
+        removeLagGauges(project);
+    }
+
+    /**
+     * The gauges look up the running scheduler of the project, so they never hold a scheduler that is shut down.
+     * They are removed by the shutdown of the scheduler.
+     */
+    static void registerLagGauges(String project) {
+        MetricsGroup.newGauge(MetricsName.QUERY_HISTORY_ACCELERATE_LAG, MetricsCategory.PROJECT, project,
+                () -> {
+                    val instance = INSTANCE_MAP.get(project);
+                    return instance == null ? 0L : instance.queryHistoryAccelerateRunner.getLag();
+                });
+        MetricsGroup.newGauge(MetricsName.QUERY_HISTORY_STAT_UPDATE_LAG, MetricsCategory.PROJECT, project,
+                () -> {
+                    val instance = INSTANCE_MAP.get(project);
+                    return instance == null ? 0L : instance.queryHistoryMetaUpdateRunner.getLag();
+                });
+    }
+
+    private static void removeLagGauges(String project) {
+        MetricsGroup.removeGauge(MetricsName.QUERY_HISTORY_ACCELERATE_LAG, MetricsCategory.PROJECT, project);
+        MetricsGroup.removeGauge(MetricsName.QUERY_HISTORY_STAT_UPDATE_LAG, MetricsCategory.PROJECT, project);
     }
 
     public static synchronized void shutdownByProject(String project) {
@@ -154,6 +184,21 @@ public class QueryHistoryTaskScheduler {
         return ((AsyncAccelerationTask) task).isAlreadyRunning();
     }
 
+    private List<QueryHistory> readQueryHistories(QueryHistoryIdOffset idOffset, long offset, int batchSize) {
+        queryHistoryReadBuffer.release(Math.min(idOffset.getOffset(), idOffset.getStatMetaUpdateOffset()));
+        return queryHistoryReadBuffer.read(offset, batchSize, new QueryHistoryReadBuffer.BatchReader() {
+            @Override
+            public List<QueryHistory> read(long idOffset, int size) {
+                return queryHistoryDAO.queryQueryHistoriesByIdOffset(idOffset, size, project);
+            }
+
+            @Override
+            public long count(long idOffset, long maxId) {
+                return queryHistoryDAO.getQueryHistoryCountBetweenIds(idOffset, maxId, project);
+            }
+        });
+    }
+
     private static synchronized QueryHistoryTaskScheduler getInstanceByProject(String project) {
         return INSTANCE_MAP.get(project);
     }
@@ -169,8 +214,9 @@ public class QueryHistoryTaskScheduler {
         protected List<QueryHistory> getQueryHistories(int batchSize) {
             QueryHistoryIdOffsetManager qhIdOffsetManager = QueryHistoryIdOffsetManager
                     .getInstance(KylinConfig.getInstanceFromEnv(), project);
-            List<QueryHistory> queryHistoryList = queryHistoryDAO.queryQueryHistoriesByIdOffset(
-                    qhIdOffsetManager.get().getStatMetaUpdateOffset(), batchSize, project);
+            QueryHistoryIdOffset idOffset = qhIdOffsetManager.get();
+            List<QueryHistory> queryHistoryList = readQueryHistories(idOffset,
+                    idOffset.getStatMetaUpdateOffset(), batchSize);
             resetIdOffset(queryHistoryList);
             return queryHistoryList;
         }
@@ -334,8 +380,8 @@ public class QueryHistoryTaskScheduler {
         protected List<QueryHistory> getQueryHistories(int batchSize) {
             QueryHistoryIdOffsetManager qhIdOffsetManager = QueryHistoryIdOffsetManager
                     .getInstance(KylinConfig.getInstanceFromEnv(), project);
-            List<QueryHistory> queryHistoryList = queryHistoryDAO
-                    .queryQueryHistoriesByIdOffset(qhIdOffsetManager.get().getOffset(), batchSize, project);
+            QueryHistoryIdOffset idOffset = qhIdOffsetManager.get();
+            List<QueryHistory> queryHistoryList = readQueryHistories(idOffset, idOffset.getOffset(), batchSize);
             resetIdOffset(queryHistoryList);
             return queryHistoryList;
         }
@@ -414,6 +460,12 @@ public class QueryHistoryTaskScheduler {
 
         private volatile boolean needResetOffset = true;
 
+        /**
+         * The number of query histories not handled yet, as of the end of the last run.
+         */
+        @Getter
+        private volatile long lag;
+
         protected void resetIdOffset(List<QueryHistory> queryHistories) {
             if (needResetOffset && CollectionUtils.isEmpty(queryHistories)) {
                 long maxId = queryHistoryDAO.getQueryHistoryMaxId(project);
@@ -448,19 +500,40 @@ public class QueryHistoryTaskScheduler {
                 return;
             }
             int finishNum = 0;
+            long handledId = -1L;
+            boolean caughtUp = false;
             while (true) {
                 List<QueryHistory> queryHistories = getQueryHistories(batchSize);
+                if (queryHistories == null) {
+                    queryHistories = Lists.newArrayList();
+                }
                 finishNum = finishNum + queryHistories.size();
                 if (isInterrupted()) {
                     break;
                 }
                 if (!queryHistories.isEmpty()) {
                     consumer.accept(queryHistories);
+                    handledId = queryHistories.get(queryHistories.size() - 1).getId();
                 }
                 log.debug("{} handled {} query history", name(), queryHistories.size());
-                if (queryHistories.size() < batchSize || finishNum >= maxSize) {
+                if (queryHistories.size() < batchSize) {
+                    caughtUp = true;
                     break;
                 }
+                if (finishNum >= maxSize) {
+                    break;
+                }
+            }
+            updateLag(caughtUp, handledId);
+        }
+
+        private void updateLag(boolean caughtUp, long handledId) {
+            if (caughtUp) {
+                lag = 0;
+            } else if (handledId >= 0) {
+                // the ids are shared by all the projects, count the query histories of this project instead
+                lag = queryHistoryDAO.getQueryHistoryCountBeyondOffset(handledId, project);
+                log.info("{} task of project {} is {} query histories behind", name(), project, lag);
             }
         }
 
@@ -64,6 +64,7 @@ import org.apache.kylin.common.annotation.ThirdPartyDependencies;
 import org.apache.kylin.common.constant.NonCustomProjectLevelConfig;
 import org.apache.kylin.common.persistence.metadata.HDFSMetadataStore;
 import org.apache.kylin.common.util.AddressUtil;
+import org.apache.kylin.common.util.ByteUnit;
 import org.apache.kylin.common.util.ClusterConstant;
 import org.apache.kylin.common.util.EncryptUtil;
 import org.apache.kylin.common.util.FileUtils;
@@ -493,6 +494,23 @@ public abstract class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.query.project-concurrent-running-threshold", "0"));
     }
 
+    public int getQueryConcurrentRunningThreshold() {
+        // the limit shared by all projects, by default there's no limitation
+        return Integer.parseInt(getOptional("kylin.query.concurrent-running-threshold", "0"));
+    }
+
+    public int getQueryAdmissionQueueSize() {
+        return Integer.parseInt(getOptional("kylin.query.admission.queue-size", "64"));
+    }
+
+    public long getQueryAdmissionWaitTimeoutMs() {
+        return TimeUtil.timeStringAs(getOptional("kylin.query.admission.wait-timeout", "1s"), TimeUnit.MILLISECONDS);
+    }
+
+    public int getQueryAdmissionProjectWeight() {
+        return Math.max(1, Integer.parseInt(getOptional("kylin.query.admission.project-weight", "1")));
+    }
+
     public boolean isAdminUserExportAllowed() {
         return Boolean.parseBoolean(getOptional("kylin.web.export-allow-admin", TRUE));
     }
@@ -545,6 +563,25 @@ public abstract class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.second-storage.query-pushdown-limit", "0"));
     }
 
+    public boolean isSecondStorageQueryColumnarReadEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.second-storage.query-columnar-read-enabled", FALSE));
+    }
+
+    /**
+     * The replicas of a shard are read in the order of their latency. Only works with the columnar read.
+     */
+    public boolean isSecondStorageQueryLatencyAwareRouteEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.second-storage.query-latency-aware-route-enabled", FALSE));
+    }
+
+    /**
+     * A read of a shard is hedged to another replica once it takes longer than the latency of the replica
+     * at this percentile, 0 to disable. Only works with the columnar read.
+     */
+    public double getSecondStorageQueryHedgeReadPercentile() {
+        return Double.parseDouble(getOptional("kylin.second-storage.query-hedge-read-percentile", "0"));
+    }
+
     public int getMetadataCacheMaxNum() {
         return Integer.parseInt(getOptional("kylin.metadata.cache.max-num", String.valueOf(Integer.MAX_VALUE)));
     }
@@ -632,6 +669,10 @@ public abstract class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(this.getOptional("kylin.model.multi-partition-enabled", FALSE));
     }
 
+    public boolean isModelSummaryIndexEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.model.summary-index-enabled", TRUE));
+    }
+
     public String[] getCubeDimensionCustomEncodingFactories() {
         return getOptionalStringArray("kylin.metadata.custom-dimension-encodings", new String[0]);
     }
@@ -801,6 +842,11 @@ public abstract class KylinConfigBase implements Serializable {
         return Long.parseLong(getOptional("kylin.dictionary.globalV2-version-ttl", "259200000"));
     }
 
+    public long getBucketDictCacheSize() {
+        return SizeConvertUtil.byteStringAs(getOptional("kylin.dictionary.bucket-dict-cache-size", "256m"),
+                ByteUnit.BYTE);
+    }
+
     public long getNullEncodingOptimizeThreshold() {
         return Long.parseLong(getOptional("kylin.dictionary.null-encoding-opt-threshold", "40000000"));
     }
@@ -1502,6 +1548,14 @@ public abstract class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(getOptional("kylin.engine.global-dict-check-enabled", FALSE));
     }
 
+    public boolean isGlobalDictCombinedBuildEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.engine.global-dict-combined-build-enabled", FALSE));
+    }
+
+    public boolean isMergeWithoutShuffleEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.engine.merge-without-shuffle-enabled", FALSE));
+    }
+
     public String getJdbcSourceName() {
         return getOptional(KYLIN_SOURCE_JDBC_SOURCE_NAME_KEY);
     }
@@ -1534,6 +1588,36 @@ public abstract class KylinConfigBase implements Serializable {
         return Double.parseDouble(getOptional("kylin.engine.resource-request-over-limit-proportion", "1.0"));
     }
 
+    /**
+     * Whether the executor instances and shuffle partitions of a build are tuned by the past builds of its model.
+     */
+    public boolean isBuildResourcePlannerEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.engine.resource-planner-enabled", FALSE));
+    }
+
+    public int getBuildResourcePlannerHistoryDays() {
+        return Integer.parseInt(getOptional("kylin.engine.resource-planner.history-days", "30"));
+    }
+
+    /**
+     * The least days with builds of a model to plan its builds.
+     */
+    public int getBuildResourcePlannerMinHistory() {
+        return Integer.parseInt(getOptional("kylin.engine.resource-planner.min-history", "3"));
+    }
+
+    public long getBuildResourcePlannerTargetDuration() {
+        return TimeUtil.timeStringAs(getOptional("kylin.engine.resource-planner.target-duration", "30min"),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The planned resources are bounded within [rule / max-scale, rule * max-scale] of the rule based ones.
+     */
+    public double getBuildResourcePlannerMaxScale() {
+        return Double.parseDouble(getOptional("kylin.engine.resource-planner.max-scale", "2.0"));
+    }
+
     public boolean streamingEnabled() {
         return Boolean.valueOf(getOptional("kylin.streaming.enabled", FALSE));
     }
@@ -1628,6 +1712,43 @@ public abstract class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(getOptional("kylin.query.heterogeneous-segment-enabled", TRUE));
     }
 
+    public boolean isSegmentIntervalIndexEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.query.segment-interval-index-enabled", TRUE));
+    }
+
+    public boolean isPushdownRoutingCacheEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.query.pushdown-routing-cache-enabled", TRUE));
+    }
+
+    public long getPushdownRoutingCacheSize() {
+        return Long.parseLong(getOptional("kylin.query.pushdown-routing-cache-size", "10000"));
+    }
+
+    public long getPushdownRoutingCacheTtlMs() {
+        return TimeUtil.timeStringAs(getOptional("kylin.query.pushdown-routing-cache-ttl", "10m"),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public long getLayoutFileManifestCacheSize() {
+        return SizeConvertUtil.byteStringAs(getOptional("kylin.query.layout-file-manifest-cache-size", "64m"),
+                ByteUnit.BYTE);
+    }
+
+    /**
+     * Whether the queries within a short window share the scan of a small layout, off by default.
+     */
+    public boolean isQuerySharedScanEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.query.shared-scan-enabled", FALSE));
+    }
+
+    public long getQuerySharedScanWindowMs() {
+        return TimeUtil.timeStringAs(getOptional("kylin.query.shared-scan-window", "1s"), TimeUnit.MILLISECONDS);
+    }
+
+    public long getQuerySharedScanMaxBytes() {
+        return SizeConvertUtil.byteStringAs(getOptional("kylin.query.shared-scan-max-size", "256m"), ByteUnit.BYTE);
+    }
+
     public boolean isUseTableIndexAnswerNonRawQuery() {
         return Boolean.parseBoolean(getOptional("kylin.query.use-tableindex-answer-non-raw-query", FALSE));
     }
@@ -1754,6 +1875,35 @@ public abstract class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(this.getOptional("kylin.query.cache-enabled", TRUE));
     }
 
+    /**
+     * Whether the rows of the cached query responses are kept in columns, dictionary encoded and compressed.
+     */
+    public boolean isQueryCacheCompressionEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.cache-compression-enabled", FALSE));
+    }
+
+    /**
+     * The compression codec of the cached query responses, lz4 or zstd.
+     */
+    public String getQueryCacheCompressionCodec() {
+        return this.getOptional("kylin.query.cache-compression-codec", "lz4");
+    }
+
+    /**
+     * Whether the identical queries running at the same time share the response of the first one.
+     */
+    public boolean isQueryCoalescingEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.coalescing-enabled", FALSE));
+    }
+
+    /**
+     * Whether a LIMIT query on a single scan reads the files in growing batches, the newest segment first, and
+     * stops reading once the rows of the limit are got.
+     */
+    public boolean isQueryLimitedScanEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.limited-scan-enabled", FALSE));
+    }
+
     public boolean isSchemaCacheEnabled() {
         return Boolean.parseBoolean(this.getOptional("kylin.query.schema-cache-enabled", FALSE));
     }
@@ -1980,6 +2130,22 @@ public abstract class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(this.getOptional("kylin.query.pushdown.cache-enabled", FALSE));
     }
 
+    /**
+     * The cached result of a push-down query expires after the ttl, even if its source tables are not changed,
+     * since changes of the source data may not be seen by the version of the tables.
+     */
+    public long getPushdownQueryCacheTTL() {
+        return TimeUtil.timeStringAs(this.getOptional("kylin.query.pushdown.cache-ttl", "1h"), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The source version of a table used by the push-down query cache is read again after the interval.
+     */
+    public long getPushdownQueryCacheSourceVersionInterval() {
+        return TimeUtil.timeStringAs(this.getOptional("kylin.query.pushdown.cache-source-version-interval", "30s"),
+                TimeUnit.MILLISECONDS);
+    }
+
     public boolean isAutoSetPushDownPartitions() {
         return Boolean.parseBoolean(this.getOptional("kylin.query.pushdown.auto-set-shuffle-partitions-enabled", TRUE));
     }
@@ -2371,6 +2537,14 @@ public abstract class KylinConfigBase implements Serializable {
                 * 1024)).longValue();
     }
 
+    public boolean isStorageIncrementalAccountingEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.storage.incremental-accounting-enabled", TRUE));
+    }
+
+    public long getStorageReconcileIntervalMs() {
+        return TimeUtil.timeStringAs(getOptional("kylin.storage.reconcile-interval", "24h"), TimeUnit.MILLISECONDS);
+    }
+
     public long getSourceUsageQuota() {
         Double d = Double.parseDouble(getOptional("kylin.storage.source-quota-in-giga-bytes", "-1"));
 
@@ -2382,6 +2556,15 @@ public abstract class KylinConfigBase implements Serializable {
                 TimeUnit.MILLISECONDS);
     }
 
+    public int getStorageGarbageListParallelism() {
+        return Integer.parseInt(getOptional("kylin.garbage.storage.list-parallelism", "8"));
+    }
+
+    public String[] getStorageGarbageFlatListingSchemas() {
+        return getOptionalStringArray("kylin.garbage.storage.flat-listing-schemas",
+                new String[] { "s3", "s3a", "wasb", "wasbs", "abfs", "abfss", "gs", "oss", "cosn", "obs" });
+    }
+
     public boolean getJobDataLoadEmptyNotificationEnabled() {
         return Boolean.parseBoolean(getOptional("kylin.job.notification-on-empty-data-load", FALSE));
     }
@@ -2407,6 +2590,22 @@ public abstract class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.metadata.backup-count-threshold", "7"));
     }
 
+    public boolean isMetadataIncrementalBackupEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.metadata.backup-incremental-enabled", FALSE));
+    }
+
+    public int getMetadataIncrementalBackupMaxChainLength() {
+        return Integer.parseInt(getOptional("kylin.metadata.backup-incremental-max-chain-length", "6"));
+    }
+
+    public int getMetadataIncrementalBackupFetchBatchSize() {
+        return Integer.parseInt(getOptional("kylin.metadata.backup-incremental-fetch-batch-size", "1000"));
+    }
+
+    public int getMetadataRestoreParallelism() {
+        return Integer.parseInt(getOptional("kylin.metadata.restore-parallelism", "4"));
+    }
+
     public int getSchedulerLimitPerMinute() {
         return Integer.parseInt(getOptional("kylin.scheduler.schedule-limit-per-minute", "10"));
     }
@@ -2727,6 +2926,10 @@ public abstract class KylinConfigBase implements Serializable {
         return Integer.parseInt(this.getOptional("kylin.query.query-history-stat-update-max-size", "100000"));
     }
 
+    public int getQueryHistoryReadBufferSize() {
+        return Integer.parseInt(this.getOptional("kylin.query.query-history-read-buffer-size", "10000"));
+    }
+
     public long getQueryHistoryAccelerateInterval() {
         return TimeUtil.timeStringAs(this.getOptional("kylin.favorite.query-history-accelerate-interval", "60m"),
                 TimeUnit.MINUTES);
@@ -3037,6 +3240,10 @@ public abstract class KylinConfigBase implements Serializable {
         return TimeUtil.timeStringAs(getOptional("kylin.diag.task-timeout", "180s"), TimeUnit.SECONDS);
     }
 
+    public boolean isDiagLogIndexEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.diag.log-index-enabled", TRUE));
+    }
+
     public ImmutableSet<String> getDiagTaskTimeoutBlackList() {
         String lists = getOptional("kylin.diag.task-timeout-black-list", "METADATA,LOG").toUpperCase(Locale.ROOT);
         return ImmutableSet.copyOf(lists.split(","));
@@ -3312,6 +3519,15 @@ public abstract class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.env.eventbus-handle-count", "100"));
     }
 
+    public String getQueryLayoutCostModel() {
+        return getOptional("kylin.query.layout-cost-model",
+                "org.apache.kylin.metadata.cube.cuboid.RowCountCostModel");
+    }
+
+    public int getEventBusQueueCapacity() {
+        return Integer.parseInt(getOptional("kylin.env.eventbus-queue-capacity", "10000"));
+    }
+
     public long getMetadataCheckDuration() {
         return Long.parseLong(getOptional("kylin.env.health-check-interval", "3000"));
     }
@@ -360,6 +360,8 @@ public class QueryContext implements Closeable {
         private String fileName;
         private String separator;
         private boolean isRefused;
+        // shares the response of the same query running, instead of running itself
+        private boolean isCoalesced = false;
     }
 
     @Getter
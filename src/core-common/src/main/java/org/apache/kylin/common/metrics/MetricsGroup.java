@@ -185,6 +185,18 @@ public class MetricsGroup {
         return true;
     }
 
+    public static boolean removeGauge(MetricsName name, MetricsCategory category, String entity) {
+        final String metricName = metricName(name.getVal(), category.getVal(), entity, Collections.emptyMap());
+        synchronized (gauges) {
+            if (gauges.remove(metricName)) {
+                MetricsController.getDefaultMetricRegistry().remove(metricName);
+                logger.trace("ke.metrics remove gauge: {}", metricName);
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static void removeMetrics(String metricNameSuffix, MetricRegistry registry) {
         synchronized (gauges) {
             final Iterator<String> it = gauges.iterator();
@@ -142,6 +142,32 @@ public enum MetricsName {
     QUERY_LOAD("query_load", ClusterConstant.ALL, ClusterConstant.QUERY), //
     CPU_CORES("cpu_cores", ClusterConstant.ALL, ClusterConstant.QUERY),
 
+    //query admission
+    QUERY_ADMISSION_QUEUE_DEPTH("query_admission_queue_depth"), //
+    QUERY_ADMISSION_WAIT_TIME("query_admission_wait_time"), //
+    QUERY_ADMISSION_SHED("query_admission_shed_total_times"), //
+
+    //query coalescing
+    QUERY_COALESCED("query_coalesced_total_times"), //
+
+    //event bus
+    EVENT_BUS_QUEUE_DEPTH("event_bus_queue_depth"), //
+    EVENT_BUS_DISPATCH_LATENCY("event_bus_dispatch_latency"), //
+    EVENT_BUS_COALESCED("event_bus_coalesced_total_times"), //
+
+    //query history tasks
+    QUERY_HISTORY_ACCELERATE_LAG("query_history_accelerate_lag"), //
+    QUERY_HISTORY_STAT_UPDATE_LAG("query_history_stat_update_lag"), //
+
+    //query routing
+    QUERY_PUSHDOWN_ROUTING_CACHE_HIT("query_pushdown_routing_cache_hit_total_times"), //
+    QUERY_SHARED_SCAN_HIT("query_shared_scan_hit_total_times"), //
+    QUERY_SHARED_SCAN_SAVED_BYTES("query_shared_scan_saved_bytes"), //
+
+    //second storage
+    SECOND_STORAGE_NODE_LATENCY("second_storage_node_latency"), //
+    SECOND_STORAGE_HEDGED_READ("second_storage_hedged_read_total_times"), //
+
     // ################################################################# Used in prometheus
     JOB_COUNT("job_count", ClusterConstant.ALL, ClusterConstant.JOB), JOB_TOTAL_DURATION("job_total_duration",
             ClusterConstant.ALL, ClusterConstant.JOB), SUCCESSFUL_JOB_COUNT("successful_job_count", ClusterConstant.ALL,
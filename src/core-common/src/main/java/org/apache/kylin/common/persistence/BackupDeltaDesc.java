@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.common.persistence;
+
+import java.io.Serializable;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Describes an incremental metadata backup: it only holds the resources changed in the audit log
+ * range (fromOffset, toOffset], and must be replayed on top of the backup at basePath.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BackupDeltaDesc implements Serializable {
+
+    private String basePath;
+
+    private long fromOffset;
+
+    private long toOffset;
+
+    /**
+     * number of incremental backups between this one and the last full backup, including itself
+     */
+    private int chainLength;
+
+    private Set<String> deletedResources = Sets.newTreeSet();
+
+}
@@ -113,6 +113,7 @@ public abstract class ResourceStore implements AutoCloseable {
     public static final String RESOURCE_GROUP = GLOBAL_PROJECT + "/resource_group";
 
     public static final String METASTORE_IMAGE = "/_image";
+    public static final String METASTORE_BACKUP_DELTA = "/_backup_delta";
     public static final String METASTORE_UUID_TAG = "/UUID";
     public static final String METASTORE_TRASH_RECORD = GLOBAL_PROJECT + "/trash_record";
     public static final String QUERY_HISTORY_TIME_OFFSET = "/query_history_time_offset";
@@ -27,4 +27,9 @@ public class AuditLogBroadcastEventNotifier extends BroadcastEventReadyNotifier
     public boolean needBroadcastSelf() {
         return false;
     }
+
+    @Override
+    public boolean canCoalesce() {
+        return true;
+    }
 }
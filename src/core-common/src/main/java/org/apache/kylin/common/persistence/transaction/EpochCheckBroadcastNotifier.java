@@ -28,4 +28,9 @@ public class EpochCheckBroadcastNotifier extends BroadcastEventReadyNotifier {
         return BroadcastScopeEnum.LEADER_NODES;
     }
 
+    @Override
+    public boolean canCoalesce() {
+        return true;
+    }
+
 }
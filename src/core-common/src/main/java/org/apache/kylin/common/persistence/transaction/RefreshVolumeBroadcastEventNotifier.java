@@ -27,4 +27,9 @@ public class RefreshVolumeBroadcastEventNotifier extends BroadcastEventReadyNoti
     public boolean needBroadcastSelf() {
         return false;
     }
+
+    @Override
+    public boolean canCoalesce() {
+        return true;
+    }
 }
@@ -20,20 +20,18 @@ package org.apache.kylin.common.scheduler;
 
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.Singletons;
+import org.apache.kylin.common.metrics.MetricsCategory;
+import org.apache.kylin.common.metrics.MetricsGroup;
+import org.apache.kylin.common.metrics.MetricsName;
 import org.apache.kylin.common.util.ExecutorServiceUtil;
-import org.apache.kylin.common.util.NamedThreadFactory;
 import org.apache.kylin.common.persistence.transaction.BroadcastEventReadyNotifier;
 
 import io.kyligence.kap.guava20.shaded.common.annotations.VisibleForTesting;
 import io.kyligence.kap.guava20.shaded.common.collect.Maps;
-import io.kyligence.kap.guava20.shaded.common.eventbus.AsyncEventBus;
 import io.kyligence.kap.guava20.shaded.common.eventbus.EventBus;
 import io.kyligence.kap.guava20.shaded.common.eventbus.SyncThrowExceptionEventBus;
 import io.kyligence.kap.guava20.shaded.common.util.concurrent.RateLimiter;
@@ -48,8 +46,8 @@ public class EventBusFactory {
     private EventBus broadcastEventBus;
     private EventBus serviceEventBus;
 
-    private ThreadPoolExecutor eventExecutor;
-    private ExecutorService broadcastExecutor;
+    private OrderedEventDispatcher eventDispatcher;
+    private OrderedEventDispatcher broadcastDispatcher;
 
     private final Map<String, RateLimiter> rateLimiters = Maps.newConcurrentMap();
 
@@ -60,17 +58,21 @@ public class EventBusFactory {
     private EventBusFactory() {
         this.kylinConfig = KylinConfig.getInstanceFromEnv();
         init();
+        MetricsGroup.newGauge(MetricsName.EVENT_BUS_QUEUE_DEPTH, MetricsCategory.GLOBAL, "SchedulerEventBus",
+                () -> eventDispatcher.getQueueDepth());
+        MetricsGroup.newGauge(MetricsName.EVENT_BUS_QUEUE_DEPTH, MetricsCategory.GLOBAL, "BroadcastEventBus",
+                () -> broadcastDispatcher.getQueueDepth());
     }
 
     private void init() {
-        eventExecutor = new ThreadPoolExecutor(kylinConfig.getEventBusHandleThreadCount(),
-                kylinConfig.getEventBusHandleThreadCount(), 300L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
-                new NamedThreadFactory("SchedulerEventBus"));
-        broadcastExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("BroadcastEventBus"));
-        eventExecutor.allowCoreThreadTimeOut(true);
-        asyncEventBus = new AsyncEventBus(eventExecutor);
+        // the buses deliver events in the threads of the dispatchers, which keep the events of a project in order
+        eventDispatcher = new OrderedEventDispatcher("SchedulerEventBus", kylinConfig.getEventBusHandleThreadCount(),
+                kylinConfig.getEventBusQueueCapacity());
+        broadcastDispatcher = new OrderedEventDispatcher("BroadcastEventBus", 1,
+                kylinConfig.getEventBusQueueCapacity());
+        asyncEventBus = new EventBus("SchedulerEventBus");
         syncEventBus = new SyncThrowExceptionEventBus();
-        broadcastEventBus = new AsyncEventBus(broadcastExecutor);
+        broadcastEventBus = new EventBus("BroadcastEventBus");
         serviceEventBus = new SyncThrowExceptionEventBus();
     }
 
@@ -128,9 +130,9 @@ public class EventBusFactory {
     public void postAsync(SchedulerEventNotifier event) {
         log.debug("Post event {} async", event);
         if (event instanceof BroadcastEventReadyNotifier) {
-            broadcastEventBus.post(event);
+            broadcastDispatcher.dispatch(event, broadcastEventBus::post);
         } else {
-            asyncEventBus.post(event);
+            eventDispatcher.dispatch(event, asyncEventBus::post);
         }
     }
 
@@ -146,12 +148,12 @@ public class EventBusFactory {
 
     @VisibleForTesting
     public void restart() {
-        stopThreadPool(eventExecutor);
-        stopThreadPool(broadcastExecutor);
+        eventDispatcher.stop();
+        broadcastDispatcher.stop();
         init();
     }
 
-    private void stopThreadPool(ExecutorService executor) {
+    static void stopThreadPool(ExecutorService executor) {
         executor.shutdown();
         try {
             if (!executor.awaitTermination(6000, TimeUnit.SECONDS)) {
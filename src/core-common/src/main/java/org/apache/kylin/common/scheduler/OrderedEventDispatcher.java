@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.common.scheduler;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.apache.kylin.common.metrics.MetricsCategory;
+import org.apache.kylin.common.metrics.MetricsGroup;
+import org.apache.kylin.common.metrics.MetricsName;
+import org.apache.kylin.common.util.NamedThreadFactory;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dispatches the events of a topic to a fixed number of lanes, each with a single thread and a bounded queue.
+ * Events of the same project always go to the same lane, so they are handled in the order they are posted,
+ * while events of different projects are handled in parallel.
+ *
+ * An event that {@link SchedulerEventNotifier#canCoalesce()} is dropped if an equal one is still waiting.
+ * When a lane is full, the poster waits for room, except the threads of the dispatcher itself, which handle
+ * the event in place to avoid deadlocks.
+ */
+@Slf4j
+public class OrderedEventDispatcher {
+
+    private static final ThreadLocal<Boolean> IN_DISPATCHER = ThreadLocal.withInitial(() -> false);
+    private static final String GLOBAL_KEY = "_global";
+
+    @Getter
+    private final String topic;
+    private final ThreadPoolExecutor[] lanes;
+    private final Set<Object> waitingEvents = ConcurrentHashMap.newKeySet();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    public OrderedEventDispatcher(String topic, int parallelism, int capacity) {
+        this.topic = topic;
+        this.lanes = new ThreadPoolExecutor[Math.max(1, parallelism)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 300L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(capacity),
+                    new NamedThreadFactory(topic + "-" + i), new WaitForRoomPolicy());
+            lanes[i].allowCoreThreadTimeOut(true);
+        }
+    }
+
+    public void dispatch(SchedulerEventNotifier event, Consumer<Object> handler) {
+        boolean coalesce = event.canCoalesce();
+        if (coalesce && !waitingEvents.add(event)) {
+            coalescedCount.incrementAndGet();
+            MetricsGroup.counterInc(MetricsName.EVENT_BUS_COALESCED, MetricsCategory.GLOBAL, topic);
+            return;
+        }
+        long postTime = System.currentTimeMillis();
+        laneOf(event.getProject()).execute(() -> {
+            if (coalesce) {
+                waitingEvents.remove(event);
+            }
+            MetricsGroup.histogramUpdate(MetricsName.EVENT_BUS_DISPATCH_LATENCY, MetricsCategory.GLOBAL, topic,
+                    System.currentTimeMillis() - postTime);
+            boolean nested = IN_DISPATCHER.get();
+            IN_DISPATCHER.set(true);
+            try {
+                handler.accept(event);
+            } finally {
+                IN_DISPATCHER.set(nested);
+            }
+        });
+    }
+
+    private ThreadPoolExecutor laneOf(String key) {
+        return lanes[Math.floorMod(Objects.hashCode(key == null ? GLOBAL_KEY : key), lanes.length)];
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            depth += lane.getQueue().size();
+        }
+        return depth;
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Stop accepting events, and wait until the events already posted are handled.
+     */
+    public void stop() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            EventBusFactory.stopThreadPool(lane);
+        }
+    }
+
+    private class WaitForRoomPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                log.warn("Event dispatcher {} is stopped, event dropped", topic);
+                return;
+            }
+            if (IN_DISPATCHER.get()) {
+                log.warn("Event queue of {} is full, handle the event in place", topic);
+                r.run();
+                return;
+            }
+            try {
+                executor.getQueue().put(r);
+                // the only thread may have timed out while the event was waiting
+                executor.prestartCoreThread();
+            } catch (InterruptedException e) {
+                log.warn("Interrupted while waiting for room in event queue of {}", topic);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
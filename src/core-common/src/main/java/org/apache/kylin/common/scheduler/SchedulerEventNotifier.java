@@ -38,6 +38,13 @@ public class SchedulerEventNotifier {
         return this.getClass().getSimpleName();
     }
 
+    /**
+     * Whether the event can be dropped while an equal event is still waiting to be handled.
+     */
+    public boolean canCoalesce() {
+        return false;
+    }
+
     @Override
     public String toString() {
         return String.format(Locale.ROOT, "%s {project=%s, subject=%s}", getEventType(), project, subject);
@@ -45,6 +45,7 @@ public class MetadataChecker {
     public class VerifyResult {
         boolean existUUIDFile = false;
         boolean existImageFile = false;
+        boolean existBackupDeltaFile = false;
         boolean existACLDir = false;
         boolean existUserDir = false;
         boolean existUserGroupFile = false;
@@ -93,6 +94,13 @@ public class MetadataChecker {
     }
 
     public VerifyResult verify() {
+        return verify(metadataStore.list(File.separator));
+    }
+
+    /**
+     * Verifies the given resources as the whole metadata, e.g. the resources of a replayed backup chain.
+     */
+    public VerifyResult verify(Set<String> allFiles) {
         VerifyResult verifyResult = new VerifyResult();
 
         // The valid metadata image contains at least the following conditions：
@@ -100,7 +108,6 @@ public class MetadataChecker {
         //     2.may have one _global dir which may have one user_group file or one user dir or one acl dir
         //     3.all other subdir as a project and must have only one project.json file
 
-        val allFiles = metadataStore.list(File.separator);
         for (final String file : allFiles) {
             if (file.endsWith(".DS_Store")) {
                 continue;
@@ -140,6 +147,11 @@ public class MetadataChecker {
                 continue;
             }
 
+            if (file.equals(ResourceStore.METASTORE_BACKUP_DELTA)) {
+                verifyResult.existBackupDeltaFile = true;
+                continue;
+            }
+
             if (file.startsWith(ResourceStore.COMPRESSED_FILE)) {
                 verifyResult.existCompressedFile = true;
                 continue;
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.common.scheduler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.persistence.transaction.AuditLogBroadcastEventNotifier;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OrderedEventDispatcherTest {
+
+    @Test
+    public void testOrderedPerProject() {
+        OrderedEventDispatcher dispatcher = new OrderedEventDispatcher("test", 4, 16);
+        List<String> handled = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            dispatcher.dispatch(new SchedulerEventNotifier("p" + (i % 3), String.valueOf(i)),
+                    event -> handled.add(((SchedulerEventNotifier) event).getSubject()));
+        }
+        dispatcher.stop();
+        Assert.assertEquals(100, handled.size());
+        int[] last = { -1, -1, -1 };
+        for (String subject : handled) {
+            int i = Integer.parseInt(subject);
+            Assert.assertTrue(i > last[i % 3]);
+            last[i % 3] = i;
+        }
+    }
+
+    @Test
+    public void testParallelAcrossProjects() throws InterruptedException {
+        OrderedEventDispatcher dispatcher = new OrderedEventDispatcher("test", 2, 16);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch other = new CountDownLatch(1);
+        // "a" and "b" are in different lanes
+        dispatcher.dispatch(new SchedulerEventNotifier("a", "slow"), event -> {
+            try {
+                blocked.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.dispatch(new SchedulerEventNotifier("b", "fast"), event -> other.countDown());
+        Assert.assertTrue(other.await(10, TimeUnit.SECONDS));
+        blocked.countDown();
+        dispatcher.stop();
+    }
+
+    @Test
+    public void testCoalesce() throws InterruptedException {
+        OrderedEventDispatcher dispatcher = new OrderedEventDispatcher("test", 1, 16);
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<Object> handled = new CopyOnWriteArrayList<>();
+        dispatcher.dispatch(new SchedulerEventNotifier(null, "block"), event -> {
+            try {
+                blocked.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            dispatcher.dispatch(new AuditLogBroadcastEventNotifier(), handled::add);
+        }
+        Assert.assertEquals(4, dispatcher.getCoalescedCount());
+        blocked.countDown();
+        dispatcher.stop();
+        Assert.assertEquals(1, handled.size());
+        Assert.assertEquals(0, dispatcher.getQueueDepth());
+    }
+}
@@ -54,6 +54,8 @@ public final class ExecutableConstants {
     public static final String HDFS_BYTES_WRITTEN = "hdfs_bytes_written";
     public static final String SOURCE_RECORDS_COUNT = "source_records_count";
     public static final String SOURCE_RECORDS_SIZE = "source_records_size";
+    public static final String EXECUTOR_INSTANCES = "executor_instances";
+    public static final String SHUFFLE_PARTITIONS = "shuffle_partitions";
 
     public static final String STEP_NAME_BUILD_DICTIONARY = "Build Dimension Dictionary";
     public static final String STEP_NAME_CREATE_FLAT_HIVE_TABLE = "Create Intermediate Flat Hive Table";
@@ -74,4 +74,11 @@ public class JobStatistics extends JobStatisticsBasic {
 
         jobStatisticsByModels.put(model, jobStatisticsByModel);
     }
+
+    public void recordBuild(String model, long sourceBytes, long runTime, int executorInstances,
+            int shufflePartitions) {
+        super.recordBuild(sourceBytes, runTime, executorInstances, shufflePartitions);
+        jobStatisticsByModels.computeIfAbsent(model, key -> new JobStatisticsBasic()).recordBuild(sourceBytes,
+                runTime, executorInstances, shufflePartitions);
+    }
 }
@@ -22,7 +22,6 @@ import org.apache.kylin.common.persistence.RootPersistentEntity;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -30,7 +29,6 @@ import lombok.Setter;
 @Getter
 @Setter
 @NoArgsConstructor
-@AllArgsConstructor
 public class JobStatisticsBasic extends RootPersistentEntity {
     @JsonProperty("count")
     private int count;
@@ -38,6 +36,26 @@ public class JobStatisticsBasic extends RootPersistentEntity {
     private long totalDuration;
     @JsonProperty("total_byte_size")
     private long totalByteSize;
+    // the succeeded builds, by the bytes of their source, the run time of their spark application and its resources
+    @JsonProperty("build_count")
+    private int buildCount;
+    @JsonProperty("total_build_source_bytes")
+    private long totalBuildSourceBytes;
+    @JsonProperty("total_build_run_time")
+    private long totalBuildRunTime;
+    @JsonProperty("total_build_executor_instances")
+    private long totalBuildExecutorInstances;
+    @JsonProperty("total_build_shuffle_partitions")
+    private long totalBuildShufflePartitions;
+    // the run time multiplied by the executor instances, which does not vary with the resources of a build
+    @JsonProperty("total_build_executor_time")
+    private long totalBuildExecutorTime;
+
+    public JobStatisticsBasic(int count, long totalDuration, long totalByteSize) {
+        this.count = count;
+        this.totalDuration = totalDuration;
+        this.totalByteSize = totalByteSize;
+    }
 
     public void update(long duration, long byteSize, int deltaCount) {
         this.count += deltaCount;
@@ -45,6 +63,15 @@ public class JobStatisticsBasic extends RootPersistentEntity {
         this.totalByteSize += byteSize;
     }
 
+    public void recordBuild(long sourceBytes, long runTime, int executorInstances, int shufflePartitions) {
+        this.buildCount++;
+        this.totalBuildSourceBytes += sourceBytes;
+        this.totalBuildRunTime += runTime;
+        this.totalBuildExecutorInstances += executorInstances;
+        this.totalBuildShufflePartitions += shufflePartitions;
+        this.totalBuildExecutorTime += runTime * executorInstances;
+    }
+
     public JobStatisticsBasic(long totalDuration, long totalByteSize) {
         this.count = 1;
         this.totalDuration = totalDuration;
@@ -112,6 +112,20 @@ public class JobStatisticsManager {
         return crud.save(jobStatisticsToUpdate);
     }
 
+    public JobStatistics recordBuild(long date, String model, long sourceBytes, long runTime, int executorInstances,
+            int shufflePartitions) {
+        JobStatistics jobStatistics = crud.get(String.valueOf(date));
+        JobStatistics jobStatisticsToUpdate;
+        if (jobStatistics == null) {
+            jobStatisticsToUpdate = new JobStatistics();
+            jobStatisticsToUpdate.setDate(date);
+        } else {
+            jobStatisticsToUpdate = crud.copyForWrite(jobStatistics);
+        }
+        jobStatisticsToUpdate.recordBuild(model, sourceBytes, runTime, executorInstances, shufflePartitions);
+        return crud.save(jobStatisticsToUpdate);
+    }
+
     public Pair<Integer, JobStatistics> getOverallJobStats(final long startTime, final long endTime) {
         // filter
         List<JobStatistics> filteredJobStats = getFilteredJobStatsByTime(crud.listAll(), startTime, endTime);
@@ -109,7 +109,8 @@ public class NExecutableManager {
 
     private static final Set<String> REMOVE_INFO = Sets.newHashSet(ExecutableConstants.YARN_APP_ID,
             ExecutableConstants.YARN_APP_URL, ExecutableConstants.YARN_JOB_WAIT_TIME,
-            ExecutableConstants.YARN_JOB_RUN_TIME);
+            ExecutableConstants.YARN_JOB_RUN_TIME, ExecutableConstants.SOURCE_RECORDS_SIZE,
+            ExecutableConstants.EXECUTOR_INSTANCES, ExecutableConstants.SHUFFLE_PARTITIONS);
 
     public static NExecutableManager getInstance(KylinConfig config, String project) {
         if (null == project) {
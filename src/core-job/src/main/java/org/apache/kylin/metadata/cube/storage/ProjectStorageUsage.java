@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.metadata.cube.storage;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.Singletons;
+import org.apache.kylin.common.persistence.RawResource;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.util.NamedThreadFactory;
+import org.apache.kylin.metadata.cube.model.NDataSegment;
+import org.apache.kylin.metadata.cube.model.NDataflow;
+import org.apache.kylin.metadata.cube.model.NDataflowManager;
+
+import com.google.common.collect.Sets;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Running totals of the storage used by a project.
+ *
+ * The size of every layout is recorded in metadata from the write statistics of builds and merges, and dropped
+ * together with its segment, so the storage of models is summed up from metadata. The dataflows of the project are
+ * summed up once, then the running total is updated by the events of the changed and deleted dataflows, and a model
+ * is only summed up again when the mvcc of its dataflow changes.
+ *
+ * Files not tracked by metadata (dictionaries, flat tables, temporary files and so on) are measured by a scan of
+ * the working directory, which also fixes the drift between metadata and the file system in both directions. The
+ * first scan of a project runs in the caller, the later low-frequency ones in background.
+ */
+@Slf4j
+public class ProjectStorageUsage {
+
+    private static final String JSON_SUFFIX = ".json";
+
+    private static final ThreadPoolExecutor RECONCILE_EXECUTOR = new ThreadPoolExecutor(1, 1, 60L,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("StorageReconciler"));
+
+    static {
+        RECONCILE_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final String project;
+    private final Map<String, ModelUsage> models = new ConcurrentHashMap<>();
+    private final AtomicBoolean reconciling = new AtomicBoolean(false);
+    private final Object seedLock = new Object();
+    // the size of every model as counted in the running total
+    private final Map<String, Long> trackedSizes = new HashMap<>();
+    private boolean trackedLoaded;
+    private long trackedStorageSize;
+    private volatile long untrackedStorageSize;
+    private volatile long lastReconcileTime = -1L;
+
+    private ProjectStorageUsage(String project) {
+        this.project = project;
+    }
+
+    public static ProjectStorageUsage getInstance(String project) {
+        return Singletons.getInstance(project, ProjectStorageUsage.class);
+    }
+
+    /**
+     * @return the storage size of all the segments of the project, as recorded in metadata
+     */
+    public synchronized long getTrackedStorageSize(KylinConfig config) {
+        if (!trackedLoaded) {
+            loadTrackedStorageSize(config);
+        }
+        return trackedStorageSize;
+    }
+
+    /**
+     * Sum up the dataflows of the project from the resource store, the models not changed are not read again.
+     */
+    private void loadTrackedStorageSize(KylinConfig config) {
+        ResourceStore store = ResourceStore.getKylinMetaStore(config);
+        NavigableSet<String> paths = store.listResources("/" + project + ResourceStore.DATAFLOW_RESOURCE_ROOT);
+        long total = 0L;
+        Set<String> modelIds = Sets.newHashSet();
+        trackedSizes.clear();
+        if (paths != null) {
+            for (String path : paths) {
+                if (!path.endsWith(JSON_SUFFIX)) {
+                    continue;
+                }
+                String modelId = path.substring(path.lastIndexOf('/') + 1,
+                        path.length() - JSON_SUFFIX.length());
+                RawResource raw = store.getResource(path);
+                if (raw == null) {
+                    continue;
+                }
+                modelIds.add(modelId);
+                long size = getModelUsage(config, modelId, raw.getMvcc()).storageSize;
+                trackedSizes.put(modelId, size);
+                total += size;
+            }
+        }
+        models.keySet().retainAll(modelIds);
+        trackedStorageSize = total;
+        trackedLoaded = true;
+    }
+
+    /**
+     * Update the running total by a dataflow created or updated. Nothing is done before the total is summed up.
+     */
+    public synchronized void onDataflowUpdate(KylinConfig config, String modelId, long mvcc) {
+        if (!trackedLoaded) {
+            return;
+        }
+        long size = getModelUsage(config, modelId, mvcc).storageSize;
+        Long old = trackedSizes.put(modelId, size);
+        trackedStorageSize += size - (old == null ? 0L : old);
+    }
+
+    /**
+     * Update the running total by a dataflow deleted. Nothing is done before the total is summed up.
+     */
+    public synchronized void onDataflowDelete(String modelId) {
+        if (!trackedLoaded) {
+            return;
+        }
+        models.remove(modelId);
+        Long old = trackedSizes.remove(modelId);
+        if (old != null) {
+            trackedStorageSize -= old;
+        }
+    }
+
+    /**
+     * @return the storage size of the model, as recorded in metadata
+     */
+    public long getModelStorageSize(KylinConfig config, String modelId) {
+        NDataflow dataflow = NDataflowManager.getInstance(config, project).getDataflow(modelId);
+        return dataflow == null ? 0L : getModelUsage(config, modelId, dataflow.getMvcc()).storageSize;
+    }
+
+    public long getTotalStorageSize(KylinConfig config) {
+        return Math.max(0L, getTrackedStorageSize(config) + untrackedStorageSize);
+    }
+
+    /**
+     * Measure the storage by the scan in the caller if the project is never measured, so the untracked size is known
+     * from the first access. Concurrent callers wait for the one scan.
+     */
+    public void seed(KylinConfig config, Callable<Long> scan) throws IOException {
+        synchronized (seedLock) {
+            if (lastReconcileTime >= 0) {
+                return;
+            }
+            long measured;
+            try {
+                measured = scan.call();
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            reconcile(config, measured);
+        }
+    }
+
+    public boolean isReconcileNeeded(KylinConfig config) {
+        return lastReconcileTime < 0
+                || System.currentTimeMillis() - lastReconcileTime >= config.getStorageReconcileIntervalMs();
+    }
+
+    /**
+     * Measure the storage by the scan in background when a reconcile is needed, at most one scan of the project
+     * runs at a time.
+     *
+     * @return true if a scan is submitted
+     */
+    public boolean reconcileInBackground(KylinConfig config, Callable<Long> scan) {
+        if (!isReconcileNeeded(config) || !reconciling.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            RECONCILE_EXECUTOR.execute(() -> {
+                try {
+                    reconcile(config, scan.call());
+                } catch (Exception e) {
+                    log.warn("Failed to measure the storage of project {}", project, e);
+                } finally {
+                    reconciling.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            reconciling.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    public boolean isReconciling() {
+        return reconciling.get();
+    }
+
+    /**
+     * Reset the running totals with the dataflows summed up again and the size measured from the file system. The
+     * untracked size is negative when the file system holds less than recorded in metadata, e.g. files removed by
+     * hand.
+     */
+    public synchronized void reconcile(KylinConfig config, long measuredStorageSize) {
+        loadTrackedStorageSize(config);
+        long tracked = trackedStorageSize;
+        long untracked = measuredStorageSize - tracked;
+        if (lastReconcileTime >= 0 && untracked != untrackedStorageSize) {
+            log.info("Storage of project {} drifted, {} bytes expected and {} bytes measured", project,
+                    tracked + untrackedStorageSize, measuredStorageSize);
+        }
+        untrackedStorageSize = untracked;
+        lastReconcileTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Only a dataflow changed since last summed up is read from the dataflow manager.
+     */
+    private ModelUsage getModelUsage(KylinConfig config, String modelId, long mvcc) {
+        return models.compute(modelId, (id, usage) -> {
+            if (usage != null && usage.mvcc == mvcc) {
+                return usage;
+            }
+            NDataflow dataflow = NDataflowManager.getInstance(config, project).getDataflow(modelId);
+            return dataflow == null ? ModelUsage.EMPTY : new ModelUsage(dataflow);
+        });
+    }
+
+    private static class ModelUsage {
+        private static final ModelUsage EMPTY = new ModelUsage(-1L, 0L);
+
+        private final long mvcc;
+        private final long storageSize;
+
+        private ModelUsage(long mvcc, long storageSize) {
+            this.mvcc = mvcc;
+            this.storageSize = storageSize;
+        }
+
+        private ModelUsage(NDataflow dataflow) {
+            this.mvcc = dataflow.getMvcc();
+            long size = 0L;
+            for (NDataSegment segment : dataflow.getSegments()) {
+                size += segment.getStorageBytesSize();
+            }
+            this.storageSize = size;
+        }
+    }
+}
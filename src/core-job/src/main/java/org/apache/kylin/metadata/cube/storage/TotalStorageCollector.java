@@ -25,10 +25,23 @@ import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.HadoopUtil;
 
+import lombok.val;
+
 public class TotalStorageCollector implements StorageInfoCollector {
 
     @Override
     public void collect(KylinConfig config, String project, StorageVolumeInfo storageVolumeInfo) throws IOException {
+        if (!config.isStorageIncrementalAccountingEnabled()) {
+            storageVolumeInfo.setTotalStorageSize(scanStorageSize(config, project));
+            return;
+        }
+        val storageUsage = ProjectStorageUsage.getInstance(project);
+        storageUsage.seed(config, () -> scanStorageSize(config, project));
+        storageUsage.reconcileInBackground(config, () -> scanStorageSize(config, project));
+        storageVolumeInfo.setTotalStorageSize(storageUsage.getTotalStorageSize(config));
+    }
+
+    private long scanStorageSize(KylinConfig config, String project) throws IOException {
         String strPath = config.getWorkingDirectoryWithConfiguredFs(project);
         Path path = new Path(strPath);
         FileSystem fs = path.getFileSystem(HadoopUtil.getCurrentConfiguration());
@@ -36,7 +49,7 @@ public class TotalStorageCollector implements StorageInfoCollector {
         if (fs.exists(path)) {
             totalStorageSize = HadoopUtil.getContentSummary(fs, path).getLength();
         }
-        storageVolumeInfo.setTotalStorageSize(totalStorageSize);
+        return totalStorageSize;
     }
 
 }
@@ -77,6 +77,27 @@ public class JobStatisticsManagerTest extends NLocalFileMetadataTestCase {
         Assert.assertEquals(1, jobStatistics.get(0).getJobStatisticsByModels().get("test_model").getCount());
     }
 
+    @Test
+    public void testRecordBuild() {
+        JobStatisticsManager jobStatisticsManager = JobStatisticsManager.getInstance(getTestConfig(), PROJECT);
+        jobStatisticsManager.recordBuild(0, "test_model", 1024, 1000, 10, 200);
+        jobStatisticsManager.updateStatistics(0, "test_model", 3000, 512, 1);
+        jobStatisticsManager.recordBuild(0, "test_model", 2048, 2000, 20, 400);
+
+        JobStatistics jobStatistics = jobStatisticsManager.getAll().get(0);
+        JobStatisticsBasic byModel = jobStatistics.getJobStatisticsByModels().get("test_model");
+        Assert.assertEquals(2, byModel.getBuildCount());
+        Assert.assertEquals(3072, byModel.getTotalBuildSourceBytes());
+        Assert.assertEquals(3000, byModel.getTotalBuildRunTime());
+        Assert.assertEquals(30, byModel.getTotalBuildExecutorInstances());
+        Assert.assertEquals(600, byModel.getTotalBuildShufflePartitions());
+        Assert.assertEquals(1000 * 10 + 2000 * 20, byModel.getTotalBuildExecutorTime());
+        // the builds recorded are apart from the jobs
+        Assert.assertEquals(1, byModel.getCount());
+        Assert.assertEquals(3000, byModel.getTotalDuration());
+        Assert.assertEquals(2, jobStatistics.getBuildCount());
+    }
+
     private List<JobStatistics> getTestJobStats() {
         List<JobStatistics> jobStatistics = Lists.newArrayList();
 
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.metadata.cube.storage;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kylin.common.Singletons;
+import org.apache.kylin.common.util.NLocalFileMetadataTestCase;
+import org.apache.kylin.metadata.cube.model.NDataSegment;
+import org.apache.kylin.metadata.cube.model.NDataflow;
+import org.apache.kylin.metadata.cube.model.NDataflowManager;
+import org.apache.kylin.metadata.cube.model.NDataflowUpdate;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import lombok.val;
+
+public class ProjectStorageUsageTest extends NLocalFileMetadataTestCase {
+
+    private static final String DEFAULT_PROJECT = "default";
+    private static final String DEFAULT_MODEL_BASIC_ID = "89af4ee2-2cdb-4b07-b39e-4c29856309aa";
+
+    @Before
+    public void setUp() {
+        this.createTestMetadata();
+        Singletons.clearInstance(ProjectStorageUsage.class);
+    }
+
+    @After
+    public void tearDown() {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testTrackedStorageSize() {
+        val config = getTestConfig();
+        val dfManager = NDataflowManager.getInstance(config, DEFAULT_PROJECT);
+        long expected = 0L;
+        for (NDataflow dataflow : dfManager.listAllDataflows(true)) {
+            expected += sumSegments(dataflow);
+        }
+        val usage = ProjectStorageUsage.getInstance(DEFAULT_PROJECT);
+        Assert.assertEquals(expected, usage.getTrackedStorageSize(config));
+
+        val dataflow = dfManager.getDataflow(DEFAULT_MODEL_BASIC_ID);
+        long modelSize = usage.getModelStorageSize(config, DEFAULT_MODEL_BASIC_ID);
+        Assert.assertEquals(sumSegments(dataflow), modelSize);
+
+        // dropping a segment is reflected without scanning the file system
+        val segment = dataflow.getSegments().get(0);
+        val update = new NDataflowUpdate(DEFAULT_MODEL_BASIC_ID);
+        update.setToRemoveSegs(segment);
+        val updated = dfManager.updateDataflow(update);
+        Assert.assertEquals(modelSize - segment.getStorageBytesSize(),
+                usage.getModelStorageSize(config, DEFAULT_MODEL_BASIC_ID));
+        // the running total is updated by the event of the dataflow, not summed up again
+        usage.onDataflowUpdate(config, DEFAULT_MODEL_BASIC_ID, updated.getMvcc());
+        Assert.assertEquals(expected - segment.getStorageBytesSize(), usage.getTrackedStorageSize(config));
+        usage.onDataflowUpdate(config, DEFAULT_MODEL_BASIC_ID, updated.getMvcc());
+        Assert.assertEquals(expected - segment.getStorageBytesSize(), usage.getTrackedStorageSize(config));
+
+        usage.onDataflowDelete(DEFAULT_MODEL_BASIC_ID);
+        Assert.assertEquals(expected - modelSize, usage.getTrackedStorageSize(config));
+        usage.onDataflowDelete(DEFAULT_MODEL_BASIC_ID);
+        Assert.assertEquals(expected - modelSize, usage.getTrackedStorageSize(config));
+    }
+
+    @Test
+    public void testEventsBeforeSummedUp() {
+        val config = getTestConfig();
+        val usage = ProjectStorageUsage.getInstance(DEFAULT_PROJECT);
+        // ignored until the dataflows are summed up on the first access
+        usage.onDataflowDelete(DEFAULT_MODEL_BASIC_ID);
+        long expected = 0L;
+        for (NDataflow dataflow : NDataflowManager.getInstance(config, DEFAULT_PROJECT).listAllDataflows(true)) {
+            expected += sumSegments(dataflow);
+        }
+        Assert.assertEquals(expected, usage.getTrackedStorageSize(config));
+    }
+
+    @Test
+    public void testSeed() throws Exception {
+        val config = getTestConfig();
+        config.setProperty("kylin.storage.reconcile-interval", "1h");
+        val usage = ProjectStorageUsage.getInstance(DEFAULT_PROJECT);
+        long tracked = usage.getTrackedStorageSize(config);
+        val scans = new AtomicInteger();
+
+        // the untracked size is known from the first access
+        usage.seed(config, () -> {
+            scans.incrementAndGet();
+            return tracked + 1024L;
+        });
+        Assert.assertEquals(tracked + 1024L, usage.getTotalStorageSize(config));
+        Assert.assertFalse(usage.isReconcileNeeded(config));
+
+        // measured once
+        usage.seed(config, () -> {
+            scans.incrementAndGet();
+            return 0L;
+        });
+        Assert.assertEquals(1, scans.get());
+        Assert.assertEquals(tracked + 1024L, usage.getTotalStorageSize(config));
+    }
+
+    @Test
+    public void testReconcile() {
+        val config = getTestConfig();
+        config.setProperty("kylin.storage.reconcile-interval", "1h");
+        val usage = ProjectStorageUsage.getInstance(DEFAULT_PROJECT);
+        long tracked = usage.getTrackedStorageSize(config);
+
+        usage.reconcile(config, tracked + 1024L);
+        Assert.assertFalse(usage.isReconcileNeeded(config));
+        Assert.assertEquals(tracked + 1024L, usage.getTotalStorageSize(config));
+
+        // the file system may hold less than recorded in metadata, e.g. files removed by hand
+        usage.reconcile(config, tracked - 1L);
+        Assert.assertEquals(tracked - 1L, usage.getTotalStorageSize(config));
+
+        config.setProperty("kylin.storage.reconcile-interval", "0s");
+        Assert.assertTrue(usage.isReconcileNeeded(config));
+    }
+
+    @Test
+    public void testReconcileInBackground() throws Exception {
+        val config = getTestConfig();
+        config.setProperty("kylin.storage.reconcile-interval", "1h");
+        val usage = ProjectStorageUsage.getInstance(DEFAULT_PROJECT);
+        long tracked = usage.getTrackedStorageSize(config);
+
+        val scanStarted = new CountDownLatch(1);
+        val scanReleased = new CountDownLatch(1);
+        Assert.assertTrue(usage.reconcileInBackground(config, () -> {
+            scanStarted.countDown();
+            scanReleased.await();
+            return tracked + 1024L;
+        }));
+        Assert.assertTrue(scanStarted.await(10, TimeUnit.SECONDS));
+        // the caller is not blocked by the scan, and a single scan runs at a time
+        Assert.assertEquals(tracked, usage.getTotalStorageSize(config));
+        Assert.assertFalse(usage.reconcileInBackground(config, () -> 0L));
+
+        scanReleased.countDown();
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (usage.isReconciling() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(usage.isReconciling());
+        Assert.assertEquals(tracked + 1024L, usage.getTotalStorageSize(config));
+        // no scan until the interval passes
+        Assert.assertFalse(usage.reconcileInBackground(config, () -> 0L));
+    }
+
+    private static long sumSegments(NDataflow dataflow) {
+        long size = 0L;
+        for (NDataSegment segment : dataflow.getSegments()) {
+            size += segment.getStorageBytesSize();
+        }
+        return size;
+    }
+}
@@ -358,6 +358,61 @@ public class HLLCounter implements Serializable, Comparable<HLLCounter> {
             throw new IllegalStateException();
     }
 
+    /**
+     * Merge the registers written by writeRegisters into this counter, without materializing another counter.
+     */
+    public void mergeRegisters(ByteBuffer in) {
+        byte scheme = in.get();
+        if (scheme == 0) { // map scheme
+            int size = BytesUtil.readVInt(in);
+            if (size > m)
+                throw new IllegalArgumentException("register size (" + size + ") cannot be larger than m (" + m + ")");
+            if (isDense(size)) {
+                toDense();
+            }
+            int indexLen = getRegisterIndexSize();
+            for (int i = 0; i < size; i++) {
+                int key = readUnsigned(in, indexLen);
+                mergeRegister(key, in.get());
+            }
+            toDenseIfNeeded();
+        } else if (scheme == 1) { // array scheme
+            toDense();
+            byte[] raw = ((DenseRegister) register).getRawRegister();
+            for (int i = 0; i < m; i++) {
+                byte value = in.get();
+                if (value > raw[i]) {
+                    raw[i] = value;
+                }
+            }
+        } else
+            throw new IllegalStateException();
+    }
+
+    private void mergeRegister(int pos, byte value) {
+        if (register.getRegisterType() == RegisterType.SINGLE_VALUE) {
+            SingleValueRegister sr = (SingleValueRegister) register;
+            int singlePos = sr.getSingleValuePos();
+            if (singlePos >= 0 && singlePos != pos && value > 0) {
+                this.register = sr.toSparse();
+            }
+        }
+        setIfBigger(register, pos, value);
+    }
+
+    private void toDense() {
+        switch (register.getRegisterType()) {
+        case SINGLE_VALUE:
+            register = ((SingleValueRegister) register).toDense(p);
+            break;
+        case SPARSE:
+            register = ((SparseRegister) register).toDense(p);
+            break;
+        default:
+            break;
+        }
+    }
+
     public int peekLength(ByteBuffer in) {
         int mark = in.position();
         int len;
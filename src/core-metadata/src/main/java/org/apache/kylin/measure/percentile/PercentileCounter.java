@@ -38,12 +38,16 @@ package org.apache.kylin.measure.percentile;
 
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.Random;
 
 import com.tdunning.math.stats.AVLTreeDigest;
 import com.tdunning.math.stats.TDigest;
 
 public class PercentileCounter implements Serializable {
     private static final double INVALID_QUANTILE_RATIO = -1;
+    // encodings of AVLTreeDigest.asBytes and AVLTreeDigest.asSmallBytes
+    private static final int VERBOSE_ENCODING = 1;
+    private static final int SMALL_ENCODING = 2;
 
     double compression;
     double quantileRatio;
@@ -102,6 +106,75 @@ public class PercentileCounter implements Serializable {
         compression = registers.compression();
     }
 
+    /**
+     * Merge serialized registers into this counter without decoding them into a digest first. The centroids are
+     * decoded into the reusable arrays of the scratch and added in random order, like TDigest.add(TDigest) does.
+     */
+    public void mergeRegisters(ByteBuffer in, MergeScratch scratch) {
+        int encoding = in.getInt();
+        in.getDouble(); // compression of the serialized digest
+        int n = in.getInt();
+        scratch.ensureCapacity(n);
+        double[] means = scratch.means;
+        int[] counts = scratch.counts;
+        if (encoding == SMALL_ENCODING) {
+            double x = 0;
+            for (int i = 0; i < n; i++) {
+                x += in.getFloat();
+                means[i] = x;
+            }
+            for (int i = 0; i < n; i++) {
+                counts[i] = decodeCount(in);
+            }
+        } else if (encoding == VERBOSE_ENCODING) {
+            for (int i = 0; i < n; i++) {
+                means[i] = in.getDouble();
+            }
+            for (int i = 0; i < n; i++) {
+                counts[i] = in.getInt();
+            }
+        } else {
+            throw new IllegalStateException("Invalid format for serialized histogram");
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            int j = scratch.random.nextInt(i + 1);
+            registers.add(means[j], counts[j]);
+            means[j] = means[i];
+            counts[j] = counts[i];
+        }
+    }
+
+    private static int decodeCount(ByteBuffer in) {
+        int v = in.get();
+        int z = 0x7f & v;
+        int shift = 7;
+        while ((v & 0x80) != 0) {
+            if (shift > 28) {
+                throw new IllegalStateException("Shift too large in decode");
+            }
+            v = in.get();
+            z += (v & 0x7f) << shift;
+            shift += 7;
+        }
+        return z;
+    }
+
+    /**
+     * Reusable buffers of {@link #mergeRegisters(ByteBuffer, MergeScratch)}, one per aggregating thread.
+     */
+    public static class MergeScratch {
+        private final Random random = new Random(0);
+        private double[] means = new double[0];
+        private int[] counts = new int[0];
+
+        private void ensureCapacity(int n) {
+            if (means.length < n) {
+                means = new double[Math.max(n, means.length * 2)];
+                counts = new int[means.length];
+            }
+        }
+    }
+
     public int getBytesEstimate() {
         return maxLength();
     }
@@ -16,36 +16,15 @@
  * limitations under the License.
  */
 
-/*
- * Licensed to the Apache Software Foundation (ASF) under one
- * or more contributor license agreements.  See the NOTICE file
- * distributed with this work for additional information
- * regarding copyright ownership.  The ASF licenses this file
- * to you under the Apache License, Version 2.0 (the
- * "License"); you may not use this file except in compliance
- * with the License.  You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
 package org.apache.kylin.measure.topn;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 
 /**
  * Modified from the StreamSummary.java in https://github.com/addthis/stream-lib
@@ -55,124 +34,172 @@ import com.google.common.collect.Maps;
  * <i>Efficient Computation of Frequent and Top-k Elements in Data Streams</i>
  * by Metwally, Agrawal, and Abbadi
  *
+ * The counters are kept in parallel primitive arrays indexed by slot, with an open-addressed hash index from
+ * item to slot and an indexed min-heap of slots, so offering an item never allocates and the item to be
+ * dropped is always at the top of the heap. When ordered, slot 0 is the toppest element.
+ *
  * @param <T> type of data in the stream to be summarized
  */
 public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializable {
 
     public static int EXTRA_SPACE_RATE = 50;
 
+    private static final int NO_SLOT = -1;
+    private static final int INITIAL_SLOTS = 16;
+
     protected int capacity;
-    private HashMap<T, Counter<T>> counterMap;
-    protected LinkedList<Counter<T>> counterList; //a linked list, first the is the toppest element
+    private int size;
+    private Object[] items;
+    private double[] counts;
+    // a null count is smaller than any other count
+    private boolean[] nullCounts;
+    private int[] hashes;
+    // among equal counts, the later inserted item is dropped first
+    private long[] stamps;
+    private long nextStamp;
+    // min-heap of slots, and the position of each slot in the heap
+    private int[] heap;
+    private int[] heapPositions;
+    // open-addressed index from item to slot + 1, 0 means empty
+    private int[] table;
     private boolean ordered = true;
-    private boolean descending = true;
 
     /**
      * @param capacity maximum size (larger capacities improve accuracy)
      */
     public TopNCounter(int capacity) {
         this.capacity = capacity;
-        counterMap = Maps.newHashMap();
-        counterList = Lists.newLinkedList();
+        allocate(Math.max(1, Math.min(capacity, INITIAL_SLOTS)));
     }
 
     public int getCapacity() {
         return capacity;
     }
 
+    /**
+     * Copy the counters to a list, in descending order if the counter is ordered.
+     * Prefer {@link #forEachEntry(EntryConsumer)} which does not allocate.
+     */
     public LinkedList<Counter<T>> getCounterList() {
+        LinkedList<Counter<T>> counterList = new LinkedList<>();
+        for (int slot = 0; slot < size; slot++) {
+            counterList.add(toCounter(slot));
+        }
         return counterList;
     }
 
+    /**
+     * Visit the counters without allocation, in descending order if the counter is ordered.
+     */
+    public void forEachEntry(EntryConsumer<? super T> consumer) {
+        for (int slot = 0; slot < size; slot++) {
+            consumer.accept(itemAt(slot), counts[slot], nullCounts[slot]);
+        }
+    }
+
     public void offer(T item) {
-        offer(item, 1.0);
+        offerCount(item, 1.0);
     }
 
     /**
      * Algorithm: <i>Space-Saving</i>
      *
      * @param item stream element (<i>e</i>)
-     * @return false if item was already in the stream summary, true otherwise
      */
     public void offer(T item, Double incrementCount) {
-        Counter<T> counterNode = counterMap.get(item);
-
-        boolean isNewItem = (counterNode == null);
-
-        if (isNewItem) {
-            if (size() < capacity) {
-                counterNode = new Counter<>(item, null);
-                if (this.descending) {
-                    counterList.addLast(counterNode);
-                } else {
-                    counterList.addFirst(counterNode);
-                }
-            } else {
-                // the min item should be dropped
-                if (!ordered) {
-                    sort();
-                }
-                counterNode = this.descending ? counterList.getLast() : counterList.getFirst();
-                counterMap.remove(counterNode.getItem());
-                counterNode.setItem(item);
-            }
-            counterMap.put(item, counterNode);
+        if (incrementCount == null) {
+            locateOrReplace(item);
+            ordered = false;
+        } else {
+            offerCount(item, incrementCount);
         }
+    }
 
-        incrementCounter(counterNode, incrementCount);
-
+    /**
+     * Same as {@link #offer(Object, Double)} with a non-null increment, without boxing.
+     */
+    public void offerCount(T item, double incrementCount) {
+        int slot = locateOrReplace(item);
+        if (nullCounts[slot]) {
+            nullCounts[slot] = false;
+            counts[slot] = incrementCount;
+        } else {
+            counts[slot] += incrementCount;
+        }
+        fixHeap(heapPositions[slot]);
         ordered = false;
     }
 
+    /**
+     * Find the slot of the item, the min item is dropped to make room for a new item if the counter is full.
+     */
+    private int locateOrReplace(T item) {
+        int hash = hash(item);
+        int slot = find(item, hash);
+        if (slot != NO_SLOT) {
+            return slot;
+        }
+        if (size < capacity || size == 0) {
+            slot = addSlot(item, hash);
+            nullCounts[slot] = true;
+            counts[slot] = 0;
+            siftUp(heapPositions[slot]);
+        } else {
+            // the min item should be dropped, and the new item inherits its count
+            slot = heap[0];
+            removeFromTable(slot);
+            items[slot] = item;
+            hashes[slot] = hash;
+            stamps[slot] = nextStamp++;
+            putToTable(slot);
+            siftDown(0);
+        }
+        return slot;
+    }
+
     /**
      * Sort and keep the expected size;
      */
     public void sortAndRetain() {
-        sort();
         retain(capacity);
+        sort();
     }
 
     public List<Counter<T>> topK(int k) {
         if (!ordered) {
             sortAndRetain();
         }
-        List<Counter<T>> topK = new ArrayList<>(k);
-        Iterator<Counter<T>> iterator = counterList.iterator();
-        while (iterator.hasNext()) {
-            Counter<T> b = iterator.next();
-            if (topK.size() == k) {
-                return topK;
-            }
-            topK.add(b);
+        int n = Math.min(k, size);
+        List<Counter<T>> topK = new ArrayList<>(n);
+        for (int slot = 0; slot < n; slot++) {
+            topK.add(toCounter(slot));
         }
-
         return topK;
     }
 
     public void reset() {
-        counterList.clear();
-        counterMap.clear();
-        ordered = false;
-        descending = true;
+        Arrays.fill(items, 0, size, null);
+        Arrays.fill(table, 0);
+        size = 0;
+        nextStamp = 0;
+        ordered = true;
     }
 
     /**
      * @return number of items stored
      */
     public int size() {
-        return counterMap.size();
+        return size;
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append('[');
-        Iterator<Counter<T>> iterator = counterList.iterator();
-        while (iterator.hasNext()) {
-            Counter<T> b = iterator.next();
-            sb.append(b.item);
+        for (int slot = 0; slot < size; slot++) {
+            sb.append(items[slot]);
             sb.append(':');
-            sb.append(b.count);
+            sb.append(nullCounts[slot] ? null : counts[slot]);
         }
         sb.append(']');
         return sb.toString();
@@ -185,9 +212,35 @@ public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializabl
      * @param count
      */
     public void offerToHead(T item, double count) {
-        Counter<T> c = new Counter<T>(item, count);
-        counterList.addFirst(c);
-        counterMap.put(c.item, c);
+        int hash = hash(item);
+        int slot = find(item, hash);
+        if (slot == NO_SLOT) {
+            slot = addSlot(item, hash);
+        }
+        counts[slot] = count;
+        nullCounts[slot] = false;
+        fixHeap(heapPositions[slot]);
+        ordered = false;
+    }
+
+    /**
+     * Put element to the tail position;
+     * The consumer should call this method with count in descending way, then the counter is still ordered without sorting;
+     * @param item
+     * @param count
+     */
+    public void offerToTail(T item, double count) {
+        int hash = hash(item);
+        int slot = find(item, hash);
+        if (slot != NO_SLOT) {
+            offerToHead(item, count);
+            return;
+        }
+        slot = addSlot(item, hash);
+        counts[slot] = count;
+        nullCounts[slot] = false;
+        siftUp(heapPositions[slot]);
+        ordered = ordered && (slot == 0 || !less(slot - 1, slot));
     }
 
     /**
@@ -198,20 +251,26 @@ public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializabl
     public TopNCounter<T> merge(TopNCounter<T> another) {
         boolean thisFull = this.size() >= this.capacity;
         boolean anotherFull = another.size() >= another.capacity;
-        double m1 = thisFull ? this.counterList.getLast().count : 0.0;
-        double m2 = anotherFull ? another.counterList.getLast().count : 0.0;
-
-        if (anotherFull) {
-            for (Counter<T> entry : this.counterMap.values()) {
-                entry.count += m2;
+        double m1 = thisFull ? this.minCount() : 0.0;
+        double m2 = anotherFull ? another.minCount() : 0.0;
+
+        if (anotherFull && m2 != 0.0) {
+            // a uniform increment keeps the heap order
+            for (int slot = 0; slot < size; slot++) {
+                if (!nullCounts[slot]) {
+                    counts[slot] += m2;
+                }
             }
         }
 
-        for (Map.Entry<T, Counter<T>> entry : another.counterMap.entrySet()) {
-            if (this.counterMap.containsKey(entry.getKey())) {
-                this.offer(entry.getValue().getItem(), (entry.getValue().count - m2));
+        for (int slot = 0; slot < another.size; slot++) {
+            T item = another.itemAt(slot);
+            if (another.nullCounts[slot]) {
+                this.offer(item, null);
+            } else if (this.find(item, hash(item)) != NO_SLOT) {
+                this.offerCount(item, another.counts[slot] - m2);
             } else {
-                this.offer(entry.getValue().getItem(), entry.getValue().count + m1);
+                this.offerCount(item, another.counts[slot] + m1);
             }
         }
 
@@ -226,13 +285,12 @@ public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializabl
     public void retain(int newCapacity) {
         this.capacity = newCapacity;
         if (this.size() > newCapacity) {
-            Counter<T> toRemoved;
-            for (int i = 0, n = this.size() - newCapacity; i < n; i++) {
-                toRemoved = counterList.pollLast();
-                this.counterMap.remove(toRemoved.item);
+            // pop the min counters from the heap instead of sorting all of them
+            while (size > newCapacity) {
+                removeSlot(heap[0]);
             }
+            ordered = false;
         }
-
     }
 
     /**
@@ -242,70 +300,303 @@ public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializabl
     public double[] getCounters() {
         double[] counters = new double[size()];
         int index = 0;
-
-        if (this.descending) {
-            Iterator<Counter<T>> iterator = counterList.descendingIterator();
-            while (iterator.hasNext()) {
-                Counter<T> b = iterator.next();
-                counters[index] = b.count;
-                index++;
-            }
-        } else {
-            throw new IllegalStateException(); // support in future
+        for (int slot = size - 1; slot >= 0; slot--) {
+            counters[index] = counts[slot];
+            index++;
         }
 
         assert index == size();
         return counters;
     }
 
+    /**
+     * Iterate the counters in ascending order if the counter is ordered.
+     */
     @Override
     public Iterator<Counter<T>> iterator() {
-        if (this.descending) {
-            return this.counterList.descendingIterator();
-        } else {
-            throw new IllegalStateException(); // support in future
+        return new Iterator<Counter<T>>() {
+            private int slot = size - 1;
+
+            @Override
+            public boolean hasNext() {
+                return slot >= 0;
+            }
+
+            @Override
+            public Counter<T> next() {
+                if (slot < 0) {
+                    throw new NoSuchElementException();
+                }
+                return toCounter(slot--);
+            }
+        };
+    }
+
+    /**
+     * Receives a counter without boxing, the count is meaningless when nullCount is true.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<T> {
+        void accept(T item, double count, boolean nullCount);
+    }
+
+    private double minCount() {
+        if (size == 0) {
+            return 0.0;
         }
+        int slot = heap[0];
+        return nullCounts[slot] ? 0.0 : counts[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int slot) {
+        return (T) items[slot];
+    }
+
+    private Counter<T> toCounter(int slot) {
+        return new Counter<>(itemAt(slot), nullCounts[slot] ? null : counts[slot]);
     }
 
-    static final Comparator<Counter> ASC_COMPARATOR = (Counter o1, Counter o2) -> {
-        if (o1.getCount() == null) {
-            if (o2.getCount() == null)
-                return 0;
-            else
-                return -1;
+    /**
+     * Put the slots in descending order, by popping the min slot of the heap to the tail one by one.
+     */
+    private void sort() {
+        if (ordered) {
+            return;
         }
-        if (o2.getCount() == null) {
-            return 1;
+        int n = size;
+        int[] order = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            order[i] = heap[0];
+            int last = heap[i];
+            heap[0] = last;
+            heapPositions[last] = 0;
+            siftDown(0, i);
         }
-        return Double.compare(o1.getCount(), o2.getCount());
-    };
 
-    static final Comparator<Counter> DESC_COMPARATOR = (Counter o1, Counter o2) -> {
-        if (o1.getCount() == null) {
-            if (o2.getCount() == null)
-                return 0;
-            else
-                return 1;
+        Object[] newItems = new Object[items.length];
+        double[] newCounts = new double[counts.length];
+        boolean[] newNullCounts = new boolean[nullCounts.length];
+        int[] newHashes = new int[hashes.length];
+        long[] newStamps = new long[stamps.length];
+        for (int i = 0; i < n; i++) {
+            int slot = order[i];
+            newItems[i] = items[slot];
+            newCounts[i] = counts[slot];
+            newNullCounts[i] = nullCounts[slot];
+            newHashes[i] = hashes[slot];
+            newStamps[i] = stamps[slot];
         }
-        if (o2.getCount() == null) {
-            return -1;
+        items = newItems;
+        counts = newCounts;
+        nullCounts = newNullCounts;
+        hashes = newHashes;
+        stamps = newStamps;
+
+        // slots in descending order, reversed, is a valid min-heap
+        for (int i = 0; i < n; i++) {
+            heap[i] = n - 1 - i;
+            heapPositions[n - 1 - i] = i;
         }
-        return Double.compare(o2.getCount(), o1.getCount());
-    };
+        rehash(table.length);
+        ordered = true;
+    }
 
-    private void incrementCounter(Counter<T> counterNode, Double incrementCount) {
-        if (incrementCount == null) {
-            return;
+    private void allocate(int slots) {
+        items = new Object[slots];
+        counts = new double[slots];
+        nullCounts = new boolean[slots];
+        hashes = new int[slots];
+        stamps = new long[slots];
+        heap = new int[slots];
+        heapPositions = new int[slots];
+        table = new int[tableSizeFor(slots)];
+    }
+
+    private static int tableSizeFor(int slots) {
+        // keep the load factor under 0.5
+        return Integer.highestOneBit(Math.max(2, slots) * 2 - 1) << 1;
+    }
+
+    private int addSlot(T item, int hash) {
+        if (size == items.length) {
+            int slots = items.length * 2;
+            items = Arrays.copyOf(items, slots);
+            counts = Arrays.copyOf(counts, slots);
+            nullCounts = Arrays.copyOf(nullCounts, slots);
+            hashes = Arrays.copyOf(hashes, slots);
+            stamps = Arrays.copyOf(stamps, slots);
+            heap = Arrays.copyOf(heap, slots);
+            heapPositions = Arrays.copyOf(heapPositions, slots);
+            rehash(tableSizeFor(slots));
         }
-        if (counterNode.getCount() == null) {
-            counterNode.setCount(incrementCount);
+        int slot = size++;
+        items[slot] = item;
+        hashes[slot] = hash;
+        stamps[slot] = nextStamp++;
+        heap[slot] = slot;
+        heapPositions[slot] = slot;
+        putToTable(slot);
+        return slot;
+    }
+
+    /**
+     * Remove the slot, and move the last slot to its place.
+     */
+    private void removeSlot(int slot) {
+        removeFromTable(slot);
+        int last = size - 1;
+        int heapPos = heapPositions[slot];
+        int lastInHeap = heap[last];
+        heap[heapPos] = lastInHeap;
+        heapPositions[lastInHeap] = heapPos;
+        size--;
+        if (heapPos < size) {
+            fixHeap(heapPos);
+        }
+        if (slot != last) {
+            removeFromTable(last);
+            items[slot] = items[last];
+            counts[slot] = counts[last];
+            nullCounts[slot] = nullCounts[last];
+            hashes[slot] = hashes[last];
+            stamps[slot] = stamps[last];
+            int pos = heapPositions[last];
+            heap[pos] = slot;
+            heapPositions[slot] = pos;
+            putToTable(slot);
+        }
+        items[last] = null;
+    }
+
+    private static int hash(Object item) {
+        int h = item == null ? 0 : item.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private int find(Object item, int hash) {
+        int mask = table.length - 1;
+        for (int i = hash & mask;; i = (i + 1) & mask) {
+            int v = table[i];
+            if (v == 0) {
+                return NO_SLOT;
+            }
+            int slot = v - 1;
+            if (hashes[slot] == hash && Objects.equals(items[slot], item)) {
+                return slot;
+            }
+        }
+    }
+
+    private void putToTable(int slot) {
+        int mask = table.length - 1;
+        int i = hashes[slot] & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+    }
+
+    /**
+     * Remove the slot from the index, with backward shift deletion to keep the probe sequences intact.
+     */
+    private void removeFromTable(int slot) {
+        int mask = table.length - 1;
+        int i = hashes[slot] & mask;
+        while (table[i] != slot + 1) {
+            i = (i + 1) & mask;
+        }
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            int v = table[j];
+            if (v == 0) {
+                break;
+            }
+            int home = hashes[v - 1] & mask;
+            boolean movable = j > i ? (home <= i || home > j) : (home <= i && home > j);
+            if (movable) {
+                table[i] = v;
+                i = j;
+            }
+        }
+        table[i] = 0;
+    }
+
+    private void rehash(int tableSize) {
+        if (table.length == tableSize) {
+            Arrays.fill(table, 0);
         } else {
-            counterNode.setCount(counterNode.getCount() + incrementCount);
+            table = new int[tableSize];
+        }
+        for (int slot = 0; slot < size; slot++) {
+            putToTable(slot);
         }
     }
 
-    private void sort() {
-        counterList.sort(this.descending ? DESC_COMPARATOR : ASC_COMPARATOR);
-        ordered = true;
+    /**
+     * @return true if slot a should be dropped before slot b
+     */
+    private boolean less(int a, int b) {
+        if (nullCounts[a] != nullCounts[b]) {
+            return nullCounts[a];
+        }
+        if (!nullCounts[a]) {
+            int c = Double.compare(counts[a], counts[b]);
+            if (c != 0) {
+                return c < 0;
+            }
+        }
+        return stamps[a] > stamps[b];
+    }
+
+    private void fixHeap(int pos) {
+        if (!siftUp(pos)) {
+            siftDown(pos);
+        }
+    }
+
+    private boolean siftUp(int pos) {
+        int slot = heap[pos];
+        int start = pos;
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            int parent = heap[parentPos];
+            if (!less(slot, parent)) {
+                break;
+            }
+            heap[pos] = parent;
+            heapPositions[parent] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = slot;
+        heapPositions[slot] = pos;
+        return pos != start;
+    }
+
+    private void siftDown(int pos) {
+        siftDown(pos, size);
+    }
+
+    private void siftDown(int pos, int heapSize) {
+        int slot = heap[pos];
+        int half = heapSize >>> 1;
+        while (pos < half) {
+            int childPos = 2 * pos + 1;
+            int child = heap[childPos];
+            int rightPos = childPos + 1;
+            if (rightPos < heapSize && less(heap[rightPos], child)) {
+                childPos = rightPos;
+                child = heap[childPos];
+            }
+            if (!less(child, slot)) {
+                break;
+            }
+            heap[pos] = child;
+            heapPositions[child] = pos;
+            pos = childPos;
+        }
+        heap[pos] = slot;
+        heapPositions[slot] = pos;
     }
 }
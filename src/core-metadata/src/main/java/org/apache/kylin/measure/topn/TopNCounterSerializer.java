@@ -112,14 +112,11 @@ public class TopNCounterSerializer extends DataTypeSerializer<TopNCounter<ByteAr
         double[] counters = dds.deserialize(in);
 
         TopNCounter<ByteArray> counter = new TopNCounter<ByteArray>(capacity);
-        ByteArray byteArray;
         byte[] keyArray = new byte[size * keyLength];
-        int offset = 0;
-        for (int i = 0; i < size; i++) {
-            in.get(keyArray, offset, keyLength);
-            byteArray = new ByteArray(keyArray, offset, keyLength);
-            counter.offerToHead(byteArray, counters[i]);
-            offset += keyLength;
+        in.get(keyArray);
+        // counters are stored in ascending order, offer them from the tail to keep the counter ordered
+        for (int i = size - 1; i >= 0; i--) {
+            counter.offerToTail(new ByteArray(keyArray, i * keyLength, keyLength), counters[i]);
         }
 
         return counter;
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.metadata.cube.cuboid;
+
+import java.util.Locale;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The estimated cost of a layout candidate, with the statistics it is estimated from.
+ */
+@Getter
+@AllArgsConstructor
+public class LayoutCost {
+
+    private final double cost;
+    private final long rows;
+    private final long bytes;
+    private final long files;
+    private final int influences;
+    // the ratio of the files left after shard pruning
+    private final double scanRatio;
+    // the scan time of 1 MB, observed or assumed
+    private final double msPerMb;
+
+    public static LayoutCost ofRows(long rows, int influences) {
+        return new LayoutCost(rows * (influences + 1.0), rows, -1L, -1L, influences, 1.0, -1.0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "LayoutCost{cost=%.2f, rows=%d, bytes=%d, files=%d, influences=%d, scanRatio=%.4f, msPerMb=%.2f}",
+                cost, rows, bytes, files, influences, scanRatio, msPerMb);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.metadata.cube.cuboid;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.Singletons;
+import org.apache.kylin.common.util.ClassUtil;
+import org.apache.kylin.metadata.cube.model.NDataLayout;
+import org.apache.kylin.metadata.cube.model.NDataSegment;
+
+/**
+ * Estimates the cost of answering a query with a matched layout, the candidate of the lowest cost is preferred.
+ * Candidates of the same cost are ordered by the filter and dimension columns of their layouts.
+ */
+public interface LayoutCostModel {
+
+    /**
+     * @param candidate the matched candidate, with its capability result
+     * @param dataLayout the layout of the segment the candidate is matched in
+     * @param segments the segments to be scanned
+     * @param filterColIds the ids of the filter columns of the query
+     */
+    LayoutCost estimate(NLayoutCandidate candidate, NDataLayout dataLayout, List<NDataSegment> segments,
+            Set<Integer> filterColIds);
+
+    /**
+     * The cost models are stateless, an instance of the configured model is shared by all the queries.
+     */
+    static LayoutCostModel getInstance(KylinConfig config) {
+        try {
+            return Singletons.getInstance(ClassUtil.forName(config.getQueryLayoutCostModel(), LayoutCostModel.class));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Layout cost model " + config.getQueryLayoutCostModel() + " not found", e);
+        }
+    }
+}
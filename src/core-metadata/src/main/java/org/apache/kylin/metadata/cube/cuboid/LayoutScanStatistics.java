@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.metadata.cube.cuboid;
+
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kylin.common.QueryTrace;
+import org.apache.kylin.common.Singletons;
+import org.apache.kylin.metadata.query.QueryHistoryInfo;
+import org.apache.kylin.metadata.query.QueryMetrics;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The scan time of 1 MB observed by the recent queries answered by a layout, used by {@link ScanCostModel}.
+ * The scan time of a query is the duration of its spark jobs.
+ *
+ * Only the succeeded queries answered by exactly one layout are taken into account, as the scan time of
+ * a query cannot be split among its layouts.
+ */
+public class LayoutScanStatistics {
+
+    private static final double SMOOTHING_FACTOR = 0.2;
+    private static final long MAX_LAYOUTS = 100_000L;
+
+    private final Cache<String, Double> msPerMb = CacheBuilder.newBuilder().maximumSize(MAX_LAYOUTS).build();
+
+    public static LayoutScanStatistics getInstance() {
+        return Singletons.getInstance(LayoutScanStatistics.class, clz -> new LayoutScanStatistics());
+    }
+
+    public void record(QueryMetrics metrics) {
+        if (metrics.getQueryHistoryInfo() == null || !metrics.isSucceed() || metrics.isPushdown()
+                || metrics.isCacheHit() || metrics.getTotalScanBytes() <= 0) {
+            return;
+        }
+        List<QueryMetrics.RealizationMetrics> realizations = metrics.getRealizationMetrics();
+        if (realizations.size() != 1 || !StringUtils.isNumeric(realizations.get(0).getLayoutId())) {
+            return;
+        }
+        long executionMs = getExecutionDuration(metrics.getQueryHistoryInfo());
+        if (executionMs <= 0) {
+            return;
+        }
+        QueryMetrics.RealizationMetrics realization = realizations.get(0);
+        record(realization.getModelId(), Long.parseLong(realization.getLayoutId()), metrics.getTotalScanBytes(),
+                executionMs);
+    }
+
+    /**
+     * The time of the spark jobs executing the query, the parsing, optimizing and fetching of a query are not
+     * related to the scan.
+     */
+    private static long getExecutionDuration(QueryHistoryInfo historyInfo) {
+        long duration = 0L;
+        for (QueryHistoryInfo.QueryTraceSpan span : historyInfo.getTraces()) {
+            if (QueryTrace.EXECUTION.equals(span.getName())) {
+                duration += span.getDuration();
+            }
+        }
+        return duration;
+    }
+
+    public void record(String modelId, long layoutId, long scanBytes, long scanMs) {
+        if (scanBytes <= 0 || scanMs < 0) {
+            return;
+        }
+        double sample = scanMs / (scanBytes / ScanCostModel.MB);
+        msPerMb.asMap().merge(key(modelId, layoutId), sample,
+                (old, current) -> old * (1 - SMOOTHING_FACTOR) + current * SMOOTHING_FACTOR);
+    }
+
+    /**
+     * @return the observed scan time of 1 MB, null if the layout has not answered any query yet
+     */
+    public Double getMsPerMb(String modelId, long layoutId) {
+        return msPerMb.getIfPresent(key(modelId, layoutId));
+    }
+
+    public void clear() {
+        msPerMb.invalidateAll();
+    }
+
+    private static String key(String modelId, long layoutId) {
+        return modelId + "_" + layoutId;
+    }
+}
@@ -42,6 +42,10 @@ public class NLayoutCandidate implements IRealizationCandidate {
     @Setter
     private double cost;
 
+    @Setter
+    @Getter
+    private LayoutCost layoutCost;
+
     @Setter
     @Getter
     private CapabilityResult capabilityResult;
@@ -130,6 +134,6 @@ public class NLayoutCandidate implements IRealizationCandidate {
     @Override
     public String toString() {
         return "LayoutCandidate{" + "cuboidLayout=" + layoutEntity + ", indexEntity=" + layoutEntity.getIndex()
-                + ", cost=" + cost + '}';
+                + ", cost=" + (layoutCost == null ? String.valueOf(cost) : layoutCost.toString()) + '}';
     }
 }
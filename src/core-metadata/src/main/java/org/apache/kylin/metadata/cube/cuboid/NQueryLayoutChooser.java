@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -95,6 +96,9 @@ public class NQueryLayoutChooser {
         val aggIndexMatcher = new AggIndexMatcher(sqlDigest, chooserContext, excludedTables, isReplaceCount);
         val tableIndexMatcher = new TableIndexMatcher(sqlDigest, chooserContext, excludedTables,
                 dataflow.getConfig().isUseTableIndexAnswerNonRawQuery());
+        val costModel = LayoutCostModel.getInstance(config);
+        val filterColIds = sqlDigest.filterColumns.stream().map(col -> chooserContext.getTblColMap().get(col))
+                .filter(Objects::nonNull).collect(Collectors.toSet());
         // bail out if both agg index are invalid
         // invalid matcher may caused by
         // 1. cc col is not present in the model
@@ -122,13 +126,15 @@ public class NQueryLayoutChooser {
 
             NLayoutCandidate candidate = new NLayoutCandidate(layout);
             tempResult.influences = matchResult.getInfluences();
-            candidate.setCost(dataLayout.getRows() * (tempResult.influences.size() + 1.0));
+            candidate.setCapabilityResult(tempResult);
+            val layoutCost = costModel.estimate(candidate, dataLayout, prunedSegments, filterColIds);
+            candidate.setLayoutCost(layoutCost);
+            candidate.setCost(layoutCost.getCost());
             if (!matchResult.getNeedDerive().isEmpty()) {
                 candidate.setDerivedToHostMap(matchResult.getNeedDerive());
                 candidate.setDerivedTableSnapshots(candidate.getDerivedToHostMap().keySet().stream()
                         .map(i -> chooserContext.convertToRef(i).getTable()).collect(Collectors.toSet()));
             }
-            candidate.setCapabilityResult(tempResult);
             candidates.add(candidate);
         }
 
@@ -142,6 +148,8 @@ public class NQueryLayoutChooser {
             return null;
         }
         sortCandidates(candidates, chooserContext, sqlDigest);
+        log.debug("Chose layout {} of model {} with {}", candidates.get(0).getLayoutEntity().getId(), model.getUuid(),
+                candidates.get(0).getLayoutCost());
         return candidates.get(0);
     }
 
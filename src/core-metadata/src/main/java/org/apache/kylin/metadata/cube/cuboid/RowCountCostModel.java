@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.metadata.cube.cuboid;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.kylin.metadata.cube.model.NDataLayout;
+import org.apache.kylin.metadata.cube.model.NDataSegment;
+
+/**
+ * The cost is the number of rows of the layout, weighted by the columns to be derived or post-aggregated.
+ */
+public class RowCountCostModel implements LayoutCostModel {
+
+    @Override
+    public LayoutCost estimate(NLayoutCandidate candidate, NDataLayout dataLayout, List<NDataSegment> segments,
+            Set<Integer> filterColIds) {
+        return LayoutCost.ofRows(dataLayout.getRows(), candidate.getCapabilityResult().influences.size());
+    }
+}
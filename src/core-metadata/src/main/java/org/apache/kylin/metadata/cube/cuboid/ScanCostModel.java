@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.metadata.cube.cuboid;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.kylin.metadata.cube.model.LayoutEntity;
+import org.apache.kylin.metadata.cube.model.NDataLayout;
+import org.apache.kylin.metadata.cube.model.NDataSegment;
+
+/**
+ * The cost is the estimated time to scan the files of the layout in all the segments:
+ * 1. the bytes and files are taken from the layouts of the segments
+ * 2. if the shard-by column of the layout is filtered, only one shard of each segment is assumed to be scanned
+ * 3. the scan time of 1 MB is taken from the recent queries answered by the layout, if there is any
+ * and then weighted by the columns to be derived or post-aggregated like {@link RowCountCostModel}.
+ */
+public class ScanCostModel implements LayoutCostModel {
+
+    static final double MB = 1024.0 * 1024.0;
+    static final double DEFAULT_MS_PER_MB = 10.0;
+    static final double MS_PER_FILE = 5.0;
+    // used for the layouts built before the byte size is recorded
+    private static final long ESTIMATED_BYTES_PER_COLUMN = 8L;
+
+    @Override
+    public LayoutCost estimate(NLayoutCandidate candidate, NDataLayout dataLayout, List<NDataSegment> segments,
+            Set<Integer> filterColIds) {
+        LayoutEntity layout = candidate.getLayoutEntity();
+        long rows = 0L;
+        long bytes = 0L;
+        long files = 0L;
+        int scannedSegments = 0;
+        for (NDataSegment segment : segments) {
+            NDataLayout segmentLayout = segment.getLayout(layout.getId());
+            if (segmentLayout == null) {
+                continue;
+            }
+            rows += segmentLayout.getRows();
+            bytes += segmentLayout.getByteSize();
+            files += segmentLayout.getFileCount();
+            scannedSegments++;
+        }
+        if (scannedSegments == 0) {
+            rows = dataLayout.getRows();
+            bytes = dataLayout.getByteSize();
+            files = dataLayout.getFileCount();
+            scannedSegments = 1;
+        }
+        if (bytes <= 0) {
+            bytes = rows * ESTIMATED_BYTES_PER_COLUMN * layout.getColOrder().size();
+        }
+        files = Math.max(files, scannedSegments);
+
+        double scanRatio = 1.0;
+        List<Integer> shardByColumns = layout.getShardByColumns();
+        if (CollectionUtils.isNotEmpty(shardByColumns) && filterColIds.contains(shardByColumns.get(0))) {
+            scanRatio = (double) scannedSegments / files;
+        }
+
+        Double observed = LayoutScanStatistics.getInstance().getMsPerMb(layout.getModel().getUuid(), layout.getId());
+        double msPerMb = observed == null ? DEFAULT_MS_PER_MB : observed;
+        int influences = candidate.getCapabilityResult().influences.size();
+        double scanMs = (bytes / MB * msPerMb + files * MS_PER_FILE) * scanRatio;
+        return new LayoutCost(scanMs * (influences + 1.0), rows, bytes, files, influences, scanRatio, msPerMb);
+    }
+}
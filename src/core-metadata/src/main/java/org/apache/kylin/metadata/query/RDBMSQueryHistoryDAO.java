@@ -197,6 +197,13 @@ public class RDBMSQueryHistoryDAO implements QueryHistoryDAO {
         return jdbcQueryHisStore.queryQueryHistoryCountBeyondOffset(offset, project);
     }
 
+    /**
+     * @return the count of the query histories of the project with ids in (fromId, toId]
+     */
+    public long getQueryHistoryCountBetweenIds(long fromId, long toId, String project) {
+        return jdbcQueryHisStore.queryQueryHistoryCountBetweenIds(fromId, toId, project);
+    }
+
     public long getQueryHistoryMaxId(String project) {
         return jdbcQueryHisStore.queryQueryHistoryMaxId(project);
     }
@@ -371,4 +371,28 @@ public class HLLCounterTest {
         hllc.readRegisters(buf);
         Assert.assertEquals(estimate, hllc.getCountEstimate());
     }
+
+    @Test
+    public void testMergeRegisters() throws IOException {
+        int p = 12;
+        // single value, sparse, and dense counters, written in both map and array schemes
+        for (int n : new int[] { 0, 1, 10, 1000, 100000 }) {
+            HLLCounter merged = new HLLCounter(p);
+            HLLCounter expected = new HLLCounter(p);
+            for (int round = 0; round < 3; round++) {
+                HLLCounter hllc = new HLLCounter(p);
+                for (int i = 0; i < n; i++) {
+                    hllc.add(rand1.nextInt());
+                }
+                buf.clear();
+                hllc.writeRegisters(buf);
+                buf.flip();
+                merged.mergeRegisters(buf);
+                Assert.assertFalse(buf.hasRemaining());
+                expected.merge(hllc);
+            }
+            Assert.assertEquals(expected.getCountEstimate(), merged.getCountEstimate());
+            Assert.assertEquals(expected.getRegisterType(), merged.getRegisterType());
+        }
+    }
 }
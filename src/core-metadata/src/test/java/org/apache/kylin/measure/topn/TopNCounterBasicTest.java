@@ -40,12 +40,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 public class TopNCounterBasicTest {
 
@@ -164,4 +170,61 @@ public class TopNCounterBasicTest {
         topK.forEach(counter -> topResult.add(counter.getItem()));
         Assert.assertArrayEquals(new String[] { "Z", "X", "A", "Y" }, topResult.toArray());
     }
+
+    @Test
+    public void testRetainDropsMinCounters() {
+        TopNCounter<Integer> vs = new TopNCounter<>(1000);
+        Map<Integer, Double> expected = Maps.newHashMap();
+        Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            int item = random.nextInt(500);
+            double count = random.nextInt(100);
+            vs.offerCount(item, count);
+            expected.merge(item, count, Double::sum);
+        }
+        Assert.assertEquals(expected.size(), vs.size());
+
+        List<Double> sorted = Lists.newArrayList(expected.values());
+        sorted.sort(Collections.reverseOrder());
+        vs.retain(100);
+        List<Counter<Integer>> topK = vs.topK(100);
+        Assert.assertEquals(100, topK.size());
+        for (int i = 0; i < topK.size(); i++) {
+            Assert.assertEquals(sorted.get(i), topK.get(i).getCount());
+            Assert.assertEquals(expected.get(topK.get(i).getItem()), topK.get(i).getCount());
+        }
+    }
+
+    @Test
+    public void testOfferAfterEviction() {
+        TopNCounter<Integer> vs = new TopNCounter<>(10);
+        for (int i = 0; i < 10000; i++) {
+            vs.offer(i % 100);
+            vs.offer(7);
+        }
+        Assert.assertEquals(10, vs.size());
+        Assert.assertEquals(Integer.valueOf(7), vs.topK(1).get(0).getItem());
+
+        Set<Integer> items = Sets.newHashSet();
+        vs.forEachEntry((item, count, nullCount) -> {
+            Assert.assertTrue(items.add(item));
+            Assert.assertFalse(nullCount);
+        });
+        Assert.assertEquals(10, items.size());
+    }
+
+    @Test
+    public void testOfferToTail() {
+        TopNCounter<String> vs = new TopNCounter<>(5);
+        vs.offerToTail("A", 5d);
+        vs.offerToTail("B", 3d);
+        vs.offerToTail("C", 3d);
+        vs.offerToTail("D", 1d);
+        Assert.assertEquals("[A:5.0B:3.0C:3.0D:1.0]", vs.toString());
+        Assert.assertArrayEquals(new double[] { 1d, 3d, 3d, 5d }, vs.getCounters(), 0.0);
+
+        vs.offer("D", 10d);
+        Assert.assertEquals("D", vs.topK(1).get(0).getItem());
+        Assert.assertEquals("[D:11.0A:5.0B:3.0C:3.0]", vs.toString());
+    }
 }
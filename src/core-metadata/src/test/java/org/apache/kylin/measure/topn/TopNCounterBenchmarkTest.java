@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.measure.topn;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+import org.apache.commons.math3.distribution.ZipfDistribution;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.CleanMetadataHelper;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compares the throughput of offer/merge/serialize, between composite keys of boxed dimensions and
+ * compact binary keys, at the capacities used by TopN measures.
+ */
+@Ignore("For collecting performance statistics, not for functional test")
+public class TopNCounterBenchmarkTest {
+
+    private static final int RECORDS = 2_000_000;
+    private static final int KEY_SPACE = 1_000_000;
+    private static final int PARTITIONS = 20;
+
+    private CleanMetadataHelper cleanMetadataHelper = null;
+
+    @Before
+    public void setUp() throws Exception {
+        cleanMetadataHelper = new CleanMetadataHelper();
+        cleanMetadataHelper.setUp();
+        DataType.register("topn");
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanMetadataHelper.tearDown();
+    }
+
+    @Test
+    public void benchmark() {
+        int[] stream = new ZipfDistribution(KEY_SPACE, 0.8).sample(RECORDS);
+        for (int precision : new int[] { 20, 100, 500 }) {
+            int capacity = precision * TopNCounter.EXTRA_SPACE_RATE;
+            benchmark("composite", capacity, stream, key -> Arrays.<Object> asList(key % 1000, "dim_" + key / 1000));
+            benchmark("binary", capacity, stream, key -> new ByteArray(Bytes.add(Bytes.toBytes(key % 1000),
+                    Bytes.toBytes(key / 1000))));
+            benchmarkSerialize(precision, stream);
+        }
+    }
+
+    private <T> void benchmark(String name, int capacity, int[] stream, IntFunction<T> keyOf) {
+        List<T> keys = new ArrayList<>(stream.length);
+        for (int key : stream) {
+            keys.add(keyOf.apply(key));
+        }
+
+        long start = System.nanoTime();
+        @SuppressWarnings("unchecked")
+        TopNCounter<T>[] partitions = new TopNCounter[PARTITIONS];
+        for (int p = 0; p < PARTITIONS; p++) {
+            partitions[p] = new TopNCounter<>(capacity);
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            partitions[i % PARTITIONS].offerCount(keys.get(i), 1.0);
+        }
+        long offerNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        TopNCounter<T> merged = new TopNCounter<>(capacity);
+        for (TopNCounter<T> partition : partitions) {
+            merged.merge(partition);
+        }
+        long mergeNanos = System.nanoTime() - start;
+
+        System.out.println(String.format(Locale.ROOT, "%-10s capacity %6d: offer %10.0f ops/s, merge %8.0f counters/s",
+                name, capacity, perSecond(keys.size(), offerNanos), perSecond(PARTITIONS * capacity, mergeNanos)));
+    }
+
+    private void benchmarkSerialize(int precision, int[] stream) {
+        int capacity = precision * TopNCounter.EXTRA_SPACE_RATE;
+        TopNCounterSerializer serializer = new TopNCounterSerializer(DataType.getType("topn(" + precision + ")"));
+        TopNCounter<ByteArray> counter = new TopNCounter<>(capacity);
+        for (int key : stream) {
+            counter.offerCount(new ByteArray(Bytes.toBytes(key)), 1.0);
+        }
+        counter.sortAndRetain();
+
+        ByteBuffer buffer = ByteBuffer.allocate(serializer.maxLength());
+        int rounds = 100;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            buffer.clear();
+            serializer.serialize(counter, buffer);
+            buffer.flip();
+            serializer.deserialize(buffer);
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println(String.format(Locale.ROOT, "%-10s capacity %6d: serialize and deserialize %8.0f ops/s",
+                "binary", capacity, perSecond(rounds, nanos)));
+    }
+
+    private static double perSecond(long ops, long nanos) {
+        return ops * 1e9 / Math.max(1, nanos);
+    }
+}
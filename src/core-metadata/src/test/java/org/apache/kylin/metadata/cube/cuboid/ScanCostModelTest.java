@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.metadata.cube.cuboid;
+
+import java.util.Collections;
+
+import org.apache.kylin.common.QueryTrace;
+import org.apache.kylin.common.util.NLocalFileMetadataTestCase;
+import org.apache.kylin.metadata.cube.model.NDataLayout;
+import org.apache.kylin.metadata.cube.model.NDataflowManager;
+import org.apache.kylin.metadata.cube.model.NIndexPlanManager;
+import org.apache.kylin.metadata.query.QueryHistory;
+import org.apache.kylin.metadata.query.QueryHistoryInfo;
+import org.apache.kylin.metadata.query.QueryMetrics;
+import org.apache.kylin.metadata.realization.CapabilityResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import lombok.val;
+
+public class ScanCostModelTest extends NLocalFileMetadataTestCase {
+
+    private static final String PROJECT = "default";
+    private static final String MODEL_ID = "89af4ee2-2cdb-4b07-b39e-4c29856309aa";
+
+    @Before
+    public void setUp() {
+        createTestMetadata();
+        LayoutScanStatistics.getInstance().clear();
+    }
+
+    @After
+    public void tearDown() {
+        LayoutScanStatistics.getInstance().clear();
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testEstimate() {
+        val dataflow = NDataflowManager.getInstance(getTestConfig(), PROJECT).getDataflow(MODEL_ID);
+        val segment = dataflow.getLatestReadySegment();
+        NDataLayout dataLayout = segment.getLayoutsMap().values().iterator().next();
+        val candidate = new NLayoutCandidate(dataLayout.getLayout());
+        candidate.setCapabilityResult(new CapabilityResult());
+
+        val costModel = new ScanCostModel();
+        val segments = Lists.newArrayList(segment);
+        val cost = costModel.estimate(candidate, dataLayout, segments, Collections.emptySet());
+        Assert.assertEquals(dataLayout.getRows(), cost.getRows());
+        Assert.assertEquals(ScanCostModel.DEFAULT_MS_PER_MB, cost.getMsPerMb(), 0.001);
+        Assert.assertEquals(1.0, cost.getScanRatio(), 0.001);
+        Assert.assertTrue(cost.getCost() > 0);
+
+        // slower layouts observed by queries are more expensive
+        LayoutScanStatistics.getInstance().record(MODEL_ID, dataLayout.getLayoutId(), 1024L * 1024L, 100L);
+        val observed = costModel.estimate(candidate, dataLayout, segments, Collections.emptySet());
+        Assert.assertEquals(100.0, observed.getMsPerMb(), 0.001);
+        Assert.assertTrue(observed.getCost() > cost.getCost());
+
+        // the legacy model only counts rows
+        val rowCost = new RowCountCostModel().estimate(candidate, dataLayout, segments, Collections.emptySet());
+        Assert.assertEquals(dataLayout.getRows(), rowCost.getCost(), 0.001);
+    }
+
+    @Test
+    public void testShardPruning() {
+        val dataflow = NDataflowManager.getInstance(getTestConfig(), PROJECT).getDataflow(MODEL_ID).copy();
+        val segment = dataflow.getLatestReadySegment();
+        NDataLayout dataLayout = segment.getLayoutsMap().values().iterator().next();
+        val indexPlan = NIndexPlanManager.getInstance(getTestConfig(), PROJECT).getIndexPlan(MODEL_ID).copy();
+        val layout = indexPlan.getLayoutEntity(dataLayout.getLayoutId());
+        layout.setShardByColumns(Lists.newArrayList(layout.getColOrder().get(0)));
+        dataLayout.setFileCount(4);
+        val candidate = new NLayoutCandidate(layout);
+        candidate.setCapabilityResult(new CapabilityResult());
+
+        val cost = new ScanCostModel().estimate(candidate, dataLayout, Lists.newArrayList(segment),
+                Sets.newHashSet(layout.getColOrder().get(0)));
+        Assert.assertEquals(0.25, cost.getScanRatio(), 0.001);
+    }
+
+    @Test
+    public void testRecordByExecutionTime() {
+        val historyInfo = new QueryHistoryInfo(true, 1, false);
+        historyInfo.setRealizationMetrics(Lists.newArrayList(
+                new QueryMetrics.RealizationMetrics("1", QueryMetrics.AGG_INDEX, MODEL_ID, Lists.newArrayList())));
+        historyInfo.setTraces(Lists.newArrayList(
+                new QueryHistoryInfo.QueryTraceSpan(QueryTrace.SQL_PARSE_AND_OPTIMIZE, null, 900L),
+                new QueryHistoryInfo.QueryTraceSpan(QueryTrace.EXECUTION, null, 100L)));
+        val metrics = new QueryMetrics("query_id");
+        metrics.setQueryHistoryInfo(historyInfo);
+        metrics.setQueryStatus(QueryHistory.QUERY_HISTORY_SUCCEEDED);
+        metrics.setQueryDuration(1000L);
+        metrics.setTotalScanBytes(1024L * 1024L);
+
+        // the parsing and optimizing of the query are not a part of the scan
+        LayoutScanStatistics.getInstance().record(metrics);
+        Assert.assertEquals(100.0, LayoutScanStatistics.getInstance().getMsPerMb(MODEL_ID, 1L), 0.001);
+
+        // a query not executed by spark is not recorded
+        LayoutScanStatistics.getInstance().clear();
+        historyInfo.setTraces(Lists.newArrayList());
+        LayoutScanStatistics.getInstance().record(metrics);
+        Assert.assertNull(LayoutScanStatistics.getInstance().getMsPerMb(MODEL_ID, 1L));
+    }
+
+    @Test
+    public void testSharedCostModel() {
+        val config = getTestConfig();
+        Assert.assertSame(LayoutCostModel.getInstance(config), LayoutCostModel.getInstance(config));
+    }
+}
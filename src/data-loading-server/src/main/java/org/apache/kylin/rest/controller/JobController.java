@@ -296,7 +296,8 @@ public class JobController extends BaseController {
         checkProjectName(sparkJobTimeRequest.getProject());
         jobService.updateSparkTimeInfo(sparkJobTimeRequest.getProject(), sparkJobTimeRequest.getJobId(),
                 sparkJobTimeRequest.getTaskId(), sparkJobTimeRequest.getYarnJobWaitTime(),
-                sparkJobTimeRequest.getYarnJobRunTime());
+                sparkJobTimeRequest.getYarnJobRunTime(), sparkJobTimeRequest.getSourceRecordsSize(),
+                sparkJobTimeRequest.getExecutorInstances(), sparkJobTimeRequest.getShufflePartitions());
 
         return new EnvelopeResponse<>(KylinException.CODE_SUCCESS, "", "");
     }
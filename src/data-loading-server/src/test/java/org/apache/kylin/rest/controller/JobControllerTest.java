@@ -347,8 +347,12 @@ public class JobControllerTest extends NLocalFileMetadataTestCase {
         request.setTaskId("c");
         request.setYarnJobWaitTime("2");
         request.setYarnJobRunTime("1");
+        request.setSourceRecordsSize("1024");
+        request.setExecutorInstances("10");
+        request.setShufflePartitions("200");
         Mockito.doNothing().when(jobService).updateSparkTimeInfo(request.getProject(), request.getJobId(),
-                request.getTaskId(), request.getYarnJobWaitTime(), request.getYarnJobRunTime());
+                request.getTaskId(), request.getYarnJobWaitTime(), request.getYarnJobRunTime(),
+                request.getSourceRecordsSize(), request.getExecutorInstances(), request.getShufflePartitions());
         mockMvc.perform(MockMvcRequestBuilders.put("/api/jobs/wait_and_run_time")
                 .contentType(MediaType.APPLICATION_JSON).content(JsonUtil.writeValueAsString(request))
                 .accept(MediaType.parseMediaType(HTTP_VND_APACHE_KYLIN_JSON)))
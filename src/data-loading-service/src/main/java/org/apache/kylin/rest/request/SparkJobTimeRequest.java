@@ -37,4 +37,10 @@ public class SparkJobTimeRequest implements ProjectInsensitiveRequest {
     private String yarnJobWaitTime;
     @JsonProperty("yarn_job_run_time")
     private String yarnJobRunTime;
+    @JsonProperty("source_records_size")
+    private String sourceRecordsSize;
+    @JsonProperty("executor_instances")
+    private String executorInstances;
+    @JsonProperty("shuffle_partitions")
+    private String shufflePartitions;
 }
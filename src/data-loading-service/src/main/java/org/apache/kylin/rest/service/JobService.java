@@ -1017,11 +1017,21 @@ public class JobService extends BasicService implements JobSupporter {
         }, project, UnitOfWork.DEFAULT_MAX_RETRY, UnitOfWork.DEFAULT_EPOCH_ID, jobId);
     }
 
-    public void updateSparkTimeInfo(String project, String jobId, String taskId, String waitTime, String buildTime) {
+    public void updateSparkTimeInfo(String project, String jobId, String taskId, String waitTime, String buildTime,
+            String sourceSize, String executorInstances, String shufflePartitions) {
 
         Map<String, String> extraInfo = Maps.newHashMap();
         extraInfo.put(ExecutableConstants.YARN_JOB_WAIT_TIME, waitTime);
         extraInfo.put(ExecutableConstants.YARN_JOB_RUN_TIME, buildTime);
+        if (StringUtils.isNotBlank(sourceSize)) {
+            extraInfo.put(ExecutableConstants.SOURCE_RECORDS_SIZE, sourceSize);
+        }
+        if (StringUtils.isNotBlank(executorInstances)) {
+            extraInfo.put(ExecutableConstants.EXECUTOR_INSTANCES, executorInstances);
+        }
+        if (StringUtils.isNotBlank(shufflePartitions)) {
+            extraInfo.put(ExecutableConstants.SHUFFLE_PARTITIONS, shufflePartitions);
+        }
 
         if (jobId.contains(ASYNC_QUERY_JOB_ID_PRE)) {
             return;
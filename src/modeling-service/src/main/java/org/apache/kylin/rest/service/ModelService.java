@@ -237,6 +237,7 @@ import org.apache.kylin.rest.service.params.MergeSegmentParams;
 import org.apache.kylin.rest.service.params.ModelQueryParams;
 import org.apache.kylin.rest.util.AclEvaluate;
 import org.apache.kylin.rest.util.AclPermissionUtil;
+import org.apache.kylin.rest.util.ModelSummaryIndex;
 import org.apache.kylin.rest.util.ModelTriple;
 import org.apache.kylin.rest.util.ModelUtils;
 import org.apache.kylin.rest.util.PagingUtil;
@@ -702,8 +703,16 @@ public class ModelService extends BasicService implements TableModelSupporter, P
         val dfManager = getManager(NDataflowManager.class, projectName);
         List<NDataModelResponse> filterModels = new ArrayList<>();
         final AtomicInteger totalSize = new AtomicInteger();
+        boolean noStatusFilter = status == null || status.isEmpty();
+        if (!noStatusFilter
+                && getManager(NProjectManager.class).getProject(projectName).getConfig().isModelSummaryIndexEnabled()) {
+            // filter by the indexed status, so that only the responses of the current page are built
+            modelTripleList = filterByIndexedStatus(projectName, modelTripleList, status);
+            noStatusFilter = true;
+        }
+        final boolean pageBeforeConvert = noStatusFilter;
         modelTripleList.stream().map(t -> {
-            if ((status == null || status.isEmpty()) && !PagingUtil.isInCurrentPage(totalSize.get(), offset, limit)) {
+            if (pageBeforeConvert && !PagingUtil.isInCurrentPage(totalSize.get(), offset, limit)) {
                 totalSize.getAndIncrement();
                 return null;
             }
@@ -728,6 +737,42 @@ public class ModelService extends BasicService implements TableModelSupporter, P
         return new Pair<>(filterModels, totalSize.get());
     }
 
+    private List<ModelTriple> filterByIndexedStatus(String projectName, List<ModelTriple> modelTripleList,
+            List<String> status) {
+        val summaryIndex = ModelSummaryIndex.getInstance(projectName);
+        val dfManager = getManager(NDataflowManager.class, projectName);
+        List<ModelTriple> matched = modelTripleList.stream().filter(t -> {
+            try {
+                return isListContains(status,
+                        summaryIndex.getStatus(t, model -> resolveModelStatus(model, projectName, dfManager)));
+            } catch (Exception e) {
+                logger.warn("Failed to get status of model {}, mark to broken.", t.getDataModel().getUuid(), e);
+                return isListContains(status, ModelStatusToDisplayEnum.BROKEN);
+            }
+        }).collect(Collectors.toList());
+        summaryIndex
+                .retain(dfManager.listAllDataflows(true).stream().map(NDataflow::getId).collect(Collectors.toSet()));
+        return matched;
+    }
+
+    private ModelStatusToDisplayEnum resolveModelStatus(NDataModel modelDesc, String projectName,
+            NDataflowManager dfManager) {
+        long inconsistentSegmentCount = dfManager.getDataflow(modelDesc.getId()).getSegments(SegmentStatusEnum.WARNING)
+                .size();
+        return resolveModelStatus(modelDesc, projectName, dfManager, inconsistentSegmentCount);
+    }
+
+    private ModelStatusToDisplayEnum resolveModelStatus(NDataModel modelDesc, String projectName,
+            NDataflowManager dfManager, long inconsistentSegmentCount) {
+        ModelStatusToDisplayEnum modelResponseStatus = convertModelStatusToDisplay(modelDesc, projectName,
+                inconsistentSegmentCount);
+        if (modelDesc.isFusionModel()) {
+            modelResponseStatus = convertFusionModelStatusToDisplay(modelDesc, modelResponseStatus, projectName,
+                    dfManager);
+        }
+        return modelResponseStatus;
+    }
+
     public NDataModelResponse convertToDataModelResponseBroken(NDataModel modelDesc) {
         NDataModelResponse response = new NDataModelResponse(modelDesc);
         response.setStatus(ModelStatusToDisplayEnum.BROKEN);
@@ -777,12 +822,8 @@ public class ModelService extends BasicService implements TableModelSupporter, P
             NDataflowManager dfManager, List<String> status, boolean onlyNormalDim) {
         long inconsistentSegmentCount = dfManager.getDataflow(modelDesc.getId()).getSegments(SegmentStatusEnum.WARNING)
                 .size();
-        ModelStatusToDisplayEnum modelResponseStatus = convertModelStatusToDisplay(modelDesc, projectName,
+        ModelStatusToDisplayEnum modelResponseStatus = resolveModelStatus(modelDesc, projectName, dfManager,
                 inconsistentSegmentCount);
-        if (modelDesc.isFusionModel()) {
-            modelResponseStatus = convertFusionModelStatusToDisplay(modelDesc, modelResponseStatus, projectName,
-                    dfManager);
-        }
         boolean isModelStatusMatch = isListContains(status, modelResponseStatus);
         if (isModelStatusMatch) {
             boolean isScd2ForbiddenOnline = checkSCD2ForbiddenOnline(modelDesc, projectName);
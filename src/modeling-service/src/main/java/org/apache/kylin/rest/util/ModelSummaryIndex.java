@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.apache.kylin.common.Singletons;
+import org.apache.kylin.metadata.cube.model.NDataflow;
+import org.apache.kylin.metadata.model.NDataModel;
+import org.apache.kylin.rest.constant.ModelStatusToDisplayEnum;
+
+import lombok.Getter;
+
+/**
+ * A per-project index of the summary of models (alias, owner, status, storage, usage and segment range),
+ * which lets model listing filter, sort and page without building the full responses of all models.
+ *
+ * A summary is tagged with the versions of the model, dataflow and index plan it is computed from. Every
+ * metadata change bumps one of these versions, so only the summaries of the changed models are recomputed.
+ */
+public class ModelSummaryIndex {
+
+    private final String project;
+    private final Map<String, ModelSummary> summaries = new ConcurrentHashMap<>();
+
+    private ModelSummaryIndex(String project) {
+        this.project = project;
+    }
+
+    public static ModelSummaryIndex getInstance(String project) {
+        return Singletons.getInstance(project, ModelSummaryIndex.class);
+    }
+
+    public String getProject() {
+        return project;
+    }
+
+    /**
+     * @return the summary of a healthy model, null if the model or its dataflow is broken
+     */
+    public ModelSummary getSummary(ModelTriple triple) {
+        NDataflow dataflow = triple.getDataflow();
+        NDataModel model = triple.getDataModel();
+        if (dataflow == null || model == null || model.isBroken()) {
+            return null;
+        }
+        long indexPlanMvcc = dataflow.getIndexPlan().getMvcc();
+        return summaries.compute(model.getUuid(), (id, summary) -> {
+            if (summary != null && summary.isUpToDate(model, dataflow, indexPlanMvcc)) {
+                return summary;
+            }
+            return new ModelSummary(model, dataflow, indexPlanMvcc);
+        });
+    }
+
+    /**
+     * The status of fusion models depends on their batch parts, so it is never cached.
+     */
+    public ModelStatusToDisplayEnum getStatus(ModelTriple triple,
+            Function<NDataModel, ModelStatusToDisplayEnum> statusResolver) {
+        ModelSummary summary = getSummary(triple);
+        if (summary == null || triple.getDataModel().isFusionModel()) {
+            return statusResolver.apply(triple.getDataModel());
+        }
+        ModelStatusToDisplayEnum status = summary.status;
+        if (status == null) {
+            status = statusResolver.apply(triple.getDataModel());
+            summary.status = status;
+        }
+        return status;
+    }
+
+    /**
+     * Drop the summaries of models which no longer exist.
+     */
+    public void retain(Set<String> modelIds) {
+        summaries.keySet().retainAll(modelIds);
+    }
+
+    public int size() {
+        return summaries.size();
+    }
+
+    @Getter
+    public static class ModelSummary {
+        private final String modelId;
+        private final String alias;
+        private final String owner;
+        private final long lastModified;
+        private final long storageBytes;
+        private final long sourceBytes;
+        private final long queryHitCount;
+        private final long segmentStart;
+        private final long segmentEnd;
+
+        private final long modelMvcc;
+        private final long dataflowMvcc;
+        private final long dataflowLastModified;
+        private final long indexPlanMvcc;
+
+        // computed on demand, as it is much more expensive than the other fields
+        private volatile ModelStatusToDisplayEnum status;
+
+        private ModelSummary(NDataModel model, NDataflow dataflow, long indexPlanMvcc) {
+            this.modelId = model.getUuid();
+            this.alias = model.getAlias();
+            this.owner = model.getOwner();
+            this.lastModified = model.getLastModified();
+            this.storageBytes = dataflow.getStorageBytesSize();
+            this.sourceBytes = dataflow.getSourceBytesSize();
+            this.queryHitCount = dataflow.getQueryHitCount();
+            this.segmentStart = dataflow.getSegments().getTSStart();
+            this.segmentEnd = dataflow.getSegments().getTSEnd();
+            this.modelMvcc = model.getMvcc();
+            this.dataflowMvcc = dataflow.getMvcc();
+            this.dataflowLastModified = dataflow.getLastModified();
+            this.indexPlanMvcc = indexPlanMvcc;
+        }
+
+        private boolean isUpToDate(NDataModel model, NDataflow dataflow, long indexPlanMvcc) {
+            // last modified time tells apart the entities recreated with the same id
+            return modelMvcc == model.getMvcc() && lastModified == model.getLastModified()
+                    && dataflowMvcc == dataflow.getMvcc() && dataflowLastModified == dataflow.getLastModified()
+                    && this.indexPlanMvcc == indexPlanMvcc;
+        }
+    }
+}
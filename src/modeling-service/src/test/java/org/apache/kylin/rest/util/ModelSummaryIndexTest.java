@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.NLocalFileMetadataTestCase;
+import org.apache.kylin.metadata.cube.model.NDataflowManager;
+import org.apache.kylin.metadata.model.NDataModelManager;
+import org.apache.kylin.rest.constant.ModelStatusToDisplayEnum;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import lombok.val;
+
+public class ModelSummaryIndexTest extends NLocalFileMetadataTestCase {
+
+    private static final String PROJECT = "default";
+    private static final String MODEL_ID = "89af4ee2-2cdb-4b07-b39e-4c29856309aa";
+
+    @Before
+    public void setUp() {
+        createTestMetadata();
+    }
+
+    @After
+    public void tearDown() {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testSummaryRecomputedOnlyAfterChange() {
+        val index = ModelSummaryIndex.getInstance(PROJECT);
+        val dfManager = NDataflowManager.getInstance(KylinConfig.getInstanceFromEnv(), PROJECT);
+        val dataflow = dfManager.getDataflow(MODEL_ID);
+        val summary = index.getSummary(new ModelTriple(dataflow, dataflow.getModel()));
+        Assert.assertEquals(dataflow.getModel().getAlias(), summary.getAlias());
+        Assert.assertEquals(dataflow.getStorageBytesSize(), summary.getStorageBytes());
+        Assert.assertEquals(dataflow.getQueryHitCount(), summary.getQueryHitCount());
+
+        val unchanged = dfManager.getDataflow(MODEL_ID);
+        Assert.assertSame(summary, index.getSummary(new ModelTriple(unchanged, unchanged.getModel())));
+
+        NDataModelManager.getInstance(KylinConfig.getInstanceFromEnv(), PROJECT).updateDataModel(MODEL_ID,
+                copyForWrite -> copyForWrite.setOwner("new_owner"));
+        val changed = dfManager.getDataflow(MODEL_ID);
+        val newSummary = index.getSummary(new ModelTriple(changed, changed.getModel()));
+        Assert.assertNotSame(summary, newSummary);
+        Assert.assertEquals("new_owner", newSummary.getOwner());
+    }
+
+    @Test
+    public void testStatusCached() {
+        val index = ModelSummaryIndex.getInstance(PROJECT);
+        val dataflow = NDataflowManager.getInstance(KylinConfig.getInstanceFromEnv(), PROJECT).getDataflow(MODEL_ID);
+        val triple = new ModelTriple(dataflow, dataflow.getModel());
+        AtomicInteger resolved = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(ModelStatusToDisplayEnum.ONLINE, index.getStatus(triple, model -> {
+                resolved.incrementAndGet();
+                return ModelStatusToDisplayEnum.ONLINE;
+            }));
+        }
+        Assert.assertEquals(1, resolved.get());
+
+        index.retain(Collections.emptySet());
+        Assert.assertEquals(0, index.size());
+        index.getStatus(triple, model -> {
+            resolved.incrementAndGet();
+            return ModelStatusToDisplayEnum.ONLINE;
+        });
+        Assert.assertEquals(2, resolved.get());
+    }
+}
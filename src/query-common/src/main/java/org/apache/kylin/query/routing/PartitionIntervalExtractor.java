@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kylin.query.routing;
+
+import java.util.List;
+
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.type.RelDataTypeFamily;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+
+/**
+ * Turns a filter into the normalized set of partition column values it may accept. The result is a superset
+ * of the accepted values, predicates without the partition column accept any value.
+ *
+ * Only AND, OR and comparisons between the partition column and literals are understood, {@link #extract}
+ * returns null for other shapes involving the partition column, and callers should fall back to RexSimplify.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class PartitionIntervalExtractor {
+
+    private final int partitionColIndex;
+    private final RelDataTypeFamily valueTypeFamily;
+    private final Class<?> valueClass;
+
+    /**
+     * @param valueTypeFamily type family of the literals of segment ranges
+     * @param valueClass class of the literal values of segment ranges, see {@link RexLiteral#getValue()}
+     */
+    public PartitionIntervalExtractor(RexInputRef partitionColInputRef, RelDataTypeFamily valueTypeFamily,
+            Class<?> valueClass) {
+        this.partitionColIndex = partitionColInputRef.getIndex();
+        this.valueTypeFamily = valueTypeFamily;
+        this.valueClass = valueClass;
+    }
+
+    /**
+     * @return the values the filter may accept, or null if the filter can not be understood
+     */
+    public RangeSet<Comparable> extract(RexNode node) {
+        if (node.isAlwaysTrue() || !RelOptUtil.InputFinder.bits(node).get(partitionColIndex)) {
+            return ImmutableRangeSet.of(Range.all());
+        }
+        if (node.isAlwaysFalse()) {
+            return ImmutableRangeSet.of();
+        }
+        if (!(node instanceof RexCall)) {
+            return null;
+        }
+        RexCall call = (RexCall) node;
+        switch (call.getKind()) {
+        case AND:
+            return combine(call.getOperands(), true);
+        case OR:
+            return combine(call.getOperands(), false);
+        case EQUALS:
+        case NOT_EQUALS:
+        case LESS_THAN:
+        case LESS_THAN_OR_EQUAL:
+        case GREATER_THAN:
+        case GREATER_THAN_OR_EQUAL:
+            return comparison(call);
+        case IS_NULL:
+            // segment ranges never contain null
+            return isPartitionCol(call.getOperands().get(0)) ? ImmutableRangeSet.of() : null;
+        case IS_NOT_NULL:
+            return isPartitionCol(call.getOperands().get(0)) ? ImmutableRangeSet.of(Range.all()) : null;
+        default:
+            return null;
+        }
+    }
+
+    private RangeSet<Comparable> combine(List<RexNode> operands, boolean intersect) {
+        RangeSet<Comparable> result = intersect ? TreeRangeSet.create(ImmutableRangeSet.of(Range.all()))
+                : TreeRangeSet.create();
+        for (RexNode operand : operands) {
+            RangeSet<Comparable> ranges = extract(operand);
+            if (ranges == null) {
+                return null;
+            }
+            if (intersect) {
+                result.removeAll(ranges.complement());
+            } else {
+                result.addAll(ranges);
+            }
+        }
+        return result;
+    }
+
+    private RangeSet<Comparable> comparison(RexCall call) {
+        RexNode left = call.getOperands().get(0);
+        RexNode right = call.getOperands().get(1);
+        boolean reversed;
+        RexLiteral literal;
+        if (isPartitionCol(left) && right instanceof RexLiteral) {
+            reversed = false;
+            literal = (RexLiteral) right;
+        } else if (isPartitionCol(right) && left instanceof RexLiteral) {
+            reversed = true;
+            literal = (RexLiteral) left;
+        } else {
+            return null;
+        }
+
+        Comparable value = literal.getValue();
+        if (value == null) {
+            // comparing with null is never true
+            return ImmutableRangeSet.of();
+        }
+        if (literal.getType().getFamily() != valueTypeFamily || !valueClass.isInstance(value)) {
+            return null;
+        }
+
+        switch (reversed ? call.getKind().reverse() : call.getKind()) {
+        case EQUALS:
+            return ImmutableRangeSet.of(Range.singleton(value));
+        case NOT_EQUALS:
+            return ImmutableRangeSet.of(Range.singleton(value)).complement();
+        case LESS_THAN:
+            return ImmutableRangeSet.of(Range.lessThan(value));
+        case LESS_THAN_OR_EQUAL:
+            return ImmutableRangeSet.of(Range.atMost(value));
+        case GREATER_THAN:
+            return ImmutableRangeSet.of(Range.greaterThan(value));
+        case GREATER_THAN_OR_EQUAL:
+            return ImmutableRangeSet.of(Range.atLeast(value));
+        default:
+            return null;
+        }
+    }
+
+    private boolean isPartitionCol(RexNode node) {
+        return node instanceof RexInputRef && ((RexInputRef) node).getIndex() == partitionColIndex;
+    }
+}
@@ -37,6 +37,7 @@
 package org.apache.kylin.query.routing;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -45,6 +46,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.calcite.plan.RelOptPredicateList;
@@ -86,6 +88,8 @@ import org.apache.kylin.metadata.model.NDataModel;
 import org.apache.kylin.metadata.model.NDataModelManager;
 import org.apache.kylin.metadata.project.NProjectManager;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -109,6 +113,9 @@ public class RealizationPruner {
             SqlKind.LESS_THAN, SqlKind.LESS_THAN_OR_EQUAL, //
             SqlKind.IN, SqlKind.NOT_IN, //
             SqlKind.EQUALS, SqlKind.NOT_EQUALS);
+    private static final Cache<String, SegmentIntervalIndex> SEGMENT_INTERVAL_INDEXES = CacheBuilder.newBuilder()
+            .maximumSize(1000).expireAfterAccess(1, TimeUnit.HOURS).build();
+
     private RealizationPruner() {
     }
 
@@ -171,6 +178,15 @@ public class RealizationPruner {
             return allReadySegments;
         }
 
+        if (projectInstance.getConfig().isSegmentIntervalIndexEnabled() && dateFormat != null) {
+            val prunedSegments = pruneSegmentsByIntervals(dataflow, allReadySegments, simplifiedSqlFilter, dateFormat,
+                    rexBuilder, partitionColInputRef, partitionColumn.getType());
+            if (prunedSegments != null) {
+                log.info("Scan segment.size: {} after segment pruning by intervals", prunedSegments.size());
+                return prunedSegments;
+            }
+        }
+
         for (NDataSegment dataSegment : allReadySegments) {
             try {
                 val segmentRanges = transformSegment2RexCall(dataSegment, dateFormat, rexBuilder, partitionColInputRef,
@@ -200,6 +216,68 @@ public class RealizationPruner {
         return selectedSegments;
     }
 
+    /**
+     * Prune segments by binary searching the intervals of the filter in the interval index of segments.
+     *
+     * @return null if the filter can not be turned into intervals, then segments should be pruned by RexSimplify
+     */
+    private static List<NDataSegment> pruneSegmentsByIntervals(NDataflow dataflow, List<NDataSegment> segments,
+            RexNode sqlFilter, String dateFormat, RexBuilder rexBuilder, RexInputRef partitionColInputRef,
+            DataType partitionColType) {
+        if (segments.isEmpty()) {
+            return segments;
+        }
+        try {
+            val firstSegmentStart = getRangeLiteral(transformSegment2RexCall(segments.get(0), dateFormat, rexBuilder,
+                    partitionColInputRef, partitionColType, dataflow.isStreaming()).getFirst());
+            val extractor = new PartitionIntervalExtractor(partitionColInputRef,
+                    firstSegmentStart.getType().getFamily(), firstSegmentStart.getValue().getClass());
+            val intervals = extractor.extract(sqlFilter);
+            if (intervals == null) {
+                log.debug("Filter {} can not be turned into intervals of the partition column", sqlFilter);
+                return null;
+            }
+            val index = getSegmentIntervalIndex(dataflow, segments, dateFormat, rexBuilder, partitionColInputRef,
+                    partitionColType);
+            return index.select(intervals).stream().mapToObj(segments::get).collect(Collectors.toList());
+        } catch (Exception ex) {
+            log.warn("Segment pruning by intervals error, fall back to simplify the filter: ", ex);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static SegmentIntervalIndex getSegmentIntervalIndex(NDataflow dataflow, List<NDataSegment> segments,
+            String dateFormat, RexBuilder rexBuilder, RexInputRef partitionColInputRef, DataType partitionColType) {
+        val cacheKey = dataflow.getProject() + "/" + dataflow.getUuid();
+        int segmentIdsHash = 1;
+        for (NDataSegment segment : segments) {
+            segmentIdsHash = 31 * segmentIdsHash + segment.getId().hashCode();
+        }
+        // the queryable segments also depend on the loading range, so check the segments besides the dataflow
+        val version = Arrays.asList(dataflow.getMvcc(), dataflow.getLastModified(), dataflow.isStreaming(),
+                dateFormat, partitionColType.toString(), segments.size(), segmentIdsHash);
+        val cached = SEGMENT_INTERVAL_INDEXES.getIfPresent(cacheKey);
+        if (cached != null && cached.isValid(version)) {
+            return cached;
+        }
+
+        List<Comparable[]> bounds = Lists.newArrayListWithCapacity(segments.size());
+        for (NDataSegment segment : segments) {
+            val segmentRanges = transformSegment2RexCall(segment, dateFormat, rexBuilder, partitionColInputRef,
+                    partitionColType, dataflow.isStreaming());
+            bounds.add(new Comparable[] { getRangeLiteral(segmentRanges.getFirst()).getValue(),
+                    getRangeLiteral(segmentRanges.getSecond()).getValue() });
+        }
+        val index = new SegmentIntervalIndex(version, bounds, dataflow.isStreaming());
+        SEGMENT_INTERVAL_INDEXES.put(cacheKey, index);
+        return index;
+    }
+
+    private static RexLiteral getRangeLiteral(RexNode rangeRexNode) {
+        return (RexLiteral) ((RexCall) rangeRexNode).getOperands().get(1);
+    }
+
     public static RexNode rewriteRexCall(RexNode rexNode, RexBuilder rexBuilder, RelDataTypeFamily relDataTypeFamily,
             RexInputRef partitionColInputRef, String dateFormat) {
         if (!(rexNode instanceof RexCall)) {
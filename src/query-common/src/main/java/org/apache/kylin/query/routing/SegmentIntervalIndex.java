@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kylin.query.routing;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+
+/**
+ * The ready segments of a dataflow sorted by their ranges on the partition column, so that the segments
+ * overlapping a set of intervals can be found by binary search instead of checking every segment.
+ *
+ * Segment ranges are [start, end) for batch segments and [start, end] for streaming segments.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class SegmentIntervalIndex {
+
+    private final Object version;
+    private final boolean closedEnd;
+    // sorted by start
+    private final Comparable[] starts;
+    private final Comparable[] ends;
+    // maxEnds[i] is the max end of the segments [0, i], which is non-decreasing and can be binary searched
+    private final Comparable[] maxEnds;
+    // the position of each segment in the list the index is built from
+    private final int[] positions;
+
+    /**
+     * @param version identifies the segments the index is built from, see {@link #isValid(Object)}
+     * @param bounds the start and end of every segment, in the order of the segment list
+     */
+    public SegmentIntervalIndex(Object version, List<Comparable[]> bounds, boolean closedEnd) {
+        this.version = version;
+        this.closedEnd = closedEnd;
+        int n = bounds.size();
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> bounds.get(a)[0].compareTo(bounds.get(b)[0]));
+
+        starts = new Comparable[n];
+        ends = new Comparable[n];
+        maxEnds = new Comparable[n];
+        positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            Comparable[] bound = bounds.get(order[i]);
+            if (bound[0].compareTo(bound[1]) > 0) {
+                throw new IllegalArgumentException("Segment start " + bound[0] + " is after its end " + bound[1]);
+            }
+            positions[i] = order[i];
+            starts[i] = bound[0];
+            ends[i] = bound[1];
+            maxEnds[i] = i == 0 || bound[1].compareTo(maxEnds[i - 1]) > 0 ? bound[1] : maxEnds[i - 1];
+        }
+    }
+
+    public boolean isValid(Object version) {
+        return this.version.equals(version);
+    }
+
+    public int size() {
+        return positions.length;
+    }
+
+    /**
+     * @return positions of the segments overlapping any of the intervals, in the order of the segment list
+     */
+    public BitSet select(RangeSet<Comparable> intervals) {
+        BitSet selected = new BitSet(positions.length);
+        for (Range<Comparable> interval : intervals.asRanges()) {
+            int from = interval.hasLowerBound() ? firstEndAfter(interval.lowerEndpoint()) : 0;
+            int to = interval.hasUpperBound()
+                    ? firstStartAfter(interval.upperEndpoint(), interval.upperBoundType() == BoundType.CLOSED)
+                    : positions.length;
+            for (int i = from; i < to; i++) {
+                if (overlaps(i, interval)) {
+                    selected.set(positions[i]);
+                }
+            }
+        }
+        return selected;
+    }
+
+    private boolean overlaps(int i, Range<Comparable> interval) {
+        Range<Comparable> segment = closedEnd ? Range.closed(starts[i], ends[i]) : Range.closedOpen(starts[i], ends[i]);
+        return interval.isConnected(segment) && !interval.intersection(segment).isEmpty();
+    }
+
+    /**
+     * @return the first index whose max end is not before the value, segments before it end before the value
+     */
+    private int firstEndAfter(Comparable value) {
+        int low = 0;
+        int high = maxEnds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (maxEnds[mid].compareTo(value) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the first index whose start is after the value (or not before it, if the value is excluded),
+     * segments from it start after the value
+     */
+    private int firstStartAfter(Comparable value, boolean inclusive) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int c = starts[mid].compareTo(value);
+            if (c < 0 || (inclusive && c == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
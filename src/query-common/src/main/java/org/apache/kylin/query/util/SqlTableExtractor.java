@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.query.util;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlJoin;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlWith;
+import org.apache.calcite.sql.SqlWithItem;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.kylin.metadata.model.tool.CalciteParser;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Extracts the tables referred by the FROM and JOIN clauses of a sql, including the ones of subqueries,
+ * the names of WITH items are not tables.
+ */
+public class SqlTableExtractor extends AbstractSqlVisitor {
+
+    private final List<SqlIdentifier> tables = Lists.newArrayList();
+    private final Set<String> withNames = Sets.newHashSet();
+
+    private SqlTableExtractor(String sql) {
+        super(sql);
+    }
+
+    public static List<SqlIdentifier> getTables(String sql) throws SqlParseException {
+        SqlNode parsed = CalciteParser.parse(sql);
+        SqlTableExtractor extractor = new SqlTableExtractor(sql);
+        parsed.accept(extractor);
+        return extractor.tables;
+    }
+
+    @Override
+    protected void visitInSqlFrom(SqlNode from) {
+        if (from instanceof SqlIdentifier) {
+            tableFound((SqlIdentifier) from);
+        } else if (isAs(from) && ((SqlBasicCall) from).getOperands()[0] instanceof SqlIdentifier) {
+            tableFound((SqlIdentifier) ((SqlBasicCall) from).getOperands()[0]);
+        } else {
+            super.visitInSqlFrom(from);
+        }
+    }
+
+    @Override
+    protected void visitInSqlJoin(SqlJoin join) {
+        visitInSqlFrom(join.getLeft());
+        visitInSqlFrom(join.getRight());
+        visitInSqlNode(join.getCondition());
+    }
+
+    @Override
+    protected void sqlWithFound(SqlWith sqlWith) {
+        for (SqlNode node : sqlWith.withList.getList()) {
+            withNames.add(((SqlWithItem) node).name.getSimple().toUpperCase(Locale.ROOT));
+        }
+        super.sqlWithFound(sqlWith);
+    }
+
+    private void tableFound(SqlIdentifier table) {
+        if (table.isSimple() && withNames.contains(table.getSimple().toUpperCase(Locale.ROOT))) {
+            return;
+        }
+        tables.add(table);
+    }
+}
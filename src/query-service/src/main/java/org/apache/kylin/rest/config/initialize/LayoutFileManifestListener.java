@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.config.initialize;
+
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.RawResource;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.persistence.transaction.EventListenerRegistry;
+import org.apache.kylin.metadata.cube.model.NDataSegDetails;
+import org.apache.spark.sql.execution.datasource.LayoutFileManifestCache;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Evicts the cached layout files of a segment when its details are changed or removed, and of a dataflow when it
+ * is removed. The dataflow itself is updated often, e.g. by the query statistics, so its updates are ignored.
+ */
+@Slf4j
+public class LayoutFileManifestListener implements EventListenerRegistry.ResourceEventListener {
+
+    // /{project}/dataflow_details/{dataflow}/{segment}.json
+    private static final Pattern SEGMENT_DETAILS_PATTERN = Pattern
+            .compile("^/[^/]+" + NDataSegDetails.DATAFLOW_DETAILS_RESOURCE_ROOT + "/([^/]+)/([^/]+)\\.json$");
+
+    // /{project}/dataflow/{dataflow}.json
+    private static final Pattern DATAFLOW_PATTERN = Pattern
+            .compile("^/[^/]+" + ResourceStore.DATAFLOW_RESOURCE_ROOT + "/([^/]+)\\.json$");
+
+    @Override
+    public void onUpdate(KylinConfig config, RawResource rawResource) {
+        if (Objects.isNull(rawResource)) {
+            return;
+        }
+        invalidateSegment(rawResource.getResPath());
+    }
+
+    @Override
+    public void onDelete(KylinConfig config, String resPath) {
+        if (Objects.isNull(resPath)) {
+            return;
+        }
+        invalidateSegment(resPath);
+        Matcher matcher = DATAFLOW_PATTERN.matcher(resPath);
+        if (matcher.find()) {
+            log.debug("Evict the layout files of dataflow {}", matcher.group(1));
+            LayoutFileManifestCache.invalidateDataflow(matcher.group(1));
+        }
+    }
+
+    private void invalidateSegment(String resPath) {
+        Matcher matcher = SEGMENT_DETAILS_PATTERN.matcher(resPath);
+        if (matcher.find()) {
+            log.debug("Evict the layout files of segment {} of dataflow {}", matcher.group(2), matcher.group(1));
+            LayoutFileManifestCache.invalidateSegment(matcher.group(1), matcher.group(2));
+        }
+    }
+}
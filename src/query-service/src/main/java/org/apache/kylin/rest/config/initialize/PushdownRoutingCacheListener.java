@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.config.initialize;
+
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.RawResource;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.persistence.transaction.AuditLogReplayWorker;
+import org.apache.kylin.common.persistence.transaction.EventListenerRegistry;
+import org.apache.kylin.metadata.cube.model.NDataSegDetails;
+import org.apache.kylin.query.engine.PushdownRoutingCache;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Bumps the metadata version of a project in the pushdown routing cache when the metadata taking part in
+ * realization matching changes, and drops the cache when all the metadata is reloaded.
+ */
+public class PushdownRoutingCacheListener implements EventListenerRegistry.ResourceEventListener {
+
+    // /{project}/{model_desc|fusion_model|index_plan|dataflow|dataflow_details|table}/...
+    private static final Pattern MATCHING_RESOURCE_PATTERN = Pattern.compile("^/([^/]+)("
+            + String.join("|", ResourceStore.DATA_MODEL_DESC_RESOURCE_ROOT, ResourceStore.FUSION_MODEL_RESOURCE_ROOT,
+                    ResourceStore.INDEX_PLAN_RESOURCE_ROOT, ResourceStore.DATAFLOW_RESOURCE_ROOT,
+                    NDataSegDetails.DATAFLOW_DETAILS_RESOURCE_ROOT, ResourceStore.TABLE_RESOURCE_ROOT)
+            + ")/");
+
+    @Override
+    public void onUpdate(KylinConfig config, RawResource rawResource) {
+        if (Objects.isNull(rawResource)) {
+            return;
+        }
+        onChanged(rawResource.getResPath());
+    }
+
+    @Override
+    public void onDelete(KylinConfig config, String resPath) {
+        if (Objects.isNull(resPath)) {
+            return;
+        }
+        onChanged(resPath);
+    }
+
+    @Subscribe
+    public void onReloaded(AuditLogReplayWorker.EndReloadEvent end) {
+        PushdownRoutingCache.getInstance().invalidateAll();
+    }
+
+    private void onChanged(String resPath) {
+        Matcher matcher = MATCHING_RESOURCE_PATTERN.matcher(resPath);
+        if (matcher.find()) {
+            PushdownRoutingCache.getInstance().onMetadataChanged(matcher.group(1));
+        }
+    }
+}
@@ -17,12 +17,15 @@
  */
 package org.apache.kylin.rest.config.initialize;
 
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.transaction.EventListenerRegistry;
 import org.apache.kylin.common.scheduler.EventBusFactory;
 import org.apache.kylin.rest.service.QueryHistoryScheduler;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import lombok.val;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -35,6 +38,14 @@ public class QueryAppInitializer implements InitializingBean {
     @Override
     public void afterPropertiesSet() throws Exception {
         EventBusFactory.getInstance().registerService(cleanOldQueryResultListener);
+        // evict the cached layout files of the segments changed by the other nodes
+        EventListenerRegistry.getInstance(KylinConfig.getInstanceFromEnv())
+                .register(new LayoutFileManifestListener(), "layoutFileManifest");
+        // expire the pushdown routing of the projects whose models or tables are changed
+        val pushdownRoutingCacheListener = new PushdownRoutingCacheListener();
+        EventListenerRegistry.getInstance(KylinConfig.getInstanceFromEnv()).register(pushdownRoutingCacheListener,
+                "pushdownRoutingCache");
+        EventBusFactory.getInstance().register(pushdownRoutingCacheListener, true);
         try {
             QueryHistoryScheduler queryHistoryScheduler = QueryHistoryScheduler.getInstance();
             queryHistoryScheduler.init();
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.response;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.BytesUtil;
+import org.springframework.beans.BeanUtils;
+
+import com.github.luben.zstd.Zstd;
+import com.google.common.collect.Lists;
+
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * The form of a {@link SQLResponse} in the query cache, whose rows are kept in columns and compressed.
+ *
+ * A column whose values repeat is kept as a dictionary of its distinct values and the ids of the values of the
+ * rows, other columns are kept as their values. The rows are decoded on the first read of a response taken out
+ * of the cache, and each row is built when it is read.
+ */
+public class CompactSQLResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String LZ4 = "lz4";
+    public static final String ZSTD = "zstd";
+
+    private static final byte PLAIN = 0;
+    private static final byte DICTIONARY = 1;
+    // the max length of an int written by BytesUtil.writeVInt
+    private static final int MAX_VINT_LENGTH = 5;
+
+    // the response without its rows
+    private final SQLResponse response;
+    private final String codec;
+    private final int rowCount;
+    private final int columnCount;
+    private final int length;
+    private final byte[] rows;
+
+    private CompactSQLResponse(SQLResponse response, String codec, int rowCount, int columnCount, int length,
+            byte[] rows) {
+        this.response = response;
+        this.codec = codec;
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.length = length;
+        this.rows = rows;
+    }
+
+    public static CompactSQLResponse encode(SQLResponse sqlResponse, String codec) {
+        List<List<String>> rows = sqlResponse.getResults() == null ? Collections.emptyList()
+                : Lists.newArrayList(sqlResponse.getResults());
+        int columnCount = rows.isEmpty() ? 0 : rows.get(0).size();
+        List<ByteBuffer> columns = Lists.newArrayListWithCapacity(columnCount);
+        int length = 0;
+        for (int i = 0; i < columnCount; i++) {
+            ByteBuffer column = encodeColumn(rows, i);
+            columns.add(column);
+            length += column.remaining();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        columns.forEach(buffer::put);
+
+        SQLResponse withoutRows = new SQLResponse();
+        BeanUtils.copyProperties(sqlResponse, withoutRows);
+        withoutRows.setResults(null);
+        return new CompactSQLResponse(withoutRows, codec, rows.size(), columnCount, length,
+                compress(buffer.array(), codec));
+    }
+
+    private static ByteBuffer encodeColumn(List<List<String>> rows, int column) {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (List<String> row : rows) {
+            String value = row.get(column);
+            if (value != null) {
+                // id 0 is null
+                dictionary.putIfAbsent(value, dictionary.size() + 1);
+            }
+        }
+        boolean useDictionary = dictionary.size() <= rows.size() / 2;
+        List<byte[]> values = Lists.newArrayList();
+        if (useDictionary) {
+            dictionary.keySet().forEach(value -> values.add(Bytes.toBytes(value)));
+        } else {
+            rows.forEach(row -> values.add(row.get(column) == null ? null : Bytes.toBytes(row.get(column))));
+        }
+        int size = 1 + MAX_VINT_LENGTH + (useDictionary ? rows.size() * MAX_VINT_LENGTH : 0);
+        for (byte[] value : values) {
+            size += MAX_VINT_LENGTH + (value == null ? 0 : value.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(useDictionary ? DICTIONARY : PLAIN);
+        BytesUtil.writeVInt(values.size(), buffer);
+        values.forEach(value -> BytesUtil.writeByteArray(value, buffer));
+        if (useDictionary) {
+            for (List<String> row : rows) {
+                String value = row.get(column);
+                BytesUtil.writeVInt(value == null ? 0 : dictionary.get(value), buffer);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] compress(byte[] data, String codec) {
+        switch (codec.toLowerCase(Locale.ROOT)) {
+        case LZ4:
+            return LZ4Factory.fastestInstance().fastCompressor().compress(data);
+        case ZSTD:
+            return Zstd.compress(data);
+        default:
+            throw new IllegalArgumentException("Unsupported query cache compression codec: " + codec);
+        }
+    }
+
+    private byte[] decompress() {
+        switch (codec.toLowerCase(Locale.ROOT)) {
+        case LZ4:
+            return LZ4Factory.fastestInstance().fastDecompressor().decompress(rows, length);
+        case ZSTD:
+            return Zstd.decompress(rows, length);
+        default:
+            throw new IllegalArgumentException("Unsupported query cache compression codec: " + codec);
+        }
+    }
+
+    private String[][] decodeColumns() {
+        ByteBuffer buffer = ByteBuffer.wrap(decompress());
+        String[][] columns = new String[columnCount][];
+        for (int i = 0; i < columnCount; i++) {
+            byte type = buffer.get();
+            String[] values = new String[BytesUtil.readVInt(buffer)];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = BytesUtil.readUTFString(buffer);
+            }
+            if (type == DICTIONARY) {
+                String[] column = new String[rowCount];
+                for (int j = 0; j < rowCount; j++) {
+                    int id = BytesUtil.readVInt(buffer);
+                    column[j] = id == 0 ? null : values[id - 1];
+                }
+                columns[i] = column;
+            } else {
+                columns[i] = values;
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * @return a new response of the cached one, whose rows are decoded when read
+     */
+    public SQLResponse decode() {
+        SQLResponse decoded = new SQLResponse();
+        BeanUtils.copyProperties(response, decoded);
+        decoded.setResults(new Rows(this));
+        return decoded;
+    }
+
+    public int getCompressedSize() {
+        return rows.length;
+    }
+
+    private static class Rows extends AbstractList<List<String>> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final CompactSQLResponse compact;
+        private transient volatile String[][] columns;
+
+        private Rows(CompactSQLResponse compact) {
+            this.compact = compact;
+        }
+
+        private String[][] columns() {
+            if (columns == null) {
+                synchronized (this) {
+                    if (columns == null) {
+                        columns = compact.decodeColumns();
+                    }
+                }
+            }
+            return columns;
+        }
+
+        @Override
+        public List<String> get(int index) {
+            if (index < 0 || index >= compact.rowCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + compact.rowCount);
+            }
+            String[][] values = columns();
+            String[] row = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                row[i] = values[i][index];
+            }
+            return Arrays.asList(row);
+        }
+
+        @Override
+        public int size() {
+            return compact.rowCount;
+        }
+    }
+}
@@ -42,6 +42,7 @@ import org.apache.kylin.metadata.model.NDataModelManager;
 import org.apache.kylin.metadata.project.NProjectManager;
 import org.apache.kylin.rest.constant.ModelAttributeEnum;
 import org.apache.kylin.rest.service.params.ModelQueryParams;
+import org.apache.kylin.rest.util.ModelSummaryIndex;
 import org.apache.kylin.rest.util.ModelTriple;
 import org.apache.kylin.rest.util.ModelTripleComparator;
 import org.apache.kylin.rest.util.ModelUtils;
@@ -174,6 +175,15 @@ public class ModelQueryService extends BasicService implements ModelQuerySupport
         }
     }
 
+    /**
+     * @return the model summary index of the project, null if it is disabled
+     */
+    private ModelSummaryIndex getSummaryIndex(String projectName) {
+        return getManager(NProjectManager.class).getProject(projectName).getConfig().isModelSummaryIndexEnabled()
+                ? ModelSummaryIndex.getInstance(projectName)
+                : null;
+    }
+
     private List<ModelTriple> sortByStorage(List<ModelTriple> tripleList, String projectName, boolean reverse) {
         val dfMgr = getManager(NDataflowManager.class, projectName);
         tripleList.parallelStream().filter(t -> t.getDataModel().isFusionModel()).forEach(t -> {
@@ -183,8 +193,11 @@ public class ModelQueryService extends BasicService implements ModelQuerySupport
             };
             calcOfFusionModel(projectName, t, dfMgr, expansionRateFunc);
         });
-        tripleList.parallelStream().filter(t -> !t.getDataModel().isFusionModel())
-                .forEach(t -> t.setCalcObject(t.getDataflow().getStorageBytesSize()));
+        val summaryIndex = getSummaryIndex(projectName);
+        tripleList.parallelStream().filter(t -> !t.getDataModel().isFusionModel()).forEach(t -> {
+            val summary = summaryIndex == null ? null : summaryIndex.getSummary(t);
+            t.setCalcObject(summary == null ? t.getDataflow().getStorageBytesSize() : summary.getStorageBytes());
+        });
 
         return tripleList.parallelStream()
                 .sorted(new ModelTripleComparator("calcObject", !reverse, SORT_KEY_CALC_OBJECT))
@@ -201,10 +214,13 @@ public class ModelQueryService extends BasicService implements ModelQuerySupport
             };
             calcOfFusionModel(projectName, t, dfMgr, expansionRateFunc);
         });
+        val summaryIndex = getSummaryIndex(projectName);
         tripleList.parallelStream().filter(t -> !t.getDataModel().isFusionModel()).forEach(t -> {
+            val summary = summaryIndex == null ? null : summaryIndex.getSummary(t);
             val dataflow = t.getDataflow();
-            t.setCalcObject(
-                    ModelUtils.computeExpansionRate(dataflow.getStorageBytesSize(), dataflow.getSourceBytesSize()));
+            t.setCalcObject(summary == null
+                    ? ModelUtils.computeExpansionRate(dataflow.getStorageBytesSize(), dataflow.getSourceBytesSize())
+                    : ModelUtils.computeExpansionRate(summary.getStorageBytes(), summary.getSourceBytes()));
         });
         List<ModelTriple> sorted;
         if (!reverse) {
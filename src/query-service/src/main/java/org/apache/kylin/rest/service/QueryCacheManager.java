@@ -25,8 +25,10 @@ import java.util.List;
 
 import javax.annotation.PostConstruct;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.metadata.project.NProjectManager;
 import org.apache.kylin.metadata.querymeta.TableMeta;
 import org.apache.kylin.metadata.querymeta.TableMetaWithType;
 import org.apache.kylin.query.util.QueryUtil;
@@ -34,6 +36,7 @@ import org.apache.kylin.rest.cache.KylinCache;
 import org.apache.kylin.rest.cache.KylinEhCache;
 import org.apache.kylin.rest.cache.RedisCache;
 import org.apache.kylin.rest.request.SQLRequest;
+import org.apache.kylin.rest.response.CompactSQLResponse;
 import org.apache.kylin.rest.response.SQLResponse;
 import org.apache.kylin.rest.response.TableMetaCacheResult;
 import org.apache.kylin.rest.response.TableMetaCacheResultV2;
@@ -92,8 +95,6 @@ public class QueryCacheManager implements CommonQueryCacheSupporter {
                 : 0;
         return checkCondition(QueryUtil.isSelectStatement(sqlRequest.getSql()), "query is non-select")
                 && checkCondition(!sqlResponse.isException(), "query has exception") //
-                && checkCondition(!sqlResponse.isQueryPushDown() || kylinConfig.isPushdownQueryCacheEnabled(),
-                        "query is executed with pushdown, or the cache for pushdown is disabled") //
                 && checkCondition(
                         sqlResponse.getDuration() > durationThreshold
                                 || sqlResponse.getTotalScanRows() > scanCountThreshold
@@ -102,14 +103,40 @@ public class QueryCacheManager implements CommonQueryCacheSupporter {
                         sqlResponse.getDuration(), durationThreshold, sqlResponse.getTotalScanRows(),
                         scanCountThreshold, sqlResponse.getTotalScanBytes(), scanBytesThreshold)
                 && checkCondition(responseSize < kylinConfig.getLargeQueryThreshold(),
-                        "query response is too large: {} ({})", responseSize, kylinConfig.getLargeQueryThreshold());
+                        "query response is too large: {} ({})", responseSize, kylinConfig.getLargeQueryThreshold())
+                && checkCondition(!sqlResponse.isQueryPushDown() || isPushDownCacheable(sqlRequest, sqlResponse),
+                        "query is executed with pushdown, or the cache for pushdown is disabled");
+    }
+
+    /**
+     * The signature of a push-down response reads the source versions of its tables, so it is only created
+     * when the response passes the other conditions of caching.
+     */
+    private boolean isPushDownCacheable(SQLRequest sqlRequest, SQLResponse sqlResponse) {
+        KylinConfig projectConfig = NProjectManager.getInstance(KylinConfig.getInstanceFromEnv())
+                .getProject(sqlRequest.getProject()).getConfig();
+        if (!projectConfig.isPushdownQueryCacheEnabled()) {
+            return false;
+        }
+        sqlResponse.setSignature(
+                QueryCacheSignatureUtil.createPushDownCacheSignature(sqlRequest.getSql(), sqlRequest.getProject()));
+        return StringUtils.isNotBlank(sqlResponse.getSignature());
     }
 
     public void doCacheSuccessQuery(SQLRequest sqlRequest, SQLResponse sqlResponse) {
         try {
             sqlResponse.readAllRows();
+            KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+            Object cached = sqlResponse;
+            if (kylinConfig.isQueryCacheCompressionEnabled()) {
+                CompactSQLResponse compact = CompactSQLResponse.encode(sqlResponse,
+                        kylinConfig.getQueryCacheCompressionCodec());
+                logger.info("[query cache log] Compress the result of {} rows into {} bytes",
+                        sqlResponse.getResultRowCount(), compact.getCompressedSize());
+                cached = compact;
+            }
             kylinCache.put(Type.SUCCESS_QUERY_CACHE.rootCacheName, sqlRequest.getProject(), sqlRequest.getCacheKey(),
-                    sqlResponse);
+                    cached);
         } catch (Exception e) {
             logger.error("[query cache log] Error caching result of success query {}", sqlRequest.getSql(), e);
         }
@@ -162,6 +189,9 @@ public class QueryCacheManager implements CommonQueryCacheSupporter {
         if (response == null) {
             return null;
         }
+        if (response instanceof CompactSQLResponse) {
+            return ((CompactSQLResponse) response).decode();
+        }
         return (SQLResponse) response;
     }
 
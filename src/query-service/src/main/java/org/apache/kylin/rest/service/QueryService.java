@@ -67,6 +67,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import org.apache.calcite.sql.parser.SqlParseException;
@@ -100,6 +102,7 @@ import org.apache.kylin.common.util.SetThreadName;
 import org.apache.kylin.metadata.MetadataConstants;
 import org.apache.kylin.metadata.acl.AclTCR;
 import org.apache.kylin.metadata.acl.AclTCRManager;
+import org.apache.kylin.metadata.cube.cuboid.LayoutScanStatistics;
 import org.apache.kylin.metadata.model.JoinDesc;
 import org.apache.kylin.metadata.model.JoinTableDesc;
 import org.apache.kylin.metadata.model.NDataModel;
@@ -161,6 +164,7 @@ import org.apache.kylin.rest.util.AclEvaluate;
 import org.apache.kylin.rest.util.AclPermissionUtil;
 import org.apache.kylin.rest.util.PrepareSQLUtils;
 import org.apache.kylin.rest.util.QueryCacheSignatureUtil;
+import org.apache.kylin.rest.util.QueryCoalescer;
 import org.apache.kylin.rest.util.QueryRequestLimits;
 import org.apache.kylin.rest.util.QueryUtils;
 import org.apache.kylin.rest.util.SparderUIUtil;
@@ -202,6 +206,7 @@ public class QueryService extends BasicService implements CacheSignatureQuerySup
     private static final String JDBC_METADATA_SCHEMA = "metadata";
     private static final Logger logger = LoggerFactory.getLogger("query");
     final SlowQueryDetector slowQueryDetector = new SlowQueryDetector();
+    private final QueryCoalescer queryCoalescer = new QueryCoalescer();
 
     @Autowired
     private QueryCacheManager queryCacheManager;
@@ -621,9 +626,8 @@ public class QueryService extends BasicService implements CacheSignatureQuerySup
 
             // real execution if required
             if (sqlResponse == null) {
-                try (QueryRequestLimits ignored = new QueryRequestLimits(project)) {
-                    sqlResponse = queryAndUpdateCache(sqlRequest, kylinConfig);
-                }
+                sqlResponse = isQueryCoalescingEnabled(kylinConfig) ? coalesceQuery(sqlRequest, kylinConfig)
+                        : queryWithLimits(sqlRequest, kylinConfig);
             }
 
             QueryUtils.updateQueryContextSQLMetrics(rawSql.getStatementString());
@@ -676,7 +680,8 @@ public class QueryService extends BasicService implements CacheSignatureQuerySup
     public boolean isCollectQueryScanRowsAndTimeEnabled() {
         return KapConfig.getInstanceFromEnv().isAutoAdjustBigQueryRowsThresholdEnabled()
                 && !QueryContext.current().getQueryTagInfo().isAsyncQuery()
-                && !QueryContext.current().getQueryTagInfo().isStorageCacheUsed();
+                && !QueryContext.current().getQueryTagInfo().isStorageCacheUsed()
+                && !QueryContext.current().getQueryTagInfo().isCoalesced();
     }
 
     private SQLResponse searchCache(SQLRequest sqlRequest, KylinConfig kylinConfig) {
@@ -731,6 +736,7 @@ public class QueryService extends BasicService implements CacheSignatureQuerySup
                     queryMetricsContext.setSqlPattern(normalizedSql);
                     QueryHistoryScheduler queryHistoryScheduler = QueryHistoryScheduler.getInstance();
                     queryHistoryScheduler.offerQueryHistoryQueue(queryMetricsContext);
+                    LayoutScanStatistics.getInstance().record(queryMetricsContext);
                     EventBusFactory.getInstance().postAsync(queryMetricsContext);
                 }
             } catch (Throwable th) {
@@ -905,6 +911,77 @@ public class QueryService extends BasicService implements CacheSignatureQuerySup
                 checkCondition(!BackdoorToggles.getDisableCache(), "query cache disabled in BackdoorToggles");
     }
 
+    private boolean isQueryCoalescingEnabled(KylinConfig kylinConfig) {
+        return kylinConfig.isQueryCoalescingEnabled() && !QueryContext.current().getQueryTagInfo().isAsyncQuery();
+    }
+
+    private SQLResponse queryWithLimits(SQLRequest sqlRequest, KylinConfig kylinConfig) {
+        // a VIP query is admitted ahead of the others
+        markHighPriorityQueryIfNeeded();
+        boolean highPriority = QueryContext.current().getQueryTagInfo().isHighPriorityQuery();
+        try (QueryRequestLimits ignored = new QueryRequestLimits(sqlRequest.getProject(), highPriority)) {
+            return queryAndUpdateCache(sqlRequest, kylinConfig);
+        }
+    }
+
+    /**
+     * Identical queries of the same acl running at the same time share the response of the first one, the
+     * others wait for it as running queries, so they can be stopped or timed out on their own.
+     */
+    private SQLResponse coalesceQuery(SQLRequest sqlRequest, KylinConfig kylinConfig) {
+        String project = sqlRequest.getProject();
+        List<Object> key;
+        try {
+            key = Lists.newArrayList(sqlRequest.getCacheKey(), createAclSignature(project));
+        } catch (IOException e) {
+            logger.warn("Fail to get acl signature, query without coalescing", e);
+            return queryWithLimits(sqlRequest, kylinConfig);
+        }
+        AtomicBoolean leading = new AtomicBoolean();
+        slowQueryDetector.queryStart(sqlRequest.getStopId());
+        try {
+            SQLResponse sqlResponse = queryCoalescer.query(project, key, () -> {
+                leading.set(true);
+                return queryWithLimits(sqlRequest, kylinConfig);
+            }, kylinConfig.getQueryTimeoutSeconds() * 1000L);
+            if (!leading.get()) {
+                logger.info("The query shares the response of the same query running");
+                collectToQueryContext(sqlResponse);
+                // the scan is recorded by the leader only
+                QueryContext.fillEmptyResultSetMetrics();
+                QueryContext.current().getQueryTagInfo().setCoalesced(true);
+                sqlResponse.setScanRows(QueryContext.currentMetrics().getScanRows());
+                sqlResponse.setScanBytes(QueryContext.currentMetrics().getScanBytes());
+            }
+            return sqlResponse;
+        } catch (InterruptedException | TimeoutException e) {
+            SlowQueryDetector.QueryEntry entry = SlowQueryDetector.getRunningQueries().get(Thread.currentThread());
+            return buildFollowerFailedResponse(entry != null && entry.isStopByUser(), kylinConfig);
+        } finally {
+            slowQueryDetector.queryEnd();
+            Thread.interrupted(); //reset if interrupted
+        }
+    }
+
+    private SQLResponse buildFollowerFailedResponse(boolean stopByUser, KylinConfig kylinConfig) {
+        QueryContext queryContext = QueryContext.current();
+        queryContext.getMetrics().setException(true);
+        String errMsg = stopByUser ? MsgPicker.getMsg().getStopByUserErrorMessage()
+                : "The query exceeds the set time limit of " + kylinConfig.getQueryTimeoutSeconds()
+                        + "s. Current step: Waiting for the same query running. ";
+        queryContext.getMetrics().setQueryMsg(errMsg);
+        SQLResponse sqlResponse = new SQLResponse(null, null, 0, true, errMsg, false, false);
+        if (stopByUser) {
+            sqlResponse.setStopByUser(true);
+            sqlResponse.setColumnMetas(Lists.newArrayList());
+        } else {
+            queryContext.getQueryTagInfo().setTimeout(true);
+            sqlResponse.setTimeout(true);
+        }
+        sqlResponse.wrapResultOfQueryContext(queryContext);
+        return sqlResponse;
+    }
+
     private boolean isQueryExceptionCacheEnabled(KylinConfig kylinConfig) {
         return checkCondition(kylinConfig.isQueryExceptionCacheEnabled(),
                 "query exception cache disabled in KylinConfig") && //
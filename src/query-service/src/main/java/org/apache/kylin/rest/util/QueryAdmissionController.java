@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.kylin.common.metrics.MetricsCategory;
+import org.apache.kylin.common.metrics.MetricsGroup;
+import org.apache.kylin.common.metrics.MetricsName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admits queries against a per-project limit and an optional limit shared by all projects.
+ *
+ * A query that can not run at once waits in a bounded queue of its project until a slot is released or the
+ * wait times out. High priority (VIP) queries are queued ahead of the others, and a released slot of the
+ * shared limit goes to the waiting project with the fewest running queries per weight.
+ */
+public class QueryAdmissionController {
+    private static final Logger logger = LoggerFactory.getLogger(QueryAdmissionController.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, ProjectState> projects = new HashMap<>();
+    private int globalRunning;
+    private int globalLimit;
+
+    /**
+     * Take a running slot for the project, waiting for at most the timeout when there is none.
+     *
+     * @return false if the query is shed because the queue is full or the wait timed out
+     */
+    public boolean acquire(String project, int projectLimit, int globalLimit, int weight, boolean highPriority,
+            int queueSize, long timeoutMs) {
+        lock.lock();
+        try {
+            this.globalLimit = globalLimit;
+            ProjectState state = getOrCreateState(project);
+            state.limit = projectLimit;
+            state.weight = Math.max(1, weight);
+            // the limits may have been raised since the waiting queries were queued
+            dispatch();
+            if (canRun(state) && !state.hasWaiterAhead(highPriority)) {
+                state.running++;
+                globalRunning++;
+                return true;
+            }
+            if (timeoutMs <= 0 || state.waiting() >= queueSize) {
+                shed(project);
+                return false;
+            }
+            Waiter waiter = new Waiter(highPriority, lock.newCondition());
+            state.enqueue(waiter);
+            long start = System.nanoTime();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            try {
+                while (!waiter.granted && remaining > 0) {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!waiter.granted) {
+                state.remove(waiter);
+                shed(project);
+                return false;
+            }
+            MetricsGroup.histogramUpdate(MetricsName.QUERY_ADMISSION_WAIT_TIME, MetricsCategory.PROJECT, project,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(String project) {
+        lock.lock();
+        try {
+            ProjectState state = projects.get(project);
+            if (state == null || state.running == 0) {
+                logger.warn("Release a query slot of project {} which is not acquired", project);
+                return;
+            }
+            state.running--;
+            globalRunning--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Integer getRunning(String project) {
+        lock.lock();
+        try {
+            ProjectState state = projects.get(project);
+            return state == null ? null : state.running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting(String project) {
+        lock.lock();
+        try {
+            ProjectState state = projects.get(project);
+            return state == null ? 0 : state.waiting();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hand out the free slots to the waiting queries, high priority ones first and then the project with the
+     * fewest running queries per weight.
+     */
+    private void dispatch() {
+        for (;;) {
+            ProjectState next = null;
+            for (ProjectState state : projects.values()) {
+                if (state.waiting() == 0 || !canRun(state)) {
+                    continue;
+                }
+                if (next == null || compare(state, next) < 0) {
+                    next = state;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Waiter waiter = next.poll();
+            next.running++;
+            globalRunning++;
+            waiter.granted = true;
+            waiter.condition.signal();
+        }
+    }
+
+    private static int compare(ProjectState a, ProjectState b) {
+        boolean aHigh = !a.highPriorityWaiters.isEmpty();
+        boolean bHigh = !b.highPriorityWaiters.isEmpty();
+        if (aHigh != bHigh) {
+            return aHigh ? -1 : 1;
+        }
+        // running / weight compared without division
+        return Long.compare((long) a.running * b.weight, (long) b.running * a.weight);
+    }
+
+    private boolean canRun(ProjectState state) {
+        return (state.limit <= 0 || state.running < state.limit) && (globalLimit <= 0 || globalRunning < globalLimit);
+    }
+
+    private ProjectState getOrCreateState(String project) {
+        ProjectState state = projects.get(project);
+        if (state == null) {
+            state = new ProjectState();
+            projects.put(project, state);
+            MetricsGroup.newGauge(MetricsName.QUERY_ADMISSION_QUEUE_DEPTH, MetricsCategory.PROJECT, project,
+                    () -> getWaiting(project));
+        }
+        return state;
+    }
+
+    private static void shed(String project) {
+        MetricsGroup.counterInc(MetricsName.QUERY_ADMISSION_SHED, MetricsCategory.PROJECT, project);
+    }
+
+    private static class Waiter {
+        private final boolean highPriority;
+        private final Condition condition;
+        private boolean granted;
+
+        private Waiter(boolean highPriority, Condition condition) {
+            this.highPriority = highPriority;
+            this.condition = condition;
+        }
+    }
+
+    private static class ProjectState {
+        private final ArrayDeque<Waiter> highPriorityWaiters = new ArrayDeque<>();
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private int running;
+        private int limit;
+        private int weight = 1;
+
+        private int waiting() {
+            return highPriorityWaiters.size() + waiters.size();
+        }
+
+        private boolean hasWaiterAhead(boolean highPriority) {
+            return highPriority ? !highPriorityWaiters.isEmpty() : waiting() > 0;
+        }
+
+        private void enqueue(Waiter waiter) {
+            (waiter.highPriority ? highPriorityWaiters : waiters).addLast(waiter);
+        }
+
+        private Waiter poll() {
+            return highPriorityWaiters.isEmpty() ? waiters.pollFirst() : highPriorityWaiters.pollFirst();
+        }
+
+        private void remove(Waiter waiter) {
+            (waiter.highPriority ? highPriorityWaiters : waiters).remove(waiter);
+        }
+    }
+}
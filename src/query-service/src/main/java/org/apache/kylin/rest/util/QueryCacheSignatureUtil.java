@@ -37,11 +37,17 @@ package org.apache.kylin.rest.util;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
+import org.apache.calcite.sql.SqlIdentifier;
+
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.engine.spark.source.NSparkTableMetaExplorer;
+import org.apache.kylin.metadata.model.ISourceAware;
 import org.apache.kylin.metadata.model.SegmentStatusEnum;
 import org.apache.kylin.metadata.model.TableDesc;
 import org.apache.kylin.metadata.model.TableRef;
@@ -52,20 +58,32 @@ import org.apache.kylin.metadata.cube.model.NDataflowManager;
 import org.apache.kylin.metadata.model.NDataModel;
 import org.apache.kylin.metadata.model.NDataModelManager;
 import org.apache.kylin.metadata.model.NTableMetadataManager;
+import org.apache.kylin.metadata.model.TableExtDesc;
+import org.apache.kylin.metadata.project.NProjectManager;
 import org.apache.kylin.metadata.query.NativeQueryRealization;
+import org.apache.kylin.query.util.SqlTableExtractor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import lombok.Getter;
 import lombok.val;
 
 public class QueryCacheSignatureUtil {
     private static final Logger logger = LoggerFactory.getLogger("query");
+    private static final String PUSHDOWN_SIGNATURE = "pushdown@";
+    // project/table -> (read time, source version)
+    private static final Cache<String, Pair<Long, Long>> SOURCE_VERSIONS = CacheBuilder.newBuilder()
+            .maximumSize(10000).build();
+    private static NSparkTableMetaExplorer sourceMetaExplorer = new NSparkTableMetaExplorer();
 
     @Getter
     @Autowired
@@ -98,6 +116,97 @@ public class QueryCacheSignatureUtil {
         return Joiner.on(",").join(signature);
     }
 
+    // Push-down Query Cache
+    // acl,pushdown@cachedTime,table1:version1,table2:version2 ...
+    public static String createPushDownCacheSignature(String sql, String project) {
+        List<String> signature = Lists.newArrayList();
+        queryService = SpringContext.getBean(CacheSignatureQuerySupporter.class);
+        try {
+            signature.add(queryService.onCreateAclSignature(project));
+        } catch (IOException e) {
+            logger.error("Fail to get acl signature: ", e);
+            return "";
+        }
+        signature.add(PUSHDOWN_SIGNATURE + System.currentTimeMillis());
+        Set<TableDesc> tables = getSourceTables(sql, project);
+        if (tables.isEmpty()) {
+            return "";
+        }
+        for (TableDesc table : tables) {
+            String version = generateSourceSignature(table, project);
+            if (version.isEmpty()) {
+                return "";
+            }
+            signature.add(table.getIdentity() + ":" + version);
+        }
+        return Joiner.on(",").join(signature);
+    }
+
+    /**
+     * The tables of the FROM and JOIN clauses of the sql, empty if any of them is not loaded in the project
+     */
+    private static Set<TableDesc> getSourceTables(String sql, String project) {
+        val tableManager = NTableMetadataManager.getInstance(KylinConfig.getInstanceFromEnv(), project);
+        String defaultDatabase = NProjectManager.getInstance(KylinConfig.getInstanceFromEnv())
+                .getDefaultDatabase(project);
+        Set<TableDesc> tables = Sets.newLinkedHashSet();
+        try {
+            for (SqlIdentifier identifier : SqlTableExtractor.getTables(sql)) {
+                String name = identifier.names.size() == 1 ? defaultDatabase + "." + identifier.names.get(0)
+                        : Joiner.on(".").join(identifier.names);
+                TableDesc table = tableManager.getTableDesc(name.toUpperCase(Locale.ROOT));
+                if (table == null) {
+                    logger.debug("Table {} of push-down query is not loaded, skip the cache", name);
+                    return Sets.newHashSet();
+                }
+                tables.add(table);
+            }
+        } catch (Exception e) {
+            logger.warn("Fail to get tables of push-down query: ", e);
+            return Sets.newHashSet();
+        }
+        return tables;
+    }
+
+    private static String generateSourceSignature(TableDesc table, String project) {
+        if (table.getSourceType() != ISourceAware.ID_HIVE && table.getSourceType() != ISourceAware.ID_SPARK) {
+            return "";
+        }
+        val tableManager = NTableMetadataManager.getInstance(KylinConfig.getInstanceFromEnv(), project);
+        TableExtDesc tableExt = tableManager.getTableExtIfExists(table);
+        try {
+            long sourceVersion = getSourceVersion(table, project);
+            return Joiner.on("_").join(table.getLastModified(), tableExt == null ? 0 : tableExt.getLastModified(),
+                    sourceVersion);
+        } catch (Exception e) {
+            logger.warn("Fail to get source version of table {}: ", table.getIdentity(), e);
+            return "";
+        }
+    }
+
+    /**
+     * The source version of a table is read at most once in the interval, since reading it lists the partitions
+     * or the files of the table.
+     */
+    private static long getSourceVersion(TableDesc table, String project) throws IOException {
+        KylinConfig projectConfig = NProjectManager.getInstance(KylinConfig.getInstanceFromEnv()).getProject(project)
+                .getConfig();
+        String key = project + "/" + table.getIdentity();
+        long now = System.currentTimeMillis();
+        Pair<Long, Long> cached = SOURCE_VERSIONS.getIfPresent(key);
+        if (cached != null && now - cached.getFirst() < projectConfig.getPushdownQueryCacheSourceVersionInterval()) {
+            return cached.getSecond();
+        }
+        long version = sourceMetaExplorer.getSourceVersion(table.getDatabase(), table.getName());
+        SOURCE_VERSIONS.put(key, Pair.newPair(now, version));
+        return version;
+    }
+
+    @VisibleForTesting
+    static void clearSourceVersions() {
+        SOURCE_VERSIONS.invalidateAll();
+    }
+
     // Schema Cache
     public static String createCacheSignature(List<String> tables, String project, String modelAlias) {
         val tableManager = NTableMetadataManager.getInstance(KylinConfig.getInstanceFromEnv(), project);
@@ -135,9 +244,11 @@ public class QueryCacheSignatureUtil {
     public static boolean checkCacheExpired(SQLResponse sqlResponse, String project) {
         val signature = sqlResponse.getSignature();
         if (StringUtils.isBlank(signature)) {
-            // pushdown cache is not supported by default because checkCacheExpired always return true
             return true;
         }
+        if (sqlResponse.isQueryPushDown()) {
+            return checkPushDownCacheExpired(signature, project);
+        }
         // acl,realization1,realization2 ...
         if (signature.split(",").length != sqlResponse.getNativeRealizations().size() + 1) {
             return true;
@@ -152,6 +263,40 @@ public class QueryCacheSignatureUtil {
         return false;
     }
 
+    private static boolean checkPushDownCacheExpired(String signature, String project) {
+        queryService = SpringContext.getBean(CacheSignatureQuerySupporter.class);
+        KylinConfig projectConfig = NProjectManager.getInstance(KylinConfig.getInstanceFromEnv()).getProject(project)
+                .getConfig();
+        String[] parts = signature.split(",");
+        if (!projectConfig.isPushdownQueryCacheEnabled() || parts.length < 3
+                || !parts[1].startsWith(PUSHDOWN_SIGNATURE)) {
+            return true;
+        }
+        long cachedTime = Long.parseLong(parts[1].substring(PUSHDOWN_SIGNATURE.length()));
+        if (System.currentTimeMillis() - cachedTime > projectConfig.getPushdownQueryCacheTTL()) {
+            return true;
+        }
+        try {
+            if (!parts[0].equals(queryService.onCreateAclSignature(project))) {
+                return true;
+            }
+        } catch (IOException e) {
+            logger.error("Fail to get acl signature: ", e);
+            return true;
+        }
+        val tableManager = NTableMetadataManager.getInstance(KylinConfig.getInstanceFromEnv(), project);
+        for (int i = 2; i < parts.length; i++) {
+            String[] tableVersion = parts[i].split(":", 2);
+            TableDesc table = tableManager.getTableDesc(tableVersion[0]);
+            if (table == null || tableVersion.length < 2
+                    || !tableVersion[1].equals(generateSourceSignature(table, project))) {
+                logger.debug("[Signature error] source of table {} changed", tableVersion[0]);
+                return true;
+            }
+        }
+        return false;
+    }
+
     // Schema Cache
     public static boolean checkCacheExpired(List<String> tables, String prevSignature, String project,
             String modelAlias) {
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.apache.kylin.common.metrics.MetricsCategory;
+import org.apache.kylin.common.metrics.MetricsGroup;
+import org.apache.kylin.common.metrics.MetricsName;
+import org.apache.kylin.rest.response.SQLResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Runs only one of the identical queries arriving at the same time, the others share its response.
+ *
+ * The first query of a key is the leader and runs. The queries of the key arriving before the leader finishes
+ * are the followers, each of them waits for the response of the leader within its own timeout. A follower that
+ * times out or is interrupted stops waiting, leaves the flight and leaves the leader running. When the leader is stopped by user,
+ * its followers run the query again, one of them as the new leader.
+ */
+public class QueryCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(QueryCoalescer.class);
+
+    private final ConcurrentHashMap<Object, Flight> flights = new ConcurrentHashMap<>();
+
+    public SQLResponse query(String project, Object key, Supplier<SQLResponse> query, long timeoutMs)
+            throws InterruptedException, TimeoutException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (;;) {
+            Flight created = new Flight();
+            Flight flight = flights.compute(key, (k, running) -> {
+                if (running == null) {
+                    return created;
+                }
+                running.followers++;
+                return running;
+            });
+            if (flight == created) {
+                return lead(key, flight, query);
+            }
+            SQLResponse response;
+            try {
+                response = follow(flight, deadline - System.currentTimeMillis());
+            } catch (InterruptedException | TimeoutException e) {
+                leave(key, flight);
+                throw e;
+            }
+            if (!response.isStopByUser()) {
+                MetricsGroup.counterInc(MetricsName.QUERY_COALESCED, MetricsCategory.PROJECT, project);
+                return copyOf(response);
+            }
+            logger.info("The query followed is stopped by user, run it again");
+        }
+    }
+
+    private SQLResponse lead(Object key, Flight flight, Supplier<SQLResponse> query) {
+        SQLResponse response;
+        try {
+            response = query.get();
+        } catch (RuntimeException | Error e) {
+            flights.remove(key, flight);
+            flight.response.completeExceptionally(e);
+            throw e;
+        }
+        // no follower joins after the removal
+        flights.remove(key, flight);
+        if (flight.followers > 0) {
+            // the rows are read once and shared, the copy keeps the followers away from the changes of the leader
+            response.readAllRows();
+            flight.response.complete(copyOf(response));
+        }
+        return response;
+    }
+
+    /**
+     * The leader shares its response only if any follower is still waiting.
+     */
+    private void leave(Object key, Flight flight) {
+        flights.computeIfPresent(key, (k, running) -> {
+            if (running == flight) {
+                running.followers--;
+            }
+            return running;
+        });
+    }
+
+    private static SQLResponse follow(Flight flight, long timeoutMs) throws InterruptedException, TimeoutException {
+        try {
+            return flight.response.get(Math.max(timeoutMs, 0), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("The query followed failed", e.getCause());
+        }
+    }
+
+    private static SQLResponse copyOf(SQLResponse response) {
+        SQLResponse copy = new SQLResponse();
+        BeanUtils.copyProperties(response, copy);
+        return copy;
+    }
+
+    @VisibleForTesting
+    boolean isRunning(Object key) {
+        return flights.containsKey(key);
+    }
+
+    @VisibleForTesting
+    int getFollowers(Object key) {
+        Flight flight = flights.get(key);
+        return flight == null ? 0 : flight.followers;
+    }
+
+    private static class Flight {
+        private final CompletableFuture<SQLResponse> response = new CompletableFuture<>();
+        // updated and read in the atomic compute and remove of the flights
+        private int followers;
+    }
+}
@@ -38,95 +38,66 @@ package org.apache.kylin.rest.util;
 
 import static org.apache.kylin.common.exception.ServerErrorCode.PERMISSION_DENIED;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.exception.KylinException;
 import org.apache.kylin.common.msg.Message;
 import org.apache.kylin.common.msg.MsgPicker;
-import org.apache.kylin.metadata.project.ProjectInstance;
 import org.apache.kylin.metadata.project.NProjectManager;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
+import org.apache.kylin.metadata.project.ProjectInstance;
 
 public class QueryRequestLimits implements AutoCloseable {
-    private static final Logger logger = LoggerFactory.getLogger(QueryRequestLimits.class);
-
-    private static LoadingCache<String, AtomicInteger> runningStats = CacheBuilder.newBuilder()
-            .removalListener(new RemovalListener<String, AtomicInteger>() {
-                @Override
-                public void onRemoval(RemovalNotification<String, AtomicInteger> notification) {
-                    logger.info("Current running query number " + notification.getValue().get() + " for project "
-                            + notification.getKey() + " is removed due to " + notification.getCause());
-                }
-            }).expireAfterWrite(1, TimeUnit.DAYS).build(new CacheLoader<String, AtomicInteger>() {
-                @Override
-                public AtomicInteger load(String s) throws Exception {
-                    return new AtomicInteger(0);
-                }
-            });
+
+    private static final QueryAdmissionController admissionController = new QueryAdmissionController();
 
     static boolean openQueryRequest(String project, int maxConcurrentQuery) {
         if (maxConcurrentQuery == 0) {
             return true;
         }
-        try {
-            AtomicInteger nRunningQueries = runningStats.get(project);
-            for (;;) {
-                int nRunning = nRunningQueries.get();
-                if (nRunning < maxConcurrentQuery) {
-                    if (nRunningQueries.compareAndSet(nRunning, nRunning + 1)) {
-                        return true;
-                    }
-                } else {
-                    return false;
-                }
-            }
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e);
-        }
+        return admissionController.acquire(project, maxConcurrentQuery, 0, 1, false, 0, 0);
     }
 
     static void closeQueryRequest(String project, int maxConcurrentQuery) {
         if (maxConcurrentQuery == 0) {
             return;
         }
-        AtomicInteger nRunningQueries = runningStats.getIfPresent(project);
-        if (nRunningQueries != null) {
-            nRunningQueries.decrementAndGet();
-        }
+        admissionController.release(project);
     }
 
     public static Integer getCurrentRunningQuery(String project) {
-        AtomicInteger nRunningQueries = runningStats.getIfPresent(project);
-        if (nRunningQueries != null) {
-            return nRunningQueries.get();
-        } else {
-            return null;
-        }
+        return admissionController.getRunning(project);
+    }
+
+    public static int getCurrentWaitingQuery(String project) {
+        return admissionController.getWaiting(project);
     }
 
     // ============================================================================
 
     final private String project;
-    final private int maxConcurrentQuery;
-
-    public QueryRequestLimits(String project) {
+    final private boolean limited;
+
+    /**
+     * @param highPriority whether the query is of a VIP user, it must be known before the query is admitted. Big
+     *                     queries are not a class here, a query is known to be big only after it is planned, and
+     *                     Sparder runs them in their own scheduler pool.
+     */
+    public QueryRequestLimits(String project, boolean highPriority) {
         this.project = project;
 
-        NProjectManager mgr = NProjectManager.getInstance(KylinConfig.getInstanceFromEnv());
+        KylinConfig systemConfig = KylinConfig.getInstanceFromEnv();
+        NProjectManager mgr = NProjectManager.getInstance(systemConfig);
         ProjectInstance prj = mgr.getProject(project);
-        this.maxConcurrentQuery = prj.getConfig().getQueryConcurrentRunningThresholdForProject();
+        KylinConfig config = prj.getConfig();
+        int maxConcurrentQuery = config.getQueryConcurrentRunningThresholdForProject();
+        int globalMaxConcurrentQuery = systemConfig.getQueryConcurrentRunningThreshold();
+        this.limited = maxConcurrentQuery > 0 || globalMaxConcurrentQuery > 0;
+        if (!limited) {
+            return;
+        }
 
-        boolean ok = openQueryRequest(project, maxConcurrentQuery);
+        boolean ok = admissionController.acquire(project, maxConcurrentQuery, globalMaxConcurrentQuery,
+                config.getQueryAdmissionProjectWeight(), highPriority, config.getQueryAdmissionQueueSize(),
+                config.getQueryAdmissionWaitTimeoutMs());
         checkRequest(ok);
     }
 
@@ -139,6 +110,8 @@ public class QueryRequestLimits implements AutoCloseable {
 
     @Override
     public void close() {
-        closeQueryRequest(project, maxConcurrentQuery);
+        if (limited) {
+            admissionController.release(project);
+        }
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.response;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.kylin.metadata.querymeta.SelectedColumnMeta;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class CompactSQLResponseTest {
+
+    private static SQLResponse response(int rowCount) {
+        List<List<String>> rows = Lists.newArrayList();
+        for (int i = 0; i < rowCount; i++) {
+            // a repeated column, a distinct column, and a column with nulls
+            rows.add(Arrays.asList("CN", String.valueOf(i), i % 3 == 0 ? null : "会员"));
+        }
+        List<SelectedColumnMeta> columnMetas = Lists.newArrayList();
+        for (String name : new String[] { "COUNTRY", "ID", "LEVEL" }) {
+            columnMetas.add(new SelectedColumnMeta(false, false, false, false, 1, false, 10, name, name, null,
+                    null, null, 10, 0, 12, "VARCHAR", false, false, false));
+        }
+        SQLResponse response = new SQLResponse(columnMetas, rows, 0, false, null);
+        response.setDuration(1000);
+        response.setSignature("ADMIN,model1");
+        return response;
+    }
+
+    @Test
+    public void testEncodeAndDecode() {
+        for (String codec : new String[] { CompactSQLResponse.LZ4, CompactSQLResponse.ZSTD }) {
+            SQLResponse response = response(1000);
+            CompactSQLResponse compact = CompactSQLResponse.encode(response, codec);
+            // the cached form survives the serialization of redis
+            SQLResponse decoded = SerializationUtils.clone(compact).decode();
+
+            Assert.assertEquals(Lists.newArrayList(response.getResults()), Lists.newArrayList(decoded.getResults()));
+            Assert.assertNull(decoded.getResults().iterator().next().get(2));
+            Assert.assertEquals(1000, decoded.getResultRowCount());
+            Assert.assertEquals(1000, decoded.getDuration());
+            Assert.assertEquals("ADMIN,model1", decoded.getSignature());
+            Assert.assertEquals(3, decoded.getColumnMetas().size());
+            Assert.assertTrue(compact.getCompressedSize() < 1000 * 3 * 2);
+            // the response encoded is not changed
+            Assert.assertNotNull(response.getResults());
+        }
+    }
+
+    @Test
+    public void testDecodeNewResponse() {
+        CompactSQLResponse compact = CompactSQLResponse.encode(response(10), CompactSQLResponse.LZ4);
+        SQLResponse first = compact.decode();
+        first.setStorageCacheUsed(true);
+        SQLResponse second = compact.decode();
+        Assert.assertNotSame(first, second);
+        Assert.assertFalse(second.isStorageCacheUsed());
+        Assert.assertEquals(10, ((List<?>) second.getResults()).size());
+    }
+
+    @Test
+    public void testEmptyResult() {
+        SQLResponse response = new SQLResponse(Lists.newArrayList(), Lists.newArrayList(), 0, false, null);
+        SQLResponse decoded = CompactSQLResponse.encode(response, CompactSQLResponse.ZSTD).decode();
+        Assert.assertFalse(decoded.getResults().iterator().hasNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedCodec() {
+        CompactSQLResponse.encode(response(10), "snappy");
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.util.NLocalFileMetadataTestCase;
+import org.apache.kylin.metadata.project.NProjectManager;
+import org.apache.kylin.rest.request.SQLRequest;
+import org.apache.kylin.rest.response.SQLResponse;
+import org.apache.kylin.rest.util.QueryRequestLimits;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+
+public class QueryServiceAdmissionTest extends NLocalFileMetadataTestCase {
+    private static final String PROJECT = "default";
+    private static final String VIP_ROLE = "ROLE_VIP";
+    private static final long WAIT_MS = 10_000;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> admitted = new CopyOnWriteArrayList<>();
+    private final Map<String, Boolean> highPriority = new ConcurrentHashMap<>();
+    private QueryService queryService;
+
+    @Before
+    public void setUp() throws Exception {
+        createTestMetadata();
+        overwriteSystemProp("kylin.query.project-concurrent-running-threshold", "1");
+        overwriteSystemProp("kylin.query.admission.wait-timeout", "10s");
+        overwriteSystemProp("kylin.query.vip-role", VIP_ROLE);
+        queryService = Mockito.spy(new QueryService());
+        Mockito.doAnswer(invocation -> {
+            SQLRequest request = invocation.getArgument(0);
+            admitted.add(request.getStopId());
+            if ("first".equals(request.getStopId())) {
+                release.await(WAIT_MS, TimeUnit.MILLISECONDS);
+            }
+            return new SQLResponse(Collections.emptyList(), Collections.emptyList(), 0, false, null);
+        }).when(queryService).queryAndUpdateCache(Mockito.any(), Mockito.any());
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        cleanupTestMetadata();
+    }
+
+    private Thread startQuery(String stopId, String... authorities) {
+        Thread thread = new Thread(() -> {
+            QueryContext.reset();
+            List<SimpleGrantedAuthority> grantedAuthorities = Lists.newArrayList();
+            for (String authority : authorities) {
+                grantedAuthorities.add(new SimpleGrantedAuthority(authority));
+            }
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken(stopId, stopId, grantedAuthorities));
+            SQLRequest request = new SQLRequest();
+            request.setProject(PROJECT);
+            request.setSql("select count(*) from TEST_KYLIN_FACT");
+            request.setStopId(stopId);
+            ReflectionTestUtils.invokeMethod(queryService, "queryWithLimits", request,
+                    NProjectManager.getInstance(getTestConfig()).getProject(PROJECT).getConfig());
+            highPriority.put(stopId, QueryContext.current().getQueryTagInfo().isHighPriorityQuery());
+        });
+        thread.start();
+        return thread;
+    }
+
+    private void awaitWaiting(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (QueryRequestLimits.getCurrentWaitingQuery(PROJECT) != expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(expected, QueryRequestLimits.getCurrentWaitingQuery(PROJECT));
+    }
+
+    @Test
+    public void testVipQueryAdmittedAhead() throws Exception {
+        Thread first = startQuery("first");
+        Mockito.verify(queryService, Mockito.timeout(WAIT_MS)).queryAndUpdateCache(Mockito.any(), Mockito.any());
+        // the only slot of the project is taken, the others wait
+        Thread normal = startQuery("normal");
+        awaitWaiting(1);
+        Thread vip = startQuery("vip", VIP_ROLE);
+        awaitWaiting(2);
+
+        release.countDown();
+        for (Thread thread : new Thread[] { first, normal, vip }) {
+            thread.join(WAIT_MS);
+        }
+        Assert.assertEquals(Lists.newArrayList("first", "vip", "normal"), admitted);
+        Assert.assertTrue(highPriority.get("vip"));
+        Assert.assertFalse(highPriority.get("normal"));
+        Assert.assertEquals(0, (int) QueryRequestLimits.getCurrentRunningQuery(PROJECT));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.util.NLocalFileMetadataTestCase;
+import org.apache.kylin.metadata.project.NProjectManager;
+import org.apache.kylin.query.SlowQueryDetector;
+import org.apache.kylin.rest.request.SQLRequest;
+import org.apache.kylin.rest.response.SQLResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+
+public class QueryServiceCoalescingTest extends NLocalFileMetadataTestCase {
+    private static final String PROJECT = "default";
+    private static final String SQL = "select count(*) from TEST_KYLIN_FACT";
+    private static final long WAIT_MS = 10_000;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Map<String, SQLResponse> responses = new ConcurrentHashMap<>();
+    private final Map<String, QueryContext> contexts = new ConcurrentHashMap<>();
+    private QueryService queryService;
+    private KylinConfig projectConfig;
+
+    @Before
+    public void setUp() throws Exception {
+        createTestMetadata();
+        projectConfig = NProjectManager.getInstance(getTestConfig()).getProject(PROJECT).getConfig();
+        queryService = Mockito.spy(new QueryService());
+        Mockito.doReturn("acl").when(queryService).createAclSignature(PROJECT);
+        Mockito.doAnswer(invocation -> {
+            release.await(WAIT_MS, TimeUnit.MILLISECONDS);
+            SQLResponse response = new SQLResponse(Collections.emptyList(),
+                    Collections.singletonList(Collections.singletonList("100")), 0, false, null);
+            response.setScanRows(Lists.newArrayList(100L));
+            response.setScanBytes(Lists.newArrayList(1024L));
+            return response;
+        }).when(queryService).queryAndUpdateCache(Mockito.any(), Mockito.any());
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        cleanupTestMetadata();
+    }
+
+    private SQLRequest request(String stopId) {
+        SQLRequest request = new SQLRequest();
+        request.setProject(PROJECT);
+        request.setSql(SQL);
+        request.setStopId(stopId);
+        return request;
+    }
+
+    private Thread startQuery(String stopId) {
+        Thread thread = new Thread(() -> {
+            QueryContext.reset();
+            SQLResponse response = ReflectionTestUtils.invokeMethod(queryService, "coalesceQuery", request(stopId),
+                    projectConfig);
+            contexts.put(stopId, QueryContext.current());
+            responses.put(stopId, response);
+        });
+        thread.start();
+        return thread;
+    }
+
+    private Thread startLeaderAndFollower() throws Exception {
+        Thread leader = startQuery("leader");
+        Mockito.verify(queryService, Mockito.timeout(WAIT_MS)).queryAndUpdateCache(Mockito.any(), Mockito.any());
+        startQuery("follower");
+        awaitFollowers(1);
+        return leader;
+    }
+
+    private void awaitFollowers(int expected) throws InterruptedException {
+        Object coalescer = ReflectionTestUtils.getField(queryService, "queryCoalescer");
+        List<Object> key = Lists.newArrayList(request("").getCacheKey(), "acl");
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while ((int) ReflectionTestUtils.invokeMethod(coalescer, "getFollowers", key) != expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(expected, (int) ReflectionTestUtils.invokeMethod(coalescer, "getFollowers", key));
+    }
+
+    private Thread threadOf(String stopId) {
+        return SlowQueryDetector.getRunningQueries().values().stream()
+                .filter(entry -> stopId.equals(entry.getStopId())).findFirst()
+                .map(SlowQueryDetector.QueryEntry::getThread).orElse(null);
+    }
+
+    private void awaitResponse(String stopId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!responses.containsKey(stopId) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertTrue(responses.containsKey(stopId));
+    }
+
+    @Test
+    public void testFollowerSharesResponseWithoutScan() throws Exception {
+        Thread leader = startLeaderAndFollower();
+        release.countDown();
+        leader.join(WAIT_MS);
+        awaitResponse("leader");
+        awaitResponse("follower");
+
+        Mockito.verify(queryService, Mockito.times(1)).queryAndUpdateCache(Mockito.any(), Mockito.any());
+        Assert.assertEquals("100", responses.get("follower").getResults().iterator().next().get(0));
+        Assert.assertEquals(100L, responses.get("leader").getTotalScanRows());
+        // the scan is recorded by the leader only
+        Assert.assertEquals(0L, responses.get("follower").getTotalScanRows());
+        Assert.assertEquals(0L, contexts.get("follower").getMetrics().getTotalScanRows());
+        Assert.assertEquals(0L, contexts.get("follower").getMetrics().getTotalScanBytes());
+        Assert.assertTrue(contexts.get("follower").getQueryTagInfo().isCoalesced());
+        Assert.assertFalse(contexts.get("leader").getQueryTagInfo().isCoalesced());
+    }
+
+    @Test
+    public void testFollowerStoppedByUser() throws Exception {
+        Thread leader = startLeaderAndFollower();
+        queryService.stopQuery("follower");
+        awaitResponse("follower");
+
+        SQLResponse response = responses.get("follower");
+        Assert.assertTrue(response.isException());
+        Assert.assertTrue(response.isStopByUser());
+        Assert.assertFalse(response.isTimeout());
+        // the leader keeps running for no follower
+        awaitFollowers(0);
+        Assert.assertTrue(leader.isAlive());
+
+        release.countDown();
+        leader.join(WAIT_MS);
+        awaitResponse("leader");
+        Assert.assertFalse(responses.get("leader").isException());
+    }
+
+    @Test
+    public void testFollowerTimeout() throws Exception {
+        Thread leader = startLeaderAndFollower();
+        // the slow query detector interrupts a query timed out
+        threadOf("follower").interrupt();
+        awaitResponse("follower");
+
+        SQLResponse response = responses.get("follower");
+        Assert.assertTrue(response.isException());
+        Assert.assertTrue(response.isTimeout());
+        Assert.assertFalse(response.isStopByUser());
+        Assert.assertTrue(response.getExceptionMessage().contains("Waiting for the same query running"));
+        awaitFollowers(0);
+        Assert.assertTrue(leader.isAlive());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.service.task;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.apache.kylin.metadata.query.QueryHistory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class QueryHistoryReadBufferTest {
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    // the ids of the committed query histories, 1 to 100
+    private final TreeSet<Long> committed = LongStream.rangeClosed(1, 100).boxed()
+            .collect(Collectors.toCollection(TreeSet::new));
+
+    private final QueryHistoryReadBuffer.BatchReader reader = new QueryHistoryReadBuffer.BatchReader() {
+        @Override
+        public List<QueryHistory> read(long idOffset, int batchSize) {
+            reads.incrementAndGet();
+            List<QueryHistory> histories = Lists.newArrayList();
+            for (long id : committed.tailSet(idOffset, false)) {
+                if (histories.size() >= batchSize) {
+                    break;
+                }
+                QueryHistory history = new QueryHistory();
+                history.setId(id);
+                histories.add(history);
+            }
+            return histories;
+        }
+
+        @Override
+        public long count(long idOffset, long maxId) {
+            return committed.subSet(idOffset, false, maxId, true).size();
+        }
+    };
+
+    @Test
+    public void testBatchReadOnce() {
+        QueryHistoryReadBuffer buffer = new QueryHistoryReadBuffer(1000);
+        List<QueryHistory> first = buffer.read(0, 30, reader);
+        Assert.assertEquals(30, first.size());
+        Assert.assertEquals(1, reads.get());
+
+        // the other task reads the same batch in smaller batches
+        Assert.assertEquals(10, buffer.read(0, 10, reader).get(9).getId());
+        Assert.assertEquals(20, buffer.read(10, 10, reader).get(9).getId());
+        Assert.assertEquals(1, reads.get());
+
+        // only the missing part is read from the database
+        List<QueryHistory> second = buffer.read(20, 20, reader);
+        Assert.assertEquals(20, second.size());
+        Assert.assertEquals(40, second.get(19).getId());
+        Assert.assertEquals(2, reads.get());
+
+        buffer.release(20);
+        Assert.assertEquals(20, buffer.size());
+    }
+
+    @Test
+    public void testCapacityAndReset() {
+        QueryHistoryReadBuffer buffer = new QueryHistoryReadBuffer(10);
+        Assert.assertEquals(30, buffer.read(0, 30, reader).size());
+        Assert.assertEquals(10, buffer.size());
+
+        // the evicted query histories are read again
+        Assert.assertEquals(1, buffer.read(0, 10, reader).get(0).getId());
+        Assert.assertEquals(2, reads.get());
+
+        // offsets reset beyond the buffer
+        Assert.assertEquals(91, buffer.read(90, 10, reader).get(0).getId());
+        Assert.assertEquals(3, reads.get());
+        Assert.assertTrue(buffer.read(100, 10, reader).isEmpty());
+
+        QueryHistoryReadBuffer disabled = new QueryHistoryReadBuffer(0);
+        disabled.read(0, 10, reader);
+        disabled.read(0, 10, reader);
+        Assert.assertEquals(0, disabled.size());
+        Assert.assertEquals(6, reads.get());
+    }
+
+    @Test
+    public void testReadLateCommittedHistories() {
+        // the query history 5 is committed after the ones with greater ids
+        committed.remove(5L);
+        QueryHistoryReadBuffer buffer = new QueryHistoryReadBuffer(1000);
+        List<QueryHistory> leading = buffer.read(0, 10, reader);
+        Assert.assertEquals(11, leading.get(9).getId());
+        committed.add(5L);
+
+        // the lagging task reads it from the database instead of skipping it
+        List<QueryHistory> lagging = buffer.read(0, 10, reader);
+        Assert.assertEquals(2, reads.get());
+        Assert.assertEquals(Lists.newArrayList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L),
+                lagging.stream().map(QueryHistory::getId).collect(Collectors.toList()));
+
+        // the batches complete in the database are still served by the buffer
+        Assert.assertEquals(20, buffer.read(10, 10, reader).get(9).getId());
+        Assert.assertEquals(3, reads.get());
+        Assert.assertEquals(20, buffer.read(10, 10, reader).get(9).getId());
+        Assert.assertEquals(3, reads.get());
+    }
+}
@@ -18,10 +18,14 @@
 
 package org.apache.kylin.rest.service.task;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.metrics.MetricsCategory;
+import org.apache.kylin.common.metrics.MetricsGroup;
+import org.apache.kylin.common.metrics.MetricsName;
 import org.apache.kylin.common.util.TimeUtil;
 import org.apache.kylin.rest.service.IUserGroupService;
 import org.apache.kylin.rest.util.SpringContext;
@@ -56,6 +60,7 @@ import org.springframework.security.acls.domain.PermissionFactory;
 import org.springframework.security.acls.model.PermissionGrantingStrategy;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.codahale.metrics.Gauge;
 import com.google.common.collect.Lists;
 
 @RunWith(PowerMockRunner.class)
@@ -289,6 +294,44 @@ public class QueryHistoryTaskSchedulerTest extends NLocalFileMetadataTestCase {
         Assert.assertEquals(16, idOffsetManager.get().getStatMetaUpdateOffset());
     }
 
+    @Test
+    public void testLagCountsQueryHistoriesOfProject() {
+        qhAccelerateScheduler.queryHistoryDAO = Mockito.mock(RDBMSQueryHistoryDAO.class);
+        Mockito.when(qhAccelerateScheduler.queryHistoryDAO.queryQueryHistoriesByIdOffset(Mockito.anyLong(),
+                Mockito.anyInt(), Mockito.anyString())).thenReturn(queryHistories());
+        // the ids are shared with the query histories of other projects
+        Mockito.when(qhAccelerateScheduler.queryHistoryDAO.getQueryHistoryMaxId(PROJECT)).thenReturn(1000L);
+        Mockito.when(qhAccelerateScheduler.queryHistoryDAO.getQueryHistoryCountBeyondOffset(8L, PROJECT))
+                .thenReturn(3L);
+
+        QueryHistoryTaskScheduler.QueryHistoryMetaUpdateRunner runner = //
+                qhAccelerateScheduler.new QueryHistoryMetaUpdateRunner();
+        // stops at the max size before catching up
+        runner.batchHandle(8, 8, histories -> {
+        });
+        Assert.assertEquals(3L, runner.getLag());
+    }
+
+    @Test
+    public void testLagGaugesRemovedByShutdown() {
+        QueryHistoryTaskScheduler scheduler = QueryHistoryTaskScheduler.getInstance(PROJECT);
+        QueryHistoryTaskScheduler.registerLagGauges(PROJECT);
+        Gauge<Long> lag = MetricsGroup.getGauge(MetricsName.QUERY_HISTORY_ACCELERATE_LAG, MetricsCategory.PROJECT,
+                PROJECT, Collections.emptyMap());
+        Assert.assertNotNull(lag);
+        Assert.assertEquals(0L, (long) lag.getValue());
+
+        QueryHistoryTaskScheduler.shutdownByProject(PROJECT);
+        Assert.assertNull(MetricsGroup.getGauge(MetricsName.QUERY_HISTORY_ACCELERATE_LAG, MetricsCategory.PROJECT,
+                PROJECT, Collections.emptyMap()));
+        Assert.assertNull(MetricsGroup.getGauge(MetricsName.QUERY_HISTORY_STAT_UPDATE_LAG, MetricsCategory.PROJECT,
+                PROJECT, Collections.emptyMap()));
+        // a gauge registered before the scheduler is gone reports no lag
+        Assert.assertNotSame(scheduler, QueryHistoryTaskScheduler.getInstance(PROJECT));
+        QueryHistoryTaskScheduler.shutdownByProject(PROJECT);
+        Assert.assertEquals(0L, (long) lag.getValue());
+    }
+
     private List<QueryHistory> queryHistories() {
         QueryHistory queryHistory1 = new QueryHistory();
         queryHistory1.setSqlPattern("select * from sql1");
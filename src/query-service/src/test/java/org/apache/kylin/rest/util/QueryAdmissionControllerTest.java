@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class QueryAdmissionControllerTest {
+
+    private static final long WAIT_MS = 10_000;
+
+    @Test
+    public void testRejectWithoutQueue() {
+        QueryAdmissionController controller = new QueryAdmissionController();
+        Assert.assertTrue(controller.acquire("p1", 1, 0, 1, false, 0, 0));
+        Assert.assertFalse(controller.acquire("p1", 1, 0, 1, false, 0, 0));
+        Assert.assertTrue(controller.acquire("p2", 1, 0, 1, false, 0, 0));
+        Assert.assertEquals(1, controller.getRunning("p1").intValue());
+        controller.release("p1");
+        Assert.assertEquals(0, controller.getRunning("p1").intValue());
+        Assert.assertNull(controller.getRunning("p3"));
+    }
+
+    @Test
+    public void testWaitTimeout() {
+        QueryAdmissionController controller = new QueryAdmissionController();
+        Assert.assertTrue(controller.acquire("p1", 1, 0, 1, false, 10, 0));
+        long start = System.currentTimeMillis();
+        Assert.assertFalse(controller.acquire("p1", 1, 0, 1, false, 10, 50));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 50);
+        Assert.assertEquals(0, controller.getWaiting("p1"));
+        Assert.assertEquals(1, controller.getRunning("p1").intValue());
+    }
+
+    @Test
+    public void testQueuedQueryAdmittedOnRelease() throws Exception {
+        QueryAdmissionController controller = new QueryAdmissionController();
+        Assert.assertTrue(controller.acquire("p1", 1, 0, 1, false, 10, 0));
+        List<String> admitted = new CopyOnWriteArrayList<>();
+        Thread waiting = startWaiting(controller, "p1", 1, 0, 1, false, "q2", admitted);
+        awaitWaiting(controller, "p1", 1);
+        // the queue is full
+        Assert.assertFalse(controller.acquire("p1", 1, 0, 1, false, 1, WAIT_MS));
+
+        controller.release("p1");
+        waiting.join(WAIT_MS);
+        Assert.assertEquals(1, admitted.size());
+        Assert.assertEquals(1, controller.getRunning("p1").intValue());
+    }
+
+    @Test
+    public void testHighPriorityFirst() throws Exception {
+        QueryAdmissionController controller = new QueryAdmissionController();
+        Assert.assertTrue(controller.acquire("p1", 1, 0, 1, false, 10, 0));
+        List<String> admitted = new CopyOnWriteArrayList<>();
+        Thread normal = startWaiting(controller, "p1", 1, 0, 1, false, "normal", admitted);
+        awaitWaiting(controller, "p1", 1);
+        Thread vip = startWaiting(controller, "p1", 1, 0, 1, true, "vip", admitted);
+        awaitWaiting(controller, "p1", 2);
+
+        controller.release("p1");
+        vip.join(WAIT_MS);
+        Assert.assertEquals("vip", admitted.get(0));
+        controller.release("p1");
+        normal.join(WAIT_MS);
+        Assert.assertEquals("normal", admitted.get(1));
+    }
+
+    @Test
+    public void testWeightedFairShare() throws Exception {
+        QueryAdmissionController controller = new QueryAdmissionController();
+        // p1 and p2 hold all the 4 global slots, p2 has twice the weight of p3
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(controller.acquire("p1", 0, 4, 1, false, 10, 0));
+        }
+        Assert.assertTrue(controller.acquire("p2", 0, 4, 2, false, 10, 0));
+        List<String> admitted = new CopyOnWriteArrayList<>();
+        Thread p2 = startWaiting(controller, "p2", 0, 4, 2, false, "p2", admitted);
+        awaitWaiting(controller, "p2", 1);
+        Thread p3 = startWaiting(controller, "p3", 0, 4, 1, false, "p3", admitted);
+        awaitWaiting(controller, "p3", 1);
+
+        // p2 runs 1 query with weight 2, p3 runs none
+        controller.release("p1");
+        p3.join(WAIT_MS);
+        Assert.assertEquals("p3", admitted.get(0));
+        controller.release("p1");
+        p2.join(WAIT_MS);
+        Assert.assertEquals("p2", admitted.get(1));
+    }
+
+    private static Thread startWaiting(QueryAdmissionController controller, String project, int projectLimit,
+            int globalLimit, int weight, boolean highPriority, String name, List<String> admitted) {
+        CountDownLatch started = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            started.countDown();
+            if (controller.acquire(project, projectLimit, globalLimit, weight, highPriority, 10, WAIT_MS)) {
+                admitted.add(name);
+            }
+        });
+        thread.start();
+        try {
+            started.await(WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return thread;
+    }
+
+    private static void awaitWaiting(QueryAdmissionController controller, String project, int expected)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (controller.getWaiting(project) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(expected, controller.getWaiting(project));
+    }
+}
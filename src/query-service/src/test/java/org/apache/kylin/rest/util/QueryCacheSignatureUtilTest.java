@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import org.apache.kylin.common.util.NLocalFileMetadataTestCase;
+import org.apache.kylin.engine.spark.source.NSparkTableMetaExplorer;
+import org.apache.kylin.metadata.model.ISourceAware;
+import org.apache.kylin.metadata.model.NTableMetadataManager;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.apache.kylin.rest.response.SQLResponse;
+import org.apache.kylin.rest.service.CacheSignatureQuerySupporter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ SpringContext.class })
+@PowerMockIgnore({ "javax.management.*", "javax.script.*" })
+public class QueryCacheSignatureUtilTest extends NLocalFileMetadataTestCase {
+    private static final String PROJECT = "default";
+    private static final String SQL = "select * from DEFAULT.TEST_KYLIN_FACT f "
+            + "join DEFAULT.TEST_ORDER o on f.ORDER_ID = o.ORDER_ID "
+            + "where f.LSTG_SITE_ID in (select SITE_ID from EDW.TEST_SITES)";
+
+    private final CacheSignatureQuerySupporter queryService = Mockito.mock(CacheSignatureQuerySupporter.class);
+    private final NSparkTableMetaExplorer explorer = Mockito.mock(NSparkTableMetaExplorer.class);
+    private NSparkTableMetaExplorer originExplorer;
+
+    @Before
+    public void setUp() throws Exception {
+        createTestMetadata();
+        getTestConfig().setProperty("kylin.query.pushdown.cache-enabled", "true");
+        PowerMockito.mockStatic(SpringContext.class);
+        PowerMockito.when(SpringContext.getBean(CacheSignatureQuerySupporter.class)).thenReturn(queryService);
+        Mockito.when(queryService.onCreateAclSignature(PROJECT)).thenReturn("acl");
+        Mockito.when(explorer.getSourceVersion(Mockito.anyString(), Mockito.anyString())).thenReturn(1L);
+        originExplorer = (NSparkTableMetaExplorer) ReflectionTestUtils.getField(QueryCacheSignatureUtil.class,
+                "sourceMetaExplorer");
+        ReflectionTestUtils.setField(QueryCacheSignatureUtil.class, "sourceMetaExplorer", explorer);
+        QueryCacheSignatureUtil.clearSourceVersions();
+    }
+
+    @After
+    public void tearDown() {
+        ReflectionTestUtils.setField(QueryCacheSignatureUtil.class, "sourceMetaExplorer", originExplorer);
+        QueryCacheSignatureUtil.clearSourceVersions();
+        cleanupTestMetadata();
+    }
+
+    private SQLResponse pushDownResponse(String signature) {
+        SQLResponse response = new SQLResponse();
+        response.setQueryPushDown(true);
+        response.setSignature(signature);
+        return response;
+    }
+
+    @Test
+    public void testPushDownSignatureOfSourceTables() throws Exception {
+        String signature = QueryCacheSignatureUtil.createPushDownCacheSignature(SQL, PROJECT);
+        String[] parts = signature.split(",");
+        Assert.assertEquals(5, parts.length);
+        Assert.assertEquals("acl", parts[0]);
+        Assert.assertTrue(parts[1].startsWith("pushdown@"));
+        Assert.assertTrue(parts[2].startsWith("DEFAULT.TEST_KYLIN_FACT:"));
+        Assert.assertTrue(parts[3].startsWith("DEFAULT.TEST_ORDER:"));
+        Assert.assertTrue(parts[4].startsWith("EDW.TEST_SITES:"));
+        Assert.assertFalse(QueryCacheSignatureUtil.checkCacheExpired(pushDownResponse(signature), PROJECT));
+
+        // the source versions are read once in the interval
+        Mockito.verify(explorer, Mockito.times(3)).getSourceVersion(Mockito.anyString(), Mockito.anyString());
+
+        // a table not loaded, the columns and the WITH items are not source tables
+        Assert.assertEquals("", QueryCacheSignatureUtil
+                .createPushDownCacheSignature("select * from DEFAULT.TEST_KYLIN_FACT, DEFAULT.NOT_LOADED", PROJECT));
+        Assert.assertEquals(3, QueryCacheSignatureUtil.createPushDownCacheSignature(
+                "with t as (select TRANS_ID from DEFAULT.TEST_KYLIN_FACT) select TRANS_ID from t", PROJECT)
+                .split(",").length);
+    }
+
+    @Test
+    public void testPushDownCacheExpiredByTTL() {
+        String signature = QueryCacheSignatureUtil.createPushDownCacheSignature(SQL, PROJECT);
+        Assert.assertFalse(QueryCacheSignatureUtil.checkCacheExpired(pushDownResponse(signature), PROJECT));
+
+        String[] parts = signature.split(",");
+        parts[1] = "pushdown@" + (System.currentTimeMillis() - getTestConfig().getPushdownQueryCacheTTL() - 1000);
+        Assert.assertTrue(
+                QueryCacheSignatureUtil.checkCacheExpired(pushDownResponse(String.join(",", parts)), PROJECT));
+    }
+
+    @Test
+    public void testPushDownCacheExpiredByAcl() throws Exception {
+        String signature = QueryCacheSignatureUtil.createPushDownCacheSignature(SQL, PROJECT);
+        Mockito.when(queryService.onCreateAclSignature(PROJECT)).thenReturn("acl_changed");
+        Assert.assertTrue(QueryCacheSignatureUtil.checkCacheExpired(pushDownResponse(signature), PROJECT));
+    }
+
+    @Test
+    public void testPushDownCacheExpiredByTable() throws Exception {
+        String signature = QueryCacheSignatureUtil.createPushDownCacheSignature(SQL, PROJECT);
+
+        // the metadata of the table changes
+        NTableMetadataManager tableManager = NTableMetadataManager.getInstance(getTestConfig(), PROJECT);
+        TableDesc table = tableManager.copyForWrite(tableManager.getTableDesc("DEFAULT.TEST_ORDER"));
+        tableManager.updateTableDesc(table);
+        Assert.assertTrue(QueryCacheSignatureUtil.checkCacheExpired(pushDownResponse(signature), PROJECT));
+
+        // the source of the table changes, it is seen after the interval
+        signature = QueryCacheSignatureUtil.createPushDownCacheSignature(SQL, PROJECT);
+        Mockito.when(explorer.getSourceVersion("DEFAULT", "TEST_ORDER")).thenReturn(2L);
+        Assert.assertFalse(QueryCacheSignatureUtil.checkCacheExpired(pushDownResponse(signature), PROJECT));
+        getTestConfig().setProperty("kylin.query.pushdown.cache-source-version-interval", "0s");
+        Assert.assertTrue(QueryCacheSignatureUtil.checkCacheExpired(pushDownResponse(signature), PROJECT));
+    }
+
+    @Test
+    public void testPushDownCacheOfNonHiveSource() {
+        NTableMetadataManager tableManager = NTableMetadataManager.getInstance(getTestConfig(), PROJECT);
+        TableDesc table = tableManager.copyForWrite(tableManager.getTableDesc("DEFAULT.TEST_ORDER"));
+        table.setSourceType(ISourceAware.ID_JDBC);
+        tableManager.updateTableDesc(table);
+        Assert.assertEquals("", QueryCacheSignatureUtil.createPushDownCacheSignature(SQL, PROJECT));
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.kylin.rest.response.SQLResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class QueryCoalescerTest {
+
+    private static final long WAIT_MS = 10_000;
+
+    @Test
+    public void testFollowersShareResponseOfLeader() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        List<SQLResponse> responses = new CopyOnWriteArrayList<>();
+        Thread leader = startQuery(coalescer, "k1", () -> {
+            runs.incrementAndGet();
+            await(release);
+            return response("r1");
+        }, WAIT_MS, responses);
+        awaitLeading(coalescer, "k1");
+        Thread follower1 = startQuery(coalescer, "k1", () -> response("r2"), WAIT_MS, responses);
+        Thread follower2 = startQuery(coalescer, "k1", () -> response("r3"), WAIT_MS, responses);
+        awaitFollowers(coalescer, "k1", 2);
+
+        release.countDown();
+        for (Thread thread : new Thread[] { leader, follower1, follower2 }) {
+            thread.join(WAIT_MS);
+        }
+        Assert.assertEquals(1, runs.get());
+        Assert.assertEquals(3, responses.size());
+        for (SQLResponse response : responses) {
+            Assert.assertEquals("r1", response.getResults().iterator().next().get(0));
+        }
+        // each follower gets its own copy
+        Assert.assertNotSame(responses.get(1), responses.get(2));
+        Assert.assertEquals(0, coalescer.getFollowers("k1"));
+    }
+
+    @Test
+    public void testFollowerTimeoutLeavesLeaderRunning() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        CountDownLatch release = new CountDownLatch(1);
+        List<SQLResponse> responses = new CopyOnWriteArrayList<>();
+        Thread leader = startQuery(coalescer, "k1", () -> {
+            await(release);
+            return response("r1");
+        }, WAIT_MS, responses);
+        awaitLeading(coalescer, "k1");
+
+        long start = System.currentTimeMillis();
+        Assert.assertThrows(TimeoutException.class,
+                () -> coalescer.query("p1", "k1", () -> response("r2"), 50));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 50);
+        Assert.assertTrue(leader.isAlive());
+        // the follower timed out leaves the flight
+        Assert.assertEquals(0, coalescer.getFollowers("k1"));
+
+        release.countDown();
+        leader.join(WAIT_MS);
+        Assert.assertEquals(1, responses.size());
+    }
+
+    @Test
+    public void testFollowerRunsAgainWhenLeaderStoppedByUser() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        CountDownLatch release = new CountDownLatch(1);
+        List<SQLResponse> responses = new CopyOnWriteArrayList<>();
+        Thread leader = startQuery(coalescer, "k1", () -> {
+            await(release);
+            SQLResponse stopped = response("r1");
+            stopped.setStopByUser(true);
+            return stopped;
+        }, WAIT_MS, responses);
+        awaitLeading(coalescer, "k1");
+        Thread follower = startQuery(coalescer, "k1", () -> response("r2"), WAIT_MS, responses);
+        awaitFollowers(coalescer, "k1", 1);
+
+        release.countDown();
+        leader.join(WAIT_MS);
+        follower.join(WAIT_MS);
+        Assert.assertEquals(2, responses.size());
+        Assert.assertTrue(responses.stream().anyMatch(SQLResponse::isStopByUser));
+        Assert.assertTrue(responses.stream()
+                .anyMatch(response -> "r2".equals(response.getResults().iterator().next().get(0))));
+    }
+
+    @Test
+    public void testDifferentKeysNotCoalesced() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        Assert.assertEquals("r1", coalescer.query("p1", "k1", () -> response("r1"), WAIT_MS).getResults()
+                .iterator().next().get(0));
+        Assert.assertEquals("r2", coalescer.query("p1", "k2", () -> response("r2"), WAIT_MS).getResults()
+                .iterator().next().get(0));
+    }
+
+    private static SQLResponse response(String value) {
+        return new SQLResponse(Collections.emptyList(),
+                Collections.singletonList(Collections.singletonList(value)), 0, false, null);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread startQuery(QueryCoalescer coalescer, String key,
+            Supplier<SQLResponse> query, long timeoutMs, List<SQLResponse> responses) {
+        Thread thread = new Thread(() -> {
+            try {
+                responses.add(coalescer.query("p1", key, query, timeoutMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (TimeoutException e) {
+                // the response is not collected
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitLeading(QueryCoalescer coalescer, String key) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!coalescer.isRunning(key) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertTrue(coalescer.isRunning(key));
+    }
+
+    private static void awaitFollowers(QueryCoalescer coalescer, String key, int expected)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (coalescer.getFollowers(key) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(expected, coalescer.getFollowers(key));
+    }
+}
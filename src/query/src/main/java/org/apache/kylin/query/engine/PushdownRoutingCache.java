@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.query.engine;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.Singletons;
+import org.apache.kylin.common.metrics.MetricsCategory;
+import org.apache.kylin.common.metrics.MetricsGroup;
+import org.apache.kylin.common.metrics.MetricsName;
+import org.apache.kylin.query.util.QueryParams;
+import org.apache.kylin.query.util.QueryUtil;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+
+/**
+ * Remembers the query shapes which recently found no realization, so that they can be pushed down
+ * without being planned and matched against the models again.
+ *
+ * An entry is tagged with a version of the project metadata taking part in realization matching
+ * (models, index plans, dataflows with their segments and tables with their snapshots), and is
+ * ignored once the version changes. The version is a counter increased by {@link #onMetadataChanged}
+ * on every change of such metadata.
+ */
+public class PushdownRoutingCache {
+
+    private final Cache<String, Entry> cache;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final Map<String, AtomicLong> versions = Maps.newConcurrentMap();
+
+    @VisibleForTesting
+    PushdownRoutingCache(long maxSize, long ttlMs) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public static PushdownRoutingCache getInstance() {
+        return Singletons.getInstance(PushdownRoutingCache.class, clz -> {
+            KylinConfig config = KylinConfig.getInstanceFromEnv();
+            return new PushdownRoutingCache(config.getPushdownRoutingCacheSize(),
+                    config.getPushdownRoutingCacheTtlMs());
+        });
+    }
+
+    /**
+     * @return the message of the recorded "no realization found" failure, null if the query shape has to be matched
+     */
+    public String get(QueryParams queryParams) {
+        String key = fingerprint(queryParams);
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.version != metadataVersion(queryParams.getProject())) {
+            cache.invalidate(key);
+            entry = null;
+        }
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        MetricsGroup.counterInc(MetricsName.QUERY_PUSHDOWN_ROUTING_CACHE_HIT, MetricsCategory.PROJECT,
+                queryParams.getProject());
+        return entry.message;
+    }
+
+    public void put(QueryParams queryParams, String message) {
+        cache.put(fingerprint(queryParams), new Entry(metadataVersion(queryParams.getProject()), message));
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public void onMetadataChanged(String project) {
+        versions.computeIfAbsent(project, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    private long metadataVersion(String project) {
+        AtomicLong version = versions.get(project);
+        return version == null ? 0L : version.get();
+    }
+
+    @VisibleForTesting
+    static String fingerprint(QueryParams queryParams) {
+        String sql = queryParams.isPrepareStatementWithParams() && queryParams.getPrepareSql() != null
+                ? queryParams.getPrepareSql()
+                : queryParams.getSql();
+        String shape = normalize(QueryUtil.removeCommentInSql(sql));
+        return String.join("\u0001", queryParams.getProject(), String.valueOf(queryParams.isAcceptPartial()),
+                String.valueOf(queryParams.isPartialMatchIndex()), String.valueOf(queryParams.getLimit()),
+                String.valueOf(queryParams.getOffset()), shape);
+    }
+
+    /**
+     * Collapses the white spaces and upper-cases the keywords and unquoted identifiers, the string literals and
+     * quoted identifiers are kept as they are.
+     */
+    private static String normalize(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                normalized.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                }
+                normalized.append(Character.toUpperCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static class Entry {
+        private final long version;
+        private final String message;
+
+        private Entry(long version, String message) {
+            this.version = version;
+            this.message = message;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
 import org.apache.kylin.common.KapConfig;
 import org.apache.kylin.common.KylinConfig;
@@ -40,6 +41,7 @@ import org.apache.kylin.common.exception.KylinException;
 import org.apache.kylin.common.exception.NewQueryRefuseException;
 import org.apache.kylin.common.util.DBUtils;
 import org.apache.kylin.metadata.querymeta.SelectedColumnMeta;
+import org.apache.kylin.metadata.realization.NoRealizationFoundException;
 import org.apache.kylin.metadata.realization.NoStreamingRealizationFoundException;
 import org.apache.kylin.query.relnode.OLAPContext;
 import org.apache.kylin.query.util.PushDownUtil;
@@ -83,6 +85,16 @@ public class QueryRoutingEngine {
             return pushDownQuery(null, queryParams);
         }
 
+        boolean routingCacheEnabled = isPushdownRoutingCacheEnabled(queryParams, projectKylinConfig);
+        if (routingCacheEnabled) {
+            String noRealizationMessage = PushdownRoutingCache.getInstance().get(queryParams);
+            if (noRealizationMessage != null) {
+                logger.info("The query shape found no realization recently, push it down directly");
+                return pushDownQuery(new SQLException(noRealizationMessage,
+                        new NoRealizationFoundException(noRealizationMessage)), queryParams);
+            }
+        }
+
         try {
             return doTransactionEnabled(() -> {
 
@@ -129,6 +141,7 @@ public class QueryRoutingEngine {
                 throw (SQLException)cause;
             }
             if (shouldPushdown(cause, queryParams)) {
+                recordNoRealization(cause, queryParams, routingCacheEnabled);
                 return pushDownQuery((SQLException) cause, queryParams);
             } else {
                 throw e;
@@ -138,6 +151,7 @@ public class QueryRoutingEngine {
                 throw e;
             }
             if (shouldPushdown(e, queryParams)) {
+                recordNoRealization(e, queryParams, routingCacheEnabled);
                 return pushDownQuery(e, queryParams);
             } else {
                 throw e;
@@ -167,6 +181,19 @@ public class QueryRoutingEngine {
         return e instanceof SQLException && !e.getMessage().contains(SPARK_MEM_LIMIT_EXCEEDED);
     }
 
+    private boolean isPushdownRoutingCacheEnabled(QueryParams queryParams, KylinConfig projectKylinConfig) {
+        // the push-down result is masked based on the planned query, so only skip planning when nothing is masked
+        return projectKylinConfig.isPushdownRoutingCacheEnabled() && queryParams.isACLDisabledOrAdmin()
+                && !queryParams.isForcedToIndex() && !BackdoorToggles.getPrepareOnly();
+    }
+
+    private void recordNoRealization(Throwable e, QueryParams queryParams, boolean routingCacheEnabled) {
+        Throwable rootCause = ExceptionUtils.getRootCause(e);
+        if (routingCacheEnabled && rootCause instanceof NoRealizationFoundException) {
+            PushdownRoutingCache.getInstance().put(queryParams, String.valueOf(rootCause.getMessage()));
+        }
+    }
+
     private <T> T doTransactionEnabled(UnitOfWork.Callback<T> f, String project) throws Exception {
         val kylinConfig = KylinConfig.getInstanceFromEnv();
         if (kylinConfig.isTransactionEnabledInQuery()) {
@@ -22,6 +22,7 @@ import static org.apache.kylin.query.engine.QueryRoutingEngine.SPARK_JOB_FAILED;
 import static org.apache.kylin.query.engine.QueryRoutingEngine.SPARK_MEM_LIMIT_EXCEEDED;
 
 import java.sql.Date;
+import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
 
@@ -31,6 +32,7 @@ import org.apache.kylin.common.exception.KylinException;
 import org.apache.kylin.common.exception.QueryErrorCode;
 import org.apache.kylin.common.persistence.InMemResourceStore;
 import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.metadata.realization.NoRealizationFoundException;
 import org.apache.kylin.metadata.realization.NoStreamingRealizationFoundException;
 import org.apache.kylin.query.util.QueryParams;
 import org.apache.kylin.source.adhocquery.PushdownResult;
@@ -217,4 +219,70 @@ public class QueryRoutingEngineTest extends NLocalFileMetadataTestCase {
         }
     }
 
+    @Test
+    public void testPushdownRoutingCache() throws Exception {
+        final String project = "default";
+        PushdownRoutingCache routingCache = PushdownRoutingCache.getInstance();
+        routingCache.invalidateAll();
+        long hitCount = routingCache.getHitCount();
+
+        Mockito.doThrow(new SQLException("", new NoRealizationFoundException("No realization found"))).when(
+                queryRoutingEngine).execute(Mockito.anyString(), Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            pushdownCount++;
+            return PushdownResult.emptyResult();
+        }).when(queryRoutingEngine).tryPushDownSelectQuery(Mockito.any(), Mockito.any(), Mockito.anyBoolean());
+
+        queryRoutingEngine.queryWithSqlMassage(newAdminQueryParams(project, "select * from test_kylin_fact"));
+        Assert.assertEquals(1, pushdownCount);
+        Assert.assertEquals(1, routingCache.size());
+        Mockito.verify(queryRoutingEngine, Mockito.times(1)).execute(Mockito.anyString(), Mockito.any());
+
+        // the same shape is pushed down without matching the models again
+        queryRoutingEngine
+                .queryWithSqlMassage(newAdminQueryParams(project, "select *\n  from test_kylin_fact -- comment"));
+        Assert.assertEquals(2, pushdownCount);
+        Assert.assertEquals(hitCount + 1, routingCache.getHitCount());
+        Assert.assertTrue(QueryContext.current().getQueryTagInfo().isPushdown());
+        Mockito.verify(queryRoutingEngine, Mockito.times(1)).execute(Mockito.anyString(), Mockito.any());
+
+        // changing the metadata of the project invalidates the entry
+        routingCache.onMetadataChanged(project);
+        queryRoutingEngine.queryWithSqlMassage(newAdminQueryParams(project, "select * from test_kylin_fact"));
+        Assert.assertEquals(3, pushdownCount);
+        Assert.assertEquals(hitCount + 1, routingCache.getHitCount());
+        Mockito.verify(queryRoutingEngine, Mockito.times(2)).execute(Mockito.anyString(), Mockito.any());
+
+        // masking depends on the planned query, so the cache is not used for non-admin users
+        QueryParams queryParams = newAdminQueryParams(project, "select * from test_kylin_fact");
+        queryParams.setACLDisabledOrAdmin(false);
+        queryRoutingEngine.queryWithSqlMassage(queryParams);
+        Assert.assertEquals(hitCount + 1, routingCache.getHitCount());
+        Mockito.verify(queryRoutingEngine, Mockito.times(3)).execute(Mockito.anyString(), Mockito.any());
+    }
+
+    @Test
+    public void testPushdownRoutingFingerprint() {
+        String sql = "select * from test_kylin_fact where lstg_format_name = 'abc'";
+        String fingerprint = PushdownRoutingCache.fingerprint(newAdminQueryParams("default", sql));
+        Assert.assertEquals(fingerprint, PushdownRoutingCache.fingerprint(newAdminQueryParams("default",
+                "SELECT *\n  FROM TEST_KYLIN_FACT WHERE LSTG_FORMAT_NAME = 'abc' -- comment")));
+        // the string literals and quoted identifiers are case sensitive
+        Assert.assertNotEquals(fingerprint, PushdownRoutingCache.fingerprint(
+                newAdminQueryParams("default", "select * from test_kylin_fact where lstg_format_name = 'ABC'")));
+        Assert.assertNotEquals(PushdownRoutingCache.fingerprint(newAdminQueryParams("default", "select \"a\" from t")),
+                PushdownRoutingCache.fingerprint(newAdminQueryParams("default", "select \"A\" from t")));
+        Assert.assertNotEquals(fingerprint, PushdownRoutingCache.fingerprint(
+                newAdminQueryParams("default", "select * from test_kylin_fact where lstg_format_name = 'a  bc'")));
+    }
+
+    private static QueryParams newAdminQueryParams(String project, String sql) {
+        QueryParams queryParams = new QueryParams();
+        queryParams.setProject(project);
+        queryParams.setSql(sql);
+        queryParams.setKylinConfig(KylinConfig.getInstanceFromEnv());
+        queryParams.setSelect(true);
+        queryParams.setACLDisabledOrAdmin(true);
+        return queryParams;
+    }
 }
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kylin.query.routing;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rel.type.RelDataTypeSystem;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+
+import lombok.val;
+
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class SegmentIntervalIndexTest {
+
+    private static final RelDataTypeFactory TYPE_FACTORY = new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    private static final RexBuilder REX_BUILDER = new RexBuilder(TYPE_FACTORY);
+    private static final RexInputRef PARTITION_COL = REX_BUILDER
+            .makeInputRef(TYPE_FACTORY.createSqlType(SqlTypeName.BIGINT), 1);
+    private static final RexInputRef OTHER_COL = REX_BUILDER
+            .makeInputRef(TYPE_FACTORY.createSqlType(SqlTypeName.BIGINT), 2);
+
+    @Test
+    public void testSelectBatchSegments() {
+        // [0, 10), [10, 20), ... [90, 100), given in reversed order
+        List<Comparable[]> bounds = Lists.newArrayList();
+        for (int i = 9; i >= 0; i--) {
+            bounds.add(new Comparable[] { decimal(i * 10), decimal(i * 10 + 10) });
+        }
+        val index = new SegmentIntervalIndex("v1", bounds, false);
+        Assert.assertTrue(index.isValid("v1"));
+        Assert.assertFalse(index.isValid("v2"));
+
+        Assert.assertEquals(bitSet(9, 8), index.select(ranges(Range.closed(decimal(5), decimal(15)))));
+        // the end of batch segments is excluded
+        Assert.assertEquals(bitSet(8), index.select(ranges(Range.closed(decimal(10), decimal(19)))));
+        Assert.assertEquals(bitSet(9, 8), index.select(ranges(Range.lessThan(decimal(20)))));
+        Assert.assertEquals(bitSet(0, 1), index.select(ranges(Range.atLeast(decimal(80)))));
+        Assert.assertEquals(bitSet(9, 0), index.select(ranges(Range.singleton(decimal(0)), Range.singleton(decimal(95)))));
+        Assert.assertEquals(bitSet(), index.select(ranges(Range.greaterThan(decimal(100)))));
+        Assert.assertEquals(10, index.select(ranges(Range.all())).cardinality());
+    }
+
+    @Test
+    public void testSelectStreamingSegments() {
+        List<Comparable[]> bounds = Lists.newArrayList();
+        bounds.add(new Comparable[] { decimal(0), decimal(10) });
+        bounds.add(new Comparable[] { decimal(5), decimal(30) });
+        bounds.add(new Comparable[] { decimal(10), decimal(20) });
+        val index = new SegmentIntervalIndex("v1", bounds, true);
+
+        // the end of streaming segments is included, and overlapped segments are all found
+        Assert.assertEquals(bitSet(0, 1, 2), index.select(ranges(Range.singleton(decimal(10)))));
+        Assert.assertEquals(bitSet(1), index.select(ranges(Range.openClosed(decimal(20), decimal(25)))));
+    }
+
+    @Test
+    public void testExtractIntervals() {
+        val extractor = new PartitionIntervalExtractor(PARTITION_COL, SqlTypeFamily.NUMERIC, BigDecimal.class);
+
+        RexNode filter = and(call(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, PARTITION_COL, literal(10)),
+                call(SqlStdOperatorTable.LESS_THAN, PARTITION_COL, literal(20)),
+                call(SqlStdOperatorTable.EQUALS, OTHER_COL, literal(1)));
+        Assert.assertEquals(ranges(Range.closedOpen(decimal(10), decimal(20))), extractor.extract(filter));
+
+        // literal on the left side
+        filter = REX_BUILDER.makeCall(SqlStdOperatorTable.OR,
+                call(SqlStdOperatorTable.GREATER_THAN, literal(5), PARTITION_COL),
+                call(SqlStdOperatorTable.EQUALS, PARTITION_COL, literal(30)));
+        Assert.assertEquals(ranges(Range.lessThan(decimal(5)), Range.singleton(decimal(30))),
+                extractor.extract(filter));
+
+        filter = call(SqlStdOperatorTable.NOT_EQUALS, PARTITION_COL, literal(5));
+        Assert.assertEquals(ranges(Range.lessThan(decimal(5)), Range.greaterThan(decimal(5))),
+                extractor.extract(filter));
+
+        filter = and(call(SqlStdOperatorTable.GREATER_THAN, PARTITION_COL, literal(20)),
+                call(SqlStdOperatorTable.LESS_THAN, PARTITION_COL, literal(10)));
+        Assert.assertTrue(extractor.extract(filter).isEmpty());
+
+        // filters without the partition column accept any partition
+        filter = call(SqlStdOperatorTable.EQUALS, OTHER_COL, literal(1));
+        Assert.assertEquals(ranges(Range.all()), extractor.extract(filter));
+    }
+
+    @Test
+    public void testExtractUnsupportedFilter() {
+        val extractor = new PartitionIntervalExtractor(PARTITION_COL, SqlTypeFamily.NUMERIC, BigDecimal.class);
+
+        // comparing the partition column with another column
+        RexNode filter = call(SqlStdOperatorTable.EQUALS, PARTITION_COL, OTHER_COL);
+        Assert.assertNull(extractor.extract(filter));
+
+        // expressions on the partition column
+        filter = call(SqlStdOperatorTable.EQUALS,
+                REX_BUILDER.makeCall(SqlStdOperatorTable.PLUS, PARTITION_COL, literal(1)), literal(10));
+        Assert.assertNull(extractor.extract(filter));
+
+        filter = REX_BUILDER.makeCall(SqlStdOperatorTable.NOT,
+                call(SqlStdOperatorTable.EQUALS, PARTITION_COL, literal(10)));
+        Assert.assertNull(extractor.extract(filter));
+
+        // literals of other types than segment ranges
+        filter = call(SqlStdOperatorTable.EQUALS, PARTITION_COL, REX_BUILDER.makeLiteral("10"));
+        Assert.assertNull(extractor.extract(filter));
+    }
+
+    private static RexNode and(RexNode... operands) {
+        return REX_BUILDER.makeCall(SqlStdOperatorTable.AND, operands);
+    }
+
+    private static RexNode call(SqlOperator op, RexNode left, RexNode right) {
+        return REX_BUILDER.makeCall(op, left, right);
+    }
+
+    private static RexNode literal(long value) {
+        return REX_BUILDER.makeLiteral(value, TYPE_FACTORY.createSqlType(SqlTypeName.BIGINT), false);
+    }
+
+    private static BigDecimal decimal(long value) {
+        return BigDecimal.valueOf(value);
+    }
+
+    private static RangeSet<Comparable> ranges(Range... ranges) {
+        RangeSet<Comparable> rangeSet = TreeRangeSet.create();
+        for (Range range : ranges) {
+            rangeSet.add(range);
+        }
+        return ImmutableRangeSet.copyOf(rangeSet);
+    }
+
+    private static BitSet bitSet(int... bits) {
+        BitSet bitSet = new BitSet();
+        for (int bit : bits) {
+            bitSet.set(bit);
+        }
+        return bitSet;
+    }
+}
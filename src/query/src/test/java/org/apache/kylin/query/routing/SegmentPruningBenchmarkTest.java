@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.kylin.query.routing;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.plan.RelOptPredicateList;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rel.type.RelDataTypeSystem;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexSimplify;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import lombok.val;
+
+/**
+ * Compares pruning segments by RexSimplify against the interval index, over synthetic daily segments.
+ */
+@Ignore("For collecting performance statistics, not for functional test")
+@SuppressWarnings("rawtypes")
+public class SegmentPruningBenchmarkTest {
+
+    private static final RelDataTypeFactory TYPE_FACTORY = new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    private static final RexBuilder REX_BUILDER = new RexBuilder(TYPE_FACTORY);
+    private static final RexInputRef PARTITION_COL = REX_BUILDER
+            .makeInputRef(TYPE_FACTORY.createSqlType(SqlTypeName.BIGINT), 0);
+
+    @Test
+    public void benchmark() {
+        for (int segmentCount : new int[] { 1000, 5000, 20000 }) {
+            // a month in the middle of the segments
+            int from = segmentCount / 2;
+            RexNode filter = REX_BUILDER.makeCall(SqlStdOperatorTable.AND,
+                    REX_BUILDER.makeCall(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, PARTITION_COL, literal(from)),
+                    REX_BUILDER.makeCall(SqlStdOperatorTable.LESS_THAN, PARTITION_COL, literal(from + 30)));
+
+            long start = System.nanoTime();
+            int simplified = pruneBySimplify(segmentCount, filter);
+            long simplifyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<Comparable[]> bounds = Lists.newArrayListWithCapacity(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                bounds.add(new Comparable[] { BigDecimal.valueOf(i), BigDecimal.valueOf(i + 1L) });
+            }
+            val index = new SegmentIntervalIndex(segmentCount, bounds, false);
+            long buildNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            val extractor = new PartitionIntervalExtractor(PARTITION_COL, SqlTypeFamily.NUMERIC, BigDecimal.class);
+            int indexed = index.select(extractor.extract(filter)).cardinality();
+            long indexNanos = System.nanoTime() - start;
+
+            Assert.assertEquals(30, simplified);
+            Assert.assertEquals(30, indexed);
+            System.out.printf("segments %6d: simplify %8.2f ms, index build %8.2f ms, index lookup %8.3f ms%n",
+                    segmentCount, simplifyNanos / 1e6, buildNanos / 1e6, indexNanos / 1e6);
+        }
+    }
+
+    private int pruneBySimplify(int segmentCount, RexNode filter) {
+        val rexSimplify = new RexSimplify(REX_BUILDER, RelOptPredicateList.EMPTY, true, RexUtil.EXECUTOR);
+        int selected = 0;
+        for (int i = 0; i < segmentCount; i++) {
+            val startPredicate = RelOptPredicateList.of(REX_BUILDER, Lists.newArrayList(
+                    REX_BUILDER.makeCall(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, PARTITION_COL, literal(i))));
+            val simplified = rexSimplify.withPredicates(startPredicate).simplify(filter);
+            if (simplified.isAlwaysFalse()) {
+                continue;
+            }
+            val endPredicate = RelOptPredicateList.of(REX_BUILDER, Lists.newArrayList(
+                    REX_BUILDER.makeCall(SqlStdOperatorTable.LESS_THAN, PARTITION_COL, literal(i + 1L))));
+            if (!rexSimplify.withPredicates(endPredicate).simplify(simplified).isAlwaysFalse()) {
+                selected++;
+            }
+        }
+        return selected;
+    }
+
+    private static RexNode literal(long value) {
+        return REX_BUILDER.makeLiteral(value, TYPE_FACTORY.createSqlType(SqlTypeName.BIGINT), false);
+    }
+}
@@ -78,6 +78,7 @@ public class ClickHouseConfigLoader implements SecondStorageConfigLoader {
         nodeDesc.addPropertyParameters("user", String.class);
         nodeDesc.addPropertyParameters("password", String.class);
         nodeDesc.addPropertyParameters("sshPort", String.class);
+        nodeDesc.addPropertyParameters("httpPort", Integer.class);
         constructor.addTypeDescription(nodeDesc);
         return new Yaml(constructor);
     }
@@ -19,11 +19,15 @@
 package io.kyligence.kap.secondstorage;
 
 import com.google.common.collect.Sets;
+import io.kyligence.kap.secondstorage.config.Node;
 import io.kyligence.kap.secondstorage.metadata.NodeGroup;
 import io.kyligence.kap.secondstorage.metadata.TablePartition;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.QueryContext;
+import org.apache.spark.sql.execution.datasources.jdbc.ReplicaLatencyTracker$;
 
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -67,10 +71,33 @@ public class SecondStorageQueryRouteUtil {
         List<Set<String>> shards = SecondStorageNodeHelper.groupsToShards(nodeGroups);
         List<Set<String>> segmentUsedShard = getSegmentUsedShard(shards, allSegmentUsedNode);
         filterAvailableReplica(segmentUsedShard);
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        if (config.isSecondStorageQueryLatencyAwareRouteEnabled() && config.isSecondStorageQueryColumnarReadEnabled()) {
+            segmentUsedShard.replaceAll(SecondStorageQueryRouteUtil::orderByLatency);
+        }
 
         return segmentUsedShard;
     }
 
+    /**
+     * Order the replicas of a shard by their latency weighted by in-flight reads, the columnar read reads the first
+     * replica first. Only the columnar read measures the latency, and how the JDBC driver picks a host of the shard
+     * url is up to the driver, so the replicas are only ordered when the columnar read is enabled.
+     *
+     * @param replicas replicas of a shard
+     * @return ordered replicas
+     */
+    static Set<String> orderByLatency(Set<String> replicas) {
+        return replicas.stream()
+                .sorted(Comparator.comparingDouble(replica -> ReplicaLatencyTracker$.MODULE$.score(address(replica))))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static String address(String replica) {
+        Node node = SecondStorageNodeHelper.getNode(replica);
+        return node.getIp() + ":" + node.getPort();
+    }
+
     /**
      * Get segment used nodes
      *
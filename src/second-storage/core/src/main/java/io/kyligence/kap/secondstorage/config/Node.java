@@ -29,6 +29,8 @@ public class Node {
     private String password;
     @JsonProperty("sshPort")
     private int sshPort;
+    @JsonProperty("httpPort")
+    private int httpPort;
 
 
     public Node(String name, String ip, int port, String user, String password) {
@@ -50,6 +52,7 @@ public class Node {
 
     public Node(Node node) {
         this(node.name, node.ip, node.port, node.user, node.password);
+        this.httpPort = node.httpPort;
     }
 
     public Node() {
@@ -108,4 +111,17 @@ public class Node {
         this.sshPort = sshPort;
         return this;
     }
+
+    /**
+     * The port of the HTTP interface, 0 if not configured. The port of the node may be the one of the native
+     * protocol, so the HTTP port is never derived from it.
+     */
+    public int getHttpPort() {
+        return httpPort;
+    }
+
+    public Node setHttpPort(int httpPort) {
+        this.httpPort = httpPort;
+        return this;
+    }
 }
@@ -145,6 +145,14 @@ object SecondStorage extends LogEx {
     result
   }
 
+  // the nodes without an HTTP port are read through JDBC
+  private def httpPorts: String = {
+    ShardOptions.buildHttpPorts(SecondStorageNodeHelper.getALlNodes.asScala
+      .filter(_.getHttpPort > 0)
+      .map(node => s"${node.getIp}:${node.getPort}" -> node.getHttpPort)
+      .toMap)
+  }
+
   private def tryCreateDataFrame(tableData: Option[TableData], sparkSession: SparkSession,
                                  dataflow: NDataflow, allSegIds: java.util.Set[String]) = {
     try {
@@ -161,6 +169,9 @@ object SecondStorage extends LogEx {
           .option(ShardOptions.PUSHDOWN_AGGREGATE, true)
           .option(ShardOptions.PUSHDOWN_LIMIT, true)
           .option(ShardOptions.PUSHDOWN_NUM_PARTITIONS, numPartition)
+          .option(ShardOptions.COLUMNAR_READ, dataflow.getConfig.isSecondStorageQueryColumnarReadEnabled)
+          .option(ShardOptions.HEDGE_READ_PERCENTILE, dataflow.getConfig.getSecondStorageQueryHedgeReadPercentile)
+          .option(ShardOptions.HTTP_PORTS, httpPorts)
           .table(s"$catalog.$database.$table")
       }
     } catch {
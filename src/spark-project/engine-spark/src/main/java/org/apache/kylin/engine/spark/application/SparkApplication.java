@@ -66,6 +66,7 @@ import org.apache.kylin.engine.spark.job.SegmentBuildJob;
 import org.apache.kylin.engine.spark.job.SparkJobConstants;
 import org.apache.kylin.engine.spark.job.UdfManager;
 import org.apache.kylin.engine.spark.scheduler.ClusterMonitor;
+import org.apache.kylin.engine.spark.utils.BuildResourcePlanner;
 import org.apache.kylin.engine.spark.utils.JobMetricsUtils;
 import org.apache.kylin.engine.spark.utils.SparkConfHelper;
 import org.apache.kylin.metadata.cube.model.NBatchConstants;
@@ -111,6 +112,12 @@ public abstract class SparkApplication implements Application {
     protected volatile String jobId;
     protected String project;
     protected int layoutSize = -1;
+    // the run time of the build predicted by the resource planner
+    private long predictedDuration = -1;
+    // the source size of the build with unit and its resources, for the resource planner of the later builds
+    private String sourceSize;
+    private String executorInstances;
+    private String shufflePartitions;
     protected BuildJobInfos infos;
     /**
      * path for spark app args on HDFS
@@ -401,7 +408,23 @@ public abstract class SparkApplication implements Application {
         helper.setOption(SparkConfHelper.REQUIRED_CORES, calculateRequiredCores());
         helper.setConf(COUNT_DISTICT, hasCountDistinct().toString());
         helper.generateSparkConf();
+        sourceSize = helper.getOption(SparkConfHelper.SOURCE_TABLE_SIZE);
+        planBuildResource(helper, sparkConf);
         helper.applySparkConf(sparkConf);
+        executorInstances = sparkConf.get(SparkConfHelper.EXECUTOR_INSTANCES, null);
+        shufflePartitions = sparkConf.get(SparkConfHelper.SHUFFLE_PARTITIONS, null);
+    }
+
+    private void planBuildResource(SparkConfHelper helper, SparkConf userDefined) {
+        val model = getParam(NBatchConstants.P_DATAFLOW_ID);
+        if (!config.isBuildResourcePlannerEnabled() || StringUtils.isBlank(model)) {
+            return;
+        }
+        try {
+            predictedDuration = new BuildResourcePlanner(config, project, model).plan(helper, userDefined);
+        } catch (Exception e) {
+            logger.warn("Plan build resource failed, use the resource of the spark conf rules", e);
+        }
     }
 
     private void waiteForResource(SparkConf sparkConf, KylinBuildEnv buildEnv) throws Exception {
@@ -457,6 +480,10 @@ public abstract class SparkApplication implements Application {
     public void logJobInfo() {
         try {
             logger.info(generateInfo());
+            if (predictedDuration >= 0) {
+                logger.info("The build is predicted to run {} ms, actually runs {} ms", predictedDuration,
+                        KylinBuildEnv.get().buildJobInfos().buildTime());
+            }
             if (KylinConfig.getInstanceFromEnv().skipRecordJobExecutionTime()) {
                 logger.info("skip record job wait and run time");
                 return;
@@ -464,6 +491,15 @@ public abstract class SparkApplication implements Application {
             Map<String, String> extraInfo = new HashMap<>();
             extraInfo.put("yarn_job_wait_time", ((Long) KylinBuildEnv.get().buildJobInfos().waitTime()).toString());
             extraInfo.put("yarn_job_run_time", ((Long) KylinBuildEnv.get().buildJobInfos().buildTime()).toString());
+            if (StringUtils.isNotBlank(sourceSize)) {
+                extraInfo.put("source_records_size", String.valueOf(Utils.byteStringAsBytes(sourceSize)));
+            }
+            if (StringUtils.isNotBlank(executorInstances)) {
+                extraInfo.put("executor_instances", executorInstances);
+            }
+            if (StringUtils.isNotBlank(shufflePartitions)) {
+                extraInfo.put("shuffle_partitions", shufflePartitions);
+            }
 
             getReport().updateSparkJobExtraInfo(getReportParams(), "/kylin/api/jobs/wait_and_run_time", project, jobId,
                     extraInfo);
@@ -23,9 +23,12 @@ import java.util.Set;
 
 import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.HadoopUtil;
 import org.apache.kylin.job.constant.ExecutableConstants;
+import org.apache.kylin.job.dao.JobStatisticsManager;
 import org.apache.kylin.engine.spark.merger.MetadataMerger;
+import org.apache.kylin.metadata.MetadataConstants;
 import org.apache.kylin.metadata.cube.model.LayoutEntity;
 import org.apache.kylin.metadata.cube.model.NDataflow;
 import org.apache.kylin.metadata.cube.model.NDataflowManager;
@@ -57,7 +60,14 @@ public class NSparkCubingStep extends NSparkExecutable {
     @Override
     protected Set<String> getMetadataDumpList(KylinConfig config) {
         NDataflow df = NDataflowManager.getInstance(config, getProject()).getDataflow(getDataflowId());
-        return df.collectPrecalculationResource();
+        Set<String> dumpList = df.collectPrecalculationResource();
+        if (config.isBuildResourcePlannerEnabled()) {
+            // the past builds for planning the resources of this build
+            JobStatisticsManager.getInstance(config, getProject()).getAll()
+                    .forEach(stats -> dumpList.add("/" + getProject() + ResourceStore.JOB_STATISTICS + "/"
+                            + stats.resourceName() + MetadataConstants.FILE_SURFIX));
+        }
+        return dumpList;
     }
 
     @Override
@@ -24,11 +24,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.KylinConfigExt;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.JsonUtil;
 import org.apache.kylin.common.util.TimeUtil;
+import org.apache.kylin.engine.spark.job.NSparkCubingStep;
+import org.apache.kylin.job.constant.ExecutableConstants;
 import org.apache.kylin.job.dao.JobStatisticsManager;
 import org.apache.kylin.job.execution.AbstractExecutable;
 import org.apache.kylin.job.execution.JobTypeEnum;
@@ -97,6 +100,31 @@ public abstract class SparkJobMetadataMerger extends MetadataMerger {
         JobStatisticsManager jobStatisticsManager = JobStatisticsManager.getInstance(kylinConfig,
                 buildTask.getProject());
         jobStatisticsManager.updateStatistics(startOfDay, model, duration, byteSize, 0);
+        recordBuild(buildTask, startOfDay, jobStatisticsManager);
+    }
+
+    /**
+     * Records the source bytes, the spark run time and the resources of a succeeded build, which the resource planner
+     * models the cost of the later builds by. Merges are not builds.
+     */
+    private void recordBuild(AbstractExecutable buildTask, long startOfDay, JobStatisticsManager manager) {
+        if (!(buildTask instanceof NSparkCubingStep)) {
+            return;
+        }
+        Map<String, String> extra = buildTask.getOutput().getExtra();
+        String sourceBytes = extra.get(ExecutableConstants.SOURCE_RECORDS_SIZE);
+        String runTime = extra.get(ExecutableConstants.YARN_JOB_RUN_TIME);
+        String executorInstances = extra.get(ExecutableConstants.EXECUTOR_INSTANCES);
+        if (StringUtils.isBlank(sourceBytes) || StringUtils.isBlank(runTime)
+                || StringUtils.isBlank(executorInstances)) {
+            log.debug("No source size, run time or executor instances reported by {}, skip recording the build",
+                    buildTask.getId());
+            return;
+        }
+        String shufflePartitions = extra.get(ExecutableConstants.SHUFFLE_PARTITIONS);
+        manager.recordBuild(startOfDay, buildTask.getTargetSubject(), Long.parseLong(sourceBytes),
+                Long.parseLong(runTime), Integer.parseInt(executorInstances),
+                StringUtils.isBlank(shufflePartitions) ? 0 : Integer.parseInt(shufflePartitions));
     }
 
     protected void mergeSnapshotMeta(NDataflow dataflow, ResourceStore remoteResourceStore) {
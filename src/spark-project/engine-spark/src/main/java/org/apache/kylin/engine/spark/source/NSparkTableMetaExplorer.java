@@ -17,6 +17,7 @@
  */
 package org.apache.kylin.engine.spark.source;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.net.URI;
 import java.util.List;
@@ -27,10 +28,14 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.commons.jnet.Installer;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FsUrlStreamHandlerFactory;
+import org.apache.hadoop.fs.Path;
 import org.apache.spark.sql.SparderEnv;
 import org.apache.spark.sql.catalyst.TableIdentifier;
 import org.apache.spark.sql.catalyst.catalog.CatalogTable;
+import org.apache.spark.sql.catalyst.catalog.CatalogTablePartition;
 import org.apache.spark.sql.catalyst.catalog.CatalogTableType;
 import org.apache.spark.sql.catalyst.catalog.SessionCatalog;
 import org.apache.spark.sql.types.StructType;
@@ -108,6 +113,39 @@ public class NSparkTableMetaExplorer implements Serializable {
                 .filter(Objects::nonNull).collect(Collectors.toSet());
     }
 
+    /**
+     * The version of the source data of a table, which is the latest modified time of the table, its partitions,
+     * or the files under the location of a table without partitions. Changes behind a view are not seen.
+     */
+    public long getSourceVersion(String database, String tableName) throws IOException {
+        SessionCatalog catalog = SparderEnv.getSparkSession().sessionState().catalog();
+        TableIdentifier tableIdentifier = TableIdentifier.apply(tableName,
+                Option.apply(database.isEmpty() ? null : database));
+        CatalogTable tableMetadata = catalog.getTempViewOrPermanentTableMetadata(tableIdentifier);
+
+        long version = Math.max(tableMetadata.createTime(), getLastDdlTime(tableMetadata.properties()));
+        if (!tableMetadata.partitionColumnNames().isEmpty()) {
+            for (CatalogTablePartition partition : JavaConversions
+                    .seqAsJavaList(catalog.listPartitions(tableIdentifier, Option.empty()))) {
+                version = Math.max(version, getLastDdlTime(partition.parameters()));
+            }
+        } else if (tableMetadata.storage().locationUri().isDefined()) {
+            Path location = new Path(tableMetadata.storage().locationUri().get());
+            FileSystem fs = location.getFileSystem(SparderEnv.getSparkSession().sparkContext().hadoopConfiguration());
+            version = Math.max(version, fs.getFileStatus(location).getModificationTime());
+            for (FileStatus file : fs.listStatus(location)) {
+                version = Math.max(version, file.getModificationTime());
+            }
+        }
+        return version;
+    }
+
+    private long getLastDdlTime(scala.collection.Map<String, String> parameters) {
+        // in seconds
+        Option<String> lastDdlTime = parameters.get("transient_lastDdlTime");
+        return lastDdlTime.isDefined() ? Long.parseLong(lastDdlTime.get()) * 1000 : 0L;
+    }
+
     private NSparkTableMeta getSparkTableMeta(String tableName, CatalogTable tableMetadata) {
         NSparkTableMetaBuilder builder = new NSparkTableMetaBuilder();
         builder.setTableName(tableName);
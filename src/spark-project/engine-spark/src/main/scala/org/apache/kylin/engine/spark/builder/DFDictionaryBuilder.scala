@@ -23,17 +23,19 @@ import org.apache.kylin.engine.spark.job.NSparkCubingUtil
 import org.apache.kylin.engine.spark.utils.LogEx
 import org.apache.kylin.metadata.cube.model.NDataSegment
 import org.apache.kylin.metadata.model.TblColRef
-import org.apache.spark.TaskContext
 import org.apache.spark.application.NoRetryException
 import org.apache.spark.dict.NGlobalDictionaryV2
-import org.apache.spark.sql.functions.{col, expr}
+import org.apache.spark.sql.functions.{array, col, explode, expr, hash, lit, struct}
 import org.apache.spark.sql.types.StringType
 import org.apache.spark.sql.{Column, Dataset, Row, SparkSession}
+import org.apache.spark.storage.StorageLevel
+import org.apache.spark.{HashPartitioner, TaskContext}
 
 import java.io.IOException
 import java.util
 import java.util.concurrent.locks.Lock
 import scala.collection.JavaConverters._
+import scala.collection.mutable
 
 class DFDictionaryBuilder(
                            val dataset: Dataset[Row],
@@ -43,10 +45,17 @@ class DFDictionaryBuilder(
 
   @throws[IOException]
   def buildDictSet(): Unit = {
-    colRefSet.asScala.foreach(col => safeBuild(col))
+    if (seg.getConfig.isGlobalDictCombinedBuildEnabled && colRefSet.size() > 1) {
+      buildCombined(colRefSet.asScala.toSeq)
+    } else {
+      colRefSet.asScala.foreach(col => safeBuild(col))
+    }
   }
 
   private val YARN_CLUSTER: String = "cluster"
+  private val TAGGED_VALUE: String = "tagged_value"
+  private val COL_INDEX: String = "col_index"
+  private val COL_VALUE: String = "col_value"
 
   private def tryZKJaasConfiguration(): Unit = {
     val config = KylinConfig.getInstanceFromEnv
@@ -66,8 +75,7 @@ class DFDictionaryBuilder(
   private[builder] def safeBuild(ref: TblColRef): Unit = {
     val sourceColumn = ref.getIdentity
     tryZKJaasConfiguration()
-    val lock: Lock = KylinConfig.getInstanceFromEnv.getDistributedLockFactory
-      .getLockForCurrentThread(getLockPath(sourceColumn))
+    val lock: Lock = getLock(sourceColumn)
     lock.lock()
     try {
       val dictColDistinct = dataset.select(wrapCol(ref)).distinct
@@ -102,7 +110,94 @@ class DFDictionaryBuilder(
       })
 
     globalDict.writeMetaDict(bucketPartitionSize, seg.getConfig.getGlobalDictV2MaxVersions, seg.getConfig.getGlobalDictV2VersionTTL)
+    checkGlobalDict(ref, globalDict)
+  }
+
+  /**
+   * Build the dictionaries of all the columns together: the distinct values of all the columns are
+   * calculated in one scan, then shuffled together, each column to its own range of partitions, and
+   * written by one job. The columns are still locked and versioned one by one.
+   */
+  @throws[IOException]
+  private[builder] def buildCombined(cols: Seq[TblColRef]): Unit = {
+    // lock in the same order everywhere to avoid dead locks
+    val refs = cols.sortBy(_.getIdentity)
+    tryZKJaasConfiguration()
+    val locked = mutable.ArrayBuffer.empty[Lock]
+    try {
+      refs.foreach { ref =>
+        val lock = getLock(ref.getIdentity)
+        lock.lock()
+        locked += lock
+      }
+      val tagged = dataset.select(explode(array(refs.indices.map(i =>
+        struct(lit(i).as(COL_INDEX), wrapCol(refs(i)).as(COL_VALUE))): _*)).as(TAGGED_VALUE))
+        .select(col(s"$TAGGED_VALUE.$COL_INDEX"), col(s"$TAGGED_VALUE.$COL_VALUE"))
+        .filter(col(COL_VALUE).isNotNull)
+        .distinct()
+        .persist(StorageLevel.MEMORY_AND_DISK)
+      try {
+        ss.sparkContext.setJobDescription("Calculate bucket size " + refs.map(_.getIdentity).mkString(","))
+        val distinctCounts = logTime(s"counting distinct values of ${refs.size} dict columns") {
+          tagged.groupBy(COL_INDEX).count().collect().map(r => r.getInt(0) -> r.getLong(1)).toMap
+        }
+        val bucketSizes = refs.indices.map { i =>
+          logTime(s"calculating bucket size for ${refs(i).getIdentity}") {
+            DictionaryBuilderHelper.calculateBucketSize(seg, refs(i), distinctCounts.getOrElse(i, 0L), ss)
+          }
+        }.toArray
+        buildCombined(refs, bucketSizes, tagged)
+      } finally tagged.unpersist()
+    } finally locked.reverse.foreach(_.unlock())
+  }
+
+  private def buildCombined(refs: Seq[TblColRef], bucketSizes: Array[Int], tagged: Dataset[Row]): Unit = {
+    val globalDicts = refs.map { ref =>
+      val globalDict = new NGlobalDictionaryV2(seg.getProject, ref.getTable, ref.getName, seg.getConfig.getHdfsWorkingDirectory)
+      globalDict.prepareWrite()
+      globalDict
+    }
+    val broadcastDicts = ss.sparkContext.broadcast(globalDicts.toArray)
+    val writeTimes = refs.map(ref => ss.sparkContext.longAccumulator("Build dict time " + ref.getIdentity)).toArray
+    // the buckets of column i are the partitions [offsets(i), offsets(i + 1))
+    val offsets = bucketSizes.scanLeft(0)(_ + _)
+    val identities = refs.map(_.getIdentity).toArray
+
+    ss.sparkContext.setJobDescription("Build dict " + identities.mkString(","))
+    logTime(s"building global dictionaries V2 for ${identities.mkString(",")}") {
+      tagged.select(col(COL_INDEX), col(COL_VALUE), hash(col(COL_VALUE)))
+        .rdd
+        .map { r =>
+          val i = r.getInt(0)
+          // same bucket as repartition(bucketSize, column)
+          val bucket = Math.floorMod(r.getInt(2), bucketSizes(i))
+          (offsets(i) + bucket, r.getString(1))
+        }
+        .partitionBy(new HashPartitioner(offsets.last))
+        .foreachPartition { iter =>
+          val partitionID = TaskContext.get().partitionId()
+          val i = offsets.lastIndexWhere(_ <= partitionID)
+          val bucketId = partitionID - offsets(i)
+          logInfo(s"Build partition dict col: ${identities(i)}, bucketId: $bucketId")
+          val start = System.currentTimeMillis()
+          val bucketDict = broadcastDicts.value(i).loadBucketDictionary(bucketId)
+          iter.foreach(r => bucketDict.addRelativeValue(r._2))
+          bucketDict.saveBucketDict(bucketId)
+          writeTimes(i).add(System.currentTimeMillis() - start)
+        }
+    }
 
+    refs.indices.foreach { i =>
+      logInfo(s"Built ${bucketSizes(i)} bucket dicts for ${identities(i)} in ${writeTimes(i).value} ms of tasks")
+      logTime(s"committing global dictionaries V2 for ${identities(i)}") {
+        globalDicts(i).writeMetaDict(bucketSizes(i), seg.getConfig.getGlobalDictV2MaxVersions,
+          seg.getConfig.getGlobalDictV2VersionTTL)
+        checkGlobalDict(refs(i), globalDicts(i))
+      }
+    }
+  }
+
+  private def checkGlobalDict(ref: TblColRef, globalDict: NGlobalDictionaryV2): Unit = {
     if (seg.getConfig.isGlobalDictCheckEnabled) {
       logInfo(s"Start to check the correctness of the global dict, table: ${ref.getTableAlias}, col: ${ref.getName}")
       val latestGD = new NGlobalDictionaryV2(seg.getProject, ref.getTable, ref.getName, seg.getConfig.getHdfsWorkingDirectory)
@@ -120,6 +215,9 @@ class DFDictionaryBuilder(
     }
   }
 
+  private def getLock(sourceColumn: String): Lock = KylinConfig.getInstanceFromEnv.getDistributedLockFactory
+    .getLockForCurrentThread(getLockPath(sourceColumn))
+
   private def getLockPath(pathName: String) = s"/${seg.getProject}${HadoopUtil.GLOBAL_DICT_STORAGE_ROOT}/$pathName/lock"
 
   def wrapCol(ref: TblColRef): Column = {
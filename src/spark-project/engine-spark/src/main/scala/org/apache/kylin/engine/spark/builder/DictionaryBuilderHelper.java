@@ -37,6 +37,7 @@ import org.apache.spark.dict.NGlobalDictMetaInfo;
 import org.apache.spark.dict.NGlobalDictionaryV2;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +59,15 @@ public class DictionaryBuilderHelper {
      */
     public static int calculateBucketSize(NDataSegment seg, TblColRef col, Dataset<Row> afterDistinct)
             throws IOException {
+        return calculateBucketSize(seg, col, afterDistinct.count(), afterDistinct.sparkSession());
+    }
+
+    /**
+     * Same as {@link #calculateBucketSize(NDataSegment, TblColRef, Dataset)}, with the distinct count
+     * of the column already known.
+     */
+    public static int calculateBucketSize(NDataSegment seg, TblColRef col, long afterDisCount, SparkSession ss)
+            throws IOException {
         NGlobalDictionaryV2 globalDict = new NGlobalDictionaryV2(seg.getProject(), col.getTable(), col.getName(),
                 seg.getConfig().getHdfsWorkingDirectory());
         int bucketPartitionSize = globalDict.getBucketSizeOrDefault(seg.getConfig().getGlobalDictV2MinHashPartitions());
@@ -65,14 +75,12 @@ public class DictionaryBuilderHelper {
         int resizeBucketSize = bucketPartitionSize;
 
         if (globalDict.isFirst()) {
-            long afterDisCount = afterDistinct.count();
             double loadFactor = seg.getConfig().getGlobalDictV2InitLoadFactor();
             resizeBucketSize = Math.max(Math.toIntExact(afterDisCount / (int) (bucketThreshold * loadFactor)),
                     bucketPartitionSize);
             logger.info("Building a global dictionary column first for  {} , the size of the bucket is set to {}",
                     col.getName(), bucketPartitionSize);
         } else {
-            long afterDisCount = afterDistinct.count();
             NGlobalDictMetaInfo metaInfo = globalDict.getMetaInfo();
             long[] bucketCntArray = metaInfo.getBucketCount();
 
@@ -107,7 +115,7 @@ public class DictionaryBuilderHelper {
             if (resizeBucketSize != bucketPartitionSize) {
                 logger.info("Start building a global dictionary column for {}, need resize from {} to {} ",
                         col.getName(), bucketPartitionSize, resizeBucketSize);
-                resize(col, seg, resizeBucketSize, afterDistinct.sparkSession());
+                resize(col, seg, resizeBucketSize, ss);
                 logger.info("End building a global dictionary column for {}, need resize from {} to {} ", col.getName(),
                         bucketPartitionSize, resizeBucketSize);
             }
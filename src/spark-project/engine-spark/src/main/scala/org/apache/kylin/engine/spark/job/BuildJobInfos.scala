@@ -24,6 +24,7 @@ import org.apache.spark.application.RetryInfo
 import org.apache.spark.sql.execution.SparkPlan
 
 import java.util
+import java.util.concurrent.ConcurrentHashMap
 
 class BuildJobInfos {
   // BUILD
@@ -38,6 +39,8 @@ class BuildJobInfos {
 
   private val mergingSegments: java.util.List[NDataSegment] = new util.LinkedList[NDataSegment]
 
+  private val compactedLayouts: util.Map[Long, Long] = new ConcurrentHashMap[Long, Long]
+
   // BUCKET
   private val bucketsInfo = new util.HashMap[Long, util.List[Long]]
 
@@ -100,12 +103,21 @@ class BuildJobInfos {
 
   def clearMergingSegments(): Unit = {
     mergingSegments.clear()
+    compactedLayouts.clear()
   }
 
   def getMergingSegments: util.List[NDataSegment] = {
     mergingSegments
   }
 
+  def recordCompactedLayout(layoutId: Long, bytes: Long): Unit = {
+    compactedLayouts.put(layoutId, bytes)
+  }
+
+  def getCompactedLayouts: util.Map[Long, Long] = {
+    compactedLayouts
+  }
+
   def recordSparkPlan(plan: SparkPlan): Unit = {
     sparkPlans.add(plan)
   }
@@ -246,6 +258,7 @@ class BuildJobInfos {
     parent2Children.clear()
     sparkPlans.clear()
     mergingSegments.clear()
+    compactedLayouts.clear()
     abnormalLayouts.clear()
     autoSparkConfs.clear()
     jobRetryInfos.clear()
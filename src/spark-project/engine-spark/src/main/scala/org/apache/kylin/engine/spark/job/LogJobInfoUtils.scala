@@ -79,6 +79,8 @@ object LogJobInfoUtils {
        |wait time: ${infos.waitTime}
        |build time: ${infos.buildTime}
        |merging segments : ${infos.getMergingSegments}
+       |layouts merged without shuffle : ${infos.getCompactedLayouts}
+       |bytes not shuffled : ${infos.getCompactedLayouts.values().asScala.sum}
        |abnormal layouts : ${infos.getAbnormalLayouts}
        |retry times : ${infos.getRetryTimes}
        |job retry infos :
@@ -22,18 +22,19 @@ import java.io.IOException
 import java.lang
 import java.util.Objects
 import org.apache.kylin.engine.spark.application.SparkApplication
-import org.apache.kylin.engine.spark.job.SegmentExec.SourceStats
+import org.apache.kylin.engine.spark.job.SegmentExec.{LayoutResult, SourceStats}
 import org.apache.kylin.engine.spark.job.stage.StageExec
-import org.apache.kylin.engine.spark.job.{SegmentExec, SegmentJob}
+import org.apache.kylin.engine.spark.job.{KylinBuildEnv, NSparkCubingUtil, SegmentExec, SegmentJob}
 import org.apache.kylin.engine.spark.model.SegmentFlatTableDesc
 import org.apache.kylin.metadata.cube.model._
 import org.apache.kylin.metadata.sourceusage.SourceUsageManager
 import org.apache.hadoop.fs.Path
 import org.apache.kylin.common.persistence.transaction.UnitOfWork
 import org.apache.kylin.common.persistence.transaction.UnitOfWork.Callback
+import org.apache.kylin.common.KapConfig
 import org.apache.kylin.common.util.HadoopUtil
-import org.apache.kylin.metadata.model.TblColRef
-import org.apache.spark.sql.datasource.storage.{StorageStoreUtils, WriteTaskStats}
+import org.apache.kylin.metadata.model.{PartitionDesc, TblColRef}
+import org.apache.spark.sql.datasource.storage.{LayoutFileCompactor, StorageStoreFactory, StorageStoreUtils, StorageStoreV1, WriteTaskStats}
 import org.apache.spark.sql.{Dataset, Row, SaveMode}
 
 import scala.collection.JavaConverters
@@ -83,6 +84,11 @@ abstract class MergeStage(private val jobContext: SegmentJob,
     val head = grouped.head
     val layout = head.getLayout
     val layoutId = layout.getId
+    val dataLayouts = unmerged.map(_.getLayout(layoutId)).filterNot(Objects.isNull)
+    if (canMergeWithoutShuffle(layout, dataLayouts)) {
+      mergeLayoutFiles(layout, dataLayouts)
+      return
+    }
     val unitedDS: Dataset[Row] = newUnitedDS(layoutId)
     if (Objects.isNull(unitedDS)) {
       return
@@ -117,6 +123,51 @@ abstract class MergeStage(private val jobContext: SegmentJob,
   }
 
 
+  /**
+   * Segments never overlap on the group keys of a table index, or of an agg index with the time
+   * partition column, so merging them needs no aggregation and the files can be merged as they are.
+   */
+  private def canMergeWithoutShuffle(layout: LayoutEntity, dataLayouts: Seq[NDataLayout]): Boolean = {
+    if (!config.isMergeWithoutShuffleEnabled || dataLayouts.isEmpty
+      || !StorageStoreFactory.create(storageType).isInstanceOf[StorageStoreV1]
+      || dataModel.isMultiPartitionModel || layout.getIndex.getIndexPlan.isFastBitmapEnabled) {
+      return false
+    }
+    val noOverlap = IndexEntity.isTableIndex(layout.getId) || {
+      val partitionDesc = dataModel.getPartitionDesc
+      !PartitionDesc.isEmptyPartitionDesc(partitionDesc) && Objects.nonNull(partitionDesc.getPartitionDateColumnRef) &&
+        layout.getOrderedDimensions.containsKey(
+          dataModel.getColumnIdByColumnName(partitionDesc.getPartitionDateColumnRef.getAliasDotName))
+    }
+    // files of the same shard can only be merged with the same number of shards
+    val shardMatched = layout.getShardByColumns.isEmpty || dataLayouts.map(_.getPartitionNum).distinct.size == 1
+    noOverlap && shardMatched && LayoutFileCompactor.isSchemaMatched(layoutPaths(dataLayouts),
+      sparkSession.sparkContext.hadoopConfiguration)
+  }
+
+  private def mergeLayoutFiles(layout: LayoutEntity, dataLayouts: Seq[NDataLayout]): Unit = {
+    val readableDesc = s"Merge layout ${layout.getId} without shuffle"
+    logInfo(readableDesc)
+    sparkSession.sparkContext.setJobDescription(readableDesc)
+    sparkSession.sparkContext.setLocalProperty("spark.scheduler.pool", sparkSchedulerPool)
+    val storagePath = new Path(NSparkCubingUtil.getStoragePath(dataSegment, layout.getId))
+    val maxFileBytes = KapConfig.wrap(config).getParquetStorageShardSizeMB * 1024L * 1024L
+    val (numFiles, numBytes) = LayoutFileCompactor.compact(layoutPaths(dataLayouts), storagePath,
+      !layout.getShardByColumns.isEmpty, maxFileBytes, sparkSession)
+    sparkSession.sparkContext.setJobDescription(null)
+
+    val notShuffled = dataLayouts.map(_.getByteSize).sum
+    KylinBuildEnv.get().buildJobInfos.recordCompactedLayout(layout.getId, notShuffled)
+    logInfo(s"Merged layout ${layout.getId} into $numFiles files without shuffling $notShuffled bytes")
+    val taskStats = WriteTaskStats(0, numFiles, numBytes, dataLayouts.map(_.getRows).sum, 0L,
+      dataLayouts.head.getPartitionNum, new java.util.ArrayList[String]())
+    pipe.offer(LayoutResult(layout.getId, taskStats, newSourceStats(layout, taskStats)))
+  }
+
+  private def layoutPaths(dataLayouts: Seq[NDataLayout]): Seq[Path] = dataLayouts.map { dataLayout =>
+    new Path(NSparkCubingUtil.getStoragePath(dataLayout.getSegDetails.getDataSegment, dataLayout.getLayoutId))
+  }
+
   override protected def newSourceStats(layout: LayoutEntity, //
                                         origin: WriteTaskStats): SourceStats = {
     val sourceRows = unmerged.map(segment => segment.getLayout(layout.getId)) //
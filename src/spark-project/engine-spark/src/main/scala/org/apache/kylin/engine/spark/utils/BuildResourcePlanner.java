@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.engine.spark.utils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.job.dao.JobStatistics;
+import org.apache.kylin.job.dao.JobStatisticsBasic;
+import org.apache.kylin.job.dao.JobStatisticsManager;
+import org.apache.spark.SparkConf;
+import org.apache.spark.util.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Tunes the executor instances and shuffle partitions of a build by the past builds of its model.
+ *
+ * The modelled quantity is the executor time of a build, its run time multiplied by its executor instances, by the
+ * bytes of its source. Unlike the run time, the executor time does not depend on the resources the build was given,
+ * so the resources planned for a build do not feed back into the model of the next one. The job statistics keep the
+ * succeeded builds of a model by day, each day gives the average source bytes and executor time of a build. A line
+ * of the executor time by the source bytes is fitted on the days of the history, the executor time of this build is
+ * predicted by its source size, and the executor instances are planned to finish it in the target duration, within
+ * the max scale of the ones decided by the spark conf rules. The shuffle partitions follow the executor instances.
+ * The resources defined by user are kept.
+ */
+public class BuildResourcePlanner {
+    private static final Logger logger = LoggerFactory.getLogger(BuildResourcePlanner.class);
+
+    private final KylinConfig config;
+    private final String project;
+    private final String model;
+
+    public BuildResourcePlanner(KylinConfig config, String project, String model) {
+        this.config = config;
+        this.project = project;
+        this.model = model;
+    }
+
+    /**
+     * @return the predicted run time of the build in milliseconds, -1 if the history of the model is not enough
+     */
+    public long plan(SparkConfHelper helper, SparkConf userDefined) {
+        String sourceSize = helper.getOption(SparkConfHelper.SOURCE_TABLE_SIZE);
+        String executors = helper.getConf(SparkConfHelper.EXECUTOR_INSTANCES);
+        if (StringUtils.isBlank(sourceSize) || StringUtils.isBlank(executors)) {
+            return -1;
+        }
+        long startTime = System.currentTimeMillis()
+                - TimeUnit.DAYS.toMillis(config.getBuildResourcePlannerHistoryDays());
+        List<JobStatisticsBasic> history = JobStatisticsManager.getInstance(config, project).getAll().stream()
+                .filter(stats -> stats.getDate() >= startTime)
+                .map(JobStatistics::getJobStatisticsByModels).map(byModels -> byModels.get(model))
+                .filter(stats -> stats != null && stats.getBuildCount() > 0 && stats.getTotalBuildExecutorTime() > 0)
+                .collect(Collectors.toList());
+        if (history.size() < config.getBuildResourcePlannerMinHistory()) {
+            logger.info("Model {} is built in {} days of the history, not enough to plan, skip", model,
+                    history.size());
+            return -1;
+        }
+        long executorTime = predict(history, Utils.byteStringAsBytes(sourceSize));
+        long ruleExecutors = Long.parseLong(executors);
+        long planned;
+        if (userDefined.contains(SparkConfHelper.EXECUTOR_INSTANCES)) {
+            planned = ruleExecutors;
+        } else {
+            double maxScale = config.getBuildResourcePlannerMaxScale();
+            double wanted = Math.ceil((double) executorTime / config.getBuildResourcePlannerTargetDuration());
+            planned = Math.max(Math.round(Math.min(Math.max(wanted, ruleExecutors / maxScale),
+                    ruleExecutors * maxScale)), 1);
+            helper.setConf(SparkConfHelper.EXECUTOR_INSTANCES, String.valueOf(planned));
+        }
+        scaleConf(helper, userDefined, SparkConfHelper.SHUFFLE_PARTITIONS, (double) planned / ruleExecutors, 2);
+        long predicted = executorTime / planned;
+        logger.info("Predict the build of model {} with source size {} to take {} executor ms by {} days, plan {} "
+                + "executors to run {} ms", model, sourceSize, executorTime, history.size(), planned, predicted);
+        return predicted;
+    }
+
+    private static void scaleConf(SparkConfHelper helper, SparkConf userDefined, String key, double scale,
+            long min) {
+        String value = helper.getConf(key);
+        if (userDefined.contains(key) || StringUtils.isBlank(value)) {
+            return;
+        }
+        long scaled = Math.max(Math.round(Long.parseLong(value) * scale), min);
+        helper.setConf(key, String.valueOf(scaled));
+    }
+
+    /**
+     * Fits executorTime = intercept + slope * sourceBytes by least squares on the average builds of the days, and
+     * falls back to the average executor time per source byte when the source bytes do not vary.
+     */
+    @VisibleForTesting
+    static long predict(List<JobStatisticsBasic> history, long bytes) {
+        int n = history.size();
+        double sumX = 0;
+        double sumY = 0;
+        double sumXY = 0;
+        double sumXX = 0;
+        long totalExecutorTime = 0;
+        long totalBytes = 0;
+        for (JobStatisticsBasic stats : history) {
+            double x = (double) stats.getTotalBuildSourceBytes() / stats.getBuildCount();
+            double y = (double) stats.getTotalBuildExecutorTime() / stats.getBuildCount();
+            sumX += x;
+            sumY += y;
+            sumXY += x * y;
+            sumXX += x * x;
+            totalExecutorTime += stats.getTotalBuildExecutorTime();
+            totalBytes += stats.getTotalBuildSourceBytes();
+        }
+        double variance = n * sumXX - sumX * sumX;
+        double slope;
+        double intercept;
+        if (variance > 0) {
+            slope = (n * sumXY - sumX * sumY) / variance;
+            intercept = (sumY - slope * sumX) / n;
+        } else {
+            slope = totalBytes == 0 ? 0 : (double) totalExecutorTime / totalBytes;
+            intercept = totalBytes == 0 ? sumY / n : 0;
+        }
+        // a larger build never costs less
+        if (slope < 0) {
+            slope = 0;
+            intercept = sumY / n;
+        }
+        return Math.max(Math.round(intercept + slope * bytes), 0);
+    }
+}
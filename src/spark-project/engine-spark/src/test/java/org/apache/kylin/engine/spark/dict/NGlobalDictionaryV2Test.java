@@ -80,6 +80,26 @@ public class NGlobalDictionaryV2Test extends NLocalWithSparkSessionTest {
         testAll();
     }
 
+    @Test
+    public void testLoadSharedBucketDictionary() throws IOException {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        NGlobalDictionaryV2 dict = new NGlobalDictionaryV2("t3", "a", "shared", config.getHdfsWorkingDirectory());
+        runWithLocalBuildGlobalDict(dict, generateRandomData(50));
+
+        NGlobalDictionaryV2 reader1 = new NGlobalDictionaryV2("t3", "a", "shared", config.getHdfsWorkingDirectory());
+        NGlobalDictionaryV2 reader2 = new NGlobalDictionaryV2("t3", "a", "shared", config.getHdfsWorkingDirectory());
+        NBucketDictionary shared = reader1.loadSharedBucketDictionary(1);
+        Assert.assertSame(shared, reader2.loadSharedBucketDictionary(1));
+        Assert.assertEquals(reader1.loadBucketDictionary(1).getAbsoluteDictMap(), shared.getAbsoluteDictMap());
+
+        // a new version of the dictionary is loaded again
+        NGlobalDictionaryV2 newDict = new NGlobalDictionaryV2("t3", "a", "shared", config.getHdfsWorkingDirectory());
+        runWithLocalBuildGlobalDict(newDict, generateRandomData(50));
+        NGlobalDictionaryV2 reader3 = new NGlobalDictionaryV2("t3", "a", "shared", config.getHdfsWorkingDirectory());
+        Assert.assertNotSame(shared, reader3.loadSharedBucketDictionary(1));
+        Assert.assertSame(shared, reader1.loadSharedBucketDictionary(1));
+    }
+
     private void testAll() throws IOException {
         roundTest(5);
         roundTest(50);
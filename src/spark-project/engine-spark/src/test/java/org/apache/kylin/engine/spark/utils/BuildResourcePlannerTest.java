@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.engine.spark.utils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.NLocalFileMetadataTestCase;
+import org.apache.kylin.common.util.TimeUtil;
+import org.apache.kylin.job.dao.JobStatisticsBasic;
+import org.apache.kylin.job.dao.JobStatisticsManager;
+import org.apache.spark.SparkConf;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class BuildResourcePlannerTest extends NLocalFileMetadataTestCase {
+
+    private static final String PROJECT = "default";
+    private static final String MODEL = "89af4ee2-2cdb-4b07-b39e-4c29856309aa";
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long GB = 1024L * 1024 * 1024;
+
+    @Before
+    public void setup() {
+        createTestMetadata();
+    }
+
+    @After
+    public void cleanUp() {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testPredict() {
+        // executor time = 10 min + 10 min per GB of source
+        Assert.assertEquals(40 * MINUTE, BuildResourcePlanner.predict(Lists.newArrayList(builds(2, 2 * GB, 40 * MINUTE),
+                builds(1, GB, 20 * MINUTE), builds(1, 4 * GB, 50 * MINUTE)), 3 * GB));
+        // the same source bytes of the days
+        Assert.assertEquals(30 * MINUTE, BuildResourcePlanner.predict(
+                Lists.newArrayList(builds(1, GB, 10 * MINUTE), builds(1, GB, 10 * MINUTE)), 3 * GB));
+        // larger builds ran shorter
+        Assert.assertEquals(15 * MINUTE, BuildResourcePlanner.predict(
+                Lists.newArrayList(builds(1, GB, 20 * MINUTE), builds(1, 2 * GB, 10 * MINUTE)), 3 * GB));
+    }
+
+    @Test
+    public void testPlan() {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        BuildResourcePlanner planner = new BuildResourcePlanner(config, PROJECT, MODEL);
+        SparkConfHelper helper = helper();
+        Assert.assertEquals(-1, planner.plan(helper, new SparkConf()));
+        Assert.assertEquals("10", helper.getConf(SparkConfHelper.EXECUTOR_INSTANCES));
+
+        long today = TimeUtil.getDayStart(System.currentTimeMillis());
+        JobStatisticsManager manager = JobStatisticsManager.getInstance(config, PROJECT);
+        for (int i = 1; i <= 3; i++) {
+            long day = today - i * TimeUnit.DAYS.toMillis(1);
+            // the jobs created, failed or not, and the bytes written are not modelled
+            manager.updateStatistics(day, MODEL, 0, 0, 1);
+            manager.updateStatistics(day, MODEL, 5 * MINUTE, 100 * GB, 1);
+            Assert.assertEquals(-1, planner.plan(helper, new SparkConf()));
+            // built by 10 executors, executor time = 100 min + 100 min per GB of source
+            manager.recordBuild(day, MODEL, i * GB, 10 * MINUTE + i * 10 * MINUTE, 10, 200);
+        }
+        // predicted to take 600 executor min, twice the executors to run in the target 30 min
+        Assert.assertEquals(30 * MINUTE, planner.plan(helper, new SparkConf()));
+        Assert.assertEquals("20", helper.getConf(SparkConfHelper.EXECUTOR_INSTANCES));
+        Assert.assertEquals("400", helper.getConf(SparkConfHelper.SHUFFLE_PARTITIONS));
+
+        // bounded by the max scale, and the conf defined by user is kept
+        config.setProperty("kylin.engine.resource-planner.target-duration", "1min");
+        helper = helper();
+        planner.plan(helper, new SparkConf().set(SparkConfHelper.SHUFFLE_PARTITIONS, "200"));
+        Assert.assertEquals("20", helper.getConf(SparkConfHelper.EXECUTOR_INSTANCES));
+        Assert.assertEquals("200", helper.getConf(SparkConfHelper.SHUFFLE_PARTITIONS));
+
+        config.setProperty("kylin.engine.resource-planner.target-duration", "10h");
+        helper = helper();
+        planner.plan(helper, new SparkConf());
+        Assert.assertEquals("5", helper.getConf(SparkConfHelper.EXECUTOR_INSTANCES));
+        Assert.assertEquals("100", helper.getConf(SparkConfHelper.SHUFFLE_PARTITIONS));
+    }
+
+    @Test
+    public void testPlannedBuildsConverge() {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        BuildResourcePlanner planner = new BuildResourcePlanner(config, PROJECT, MODEL);
+        JobStatisticsManager manager = JobStatisticsManager.getInstance(config, PROJECT);
+        long today = TimeUtil.getDayStart(System.currentTimeMillis());
+        // a build takes 100 executor min per GB of source, built by the 10 executors of the rules at first
+        long executorTimePerGB = 100 * MINUTE;
+        for (int i = 1; i <= 3; i++) {
+            manager.recordBuild(today - i * TimeUnit.DAYS.toMillis(1), MODEL, i * GB, i * executorTimePerGB / 10, 10,
+                    200);
+        }
+
+        List<String> planned = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            SparkConfHelper helper = helper();
+            long predicted = planner.plan(helper, new SparkConf());
+            Assert.assertTrue(predicted <= config.getBuildResourcePlannerTargetDuration());
+            int executors = Integer.parseInt(helper.getConf(SparkConfHelper.EXECUTOR_INSTANCES));
+            planned.add(executors + "/" + helper.getConf(SparkConfHelper.SHUFFLE_PARTITIONS));
+            // the planned build runs shorter with more executors, and the cost of the next one stays the same
+            manager.recordBuild(today, MODEL, 5 * GB, 5 * executorTimePerGB / executors, executors,
+                    Integer.parseInt(helper.getConf(SparkConfHelper.SHUFFLE_PARTITIONS)));
+        }
+        // 500 executor min planned on 17 executors to run in the target 30 min, by every build
+        Assert.assertEquals(Lists.newArrayList("17/340", "17/340", "17/340", "17/340"), planned);
+    }
+
+    private static JobStatisticsBasic builds(int count, long sourceBytes, long executorTime) {
+        JobStatisticsBasic stats = new JobStatisticsBasic();
+        for (int i = 0; i < count; i++) {
+            stats.recordBuild(sourceBytes, executorTime, 1, 200);
+        }
+        return stats;
+    }
+
+    private static SparkConfHelper helper() {
+        SparkConfHelper helper = new SparkConfHelper();
+        helper.setOption(SparkConfHelper.SOURCE_TABLE_SIZE, 5 * GB + "b");
+        helper.setConf(SparkConfHelper.EXECUTOR_INSTANCES, "10");
+        helper.setConf(SparkConfHelper.SHUFFLE_PARTITIONS, "200");
+        return helper;
+    }
+}
@@ -20,7 +20,9 @@ package org.apache.kylin.engine.spark.builder
 import org.apache.commons.lang3.RandomStringUtils
 import org.apache.hadoop.conf.Configuration
 import org.apache.hadoop.fs.{Path, PathFilter}
+import com.google.common.collect.Sets
 import org.apache.kylin.common.KylinConfig
+import org.apache.kylin.engine.spark.job.NSparkCubingUtil
 import org.apache.kylin.metadata.cube.cuboid.{AdaptiveSpanningTree, NSpanningTreeFactory}
 import org.apache.kylin.metadata.cube.model.{NDataSegment, NDataflow, NDataflowManager}
 import org.apache.kylin.metadata.model.TblColRef
@@ -29,13 +31,14 @@ import org.apache.spark.application.NoRetryException
 import org.apache.spark.dict.{NGlobalDictMetaInfo, NGlobalDictStoreFactory, NGlobalDictionaryV2}
 import org.apache.spark.sql.catalyst.encoders.RowEncoder
 import org.apache.spark.sql.common.{LocalMetadata, SharedSparkSession, SparderBaseFunSuite}
-import org.apache.spark.sql.functions.col
-import org.apache.spark.sql.types.{StringType, StructType}
+import org.apache.spark.sql.functions.{col, expr}
+import org.apache.spark.sql.types.{StringType, StructField, StructType}
 import org.apache.spark.sql.{Dataset, Row}
 import org.junit.Assert
 import org.scalatest.matchers.must.Matchers.the
 
 import java.util.Set
+import scala.collection.JavaConverters._
 import scala.collection.mutable
 
 class TestGlobalDictBuild extends SparderBaseFunSuite with SharedSparkSession with LocalMetadata {
@@ -164,6 +167,43 @@ class TestGlobalDictBuild extends SparderBaseFunSuite with SharedSparkSession wi
     Assert.assertEquals(shufflePartitionSizeInt, dictDirSize)
   }
 
+  test("combined global dict build") {
+    val dataflow = NDataflowManager.getInstance(getTestConfig, DEFAULT_PROJECT).getDataflow(CUBE_NAME)
+    val seg = dataflow.getLastSegment
+    seg.getConfig.setProperty("kylin.dictionary.globalV2-threshold-bucket-size", "100")
+    seg.getConfig.setProperty("kylin.engine.global-dict-check-enabled", "TRUE")
+    val refs = dataflow.getModel.getEffectiveCols.values().asScala.take(2).toSeq
+    refs.foreach { ref =>
+      val dict = new NGlobalDictionaryV2(seg.getProject, ref.getTable, ref.getName, seg.getConfig.getHdfsWorkingDirectory)
+      val dictPath = new Path(seg.getConfig.getHdfsWorkingDirectory + dict.getResourceDir)
+      dictPath.getFileSystem(new Configuration()).delete(dictPath, true)
+    }
+
+    val schema = StructType(refs.map(ref => StructField(NSparkCubingUtil.convertFromDot(ref.getIdentity), StringType)))
+    val rows = (0 until 500).map(i => Row(s"a$i", s"b${i % 300}"))
+    val ds = spark.createDataFrame(spark.sparkContext.parallelize(rows), schema)
+    new DFDictionaryBuilder(ds, seg, spark, Sets.newHashSet(refs.asJava)).buildCombined(refs)
+
+    val metas = refs.map(ref => new NGlobalDictionaryV2(seg.getProject, ref.getTable, ref.getName,
+      seg.getConfig.getHdfsWorkingDirectory).getMetaInfo)
+    Assert.assertEquals(500, metas.head.getDictCount)
+    Assert.assertEquals(10, metas.head.getBucketSize)
+    Assert.assertEquals(300, metas(1).getDictCount)
+    Assert.assertEquals(6, metas(1).getBucketSize)
+
+    // the values are in the same buckets as the encoding repartitions them to
+    val ref = refs.head
+    val dict = new NGlobalDictionaryV2(seg.getProject, ref.getTable, ref.getName, seg.getConfig.getHdfsWorkingDirectory)
+    for (bucketId <- 0 until metas.head.getBucketSize) {
+      val values = dict.loadBucketDictionary(bucketId).getAbsoluteDictMap.keySet().asScala.toSeq
+      val schema = new StructType().add("value", StringType)
+      spark.createDataFrame(spark.sparkContext.parallelize(values.map(Row(_))), schema)
+        .select(expr(s"pmod(hash(value), ${metas.head.getBucketSize})"))
+        .collect()
+        .foreach(r => Assert.assertEquals(bucketId, r.getInt(0)))
+    }
+  }
+
   def buildDict(seg: NDataSegment, randomDataSet: Dataset[Row], dictColSet: Set[TblColRef]): NGlobalDictMetaInfo = {
     val dictionaryBuilder = new DFDictionaryBuilder(randomDataSet, seg, randomDataSet.sparkSession, dictColSet)
     val col = dictColSet.iterator().next()
@@ -144,6 +144,31 @@ class NSparkTableMetaExplorerTest extends SparderBaseFunSuite with SharedSparkSe
     }
   }
 
+  test("Test get source version of hive partition table") {
+    SparderEnv.setSparkSession(spark)
+    val table = "hive_version_partition_table"
+    val catalogTable = CatalogTable(
+      identifier = TableIdentifier(table),
+      tableType = CatalogTableType.MANAGED,
+      storage = CatalogStorageFormat.empty,
+      partitionColumnNames = List("dayno"),
+      schema = new StructType().add("a", "int").add("dayno", "string"),
+      properties = Map()
+    )
+    spark.sessionState.catalog.createTable(catalogTable, ignoreIfExists = false)
+    withTable(table) {
+      val explorer = new NSparkTableMetaExplorer()
+      val created = explorer.getSourceVersion("", table)
+      assert(created > 0)
+      assert(explorer.getSourceVersion("", table) == created)
+
+      val lastDdlTime = (created / 1000 + 60).toString
+      spark.sessionState.catalog.createPartitions(TableIdentifier(table), Seq(CatalogTablePartition(
+        Map("dayno" -> "20230101"), CatalogStorageFormat.empty, Map("transient_lastDdlTime" -> lastDdlTime))), false)
+      assert(explorer.getSourceVersion("", table) == lastDdlTime.toLong * 1000)
+    }
+  }
+
   test("Test load hive type with unsupported type array") {
     importUnsupportedCol(ArrayType(LongType))
   }
@@ -37,7 +37,8 @@ import org.apache.spark.SparkConf
 import org.apache.spark.sql.execution._
 import org.apache.spark.sql.hive.QueryMetricUtils
 import org.apache.spark.sql.util.SparderTypeUtil
-import org.apache.spark.sql.{DataFrame, SaveMode, SparderEnv}
+import org.apache.spark.sql.catalyst.CatalystTypeConverters
+import org.apache.spark.sql.{DataFrame, Row, SaveMode, SparderEnv}
 
 import java.io.{File, FileOutputStream}
 import java.util
@@ -111,7 +112,7 @@ object ResultPlan extends LogEx {
       QueryContext.current.record("executed_plan")
       QueryContext.currentTrace().endLastSpan()
       val jobTrace = new SparkJobTrace(jobGroup, QueryContext.currentTrace(), QueryContext.current().getQueryId, sparkContext)
-      val results = df.toIterator()
+      val results = takeByLimitedScan(df).getOrElse(df.toIterator())
       val resultRows = results._1
       val resultSize = results._2
       if (kapConfig.isQuerySparkJobTraceEnabled) jobTrace.jobFinished()
@@ -163,6 +164,28 @@ object ResultPlan extends LogEx {
     }
   }
 
+  /**
+   * Takes the rows of a LIMIT query reading a single scan, without launching the tasks of the scan not needed.
+   */
+  def takeByLimitedScan(df: DataFrame): Option[(Iterator[Row], Int)] = {
+    if (!KylinConfig.getInstanceFromEnv.isQueryLimitedScanEnabled) {
+      return None
+    }
+    df.queryExecution.executedPlan match {
+      case limit: CollectLimitExec if limit.limit > 0 =>
+        KylinFileSourceScanExec.narrowScan(limit.child).map { scan =>
+          logInfo(s"Take ${limit.limit} rows by limited scan")
+          val rows = SQLExecution.withNewExecutionId(df.queryExecution, Some("takeByLimitedScan")) {
+            KylinFileSourceScanExec.executeTake(scan, limit.child, limit.limit)
+          }
+          val toRow = CatalystTypeConverters.createToScalaConverter(df.schema)
+          (rows.iterator.map(row => toRow(row).asInstanceOf[Row]), rows.length)
+        }
+      case _ =>
+        None
+    }
+  }
+
   def getQueryFairSchedulerPool(sparkConf: SparkConf, queryContext: QueryContext, bigQueryThreshold: Long,
                                 sumOfSourceScanRows: Long, partitionsNum: Int): String = {
     var pool = "heavy_tasks"
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.query.runtime.plan
+
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.{ConcurrentHashMap, Executors, TimeUnit}
+
+import org.apache.kylin.common.KylinConfig
+import org.apache.kylin.common.metrics.{MetricsCategory, MetricsGroup, MetricsName}
+import org.apache.kylin.common.util.NamedThreadFactory
+import org.apache.kylin.engine.spark.utils.LogEx
+import org.apache.spark.sql.DataFrame
+import org.apache.spark.storage.StorageLevel
+
+import scala.collection.JavaConverters._
+
+/**
+ * Shares the scan of a layout among the queries arriving within a short window, enabled by
+ * kylin.query.shared-scan-enabled which is off by default.
+ *
+ * The first query of the window registers the scan of the layout, and the queries on the same layout and segments
+ * in the window build their plans on the registered scan. The scan is cached only once a second query attaches to
+ * it, so a scan no other query shares reads the files as usual and costs no memory or disk. Spark computes every
+ * cached partition once, the tasks of the other queries wait for it and read it from the block manager, so the files
+ * are read once for all of them. The cache is dropped when the window closes; queries still running then fall back
+ * to reading the files.
+ *
+ * As the cached scan holds all the columns and rows of the layout and no filter is pushed down to it, only the
+ * scans of small layouts by queries without filters are shared, which read the whole layout anyway. Sharing a scan
+ * among queries with different filters, by pushing down the OR of their filters, or reading the union of the columns
+ * of the queries, is not done: the scan is created by the first query before the others arrive, so it can not be
+ * widened for them, and a scan reading more than the first query needs would slow it down for nothing when no
+ * other query comes.
+ */
+object SharedLayoutScan extends LogEx {
+
+  private class SharedScan(val df: DataFrame, val createTime: Long) {
+    private var persisted = false
+    private var released = false
+
+    /**
+     * Caches the scan for the query attaching to it, false if the scan is already released.
+     */
+    def attach(): Boolean = synchronized {
+      if (released) {
+        false
+      } else {
+        if (!persisted) {
+          // persist is lazy, the scan is cached by whichever query reads it first
+          df.persist(StorageLevel.MEMORY_AND_DISK)
+          persisted = true
+        }
+        true
+      }
+    }
+
+    def release(): Unit = synchronized {
+      released = true
+      if (persisted) {
+        // unpersist does not block
+        df.unpersist(false)
+      }
+    }
+  }
+
+  private val scans = new ConcurrentHashMap[String, SharedScan]()
+
+  private val cleanerStarted = new AtomicBoolean(false)
+
+  private def startCleaner(): Unit = {
+    if (cleanerStarted.compareAndSet(false, true)) {
+      val executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("SharedLayoutScanCleaner"))
+      executor.scheduleWithFixedDelay(new Runnable {
+        override def run(): Unit = {
+          expire(System.currentTimeMillis(), KylinConfig.getInstanceFromEnv.getQuerySharedScanWindowMs)
+        }
+      }, 1, 1, TimeUnit.SECONDS)
+    }
+  }
+
+  def isEnabled(config: KylinConfig, layoutBytes: Long): Boolean = {
+    config.isQuerySharedScanEnabled && layoutBytes > 0 && layoutBytes <= config.getQuerySharedScanMaxBytes
+  }
+
+  /**
+   * @param scanBytes the bytes of the files the query would read without the shared scan
+   */
+  def getOrCreate(key: String, project: String, scanBytes: Long, windowMs: Long)(create: => DataFrame): DataFrame = {
+    startCleaner()
+    val now = System.currentTimeMillis()
+    val old = scans.get(key)
+    if (isLive(old, now, windowMs) && old.attach()) {
+      share(key, project, scanBytes, old)
+    } else {
+      // created out of the map, it is not cached until another query attaches to it
+      val fresh = new SharedScan(create, now)
+      val added = if (old == null) scans.putIfAbsent(key, fresh) == null else scans.replace(key, old, fresh)
+      if (added) {
+        if (old != null) {
+          old.release()
+        }
+        fresh.df
+      } else {
+        // another query registered the scan first
+        val current = scans.get(key)
+        if (isLive(current, now, windowMs) && current.attach()) share(key, project, scanBytes, current) else fresh.df
+      }
+    }
+  }
+
+  private def isLive(scan: SharedScan, now: Long, windowMs: Long): Boolean = {
+    scan != null && now - scan.createTime < windowMs && !scan.df.sparkSession.sparkContext.isStopped
+  }
+
+  private def share(key: String, project: String, scanBytes: Long, scan: SharedScan): DataFrame = {
+    logInfo(s"Share the scan of $key")
+    MetricsGroup.counterInc(MetricsName.QUERY_SHARED_SCAN_HIT, MetricsCategory.PROJECT, project)
+    MetricsGroup.counterInc(MetricsName.QUERY_SHARED_SCAN_SAVED_BYTES, MetricsCategory.PROJECT, project, scanBytes)
+    scan.df
+  }
+
+  def expire(now: Long, windowMs: Long): Unit = {
+    scans.asScala.foreach { case (key, scan) =>
+      if (now - scan.createTime >= windowMs && scans.remove(key, scan)) {
+        scan.release()
+      }
+    }
+  }
+
+  def size(): Int = scans.size()
+}
@@ -116,11 +116,30 @@ object TableScanPlan extends LogEx {
           seg.getId
         }
       }.mkString(",")
-      val newDf = session.kylin
+      val bucketingEnabled = bucketEnabled(olapContext, cuboidLayout)
+      def createDf(): DataFrame = session.kylin
         .isFastBitmapEnabled(olapContext.isExactlyFastBitmap())
-        .bucketingEnabled(bucketEnabled(olapContext, cuboidLayout))
+        .bucketingEnabled(bucketingEnabled)
         .cuboidTable(dataflow, cuboidLayout, pruningInfo)
         .toDF(columnNames: _*)
+      val scanBytes = prunedSegments.asScala.map { seg =>
+        Option(seg.getLayout(cuboidLayout.getId)).map { layout =>
+          val partitions = if (prunedPartitionMap != null) prunedPartitionMap.get(seg.getId) else null
+          if (partitions == null || layout.getMultiPartition.isEmpty) {
+            layout.getByteSize
+          } else {
+            layout.getPartitionsByIds(partitions).asScala.map(_.getByteSize).sum
+          }
+        }.getOrElse(0L)
+      }.sum
+      // the cached scan loses the bucketing of the layout and the filters pushed down to the files
+      val newDf = if (!bucketingEnabled && olapContext.filterColumns.isEmpty
+        && SharedLayoutScan.isEnabled(dataflow.getConfig, scanBytes)) {
+        SharedLayoutScan.getOrCreate(dataflow.getProject + "/" + path, dataflow.getProject, scanBytes,
+          dataflow.getConfig.getQuerySharedScanWindowMs)(createDf())
+      } else {
+        createDf()
+      }
       logInfo(s"Cache df: ${cuboidLayout.getId}")
       cacheDf.get().put(path, newDf)
       newDf
@@ -418,7 +418,7 @@ case class DictEncode(left: Expression, mid: Expression, right: Expression) exte
          |   try {
          |     int bucketId = idx % $bucketSizeTerm;
          |     $globalDictTerm = new org.apache.spark.dict.NGlobalDictionaryV2("$dictParamsTerm");
-         |     $bucketDictTerm = $globalDictTerm.loadBucketDictionary(bucketId);
+         |     $bucketDictTerm = $globalDictTerm.loadSharedBucketDictionary(bucketId);
          |   } catch (Exception e) {
          |     throw new RuntimeException(e);
          |   }
@@ -43,7 +43,7 @@ object DictEncodeImpl {
     val encodeBucketId = partitionID % bucketSize.toInt
     val globalDict = new NGlobalDictionaryV2(dictParams)
 
-    val cachedBucketDict = globalDict.loadBucketDictionary(encodeBucketId)
+    val cachedBucketDict = globalDict.loadSharedBucketDictionary(encodeBucketId)
     DictEncodeImpl.cacheBucketDict.get.put(dictParams, cachedBucketDict)
     TaskContext.get().addTaskCompletionListener(new TaskCompletionListener {
       override def onTaskCompletion(context: TaskContext): Unit = {
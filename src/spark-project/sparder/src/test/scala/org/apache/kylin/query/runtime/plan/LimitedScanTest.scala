@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.query.runtime.plan
+
+import org.apache.spark.sql.common.{LocalMetadata, SharedSparkSession, SparderBaseFunSuite}
+import org.apache.spark.sql.execution.KylinFileSourceScanExec
+import org.apache.spark.sql.execution.SegmentFileScan.{scanOf, withSegmentFiles}
+import org.junit.Assert
+
+class LimitedScanTest extends SparderBaseFunSuite with SharedSparkSession with LocalMetadata {
+
+  test("Test take the rows of a limit query by limited scan") {
+    overwriteSystemProp("kylin.query.limited-scan-enabled", "true")
+    withSegmentFiles(spark, Seq("seg_2", "seg_1"), 2) { df =>
+      val query = df.filter("ID >= 0").limit(3)
+      val result = ResultPlan.takeByLimitedScan(query)
+      Assert.assertTrue(result.isDefined)
+      val (rows, size) = result.get
+      Assert.assertEquals(3, size)
+      Assert.assertTrue(rows.forall(_.getString(0) == "seg_2"))
+      val scan = scanOf(query.queryExecution.executedPlan)
+      Assert.assertEquals(Some(3), scan.getTagValue(KylinFileSourceScanExec.LIMITED_SCAN))
+    }
+  }
+
+  test("Test not take the rows by limited scan") {
+    withSegmentFiles(spark, Seq("seg_2", "seg_1"), 2) { df =>
+      // the limited scan is off by default
+      Assert.assertTrue(ResultPlan.takeByLimitedScan(df.limit(3)).isEmpty)
+
+      overwriteSystemProp("kylin.query.limited-scan-enabled", "true")
+      // a query without limit, and a limit over an aggregation are read as usual
+      Assert.assertTrue(ResultPlan.takeByLimitedScan(df).isEmpty)
+      Assert.assertTrue(ResultPlan.takeByLimitedScan(df.groupBy("SEG").count().limit(1)).isEmpty)
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.query.runtime.plan
+
+import org.apache.spark.sql.common.{LocalMetadata, SharedSparkSession, SparderBaseFunSuite}
+import org.apache.spark.storage.StorageLevel
+import org.junit.Assert
+
+class SharedLayoutScanTest extends SparderBaseFunSuite with SharedSparkSession with LocalMetadata {
+
+  test("Test share layout scan within window") {
+    var created = 0
+    def create() = {
+      created += 1
+      spark.range(10).toDF("id")
+    }
+    val first = SharedLayoutScan.getOrCreate("default/layout_1", "default", 1024L, 60000L)(create())
+    // not cached until another query attaches
+    Assert.assertEquals(StorageLevel.NONE, first.storageLevel)
+    val second = SharedLayoutScan.getOrCreate("default/layout_1", "default", 1024L, 60000L)(create())
+    Assert.assertEquals(1, created)
+    Assert.assertSame(first, second)
+    Assert.assertEquals(StorageLevel.MEMORY_AND_DISK, first.storageLevel)
+    Assert.assertEquals(10, second.count())
+
+    val unshared = SharedLayoutScan.getOrCreate("default/layout_2", "default", 1024L, 60000L)(create())
+    Assert.assertEquals(2, created)
+    Assert.assertEquals(StorageLevel.NONE, unshared.storageLevel)
+    Assert.assertEquals(10, unshared.count())
+
+    // the window closes
+    SharedLayoutScan.expire(System.currentTimeMillis() + 60000L, 60000L)
+    Assert.assertEquals(0, SharedLayoutScan.size())
+    Assert.assertEquals(StorageLevel.NONE, first.storageLevel)
+  }
+
+  test("Test replace the shared scan out of window") {
+    var created = 0
+    def create() = {
+      created += 1
+      spark.range(10).toDF("id")
+    }
+    val first = SharedLayoutScan.getOrCreate("default/layout_3", "default", 1024L, 60000L)(create())
+    // a window of 0 ms is always closed
+    val second = SharedLayoutScan.getOrCreate("default/layout_3", "default", 1024L, 0L)(create())
+    Assert.assertEquals(2, created)
+    Assert.assertNotSame(first, second)
+    Assert.assertEquals(StorageLevel.NONE, first.storageLevel)
+    Assert.assertEquals(StorageLevel.NONE, second.storageLevel)
+    Assert.assertSame(second, SharedLayoutScan.getOrCreate("default/layout_3", "default", 1024L, 60000L)(create()))
+    Assert.assertEquals(StorageLevel.MEMORY_AND_DISK, second.storageLevel)
+
+    SharedLayoutScan.expire(System.currentTimeMillis() + 60000L, 60000L)
+    Assert.assertEquals(0, SharedLayoutScan.size())
+  }
+
+  test("Test a scan released by the window is not cached by a late query") {
+    val first = SharedLayoutScan.getOrCreate("default/layout_4", "default", 1024L, 60000L)(spark.range(10).toDF("id"))
+    SharedLayoutScan.expire(System.currentTimeMillis() + 60000L, 60000L)
+    Assert.assertEquals(0, SharedLayoutScan.size())
+    // the late query registers a scan of its own, the released one stays uncached
+    val second = SharedLayoutScan.getOrCreate("default/layout_4", "default", 1024L, 60000L)(spark.range(10).toDF("id"))
+    Assert.assertNotSame(first, second)
+    Assert.assertEquals(StorageLevel.NONE, first.storageLevel)
+    Assert.assertEquals(StorageLevel.NONE, second.storageLevel)
+
+    SharedLayoutScan.expire(System.currentTimeMillis() + 60000L, 60000L)
+    Assert.assertEquals(0, SharedLayoutScan.size())
+  }
+}
@@ -52,6 +52,15 @@ public class NBucketDictionary {
         this.relativeDictMap = new Object2LongOpenHashMap<>();
     }
 
+    NBucketDictionary(String baseDir, String workingDir, int bucketId, NGlobalDictMetaInfo metainfo, long version)
+            throws IOException {
+        this.workingDir = workingDir;
+        this.bucketId = bucketId;
+        this.absoluteDictMap = NGlobalDictStoreFactory.getResourceStore(baseDir).getBucketDict(version, metainfo,
+                bucketId);
+        this.relativeDictMap = new Object2LongOpenHashMap<>();
+    }
+
     NBucketDictionary(String workingDir) {
         this.workingDir = workingDir;
         this.absoluteDictMap = new Object2LongOpenHashMap<>();
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.dict;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteUnit;
+import org.apache.kylin.common.util.SizeConvertUtil;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The bucket dictionaries loaded for encoding, shared by all the tasks of an executor.
+ *
+ * A dictionary is keyed by its directory, version and bucket id, so a new version of the global dictionary
+ * is loaded again while the old one ages out. The cached dictionaries are only read, which is safe for
+ * concurrent tasks. The cache is bounded by the estimated memory of the dictionaries and evicts the least
+ * recently used.
+ */
+public class NBucketDictionaryCache {
+
+    // the estimated memory of an entry of the hash map besides its key
+    private static final int ENTRY_BYTES = 64;
+
+    private static final NBucketDictionaryCache INSTANCE = new NBucketDictionaryCache(getCacheSize());
+
+    private final Cache<Key, NBucketDictionary> dictionaries;
+
+    @VisibleForTesting
+    NBucketDictionaryCache(long maxBytes) {
+        this.dictionaries = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+                .weigher((Key key, NBucketDictionary dict) -> weigh(dict)).build();
+    }
+
+    public static NBucketDictionaryCache getInstance() {
+        return INSTANCE;
+    }
+
+    private static long getCacheSize() {
+        try {
+            return KylinConfig.getInstanceFromEnv().getBucketDictCacheSize();
+        } catch (Exception e) {
+            return SizeConvertUtil.byteStringAs(System.getProperty("kylin.dictionary.bucket-dict-cache-size", "256m"),
+                    ByteUnit.BYTE);
+        }
+    }
+
+    private static int weigh(NBucketDictionary dict) {
+        long bytes = 0L;
+        for (String value : dict.getAbsoluteDictMap().keySet()) {
+            bytes += ENTRY_BYTES + value.length() * 2L;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    /**
+     * @return the cached bucket dictionary, loaded only once among the concurrent tasks
+     */
+    public NBucketDictionary get(String baseDir, long version, int bucketId, Callable<NBucketDictionary> loader)
+            throws IOException {
+        try {
+            return dictionaries.get(new Key(baseDir, version, bucketId), loader);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to load bucket " + bucketId + " of global dict " + baseDir, e.getCause());
+        }
+    }
+
+    public long size() {
+        return dictionaries.size();
+    }
+
+    public void invalidateAll() {
+        dictionaries.invalidateAll();
+    }
+
+    private static class Key {
+        private final String baseDir;
+        private final long version;
+        private final int bucketId;
+
+        Key(String baseDir, long version, int bucketId) {
+            this.baseDir = baseDir;
+            this.version = version;
+            this.bucketId = bucketId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return version == key.version && bucketId == key.bucketId && baseDir.equals(key.baseDir);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(baseDir, version, bucketId);
+        }
+    }
+}
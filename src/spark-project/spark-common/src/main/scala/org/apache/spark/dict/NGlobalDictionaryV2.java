@@ -31,6 +31,8 @@ public class NGlobalDictionaryV2 implements Serializable {
     public static final String SEPARATOR = "_0_DOT_0_";
     protected static final Logger logger = LoggerFactory.getLogger(NGlobalDictionaryV2.class);
     private NGlobalDictMetaInfo metadata;
+    // the version of metadata, null if the dictionary is not built yet
+    private Long version;
 
     private String baseDir;
     private String project;
@@ -78,6 +80,23 @@ public class NGlobalDictionaryV2 implements Serializable {
         return new NBucketDictionary(baseDir, getWorkingDir(), bucketId, metadata);
     }
 
+    /**
+     * Load a bucket dictionary only for encoding, shared with the other tasks of the executor.
+     * The returned dictionary must not be modified.
+     */
+    public NBucketDictionary loadSharedBucketDictionary(int bucketId) throws IOException {
+        if (null == metadata) {
+            metadata = getMetaInfo();
+        }
+        if (null == version) {
+            return loadBucketDictionary(bucketId);
+        }
+        final long dictVersion = version;
+        final NGlobalDictMetaInfo dictMeta = metadata;
+        return NBucketDictionaryCache.getInstance().get(baseDir, dictVersion, bucketId,
+                () -> new NBucketDictionary(baseDir, getWorkingDir(), bucketId, dictMeta, dictVersion));
+    }
+
     public NBucketDictionary createNewBucketDictionary() {
         return new NBucketDictionary(getWorkingDir());
     }
@@ -103,6 +122,7 @@ public class NGlobalDictionaryV2 implements Serializable {
             return null;
         } else {
             metadata = globalDictStore.getMetaInfo(versions[versions.length - 1]);
+            version = versions[versions.length - 1];
         }
         logger.info("getMetaInfo metadata is null : [{}]", metadata == null);
         return metadata;
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.datasource.storage
+
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.{FileStatus, Path}
+import org.apache.kylin.common.util.HadoopUtil
+import org.apache.parquet.hadoop.ParquetFileWriter.Mode
+import org.apache.parquet.hadoop.util.{HadoopInputFile, HadoopOutputFile}
+import org.apache.parquet.hadoop.{ParquetFileReader, ParquetFileWriter, ParquetWriter}
+import org.apache.parquet.schema.MessageType
+import org.apache.spark.internal.Logging
+import org.apache.spark.sql.SparkSession
+import org.apache.spark.sql.execution.datasource.FilePruner
+import org.apache.spark.util.SerializableConfiguration
+
+import java.util.UUID
+import scala.collection.mutable
+
+/**
+ * Merges the parquet files of a layout of several segments without decoding the rows, by appending
+ * their row groups into new files.
+ *
+ * With shard by columns, the files of the same shard are appended into one file of that shard.
+ * Otherwise, the files are appended one after another into files of at most maxFileBytes.
+ */
+object LayoutFileCompactor extends Logging {
+
+  private val TEMP_FLAG = "_temp_"
+
+  case class CompactTask(target: String, sources: Seq[String])
+
+  def listParquetFiles(path: Path, conf: Configuration): Seq[FileStatus] = {
+    val fs = path.getFileSystem(conf)
+    if (!fs.exists(path)) {
+      return Seq.empty
+    }
+    fs.listStatus(path).filter { file =>
+      val name = file.getPath.getName
+      file.isFile && name.endsWith(".parquet") && !name.startsWith("_") && !name.startsWith(".")
+    }.toSeq
+  }
+
+  /**
+   * Row groups can only be appended to files of the same schema.
+   */
+  def isSchemaMatched(sourcePaths: Seq[Path], conf: Configuration): Boolean = {
+    val schemas = sourcePaths.flatMap(path => listParquetFiles(path, conf).headOption)
+      .map(file => readSchema(file.getPath, conf))
+    schemas.distinct.size <= 1
+  }
+
+  /**
+   * @return the number of files and bytes written
+   */
+  def compact(sourcePaths: Seq[Path], outputPath: Path, sharded: Boolean, maxFileBytes: Long,
+              ss: SparkSession): (Long, Long) = {
+    val hadoopConf = ss.sparkContext.hadoopConfiguration
+    val fs = outputPath.getFileSystem(hadoopConf)
+    val files = sourcePaths.flatMap(path => listParquetFiles(path, hadoopConf))
+    val tasks = if (sharded) planSharded(files) else planPacked(files, maxFileBytes)
+    logInfo(s"Compact ${files.size} files into ${tasks.size} files of $outputPath")
+
+    val tempPath = new Path(outputPath.toString + TEMP_FLAG + System.currentTimeMillis())
+    fs.mkdirs(tempPath)
+    if (tasks.nonEmpty) {
+      val conf = ss.sparkContext.broadcast(new SerializableConfiguration(hadoopConf))
+      val tempDir = tempPath.toString
+      ss.sparkContext.parallelize(tasks, tasks.size).foreach { task =>
+        concat(task.sources.map(new Path(_)), new Path(tempDir, task.target), conf.value.value)
+      }
+    }
+    if (fs.exists(outputPath)) {
+      fs.delete(outputPath, true)
+    }
+    if (!fs.rename(tempPath, outputPath)) {
+      throw new IllegalStateException(s"Failed to rename $tempPath to $outputPath")
+    }
+    val summary = HadoopUtil.getContentSummary(fs, outputPath)
+    (summary.getFileCount, summary.getLength)
+  }
+
+  private[storage] def planSharded(files: Seq[FileStatus]): Seq[CompactTask] = {
+    val uuid = UUID.randomUUID().toString
+    val shards = mutable.LinkedHashMap.empty[Int, mutable.ArrayBuffer[String]]
+    files.foreach { file =>
+      val shard = FilePruner.getPartitionId(file.getPath)
+      shards.getOrElseUpdate(shard, mutable.ArrayBuffer.empty) += file.getPath.toString
+    }
+    shards.toSeq.sortBy(_._1).map { case (shard, sources) =>
+      CompactTask(f"part-$shard%05d-$uuid-c000.parquet", sources)
+    }
+  }
+
+  private[storage] def planPacked(files: Seq[FileStatus], maxFileBytes: Long): Seq[CompactTask] = {
+    val uuid = UUID.randomUUID().toString
+    val packs = mutable.ArrayBuffer.empty[mutable.ArrayBuffer[String]]
+    var packBytes = 0L
+    files.foreach { file =>
+      if (packs.isEmpty || (packBytes > 0 && packBytes + file.getLen > maxFileBytes)) {
+        packs += mutable.ArrayBuffer.empty
+        packBytes = 0L
+      }
+      packs.last += file.getPath.toString
+      packBytes += file.getLen
+    }
+    packs.zipWithIndex.map { case (sources, i) =>
+      CompactTask(f"part-$i%05d-$uuid-c000.parquet", sources)
+    }
+  }
+
+  private def concat(sources: Seq[Path], target: Path, conf: Configuration): Unit = {
+    val footer = {
+      val reader = ParquetFileReader.open(HadoopInputFile.fromPath(sources.head, conf))
+      try reader.getFooter finally reader.close()
+    }
+    val writer = new ParquetFileWriter(HadoopOutputFile.fromPath(target, conf), footer.getFileMetaData.getSchema,
+      Mode.CREATE, ParquetWriter.DEFAULT_BLOCK_SIZE, ParquetWriter.MAX_PADDING_SIZE_DEFAULT)
+    writer.start()
+    sources.foreach(source => writer.appendFile(HadoopInputFile.fromPath(source, conf)))
+    writer.end(footer.getFileMetaData.getKeyValueMetaData)
+  }
+
+  private def readSchema(path: Path, conf: Configuration): MessageType = {
+    val reader = ParquetFileReader.open(HadoopInputFile.fromPath(path, conf))
+    try reader.getFooter.getFileMetaData.getSchema finally reader.close()
+  }
+}
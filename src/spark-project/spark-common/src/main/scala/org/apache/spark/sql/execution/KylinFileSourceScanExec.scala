@@ -20,16 +20,23 @@ package org.apache.spark.sql.execution
 
 import org.apache.hadoop.fs.{BlockLocation, FileStatus, LocatedFileStatus, Path}
 import org.apache.kylin.common.KylinConfig
+import org.apache.spark.FutureAction
+import org.apache.spark.internal.Logging
 import org.apache.spark.rdd.RDD
 import org.apache.spark.sql.catalyst.expressions.{Ascending, Attribute, Expression, SortOrder}
 import org.apache.spark.sql.catalyst.plans.physical.{HashPartitioning, Partitioning, UnknownPartitioning}
+import org.apache.spark.sql.catalyst.trees.TreeNodeTag
 import org.apache.spark.sql.catalyst.{InternalRow, TableIdentifier}
-import org.apache.spark.sql.execution.datasource.{FilePruner, ShardSpec}
+import org.apache.spark.sql.execution.datasource.{FilePruner, SegmentOrdering, ShardSpec}
 import org.apache.spark.sql.execution.datasources._
 import org.apache.spark.sql.execution.metric.SQLMetrics
 import org.apache.spark.sql.types.StructType
 
+import java.util.concurrent.atomic.{AtomicInteger, AtomicReference}
 import scala.collection.mutable.ArrayBuffer
+import scala.concurrent.Await
+import scala.concurrent.duration.Duration
+import scala.util.Failure
 
 // scalastyle:off
 class KylinFileSourceScanExec(
@@ -207,9 +214,18 @@ class KylinFileSourceScanExec(
       }
     }.toArray.sortBy(_.length)(implicitly[Ordering[Long]].reverse)
 
+    // a limited scan reads the newest segment first, and a partition reads files of only one segment
+    val limitedScan = getTagValue(KylinFileSourceScanExec.LIMITED_SCAN).isDefined
+    val orderedFiles = if (limitedScan) {
+      splitFiles.sortBy(file => segmentRank(file.filePath))
+    } else {
+      splitFiles
+    }
+
     val partitions = new ArrayBuffer[FilePartition]
     val currentFiles = new ArrayBuffer[PartitionedFile]
     var currentSize = 0L
+    var currentSegment = -1
 
     /** Close the current partition and move to the next. */
     def closePartition(): Unit = {
@@ -225,10 +241,12 @@ class KylinFileSourceScanExec(
     }
 
     // Assign files to partitions using "Next Fit Decreasing"
-    splitFiles.foreach { file =>
-      if (currentSize + file.length > maxSplitBytes) {
+    orderedFiles.foreach { file =>
+      val segment = if (limitedScan) segmentRank(file.filePath) else -1
+      if (currentSize + file.length > maxSplitBytes || segment != currentSegment) {
         closePartition()
       }
+      currentSegment = segment
       // Add the given file to the current partition.
       currentSize += file.length + openCostInBytes
       currentFiles += file
@@ -237,6 +255,18 @@ class KylinFileSourceScanExec(
     new FileScanRDD(fsRelation.sparkSession, readFile, partitions)
   }
 
+  // the rank of the segment of a file, the newest segment is the first
+  @transient private lazy val segmentRank: String => Int = relation.location match {
+    case index: SegmentOrdering =>
+      val segmentIds = index.newestFirstSegmentIds
+      filePath => {
+        val rank = segmentIds.indexWhere(id => filePath.contains(s"/$id/"))
+        if (rank < 0) segmentIds.size else rank
+      }
+    case _ =>
+      _ => 0
+  }
+
   private def getBlockLocations(file: FileStatus): Array[BlockLocation] = file match {
     case f: LocatedFileStatus => f.getBlockLocations
     case f => Array.empty[BlockLocation]
@@ -293,3 +323,94 @@ class KylinFileSourceScanExec(
   }
 
 }
+
+object KylinFileSourceScanExec extends Logging {
+
+  // the rows of the limit, tagged on a scan read by executeTake
+  val LIMITED_SCAN: TreeNodeTag[Int] = TreeNodeTag[Int]("kylin_limited_scan")
+
+  /**
+   * Finds the scan under the plan, if each partition of the plan reads only a partition of the scan.
+   */
+  def narrowScan(plan: SparkPlan): Option[KylinFileSourceScanExec] = plan match {
+    case scan: KylinFileSourceScanExec =>
+      Some(scan)
+    case _: ProjectExec | _: FilterExec | _: LocalLimitExec | _: ColumnarToRowExec | _: InputAdapter
+         | _: WholeStageCodegenExec if plan.children.size == 1 =>
+      narrowScan(plan.children.head)
+    case _ =>
+      None
+  }
+
+  /**
+   * Takes the first rows of the plan on the scan, reading the newest segment first.
+   */
+  def executeTake(scan: KylinFileSourceScanExec, plan: SparkPlan, limit: Int): Array[InternalRow] = {
+    scan.setTagValue(LIMITED_SCAN, limit)
+    takeIncrementally(plan.execute(), limit, plan.conf.limitScaleUpFactor)
+  }
+
+  /**
+   * Copied from org.apache.spark.sql.execution.SparkPlan#executeTake, and cancels the tasks of a batch once the
+   * rows of the limit are got.
+   *
+   * The partitions are read in growing batches, a batch is launched only when the batches before it do not get
+   * enough rows.
+   */
+  def takeIncrementally(rdd: RDD[InternalRow], limit: Int, limitScaleUpFactor: Int): Array[InternalRow] = {
+    val totalParts = rdd.partitions.length
+    val buf = new ArrayBuffer[InternalRow]
+    var partsScanned = 0
+    while (buf.size < limit && partsScanned < totalParts) {
+      var numPartsToTry = 1L
+      if (partsScanned > 0) {
+        if (buf.isEmpty) {
+          numPartsToTry = partsScanned * limitScaleUpFactor
+        } else {
+          val left = limit - buf.size
+          // as left > 0, numPartsToTry is always >= 1
+          numPartsToTry = Math.ceil(1.5 * left * partsScanned / buf.size).toLong
+          numPartsToTry = Math.min(numPartsToTry, partsScanned * limitScaleUpFactor)
+        }
+      }
+      val parts = partsScanned.until(Math.min(partsScanned + numPartsToTry, totalParts).toInt)
+      buf ++= runBatch(rdd, parts, limit - buf.size)
+      partsScanned += parts.size
+    }
+    logInfo(s"Take ${buf.size.min(limit)} rows of limit $limit by reading $partsScanned of $totalParts partitions")
+    buf.take(limit).toArray
+  }
+
+  private def runBatch(rdd: RDD[InternalRow], parts: Seq[Int], left: Int): Seq[InternalRow] = {
+    val results = new Array[Array[InternalRow]](parts.size)
+    val collected = new AtomicInteger(0)
+    val running = new AtomicReference[FutureAction[Unit]]()
+    val job = rdd.sparkContext.submitJob(rdd,
+      (iter: Iterator[InternalRow]) => iter.take(left).map(_.copy()).toArray,
+      parts,
+      (index: Int, rows: Array[InternalRow]) => {
+        results(index) = rows
+        if (collected.addAndGet(rows.length) >= left) {
+          Option(running.get()).foreach(_.cancel())
+        }
+      },
+      ())
+    running.set(job)
+    if (collected.get() >= left) {
+      job.cancel()
+    }
+    try {
+      Await.ready(job, Duration.Inf)
+    } catch {
+      case e: InterruptedException =>
+        job.cancel()
+        throw e
+    }
+    job.value.get match {
+      // the job cancelled after getting enough rows
+      case Failure(e) if collected.get() < left => throw e
+      case _ =>
+    }
+    results.filter(_ != null).flatten
+  }
+}
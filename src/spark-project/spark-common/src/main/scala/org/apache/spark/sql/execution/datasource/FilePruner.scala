@@ -40,6 +40,14 @@ import scala.collection.JavaConverters._
 
 case class SegmentDirectory(segmentID: String, partitions: List[Long], files: Seq[FileStatus])
 
+/**
+ * A file index of the files of segments, a file is under the directory named by the id of its segment.
+ */
+trait SegmentOrdering {
+  // the ids of the segments, the newest first
+  def newestFirstSegmentIds: Seq[String]
+}
+
 /**
  * A container for shard information.
  * Sharding is a technology for decomposing data sets into more manageable parts, and the number
@@ -72,7 +80,7 @@ case class ShardSpec(numShards: Int,
 class FilePruner(val session: SparkSession,
                  val options: Map[String, String],
                  val dataSchema: StructType)
-  extends FileIndex with ResetShufflePartition with LogEx {
+  extends FileIndex with ResetShufflePartition with SegmentOrdering with LogEx {
 
   private val dataflow: NDataflow = {
     val dataflowId = options.getOrElse("dataflowId", sys.error("dataflowId option is required"))
@@ -95,6 +103,11 @@ class FilePruner(val session: SparkSession,
     )
   }
 
+  // the ids of the queryable segments, the newest first
+  override lazy val newestFirstSegmentIds: Seq[String] = {
+    dataflow.getQueryableSegments.asScala.sortWith((a, b) => a.compareTo(b) > 0).map(_.getId)
+  }
+
   def toPath(segmentId: String): String = {
     if (isFastBitmapEnabled) {
       s"$workingDir${dataflow.getUuid}/${segmentId}/${layout.getId}${HadoopUtil.FAST_BITMAP_SUFFIX}"
@@ -278,22 +291,9 @@ class FilePruner(val session: SparkSession,
   }
 
   private def getFileStatues(segmentId: String, path: Path): Seq[FileStatus] = {
-    val fsc = ShardFileStatusCache.getFileStatusCache(session)
-
-    val maybeStatuses = fsc.getLeafFiles(path)
     val lastBuildTime = dataflow.getSegment(segmentId).getLastBuildTime
-    var cacheValid = false
-    if (maybeStatuses.isDefined) {
-      cacheValid = lastBuildTime.equals(ShardFileStatusCache.getSegmentBuildTime(segmentId))
-    }
-
-    if (cacheValid) {
-      maybeStatuses.get
-    } else {
-      val statuses = path.getFileSystem(session.sparkContext.hadoopConfiguration).listStatus(path)
-      fsc.putLeafFiles(path, statuses)
-      ShardFileStatusCache.refreshSegmentBuildTimeCache(segmentId, lastBuildTime)
-      statuses
+    LayoutFileManifestCache.getOrLoad(path, lastBuildTime) {
+      path.getFileSystem(session.sparkContext.hadoopConfiguration).listStatus(path).toSeq
     }
   }
 
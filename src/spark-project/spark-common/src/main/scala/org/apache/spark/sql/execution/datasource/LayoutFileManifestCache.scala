@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasource
+
+import com.google.common.annotations.VisibleForTesting
+import com.google.common.cache.{Cache, CacheBuilder, Weigher}
+import org.apache.hadoop.fs.{FileStatus, Path}
+import org.apache.kylin.common.KylinConfig
+
+/**
+ * The files of the layouts of segments, loaded once for each segment and layout.
+ *
+ * A manifest is tagged with the last build time of its segment, so that it is reloaded once the segment is
+ * built again. The manifests of a segment or a dataflow are evicted when the query server sees them changed or
+ * removed in the metadata. The cache is bounded by the estimated memory of the manifests and evicts the least
+ * recently used.
+ */
+object LayoutFileManifestCache {
+
+  // the estimated memory of a file status besides its path
+  private val FILE_STATUS_BYTES = 200
+
+  case class Manifest(buildTime: Long, files: Seq[FileStatus])
+
+  private val manifests: Cache[String, Manifest] = CacheBuilder.newBuilder()
+    .maximumWeight(KylinConfig.getInstanceFromEnv.getLayoutFileManifestCacheSize)
+    .weigher(new Weigher[String, Manifest] {
+      override def weigh(path: String, manifest: Manifest): Int = {
+        manifest.files.map(file => FILE_STATUS_BYTES + file.getPath.toString.length * 2).sum + path.length * 2
+      }
+    })
+    .build()
+
+  def getOrLoad(path: Path, buildTime: Long)(load: => Seq[FileStatus]): Seq[FileStatus] = {
+    val key = path.toString
+    val manifest = manifests.getIfPresent(key)
+    if (manifest != null && manifest.buildTime == buildTime) {
+      manifest.files
+    } else {
+      val files = load
+      manifests.put(key, Manifest(buildTime, files))
+      files
+    }
+  }
+
+  /**
+   * Evict the manifests of the layouts of a segment, the layout paths are like working_dir/dataflow/segment/layout.
+   */
+  def invalidateSegment(dataflowId: String, segmentId: String): Unit = invalidateByPath(s"/$dataflowId/$segmentId/")
+
+  def invalidateDataflow(dataflowId: String): Unit = invalidateByPath(s"/$dataflowId/")
+
+  private def invalidateByPath(part: String): Unit = {
+    manifests.asMap().keySet().removeIf(key => key.contains(part))
+  }
+
+  @VisibleForTesting
+  def invalidateAll(): Unit = manifests.invalidateAll()
+
+  def size(): Long = manifests.size()
+}
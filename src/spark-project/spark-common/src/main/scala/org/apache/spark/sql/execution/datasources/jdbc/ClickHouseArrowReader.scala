@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.jdbc
+
+import java.io.IOException
+import java.net.{HttpURLConnection, URL, URLEncoder}
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.{Callable, ExecutionException, ExecutorCompletionService, Future, TimeUnit}
+
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.io.Source
+
+import org.apache.arrow.vector.ipc.ArrowStreamReader
+import org.apache.spark.internal.Logging
+import org.apache.spark.sql.connector.read.PartitionReader
+import org.apache.spark.sql.util.ArrowUtils
+import org.apache.spark.sql.vectorized.{ArrowColumnVector, ColumnVector, ColumnarBatch}
+import org.apache.spark.util.ThreadUtils
+
+/**
+ * Posts a query to the HTTP interface of a ClickHouse shard, and reads the ArrowStream output as
+ * [[ColumnarBatch]]es. The vectors of a block are reused by the next block.
+ *
+ * The query goes to the first replica of the shard url. If the first replica has a hedge deadline
+ * and does not answer within it, the query is sent to the second replica as well, and the replica
+ * answering first is read.
+ *
+ * The shard url is the JDBC one, whose ports may be the ones of the native protocol, so the
+ * `host:httpPort` of each replica is given by `httpHosts`.
+ */
+class ClickHouseArrowReader(
+    jdbcUrl: String,
+    query: String,
+    user: Option[String],
+    password: Option[String],
+    httpHosts: Map[String, String],
+    hedgeDeadlines: Map[String, Long] = Map.empty,
+    latencies: Option[ReplicaLatencyAccumulator] = None)
+  extends PartitionReader[ColumnarBatch] with Logging {
+
+  import ClickHouseArrowReader._
+
+  private val shardUrl = parseUrl(jdbcUrl)
+  private val primary = shardUrl.hosts.head
+  // the resources opened so far, released in the reverse order by close or by a failed open
+  private val closers = mutable.ArrayBuffer.empty[() => Unit]
+
+  ReplicaLatencyTracker.begin(primary)
+  closers += (() => ReplicaLatencyTracker.end(primary))
+  private val connection = opened(open())(_.disconnect())
+  private val allocator = opened(ArrowUtils.rootAllocator.newChildAllocator(
+    s"ClickHouseArrowReader-${Thread.currentThread().getId}", 0, Long.MaxValue))(_.close())
+  private val reader = opened(new ArrowStreamReader(connection.getInputStream, allocator))(_.close())
+  private lazy val batch = {
+    val columns = reader.getVectorSchemaRoot.getFieldVectors.asScala
+      .map(vector => new ArrowColumnVector(vector): ColumnVector)
+    new ColumnarBatch(columns.toArray)
+  }
+
+  private def opened[T](resource: => T)(closer: T => Unit): T = {
+    try {
+      val opened = resource
+      closers += (() => closer(opened))
+      opened
+    } catch {
+      case e: Throwable =>
+        try release() catch {
+          case suppressed: Throwable => e.addSuppressed(suppressed)
+        }
+        throw e
+    }
+  }
+
+  private def release(): Unit = {
+    var error: Throwable = null
+    closers.reverseIterator.foreach { closer =>
+      try closer() catch {
+        case e: Throwable => if (error == null) error = e else error.addSuppressed(e)
+      }
+    }
+    closers.clear()
+    if (error != null) {
+      throw error
+    }
+  }
+
+  private def open(): HttpURLConnection = {
+    val start = System.currentTimeMillis()
+    val (host, conn) = hedgeDeadlines.get(primary) match {
+      case Some(deadline) if shardUrl.hosts.size > 1 => hedge(primary, shardUrl.hosts(1), deadline)
+      case _ => primary -> connect(primary)
+    }
+    latencies.foreach(_.add(ReplicaLatency(primary, host, System.currentTimeMillis() - start, host != primary)))
+    conn
+  }
+
+  private def hedge(primary: String, secondary: String, deadline: Long): (String, HttpURLConnection) = {
+    val service = new ExecutorCompletionService[(String, HttpURLConnection)](HEDGE_POOL)
+    val pending = mutable.ArrayBuffer(service.submit(connectTask(primary)))
+    var done = service.poll(deadline, TimeUnit.MILLISECONDS)
+    if (done == null) {
+      logInfo(s"Shard $primary does not answer within ${deadline}ms, hedge to $secondary")
+      pending += service.submit(connectTask(secondary))
+      done = service.take()
+    }
+    pending -= done
+    val answer = try {
+      done.get()
+    } catch {
+      case e: ExecutionException if pending.nonEmpty =>
+        logWarning("Failed to read shard, wait for the other replica", e.getCause)
+        val other = service.take()
+        pending -= other
+        getOrThrow(other)
+      case e: ExecutionException => throw e.getCause
+    }
+    // the slower replica is disconnected once it answers
+    pending.foreach(future => HEDGE_POOL.submit(new Runnable {
+      override def run(): Unit = future.get()._2.disconnect()
+    }))
+    answer
+  }
+
+  private def getOrThrow(future: Future[(String, HttpURLConnection)]): (String, HttpURLConnection) = {
+    try future.get() catch {
+      case e: ExecutionException => throw e.getCause
+    }
+  }
+
+  private def connectTask(host: String): Callable[(String, HttpURLConnection)] =
+    new Callable[(String, HttpURLConnection)] {
+      override def call(): (String, HttpURLConnection) = host -> connect(host)
+    }
+
+  private def connect(host: String): HttpURLConnection = {
+    val httpHost = httpHosts.getOrElse(host, throw new IOException(s"No HTTP port of ClickHouse node $host"))
+    val url = shardUrl.httpUrl(httpHost)
+    logInfo(s"Read shard $url in ArrowStream")
+    val conn = new URL(url).openConnection().asInstanceOf[HttpURLConnection]
+    conn.setRequestMethod("POST")
+    conn.setDoOutput(true)
+    val params = shardUrl.params
+    params.get(SOCKET_TIMEOUT).foreach(timeout => conn.setReadTimeout(timeout.toInt))
+    params.get(USER).orElse(user).foreach(conn.setRequestProperty("X-ClickHouse-User", _))
+    params.get(PASSWORD).orElse(password).foreach(conn.setRequestProperty("X-ClickHouse-Key", _))
+    val out = conn.getOutputStream
+    try out.write(query.getBytes(StandardCharsets.UTF_8)) finally out.close()
+    val code = conn.getResponseCode
+    if (code != HttpURLConnection.HTTP_OK) {
+      val error = Option(conn.getErrorStream).map(Source.fromInputStream(_, "UTF-8").mkString).getOrElse("")
+      conn.disconnect()
+      throw new IOException(s"Failed to read shard $url, $code: $error")
+    }
+    conn
+  }
+
+  override def next(): Boolean = reader.loadNextBatch()
+
+  override def get(): ColumnarBatch = {
+    batch.setNumRows(reader.getVectorSchemaRoot.getRowCount)
+    batch
+  }
+
+  override def close(): Unit = release()
+}
+
+object ClickHouseArrowReader {
+  val USER = "user"
+  val PASSWORD = "password"
+  val SOCKET_TIMEOUT = "socket_timeout"
+
+  private val JDBC_PREFIX = "jdbc:clickhouse://"
+
+  private lazy val HEDGE_POOL = ThreadUtils.newDaemonCachedThreadPool("clickhouse-hedge-read")
+
+  /**
+   * A shard url of `jdbc:clickhouse://host:port[,host:port...][/database]?params`, the replicas of
+   * the shard are listed in the order to read.
+   */
+  case class ShardUrl(hosts: Seq[String], database: Option[String], params: Map[String, String]) {
+
+    /**
+     * The params of the JDBC driver are not passed, as ClickHouse rejects them as unknown settings.
+     */
+    def httpUrl(httpHost: String): String = {
+      val settings = Seq("output_format_arrow_string_as_string=1") ++
+        database.map(db => s"database=${URLEncoder.encode(db, StandardCharsets.UTF_8.name())}")
+      s"http://$httpHost/?${settings.mkString("&")}"
+    }
+  }
+
+  def parseUrl(jdbcUrl: String): ShardUrl = {
+    require(jdbcUrl.startsWith(JDBC_PREFIX), s"Not a ClickHouse url: $jdbcUrl")
+    val parts = jdbcUrl.substring(JDBC_PREFIX.length).split("\\?", 2)
+    val params = if (parts.length == 1) {
+      Map.empty[String, String]
+    } else {
+      parts(1).split("&").filter(_.contains("=")).map { param =>
+        val kv = param.split("=", 2)
+        kv(0) -> kv(1)
+      }.toMap
+    }
+    val address = parts(0).split("/", 2)
+    ShardUrl(address(0).split(",").toSeq, address.lift(1).filter(_.nonEmpty), params)
+  }
+}
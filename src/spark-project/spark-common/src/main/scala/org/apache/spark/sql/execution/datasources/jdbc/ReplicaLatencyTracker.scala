@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.jdbc
+
+import java.util
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+import scala.collection.JavaConverters._
+
+import org.apache.kylin.common.metrics.{MetricsCategory, MetricsGroup, MetricsName}
+import org.apache.spark.SparkContext
+import org.apache.spark.scheduler.{SparkListener, SparkListenerTaskEnd}
+import org.apache.spark.util.AccumulatorV2
+
+/**
+ * The latency and in-flight reads of the ClickHouse nodes, keyed by `host:port`.
+ *
+ * A node is scored by its exponentially weighted latency times its in-flight reads, the lower the
+ * better. Nodes without any latency yet score 0, so they are tried first.
+ *
+ * The latency of the reads is brought back to the driver by [[ReplicaLatencyAccumulator]]. The
+ * in-flight reads are counted by the readers from their open to their close, in the JVM running
+ * them, so the driver only sees the in-flight reads of the tasks it runs itself.
+ */
+object ReplicaLatencyTracker {
+
+  private val ALPHA = 0.2
+  private val WINDOW = 128
+  private val MIN_SAMPLES = 16
+
+  private class NodeLatency {
+    var ewma: Double = -1
+    val samples = new Array[Long](WINDOW)
+    var count = 0L
+    val inFlight = new AtomicInteger()
+  }
+
+  private val nodes = new ConcurrentHashMap[String, NodeLatency]()
+
+  private def nodeOf(node: String): NodeLatency = nodes.computeIfAbsent(node, _ => new NodeLatency)
+
+  def begin(node: String): Unit = nodeOf(node).inFlight.incrementAndGet()
+
+  def end(node: String): Unit = nodeOf(node).inFlight.decrementAndGet()
+
+  def inFlight(node: String): Int = Option(nodes.get(node)).map(_.inFlight.get()).getOrElse(0)
+
+  def record(node: String, latencyMs: Long): Unit = {
+    val latency = nodeOf(node)
+    latency.synchronized {
+      latency.ewma = if (latency.ewma < 0) latencyMs else ALPHA * latencyMs + (1 - ALPHA) * latency.ewma
+      latency.samples((latency.count % WINDOW).toInt) = latencyMs
+      latency.count += 1
+    }
+    MetricsGroup.histogramUpdate(MetricsName.SECOND_STORAGE_NODE_LATENCY, MetricsCategory.GLOBAL, node, latencyMs)
+  }
+
+  def score(node: String): Double = {
+    val latency = nodes.get(node)
+    if (latency == null) {
+      0
+    } else {
+      math.max(latency.ewma, 0) * (latency.inFlight.get() + 1)
+    }
+  }
+  /**
+   * @return the latency of the node at the percentile of its recent reads, None if too few reads
+   */
+  def percentile(node: String, percentile: Double): Option[Long] = {
+    val latency = nodes.get(node)
+    if (latency == null) {
+      return None
+    }
+    val recent = latency.synchronized {
+      latency.samples.take(math.min(latency.count, WINDOW).toInt).sorted
+    }
+    if (recent.length < MIN_SAMPLES) {
+      None
+    } else {
+      val index = math.ceil(percentile / 100 * recent.length).toInt - 1
+      Some(recent(math.min(math.max(index, 0), recent.length - 1)))
+    }
+  }
+
+  def clear(): Unit = nodes.clear()
+}
+
+/**
+ * A read of a shard, started on the primary node and answered by the node after the latency.
+ */
+case class ReplicaLatency(primary: String, node: String, latencyMs: Long, hedged: Boolean)
+
+/**
+ * Collects the latency of the reads of a query in the executors. The driver records the latency of
+ * each task into [[ReplicaLatencyTracker]] as the task ends, by [[ReplicaLatencyListener]].
+ */
+class ReplicaLatencyAccumulator extends AccumulatorV2[ReplicaLatency, util.List[ReplicaLatency]] {
+
+  private val latencies = new util.ArrayList[ReplicaLatency]()
+
+  override def isZero: Boolean = latencies.isEmpty
+
+  override def copy(): ReplicaLatencyAccumulator = {
+    val acc = new ReplicaLatencyAccumulator
+    acc.latencies.addAll(latencies)
+    acc
+  }
+
+  override def reset(): Unit = latencies.clear()
+
+  override def add(v: ReplicaLatency): Unit = latencies.add(v)
+
+  override def merge(other: AccumulatorV2[ReplicaLatency, util.List[ReplicaLatency]]): Unit =
+    latencies.addAll(other.value)
+
+  override def value: util.List[ReplicaLatency] = latencies
+}
+
+object ReplicaLatencyAccumulator {
+
+  val NAME = "ClickHouse replica latency"
+
+  @volatile private var listened: SparkContext = _
+
+  /**
+   * Registers the accumulator of a query, and the listener recording its latency once per context.
+   */
+  def register(sc: SparkContext): ReplicaLatencyAccumulator = {
+    if (listened ne sc) {
+      synchronized {
+        if (listened ne sc) {
+          sc.addSparkListener(ReplicaLatencyListener)
+          listened = sc
+        }
+      }
+    }
+    val latencies = new ReplicaLatencyAccumulator
+    sc.register(latencies, NAME)
+    latencies
+  }
+
+  def record(latencies: Seq[ReplicaLatency]): Unit = {
+    latencies.foreach { latency =>
+      ReplicaLatencyTracker.record(latency.node, latency.latencyMs)
+      if (latency.hedged) {
+        MetricsGroup.counterInc(MetricsName.SECOND_STORAGE_HEDGED_READ, MetricsCategory.GLOBAL, latency.primary)
+      }
+    }
+  }
+}
+
+/**
+ * Records the latency of the reads of each task in the driver, from the update of the task to
+ * [[ReplicaLatencyAccumulator]].
+ */
+object ReplicaLatencyListener extends SparkListener {
+
+  override def onTaskEnd(taskEnd: SparkListenerTaskEnd): Unit = {
+    Option(taskEnd.taskInfo).toSeq.flatMap(_.accumulables)
+      .filter(_.name.contains(ReplicaLatencyAccumulator.NAME))
+      .flatMap(_.update)
+      .foreach {
+        case latencies: util.List[_] =>
+          ReplicaLatencyAccumulator.record(latencies.asScala.collect { case latency: ReplicaLatency => latency })
+        case _ =>
+      }
+  }
+}
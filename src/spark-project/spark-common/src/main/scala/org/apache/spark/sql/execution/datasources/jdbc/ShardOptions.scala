@@ -34,6 +34,9 @@ object ShardOptions {
   val PUSHDOWN_AGGREGATE = "pushDownAggregate"
   val PUSHDOWN_LIMIT = "pushDownLimit"
   val PUSHDOWN_NUM_PARTITIONS = "numPartitions"
+  val COLUMNAR_READ = "columnarRead"
+  val HEDGE_READ_PERCENTILE = "hedgeReadPercentile"
+  val HTTP_PORTS = "httpPorts"
   val SPLIT_CHAR = "<url_split>"
   val REPLICA_SPLIT_CHAR = "<replica_split>"
 
@@ -48,4 +51,21 @@ object ShardOptions {
   def buildReplicaSharding(urls: Array[Array[String]]): String = {
     urls.map(_.mkString(SPLIT_CHAR.toString)).mkString(REPLICA_SPLIT_CHAR)
   }
+
+  /**
+   * The HTTP ports of the nodes by the `host:port` of the shard urls, as `host:port=httpPort,...`.
+   */
+  def buildHttpPorts(httpPorts: Map[String, Int]): String = {
+    httpPorts.map { case (address, httpPort) => s"$address=$httpPort" }.mkString(",")
+  }
+
+  /**
+   * @return the `host:httpPort` by the `host:port` of the shard urls
+   */
+  def parseHttpHosts(httpPorts: String): Map[String, String] = {
+    httpPorts.split(",").filter(_.contains("=")).map { entry =>
+      val Array(address, httpPort) = entry.split("=", 2)
+      address -> s"${address.substring(0, address.lastIndexOf(':'))}:$httpPort"
+    }.toMap
+  }
 }
\ No newline at end of file
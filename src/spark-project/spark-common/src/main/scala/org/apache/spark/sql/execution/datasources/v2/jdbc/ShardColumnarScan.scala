@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.v2.jdbc
+
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.connector.read._
+import org.apache.spark.sql.execution.datasources.jdbc._
+import org.apache.spark.sql.jdbc.JdbcDialects
+import org.apache.spark.sql.types._
+import org.apache.spark.sql.vectorized.ColumnarBatch
+
+case class ShardInputPartition(url: String, query: String) extends InputPartition
+
+/**
+ * Reads the shards of ClickHouse in ArrowStream format over HTTP, and turns the blocks into
+ * [[ColumnarBatch]]es directly instead of converting the rows of the JDBC result set one by one.
+ *
+ * The statement is the same as the one of [[JDBCScan]], wrapped by casts of the columns to the
+ * ClickHouse types whose Arrow types match the Spark types.
+ *
+ * The HTTP ports of the nodes are configured apart from the JDBC ports, the shards are read through
+ * [[JDBCScan]] when any of their nodes has no HTTP port.
+ */
+case class ShardColumnarScan(scan: JDBCScan, timeZone: String) extends Scan with Batch {
+
+  private val options = scan.relation.jdbcOptions
+
+  override def readSchema(): StructType = scan.readSchema()
+
+  override def description(): String = s"ShardColumnarScan ${scan.description()}"
+
+  override def toBatch: Batch = this
+
+  private val shards = ShardOptions.create(options).shards
+
+  override def planInputPartitions(): Array[InputPartition] = {
+    scan.relation.parts.map { case part: JDBCPartition =>
+      // shard partitions have no where clause, and are indexed by shard
+      val url = if (shards.length == 1) shards(0) else shards(part.idx)
+      ShardInputPartition(url, ShardColumnarScan.statement(scan, part.whereClause, timeZone)): InputPartition
+    }
+  }
+
+  override def createReaderFactory(): PartitionReaderFactory = {
+    val properties = options.asConnectionProperties
+    val percentile = options.parameters.get(ShardOptions.HEDGE_READ_PERCENTILE).map(_.toDouble).getOrElse(0d)
+    val hedgeDeadlines = if (percentile > 0) {
+      shards.flatMap(url => ClickHouseArrowReader.parseUrl(url).hosts)
+        .flatMap(host => ReplicaLatencyTracker.percentile(host, percentile).map(host -> _)).toMap
+    } else {
+      Map.empty[String, Long]
+    }
+    val latencies = ReplicaLatencyAccumulator.register(scan.relation.sparkSession.sparkContext)
+    ShardColumnarReaderFactory(
+      Option(properties.getProperty(ClickHouseArrowReader.USER)),
+      Option(properties.getProperty(ClickHouseArrowReader.PASSWORD)),
+      ShardColumnarScan.httpHosts(options).getOrElse(Map.empty),
+      hedgeDeadlines,
+      latencies)
+  }
+}
+
+case class ShardColumnarReaderFactory(
+    user: Option[String],
+    password: Option[String],
+    httpHosts: Map[String, String],
+    hedgeDeadlines: Map[String, Long],
+    latencies: ReplicaLatencyAccumulator)
+  extends PartitionReaderFactory {
+
+  override def createReader(partition: InputPartition): PartitionReader[InternalRow] = {
+    throw new UnsupportedOperationException("Only columnar reads are supported")
+  }
+
+  override def createColumnarReader(partition: InputPartition): PartitionReader[ColumnarBatch] = {
+    val shard = partition.asInstanceOf[ShardInputPartition]
+    new ClickHouseArrowReader(shard.url, shard.query, user, password, httpHosts, hedgeDeadlines, Some(latencies))
+  }
+
+  override def supportColumnarReads(partition: InputPartition): Boolean = true
+}
+
+object ShardColumnarScan {
+
+  private val COLUMN_PREFIX = "c_"
+
+  def canRead(scan: JDBCScan, options: JDBCOptions): Boolean = {
+    options.parameters.get(ShardOptions.COLUMNAR_READ).exists(_.toBoolean) &&
+      ClickHouseDialect.canHandle(options.url) &&
+      httpHosts(options).isDefined &&
+      scan.readSchema().forall(field => toClickHouseType(field.dataType, "UTC").isDefined)
+  }
+
+  /**
+   * @return the `host:httpPort` by the `host:port` of the shard urls, None if any node has no HTTP port
+   */
+  def httpHosts(options: JDBCOptions): Option[Map[String, String]] = {
+    val httpHosts = options.parameters.get(ShardOptions.HTTP_PORTS).map(ShardOptions.parseHttpHosts)
+      .getOrElse(Map.empty)
+    val hosts = ShardOptions.create(options).shards.flatMap(url => ClickHouseArrowReader.parseUrl(url).hosts)
+    if (hosts.forall(httpHosts.contains)) Some(httpHosts) else None
+  }
+
+  /**
+   * The ClickHouse types whose Arrow output can be read by [[org.apache.spark.sql.vectorized.ArrowColumnVector]]
+   * as the Spark types. Other types are read through JDBC.
+   */
+  private[jdbc] def toClickHouseType(dataType: DataType, timeZone: String): Option[String] = {
+    val clickHouseType = dataType match {
+      case ByteType => Some("Int8")
+      case ShortType => Some("Int16")
+      case IntegerType => Some("Int32")
+      case LongType => Some("Int64")
+      case FloatType => Some("Float32")
+      case DoubleType => Some("Float64")
+      case StringType => Some("String")
+      case t: DecimalType => Some(s"Decimal(${t.precision}, ${t.scale})")
+      case DateType => Some("Date32")
+      case TimestampType => Some(s"DateTime64(6, '$timeZone')")
+      case _ => None
+    }
+    clickHouseType.map(t => s"Nullable($t)")
+  }
+
+  private[jdbc] def statement(scan: JDBCScan, whereClause: String, timeZone: String): String = {
+    val options = scan.relation.jdbcOptions
+    val dialect = JdbcDialects.get(options.url)
+    val columns = if (scan.groupByColumns.isEmpty) {
+      scan.prunedSchema.map(field => dialect.quoteIdentifier(field.name))
+    } else {
+      scan.pushedAggregateColumn.toSeq
+    }
+    val predicates = scan.pushedPredicates.flatMap(dialect.compileExpression(_)).map(p => s"($p)") ++
+      Option(whereClause).map(w => s"($w)")
+    val where = if (predicates.isEmpty) "" else predicates.mkString(" WHERE ", " AND ", "")
+    val groupBy = scan.groupByColumns.filter(_.nonEmpty).map(_.mkString(" GROUP BY ", ", ", "")).getOrElse("")
+    val orders = scan.sortOrders.flatMap(dialect.compileExpression(_))
+    val orderBy = if (orders.isEmpty) "" else orders.mkString(" ORDER BY ", ", ", "")
+    val limit = if (scan.pushedLimit > 0) s" LIMIT ${scan.pushedLimit}" else ""
+
+    val inner = columns.zipWithIndex.map { case (column, i) => s"$column AS $COLUMN_PREFIX$i" }
+      .mkString(", ")
+    val outer = scan.prunedSchema.zipWithIndex.map { case (field, i) =>
+      s"CAST($COLUMN_PREFIX$i AS ${toClickHouseType(field.dataType, timeZone).get}) AS $COLUMN_PREFIX$i"
+    }.mkString(", ")
+    s"SELECT $outer FROM (SELECT $inner FROM ${options.tableOrQuery}$where$groupBy$orderBy$limit)" +
+      " FORMAT ArrowStream"
+  }
+}
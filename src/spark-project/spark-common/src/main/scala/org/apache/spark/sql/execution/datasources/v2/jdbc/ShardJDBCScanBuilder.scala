@@ -34,7 +34,7 @@ class ShardJDBCScanBuilder(
 
     // TODO supports logical partitions and shard partitions together
     val shards = ShardOptions.create(jdbcOptions)
-    if (shards.shards.length == 1) {
+    val shardScan = if (shards.shards.length == 1) {
       scan
     } else {
       // Replace logical partitions of JDBC to shard partitions of ClickHouse.
@@ -42,5 +42,10 @@ class ShardJDBCScanBuilder(
       val newRelation = relation.copy(parts = newParts)(relation.sparkSession)
       scan.copy(relation = newRelation)
     }
+    if (ShardColumnarScan.canRead(shardScan, jdbcOptions)) {
+      ShardColumnarScan(shardScan, session.sessionState.conf.sessionLocalTimeZone)
+    } else {
+      shardScan
+    }
   }
 }
@@ -27,6 +27,7 @@ import org.apache.spark.sql.catalyst.expressions._
 import org.apache.spark.sql.catalyst.expressions.aggregate.{AggregateFunction, ImperativeAggregate, TypedImperativeAggregate}
 import org.apache.spark.sql.catalyst.plans.logical.LogicalPlan
 import org.apache.spark.sql.types._
+import org.apache.spark.sql.vectorized.ColumnVector
 
 // scalastyle:off
 @ExpressionDescription(usage = "ApproxCountDistinct(expr)")
@@ -60,6 +61,37 @@ abstract sealed class BasicApproxCountDistinct(
     buffer
   }
 
+  @transient private lazy val batchReader = new SlidingBinaryReader
+
+  /**
+   * Merge the serialized counters of a batch of rows in a tight loop, the registers of every row are read
+   * from one reusable buffer and merged in place, instead of deserializing a counter per row.
+   */
+  def mergeBatch(buffer: HLLCCounter.State, vector: ColumnVector, rowId: Int, numRows: Int): HLLCCounter.State = {
+    var i = rowId
+    while (i < rowId + numRows) {
+      val in = batchReader.read(vector, i)
+      if (in != null) {
+        mergeSerialized(buffer, in)
+      }
+      i += 1
+    }
+    buffer
+  }
+
+  protected def mergeSerialized(buffer: HLLCCounter.State, bytes: Array[Byte]): Unit = {
+    if (bytes != null && bytes.nonEmpty) {
+      mergeSerialized(buffer, ByteBuffer.wrap(bytes))
+    }
+  }
+
+  private def mergeSerialized(buffer: HLLCCounter.State, in: ByteBuffer): Unit = {
+    if (buffer.hllc.getState == null) {
+      buffer.hllc.aggregate(new HLLCounter(precision))
+    }
+    buffer.hllc.getState.mergeRegisters(in)
+  }
+
 
   override def serialize(buffer: HLLCCounter.State): Array[Byte] = {
     try {
@@ -158,7 +190,7 @@ case class ReuseApproxCountDistinct(
 
   override def update(buffer: HLLCCounter.State, input: InternalRow): HLLCCounter.State = {
     val colValue = child.eval(input)
-    buffer.hllc.aggregate(deserialize(colValue.asInstanceOf[Array[Byte]]).hllc.getState)
+    mergeSerialized(buffer, colValue.asInstanceOf[Array[Byte]])
     buffer
   }
 
@@ -190,10 +222,7 @@ case class ApproxCountDistinct(
 
   override def update(buffer: HLLCCounter.State, input: InternalRow): HLLCCounter.State = {
     val colValue = child.eval(input)
-    val state = deserialize(colValue.asInstanceOf[Array[Byte]]).hllc.getState
-    if (state != null) {
-      buffer.hllc.aggregate(state);
-    }
+    mergeSerialized(buffer, colValue.asInstanceOf[Array[Byte]])
     buffer
   }
 
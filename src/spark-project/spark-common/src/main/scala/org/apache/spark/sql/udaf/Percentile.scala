@@ -24,6 +24,7 @@ import org.apache.spark.sql.catalyst.InternalRow
 import org.apache.spark.sql.catalyst.expressions.aggregate.{ImperativeAggregate, TypedImperativeAggregate}
 import org.apache.spark.sql.catalyst.expressions.{Expression, Literal}
 import org.apache.spark.sql.types.{BinaryType, DataType, Decimal, DoubleType}
+import org.apache.spark.sql.vectorized.ColumnVector
 
 import java.nio.{BufferOverflowException, ByteBuffer}
 import scala.annotation.tailrec
@@ -77,6 +78,29 @@ case class Percentile(aggColumn: Expression,
     buffer
   }
 
+  @transient private lazy val batchReader = new SlidingBinaryReader
+  @transient private lazy val scratch = new PercentileCounter.MergeScratch
+
+  /**
+   * Merge the serialized counters of a batch of rows in a tight loop, the centroids of every row are read
+   * from one reusable buffer and added to the buffer directly, instead of deserializing a digest per row.
+   */
+  def mergeBatch(buffer: PercentileCounter, vector: ColumnVector, rowId: Int, numRows: Int): PercentileCounter = {
+    var i = rowId
+    while (i < rowId + numRows) {
+      val in = batchReader.read(vector, i)
+      if (in != null) {
+        mergeSerialized(buffer, in)
+      }
+      i += 1
+    }
+    buffer
+  }
+
+  private def mergeSerialized(buffer: PercentileCounter, in: ByteBuffer): Unit = {
+    buffer.mergeRegisters(in, scratch)
+  }
+
   override def prettyName: String = "percentile"
 
   override def dataType: DataType = outputType
@@ -93,7 +117,9 @@ case class Percentile(aggColumn: Expression,
       case d: Number =>
         buffer.add(d.doubleValue())
       case array: Array[Byte] =>
-        buffer.merge(deserialize(array))
+        if (array.nonEmpty) {
+          mergeSerialized(buffer, ByteBuffer.wrap(array))
+        }
       case d: Decimal =>
         buffer.add(d.toDouble)
       case _ =>
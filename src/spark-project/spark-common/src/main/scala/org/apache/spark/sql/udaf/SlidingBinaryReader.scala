@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.spark.sql.udaf
+
+import java.nio.ByteBuffer
+
+import org.apache.spark.sql.execution.vectorized.WritableColumnVector
+import org.apache.spark.sql.vectorized.ColumnVector
+
+/**
+ * Reads the binary values of a column vector into one reusable heap buffer, so the serialized measures of a
+ * whole batch can be parsed without allocating a byte array per row.
+ */
+class SlidingBinaryReader(initialSize: Int = 64 * 1024) {
+  private var buffer: ByteBuffer = ByteBuffer.allocate(initialSize)
+
+  /**
+   * @return the buffer holding the value of the row between position and limit, or null if the value is
+   *         null or empty. The buffer is only valid until the next read.
+   */
+  def read(vector: ColumnVector, rowId: Int): ByteBuffer = {
+    if (vector.isNullAt(rowId)) {
+      return null
+    }
+    vector match {
+      case writable: WritableColumnVector =>
+        // a view of the bytes in the vector, copied into the buffer without an intermediate array
+        val value = writable.getUTF8String(rowId)
+        if (value.numBytes() == 0) {
+          return null
+        }
+        ensureCapacity(value.numBytes())
+        buffer.clear()
+        value.writeTo(buffer)
+      case _ =>
+        val value = vector.getBinary(rowId)
+        if (value.isEmpty) {
+          return null
+        }
+        ensureCapacity(value.length)
+        buffer.clear()
+        buffer.put(value)
+    }
+    buffer.flip()
+    buffer
+  }
+
+  private def ensureCapacity(length: Int): Unit = {
+    if (buffer.capacity() < length) {
+      buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2))
+    }
+  }
+}
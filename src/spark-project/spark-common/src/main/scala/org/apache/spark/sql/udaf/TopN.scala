@@ -20,6 +20,7 @@ package org.apache.spark.sql.udaf
 
 import com.esotericsoftware.kryo.KryoException
 import com.esotericsoftware.kryo.io.{Input, KryoDataInput, KryoDataOutput, Output}
+import org.apache.kylin.common.util.ByteArray
 import org.apache.kylin.measure.topn.TopNCounter
 import org.apache.spark.internal.Logging
 import org.apache.spark.sql.catalyst.InternalRow
@@ -27,15 +28,20 @@ import org.apache.spark.sql.catalyst.expressions.aggregate.{ImperativeAggregate,
 import org.apache.spark.sql.catalyst.expressions.{Expression, UnsafeRow}
 import org.apache.spark.sql.catalyst.util.ArrayData
 import org.apache.spark.sql.types._
+import org.apache.spark.sql.vectorized.ColumnVector
 
-import scala.collection.JavaConverters._
+import scala.collection.mutable.ArrayBuffer
 
+/**
+ * The dimensions of an item are encoded with the dimension serializers into a ByteArray key, which is compact
+ * to hash and compare, and is exactly the layout of the dimensions in the serialized buffer.
+ */
 @SerialVersionUID(1)
 sealed abstract class BaseTopN(precision: Int,
                                internalSchema: StructType,
                                mutableAggBufferOffset: Int = 0,
                                inputAggBufferOffset: Int = 0
-                              ) extends TypedImperativeAggregate[TopNCounter[Seq[Any]]] with Serializable with Logging {
+                              ) extends TypedImperativeAggregate[TopNCounter[ByteArray]] with Serializable with Logging {
   lazy val serializers: Seq[NullSafeValueSerializer] =
     Seq(new DoubleSerializer) ++ internalSchema.drop(1).map(_.dataType).map {
       case BooleanType => new BooleanSerializer
@@ -51,27 +57,57 @@ sealed abstract class BaseTopN(precision: Int,
       case dt => throw new UnsupportedOperationException("Unsupported TopN dimension type: " + dt)
     }
 
-  override def createAggregationBuffer(): TopNCounter[Seq[Any]] = new TopNCounter[Seq[Any]](precision * TopNCounter.EXTRA_SPACE_RATE)
+  lazy val dimSerializers: Array[NullSafeValueSerializer] = serializers.drop(1).toArray
+
+  @transient private lazy val keyOutput = new Output(256, -1)
+  @transient private lazy val keyDataOutput = new KryoDataOutput(keyOutput)
 
-  override def merge(buffer: TopNCounter[Seq[Any]], input: TopNCounter[Seq[Any]]): TopNCounter[Seq[Any]] = {
-    input.getCounterList.asScala.foreach { c =>
-      buffer.offer(c.getItem, c.getCount)
+  protected def encodeKey(dimAt: Int => Any): ByteArray = {
+    keyOutput.clear()
+    var i = 0
+    while (i < dimSerializers.length) {
+      dimSerializers(i).serialize(keyDataOutput, dimAt(i))
+      i += 1
     }
+    ByteArray.copyOf(keyOutput.getBuffer, 0, keyOutput.position())
+  }
+
+  protected def decodeKey(key: ByteArray): Seq[Any] = {
+    val in = new KryoDataInput(new Input(key.array(), key.offset(), key.length()))
+    dimSerializers.map(_.deserialize(in)).toSeq
+  }
+
+  override def createAggregationBuffer(): TopNCounter[ByteArray] = new TopNCounter[ByteArray](precision * TopNCounter.EXTRA_SPACE_RATE)
+
+  override def merge(buffer: TopNCounter[ByteArray], input: TopNCounter[ByteArray]): TopNCounter[ByteArray] = {
+    input.forEachEntry(new TopNCounter.EntryConsumer[ByteArray] {
+      override def accept(item: ByteArray, count: Double, nullCount: Boolean): Unit = {
+        if (nullCount) {
+          buffer.offer(item, null)
+        } else {
+          buffer.offerCount(item, count)
+        }
+      }
+    })
     buffer
   }
 
-  override def eval(buffer: TopNCounter[Seq[Any]]): Any = {
+  override def eval(buffer: TopNCounter[ByteArray]): Any = {
     buffer.sortAndRetain()
-    val seq = buffer.getCounterList.asScala.map(
-      entry => InternalRow(entry.getCount, InternalRow(entry.getItem: _*))
-    )
+    val seq = new ArrayBuffer[InternalRow](buffer.size())
+    buffer.forEachEntry(new TopNCounter.EntryConsumer[ByteArray] {
+      override def accept(item: ByteArray, count: Double, nullCount: Boolean): Unit = {
+        val measure = if (nullCount) null else count
+        seq += InternalRow(measure, InternalRow(decodeKey(item): _*))
+      }
+    })
     ArrayData.toArrayData(seq)
   }
 
   var array: Array[Byte] = _
   var output: Output = _
 
-  override def serialize(topNCounter: TopNCounter[Seq[Any]]): Array[Byte] = {
+  override def serialize(topNCounter: TopNCounter[ByteArray]): Array[Byte] = {
     try {
       if (topNCounter != null) {
         if (array == null) {
@@ -81,14 +117,14 @@ sealed abstract class BaseTopN(precision: Int,
         output.clear()
         val out = new KryoDataOutput(output)
         topNCounter.sortAndRetain()
-        val counters = topNCounter.getCounterList
-        out.writeInt(counters.size())
-        counters.asScala.foreach { counter =>
-          val values = Seq(counter.getCount) ++ counter.getItem
-          values.zip(serializers).foreach { case (value, ser) =>
-            ser.serialize(out, value)
+        out.writeInt(topNCounter.size())
+        val countSerializer = serializers.head
+        topNCounter.forEachEntry(new TopNCounter.EntryConsumer[ByteArray] {
+          override def accept(item: ByteArray, count: Double, nullCount: Boolean): Unit = {
+            countSerializer.serialize(out, if (nullCount) null else count)
+            out.write(item.array(), item.offset(), item.length())
           }
-        }
+        })
         val i = output.position()
         output.close()
         array.slice(0, i)
@@ -106,24 +142,59 @@ sealed abstract class BaseTopN(precision: Int,
     }
   }
 
-  override def deserialize(bytes: Array[Byte]): TopNCounter[Seq[Any]] = {
-    val topNCounter = new TopNCounter[Seq[Any]](precision * TopNCounter.EXTRA_SPACE_RATE)
+  override def deserialize(bytes: Array[Byte]): TopNCounter[ByteArray] = {
+    val topNCounter = new TopNCounter[ByteArray](precision * TopNCounter.EXTRA_SPACE_RATE)
     if (bytes.nonEmpty) {
-      val in = new KryoDataInput(new Input(bytes))
-      val size = in.readInt()
-      for (_ <- 0 until size) {
-        val values = serializers.map(_.deserialize(in))
-        val item = values.drop(1)
-        if (values.head == null) {
-          topNCounter.offer(item, null)
-        } else {
-          topNCounter.offer(item, values.head.asInstanceOf[Double])
-        }
-      }
+      val input = new Input(bytes)
+      mergeSerialized(topNCounter, input, new KryoDataInput(input))
     }
     topNCounter
   }
 
+  @transient private lazy val batchReader = new SlidingBinaryReader
+  @transient private lazy val batchInput = new Input()
+  @transient private lazy val batchDataInput = new KryoDataInput(batchInput)
+
+  /**
+   * Merge the serialized counters of a batch of rows in a tight loop, the entries of every row are read from
+   * one reusable buffer and offered to the buffer directly, instead of deserializing a counter per row.
+   */
+  def mergeBatch(buffer: TopNCounter[ByteArray], vector: ColumnVector, rowId: Int, numRows: Int): TopNCounter[ByteArray] = {
+    var i = rowId
+    while (i < rowId + numRows) {
+      val in = batchReader.read(vector, i)
+      if (in != null) {
+        batchInput.setBuffer(in.array(), in.position(), in.remaining())
+        mergeSerialized(buffer, batchInput, batchDataInput)
+      }
+      i += 1
+    }
+    buffer
+  }
+
+  private def mergeSerialized(topNCounter: TopNCounter[ByteArray], input: Input, in: KryoDataInput): Unit = {
+    val countSerializer = serializers.head
+    val size = in.readInt()
+    var n = 0
+    while (n < size) {
+      val count = countSerializer.deserialize(in)
+      // the serialized dimensions are the key, skip them by their lengths instead of decoding
+      val start = input.position()
+      var i = 0
+      while (i < dimSerializers.length) {
+        in.skipBytes(in.readInt())
+        i += 1
+      }
+      val item = ByteArray.copyOf(input.getBuffer, start, input.position() - start)
+      if (count == null) {
+        topNCounter.offer(item, null)
+      } else {
+        topNCounter.offerCount(item, count.asInstanceOf[Double])
+      }
+      n += 1
+    }
+  }
+
   override def nullable: Boolean = false
 
   override def dataType: DataType = ArrayType(
@@ -146,23 +217,14 @@ case class ReuseTopN(
     StructField("dim", dimType)
   ))
 
-  override def update(buffer: TopNCounter[Seq[Any]], input: InternalRow): TopNCounter[Seq[Any]] = {
+  private lazy val dimTypes: Array[DataType] = dimType.fields.map(_.dataType)
+
+  override def update(buffer: TopNCounter[ByteArray], input: InternalRow): TopNCounter[ByteArray] = {
     val datum = child.eval(input).asInstanceOf[ArrayData].toArray[UnsafeRow](innerType)
     datum.foreach { data =>
       val value = data.getDouble(0)
       val dims = data.get(1, dimType).asInstanceOf[InternalRow]
-      val item = dimType.fields.map(_.dataType).zipWithIndex.map {
-        case (StringType, index) =>
-          val result = dims.get(index, StringType)
-          if (null != result) {
-            dims.getString(index)
-          } else {
-            result
-          }
-        case (dataType, index) =>
-          dims.get(index, dataType)
-      }.toSeq
-      buffer.offer(item, value)
+      buffer.offerCount(encodeKey(index => dims.get(index, dimTypes(index))), value)
     }
     buffer
   }
@@ -187,23 +249,16 @@ case class EncodeTopN(
                        mutableAggBufferOffset: Int = 0,
                        inputAggBufferOffset: Int = 0)
   extends BaseTopN(precision, internalSchema, mutableAggBufferOffset, inputAggBufferOffset) {
-  override def update(counter: TopNCounter[Seq[Any]], input: InternalRow): TopNCounter[Seq[Any]] = {
+  private lazy val dimensionArray: Array[Expression] = dimensions.toArray
+
+  override def update(counter: TopNCounter[ByteArray], input: InternalRow): TopNCounter[ByteArray] = {
     val m = measure.eval(input)
-    val dims = dimensions.map {
-      case str: Expression if str.dataType.isInstanceOf[StringType] =>
-        val value = str.eval(input)
-        if (value != null) {
-          value.toString
-        } else {
-          null
-        }
-      case str =>
-        str.eval(input)
-    }
+    // string dimensions are encoded from UTF8String directly
+    val key = encodeKey(index => dimensionArray(index).eval(input))
     if (m == null) {
-      counter.offer(dims, null)
+      counter.offer(key, null)
     } else {
-      counter.offer(dims, m.toString.toDouble)
+      counter.offerCount(key, m.toString.toDouble)
     }
     counter
   }
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.datasource.storage
+
+import org.apache.hadoop.fs.Path
+import org.apache.spark.sql.common.{SharedSparkSession, SparderBaseFunSuite}
+import org.apache.spark.sql.execution.datasource.FilePruner
+import org.apache.spark.sql.functions.col
+import org.apache.spark.util.Utils
+
+class LayoutFileCompactorSuite extends SparderBaseFunSuite with SharedSparkSession {
+
+  test("merge the files of the same shard without decoding") {
+    val dir = Utils.createTempDir()
+    try {
+      val conf = spark.sparkContext.hadoopConfiguration
+      val sources = (0 until 2).map { i =>
+        val path = new Path(dir.getAbsolutePath, s"seg$i")
+        spark.range(i * 100, i * 100 + 100).toDF("1").repartition(4, col("1")).write.parquet(path.toString)
+        path
+      }
+      assert(LayoutFileCompactor.isSchemaMatched(sources, conf))
+
+      val output = new Path(dir.getAbsolutePath, "merged")
+      val (numFiles, _) = LayoutFileCompactor.compact(sources, output, sharded = true, 0L, spark)
+      val shards = LayoutFileCompactor.listParquetFiles(output, conf).map(f => FilePruner.getPartitionId(f.getPath))
+      assert(numFiles == shards.size)
+      assert(shards.sorted == shards.distinct.sorted)
+      assert(spark.read.parquet(output.toString).count() == 200)
+      assert(spark.read.parquet(output.toString).distinct().count() == 200)
+
+      val packed = new Path(dir.getAbsolutePath, "packed")
+      val (packedFiles, _) = LayoutFileCompactor.compact(sources, packed, sharded = false, 1L << 30, spark)
+      assert(packedFiles == 1)
+      assert(spark.read.parquet(packed.toString).count() == 200)
+    } finally {
+      Utils.deleteRecursively(dir)
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution
+
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.common.{LocalMetadata, SharedSparkSession, SparderBaseFunSuite}
+import org.apache.spark.sql.execution.SegmentFileScan.{scanOf, withSegmentFiles}
+import org.apache.spark.sql.execution.datasources.FilePartition
+
+class KylinFileSourceScanExecSuite extends SparderBaseFunSuite with SharedSparkSession with LocalMetadata {
+
+  private val segmentIds = Seq("seg_3", "seg_2", "seg_1")
+
+  private def segmentsOf(partition: FilePartition): Seq[String] = {
+    partition.files.map(file => segmentIds.find(id => file.filePath.contains(s"/$id/")).get).distinct.toSeq
+  }
+
+  test("take rows incrementally") {
+    val readPartitions = spark.sparkContext.longAccumulator
+    // 10 partitions of 10 rows
+    val rdd = spark.sparkContext.parallelize(0 until 100, 10).mapPartitions { iter =>
+      readPartitions.add(1)
+      iter.map(i => InternalRow(i))
+    }
+
+    val first = KylinFileSourceScanExec.takeIncrementally(rdd, 5, 4)
+    assert(first.map(_.getInt(0)).toSeq == (0 until 5))
+    assert(readPartitions.value == 1)
+
+    readPartitions.reset()
+    // the second batch reads 3 partitions for the 15 rows left
+    assert(KylinFileSourceScanExec.takeIncrementally(rdd, 25, 4).length == 25)
+    assert(readPartitions.value <= 4)
+
+    assert(KylinFileSourceScanExec.takeIncrementally(rdd, 1000, 4).length == 100)
+  }
+
+  test("take rows when the first partitions are empty") {
+    val rdd = spark.sparkContext.parallelize(0 until 100, 10)
+      .filter(_ >= 90)
+      .map(i => InternalRow(i))
+    assert(KylinFileSourceScanExec.takeIncrementally(rdd, 3, 4).map(_.getInt(0)).toSeq == (90 until 93))
+  }
+
+  test("find the narrow scan") {
+    val plan = spark.range(0, 10).filter("id > 1").limit(1).queryExecution.executedPlan
+    assert(plan.isInstanceOf[CollectLimitExec])
+    // a range is not a scan of kylin
+    assert(KylinFileSourceScanExec.narrowScan(plan.asInstanceOf[CollectLimitExec].child).isEmpty)
+  }
+
+  test("pack the files of a limited scan by segment, the newest first") {
+    withSegmentFiles(spark, segmentIds, 2) { df =>
+      // the small files of all segments are packed into one partition
+      val scan = scanOf(df.queryExecution.executedPlan)
+      val partitions = scan.inputRDD.partitions.map(_.asInstanceOf[FilePartition])
+      assert(partitions.length == 1)
+      assert(segmentsOf(partitions.head).size == 3)
+
+      val limitedScan = scan.clone().asInstanceOf[KylinFileSourceScanExec]
+      limitedScan.setTagValue(KylinFileSourceScanExec.LIMITED_SCAN, 5)
+      val limitedPartitions = limitedScan.inputRDD.partitions.map(_.asInstanceOf[FilePartition])
+      assert(limitedPartitions.map(segmentsOf).toSeq == segmentIds.map(Seq(_)))
+      assert(limitedPartitions.map(_.files.length).sum == 6)
+    }
+  }
+
+  test("take rows of the newest segment by a limited scan") {
+    withSegmentFiles(spark, segmentIds, 2) { df =>
+      val plan = df.limit(5).queryExecution.executedPlan
+      assert(plan.isInstanceOf[CollectLimitExec])
+      val child = plan.asInstanceOf[CollectLimitExec].child
+      val scan = KylinFileSourceScanExec.narrowScan(child)
+      assert(scan.isDefined)
+
+      val rows = KylinFileSourceScanExec.executeTake(scan.get, child, 5)
+      assert(rows.length == 5)
+      assert(rows.forall(_.getUTF8String(0).toString == "seg_3"))
+      assert(scan.get.getTagValue(KylinFileSourceScanExec.LIMITED_SCAN).contains(5))
+      // only the partition of the newest segment is read
+      assert(scan.get.metrics("numOutputRows").value <= 20)
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution
+
+import java.io.File
+
+import org.apache.hadoop.fs.Path
+import org.apache.spark.sql.catalyst.expressions.And
+import org.apache.spark.sql.catalyst.planning.PhysicalOperation
+import org.apache.spark.sql.catalyst.plans.logical.LogicalPlan
+import org.apache.spark.sql.execution.datasource.SegmentOrdering
+import org.apache.spark.sql.execution.datasources.{HadoopFsRelation, InMemoryFileIndex, LogicalRelation}
+import org.apache.spark.sql.execution.datasources.parquet.ParquetFileFormat
+import org.apache.spark.sql.types.{LongType, StringType, StructField, StructType}
+import org.apache.spark.sql.{DataFrame, SparkSession, Strategy}
+import org.apache.spark.util.Utils
+
+/**
+ * The parquet files of segments, read by a KylinFileSourceScanExec as the layout files of a dataflow are.
+ */
+object SegmentFileScan {
+
+  val SCHEMA: StructType = StructType(Seq(StructField("SEG", StringType), StructField("ID", LongType)))
+
+  class SegmentFileIndex(spark: SparkSession, dir: String, override val newestFirstSegmentIds: Seq[String])
+    extends InMemoryFileIndex(spark, newestFirstSegmentIds.map(id => new Path(dir, id)), Map.empty, None)
+      with SegmentOrdering
+
+  object SegmentFileScanStrategy extends Strategy {
+    override def apply(plan: LogicalPlan): Seq[SparkPlan] = plan match {
+      case PhysicalOperation(projects, filters,
+          l @ LogicalRelation(fsRelation @ HadoopFsRelation(_: SegmentFileIndex, _, _, _, _, _), _, _, _)) =>
+        val scan = new KylinFileSourceScanExec(fsRelation, l.output, fsRelation.dataSchema, Nil, None, None, Nil,
+          None, false, 0)
+        val withFilter = filters.reduceOption(And).map(FilterExec(_, scan)).getOrElse(scan)
+        ProjectExec(projects, withFilter) :: Nil
+      case _ => Nil
+    }
+  }
+
+  /**
+   * Writes the files of the segments, segment i has the ids [0, 10 * filesPerSegment) in filesPerSegment files,
+   * and reads them by a KylinFileSourceScanExec.
+   */
+  def withSegmentFiles(spark: SparkSession, newestFirstSegmentIds: Seq[String], filesPerSegment: Int)
+                      (f: DataFrame => Unit): Unit = {
+    val dir = Utils.createTempDir().getCanonicalPath
+    newestFirstSegmentIds.foreach { id =>
+      spark.range(0, 10 * filesPerSegment, 1, filesPerSegment)
+        .selectExpr(s"'$id' as SEG", "id as ID")
+        .write.parquet(new Path(dir, id).toString)
+    }
+    val index = new SegmentFileIndex(spark, dir, newestFirstSegmentIds)
+    val relation = HadoopFsRelation(index, index.partitionSchema, SCHEMA, None, new ParquetFileFormat, Map.empty)(spark)
+    val strategies = spark.experimental.extraStrategies
+    spark.experimental.extraStrategies = strategies :+ SegmentFileScanStrategy
+    try {
+      f(spark.baseRelationToDataFrame(relation))
+    } finally {
+      spark.experimental.extraStrategies = strategies
+      Utils.deleteRecursively(new File(dir))
+    }
+  }
+
+  def scanOf(plan: SparkPlan): KylinFileSourceScanExec = {
+    plan.collectFirst { case scan: KylinFileSourceScanExec => scan }.get
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasource
+
+import org.apache.hadoop.fs.{FileStatus, Path}
+import org.apache.spark.sql.common.{LocalMetadata, SparderBaseFunSuite}
+
+class LayoutFileManifestCacheSuite extends SparderBaseFunSuite with LocalMetadata {
+
+  test("manifest is loaded once until the segment is built again") {
+    LayoutFileManifestCache.invalidateAll()
+    val path = new Path("/working_dir/default/parquet/df_id/seg_id/1")
+    val files = Seq(new FileStatus(1024L, false, 1, 1024L, 0L, new Path(path, "part-00000.parquet")))
+    var loads = 0
+    def load(): Seq[FileStatus] = {
+      loads += 1
+      files
+    }
+
+    assert(LayoutFileManifestCache.getOrLoad(path, 1L)(load()) == files)
+    assert(LayoutFileManifestCache.getOrLoad(path, 1L)(load()) == files)
+    assert(loads == 1)
+
+    LayoutFileManifestCache.getOrLoad(path, 2L)(load())
+    assert(loads == 2)
+    assert(LayoutFileManifestCache.size() == 1)
+  }
+
+  test("manifests are evicted by segment and dataflow") {
+    LayoutFileManifestCache.invalidateAll()
+    def load(path: Path): Seq[FileStatus] = {
+      Seq(new FileStatus(1024L, false, 1, 1024L, 0L, new Path(path, "part-00000.parquet")))
+    }
+    val paths = Seq("df_1/seg_1/1", "df_1/seg_1/2", "df_1/seg_2/1", "df_2/seg_1/1")
+      .map(layout => new Path(s"/working_dir/default/parquet/$layout"))
+    paths.foreach(path => LayoutFileManifestCache.getOrLoad(path, 1L)(load(path)))
+    assert(LayoutFileManifestCache.size() == 4)
+
+    LayoutFileManifestCache.invalidateSegment("df_1", "seg_1")
+    assert(LayoutFileManifestCache.size() == 2)
+    LayoutFileManifestCache.invalidateDataflow("df_1")
+    assert(LayoutFileManifestCache.size() == 1)
+    var loads = 0
+    LayoutFileManifestCache.getOrLoad(paths.last, 1L) {
+      loads += 1
+      load(paths.last)
+    }
+    assert(loads == 0)
+  }
+}
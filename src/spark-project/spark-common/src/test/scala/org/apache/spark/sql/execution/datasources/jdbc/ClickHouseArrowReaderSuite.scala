@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.jdbc
+
+import java.io.{ByteArrayOutputStream, IOException}
+import java.net.InetSocketAddress
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.Executors
+
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.io.Source
+
+import com.sun.net.httpserver.{HttpExchange, HttpServer}
+import org.apache.arrow.vector.{IntVector, VarCharVector, VectorSchemaRoot}
+import org.apache.arrow.vector.ipc.ArrowStreamWriter
+import org.apache.spark.sql.common.SparderBaseFunSuite
+import org.apache.spark.sql.execution.datasources.v2.jdbc.ShardColumnarScan
+import org.apache.spark.sql.util.ArrowUtils
+
+class ClickHouseArrowReaderSuite extends SparderBaseFunSuite {
+
+  private val requests = mutable.ArrayBuffer.empty[(String, String, String)]
+
+  // a stand-in of the ClickHouse HTTP interface, answers two blocks of (id Int32, name String)
+  private def withServer(body: String => Unit): Unit = withServers(0L)(ports => body(jdbcUrl(ports.head)))
+
+  private def withServers(delays: Long*)(body: Seq[Int] => Unit): Unit = {
+    val servers = delays.map { delay =>
+      val server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+      server.setExecutor(Executors.newCachedThreadPool())
+      server.createContext("/", (exchange: HttpExchange) => {
+        val query = Source.fromInputStream(exchange.getRequestBody, "UTF-8").mkString
+        requests += ((exchange.getRequestURI.toString, exchange.getRequestHeaders.getFirst("X-ClickHouse-User"),
+          query))
+        Thread.sleep(delay)
+        val (code, response) = if (query.startsWith("SELECT")) (200, arrowBlocks()) else (500, "bad query".getBytes)
+        exchange.sendResponseHeaders(code, response.length)
+        exchange.getResponseBody.write(response)
+        exchange.close()
+      })
+      server.start()
+      server
+    }
+    try body(servers.map(_.getAddress.getPort))
+    finally servers.foreach(_.stop(0))
+  }
+
+  private def jdbcUrl(ports: Int*): String =
+    s"jdbc:clickhouse://${ports.map(port => s"localhost:$port").mkString(",")}/db1?user=default&socket_timeout=60000"
+
+  // the stand-in answers HTTP on the port of the url
+  private def sameHosts(jdbcUrl: String): Map[String, String] =
+    ClickHouseArrowReader.parseUrl(jdbcUrl).hosts.map(host => host -> host).toMap
+
+  private def readAll(reader: ClickHouseArrowReader): Seq[(Int, String)] = {
+    val rows = mutable.ArrayBuffer.empty[(Int, String)]
+    try {
+      while (reader.next()) {
+        reader.get().rowIterator().asScala.foreach { row =>
+          rows += ((row.getInt(0), if (row.isNullAt(1)) null else row.getUTF8String(1).toString))
+        }
+      }
+    } finally {
+      reader.close()
+    }
+    rows
+  }
+
+  private def arrowBlocks(): Array[Byte] = {
+    val allocator = ArrowUtils.rootAllocator.newChildAllocator("test", 0, Long.MaxValue)
+    val ids = new IntVector("c_0", allocator)
+    val names = new VarCharVector("c_1", allocator)
+    val root = VectorSchemaRoot.of(ids, names)
+    val out = new ByteArrayOutputStream()
+    val writer = new ArrowStreamWriter(root, null, out)
+    writer.start()
+    Seq(0 until 3, 3 until 5).foreach { block =>
+      ids.allocateNew(block.size)
+      names.allocateNew(block.size)
+      block.zipWithIndex.foreach { case (id, i) =>
+        ids.set(i, id)
+        if (id % 2 == 0) names.set(i, s"name$id".getBytes(StandardCharsets.UTF_8)) else names.setNull(i)
+      }
+      root.setRowCount(block.size)
+      writer.writeBatch()
+    }
+    writer.end()
+    root.close()
+    allocator.close()
+    out.toByteArray
+  }
+
+  test("http url of shard") {
+    val shardUrl = ClickHouseArrowReader.parseUrl("jdbc:clickhouse://127.0.0.1:8123,127.0.0.2:8123?user=u&password=p=1")
+    assert(shardUrl.hosts == Seq("127.0.0.1:8123", "127.0.0.2:8123"))
+    assert(shardUrl.params == Map("user" -> "u", "password" -> "p=1"))
+    assert(shardUrl.httpUrl("127.0.0.2:8123") == "http://127.0.0.2:8123/?output_format_arrow_string_as_string=1")
+    assert(ClickHouseArrowReader.parseUrl("jdbc:clickhouse://127.0.0.1:8123/db1").httpUrl("127.0.0.1:8123") ==
+      "http://127.0.0.1:8123/?output_format_arrow_string_as_string=1&database=db1")
+  }
+
+  test("read blocks as columnar batches") {
+    withServer { jdbcUrl =>
+      val host = ClickHouseArrowReader.parseUrl(jdbcUrl).hosts.head
+      val reader = new ClickHouseArrowReader(jdbcUrl, "SELECT c_0, c_1 FORMAT ArrowStream", None, None,
+        sameHosts(jdbcUrl))
+      // the read is in flight from the open to the close
+      assert(ReplicaLatencyTracker.inFlight(host) == 1)
+      assert(readAll(reader) == Seq(0 -> "name0", 1 -> null, 2 -> "name2", 3 -> null, 4 -> "name4"))
+      assert(ReplicaLatencyTracker.inFlight(host) == 0)
+      val (uri, user, query) = requests.last
+      assert(uri == "/?output_format_arrow_string_as_string=1&database=db1")
+      assert(user == "default")
+      assert(query == "SELECT c_0, c_1 FORMAT ArrowStream")
+    }
+  }
+
+  test("hedge to the other replica after the deadline") {
+    withServers(5000L, 0L) { case Seq(slow, fast) =>
+      val latencies = new ReplicaLatencyAccumulator
+      val reader = new ClickHouseArrowReader(jdbcUrl(slow, fast), "SELECT c_0, c_1 FORMAT ArrowStream", None, None,
+        sameHosts(jdbcUrl(slow, fast)), Map(s"localhost:$slow" -> 100L), Some(latencies))
+      assert(readAll(reader).size == 5)
+      val latency = latencies.value.get(0)
+      assert(latency.primary == s"localhost:$slow")
+      assert(latency.node == s"localhost:$fast")
+      assert(latency.hedged)
+      assert(latency.latencyMs < 5000L)
+    }
+  }
+
+  test("error of shard") {
+    withServer { jdbcUrl =>
+      val e = intercept[IOException](new ClickHouseArrowReader(jdbcUrl, "bad", None, None, sameHosts(jdbcUrl)))
+      assert(e.getMessage.contains("500: bad query"))
+      assert(ReplicaLatencyTracker.inFlight(ClickHouseArrowReader.parseUrl(jdbcUrl).hosts.head) == 0)
+    }
+  }
+
+  test("read native protocol url by the http port") {
+    withServers(0L) { case Seq(httpPort) =>
+      val nativeUrl = "jdbc:clickhouse://localhost:9000/db1?user=default"
+      val httpHosts = ShardOptions.parseHttpHosts(ShardOptions.buildHttpPorts(Map("localhost:9000" -> httpPort)))
+      assert(httpHosts == Map("localhost:9000" -> s"localhost:$httpPort"))
+      val reader = new ClickHouseArrowReader(nativeUrl, "SELECT c_0, c_1 FORMAT ArrowStream", None, None, httpHosts)
+      assert(readAll(reader).size == 5)
+      assert(requests.last._1 == "/?output_format_arrow_string_as_string=1&database=db1")
+
+      // the native port is never taken as the http port
+      val e = intercept[IOException](new ClickHouseArrowReader(nativeUrl, "SELECT 1", None, None, Map.empty))
+      assert(e.getMessage.contains("No HTTP port of ClickHouse node localhost:9000"))
+    }
+  }
+
+  test("fall back to jdbc when the http port is unknown") {
+    def options(httpPorts: Option[String]): JDBCOptions = new JDBCOptions(Map(
+      "url" -> "jdbc:clickhouse://127.0.0.1:9000,127.0.0.2:9000/db1",
+      "dbtable" -> "t1",
+      ShardOptions.SHARD_URLS -> ShardOptions.buildSharding(
+        "jdbc:clickhouse://127.0.0.1:9000,127.0.0.2:9000/db1", "jdbc:clickhouse://127.0.0.3:9000/db1")) ++
+      httpPorts.map(ShardOptions.HTTP_PORTS -> _))
+
+    assert(ShardColumnarScan.httpHosts(options(None)).isEmpty)
+    assert(ShardColumnarScan.httpHosts(options(Some("127.0.0.1:9000=8123,127.0.0.2:9000=8123"))).isEmpty)
+    assert(ShardColumnarScan.httpHosts(options(Some("127.0.0.1:9000=8123,127.0.0.2:9000=8123,127.0.0.3:9000=8124")))
+      .contains(Map(
+        "127.0.0.1:9000" -> "127.0.0.1:8123",
+        "127.0.0.2:9000" -> "127.0.0.2:8123",
+        "127.0.0.3:9000" -> "127.0.0.3:8124")))
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.sql.execution.datasources.jdbc
+
+import scala.collection.JavaConverters._
+
+import org.apache.spark.sql.common.SparderBaseFunSuite
+
+class ReplicaLatencyTrackerSuite extends SparderBaseFunSuite {
+
+  override def beforeEach(): Unit = {
+    super.beforeEach()
+    ReplicaLatencyTracker.clear()
+  }
+
+  test("score by latency and in-flight reads") {
+    ReplicaLatencyTracker.record("a:8123", 100)
+    ReplicaLatencyTracker.record("b:8123", 300)
+    assert(ReplicaLatencyTracker.score("a:8123") == 100)
+    assert(ReplicaLatencyTracker.score("b:8123") == 300)
+    // unknown nodes are tried first
+    assert(ReplicaLatencyTracker.score("c:8123") == 0)
+
+    ReplicaLatencyTracker.record("a:8123", 200)
+    assert(ReplicaLatencyTracker.score("a:8123") == 120)
+    (0 until 2).foreach(_ => ReplicaLatencyTracker.begin("a:8123"))
+    assert(ReplicaLatencyTracker.score("a:8123") == 360)
+    ReplicaLatencyTracker.end("a:8123")
+    assert(ReplicaLatencyTracker.score("a:8123") == 240)
+  }
+
+  test("percentile of recent latency") {
+    (1 to 15).foreach(i => ReplicaLatencyTracker.record("a:8123", i))
+    assert(ReplicaLatencyTracker.percentile("a:8123", 90).isEmpty)
+    (16 to 300).foreach(i => ReplicaLatencyTracker.record("a:8123", i))
+    // the last 128 latencies are 173 to 300
+    assert(ReplicaLatencyTracker.percentile("a:8123", 50).contains(236))
+    assert(ReplicaLatencyTracker.percentile("a:8123", 100).contains(300))
+    assert(ReplicaLatencyTracker.percentile("b:8123", 50).isEmpty)
+  }
+
+  test("merge latency of tasks") {
+    val task = new ReplicaLatencyAccumulator
+    task.add(ReplicaLatency("a:8123", "b:8123", 50, hedged = true))
+    val driver = new ReplicaLatencyAccumulator
+    driver.merge(task)
+    assert(driver.value.asScala == Seq(ReplicaLatency("a:8123", "b:8123", 50, hedged = true)))
+    // merging records nothing, the latency is recorded as the task ends
+    assert(ReplicaLatencyTracker.score("b:8123") == 0)
+
+    ReplicaLatencyAccumulator.record(task.value.asScala)
+    assert(ReplicaLatencyTracker.score("a:8123") == 0)
+    assert(ReplicaLatencyTracker.score("b:8123") == 50)
+  }
+}
@@ -19,7 +19,9 @@ package org.apache.spark.sql.udaf
 
 import org.apache.spark.sql.catalyst.expressions.{BoundReference, GenericInternalRow}
 import org.apache.spark.sql.common.SparderBaseFunSuite
-import org.apache.spark.sql.types.LongType
+import org.apache.spark.sql.execution.vectorized.OnHeapColumnVector
+import org.apache.spark.sql.types.{BinaryType, DoubleType, LongType, StringType, StructField, StructType}
+import org.apache.spark.unsafe.types.UTF8String
 
 class UDAFFunSuite extends SparderBaseFunSuite {
 
@@ -106,4 +108,106 @@ class UDAFFunSuite extends SparderBaseFunSuite {
     distinct.update(state, row)
     assert(state == distinct.createAggregationBuffer())
   }
+
+  test("update by serialized measures") {
+    val rows = 10
+
+    val hllc = ApproxCountDistinct(BoundReference(0, BinaryType, nullable = true), 14)
+    val expectedHllc = hllc.createAggregationBuffer()
+    val mergedHllc = hllc.createAggregationBuffer()
+    Range(0, rows).foreach { i =>
+      val state = hllc.createAggregationBuffer()
+      Range(0, 1000).foreach(num => state.hllc.add(String.valueOf(i * 500 + num)))
+      hllc.update(mergedHllc, new GenericInternalRow(Array[Any](hllc.serialize(state))))
+      hllc.merge(expectedHllc, state)
+    }
+    hllc.update(mergedHllc, new GenericInternalRow(Array[Any](null)))
+    assert(hllc.eval(mergedHllc) == hllc.eval(expectedHllc))
+
+    val percentile = Percentile(BoundReference(0, BinaryType, nullable = true), 100)
+    val expectedPercentile = percentile.createAggregationBuffer()
+    val mergedPercentile = percentile.createAggregationBuffer()
+    Range(0, rows).foreach { i =>
+      val counter = percentile.createAggregationBuffer()
+      Range(0, 100).foreach(num => counter.add(i * 100 + num))
+      percentile.update(mergedPercentile, new GenericInternalRow(Array[Any](percentile.serialize(counter))))
+      percentile.merge(expectedPercentile, counter)
+    }
+    // t-digest merges centroids in random order, the estimates are close but not always identical
+    assert(math.abs(mergedPercentile.getResultEstimateWithQuantileRatio(0.5)
+      - expectedPercentile.getResultEstimateWithQuantileRatio(0.5)) < 10)
+
+    val schema = StructType(Seq(StructField("measure", DoubleType), StructField("dim", StringType)))
+    val topN = EncodeTopN(10, schema, BoundReference(0, DoubleType, nullable = true),
+      Seq(BoundReference(1, StringType, nullable = true)))
+    val expectedTopN = topN.createAggregationBuffer()
+    val mergedTopN = topN.createAggregationBuffer()
+    Range(0, rows).foreach { i =>
+      val counter = topN.createAggregationBuffer()
+      Range(0, 100).foreach { num =>
+        topN.update(counter, new GenericInternalRow(Array[Any](num.toDouble, UTF8String.fromString("dim_" + (i + num)))))
+      }
+      topN.merge(mergedTopN, topN.deserialize(topN.serialize(counter)))
+      topN.merge(expectedTopN, counter)
+    }
+    assert(topN.eval(mergedTopN) == topN.eval(expectedTopN))
+  }
+
+  test("merge batch of serialized measures") {
+    val rows = 10
+    val vector = new OnHeapColumnVector(rows + 1, BinaryType)
+
+    val hllc = ApproxCountDistinct(BoundReference(0, BinaryType, nullable = true), 14)
+    val rowWiseHllc = hllc.createAggregationBuffer()
+    Range(0, rows).foreach { i =>
+      val state = hllc.createAggregationBuffer()
+      Range(0, 1000).foreach(num => state.hllc.add(String.valueOf(i * 500 + num)))
+      vector.putByteArray(i, hllc.serialize(state))
+      hllc.update(rowWiseHllc, new GenericInternalRow(Array[Any](hllc.serialize(state))))
+    }
+    vector.putNull(rows)
+    hllc.update(rowWiseHllc, new GenericInternalRow(Array[Any](null)))
+    val mergedHllc = hllc.mergeBatch(hllc.createAggregationBuffer(), vector, 0, rows + 1)
+    assert(hllc.eval(mergedHllc) == hllc.eval(rowWiseHllc))
+
+    // separate instances, so the row-wise and the batch merge shuffle centroids with the same seeded scratch
+    val percentile = Percentile(BoundReference(0, BinaryType, nullable = true), 100)
+    val rowWisePercentile = percentile.copy()
+    val rowWiseCounter = rowWisePercentile.createAggregationBuffer()
+    val expectedPercentile = percentile.createAggregationBuffer()
+    vector.reset()
+    Range(0, rows).foreach { i =>
+      val counter = percentile.createAggregationBuffer()
+      Range(0, 100).foreach(num => counter.add(i * 100 + num))
+      vector.putByteArray(i, percentile.serialize(counter))
+      rowWisePercentile.update(rowWiseCounter, new GenericInternalRow(Array[Any](percentile.serialize(counter))))
+      percentile.merge(expectedPercentile, counter)
+    }
+    vector.putNull(rows)
+    val mergedPercentile = percentile.mergeBatch(percentile.createAggregationBuffer(), vector, 0, rows + 1)
+    Seq(0.1, 0.5, 0.9).foreach { ratio =>
+      assert(mergedPercentile.getResultEstimateWithQuantileRatio(ratio)
+        == rowWiseCounter.getResultEstimateWithQuantileRatio(ratio))
+      assert(math.abs(mergedPercentile.getResultEstimateWithQuantileRatio(ratio)
+        - expectedPercentile.getResultEstimateWithQuantileRatio(ratio)) < 10)
+    }
+
+    val schema = StructType(Seq(StructField("measure", DoubleType), StructField("dim", StringType)))
+    val topN = EncodeTopN(10, schema, BoundReference(0, DoubleType, nullable = true),
+      Seq(BoundReference(1, StringType, nullable = true)))
+    val rowWiseTopN = topN.createAggregationBuffer()
+    vector.reset()
+    Range(0, rows).foreach { i =>
+      val counter = topN.createAggregationBuffer()
+      Range(0, 100).foreach { num =>
+        topN.update(counter, new GenericInternalRow(Array[Any](num.toDouble, UTF8String.fromString("dim_" + (i + num)))))
+      }
+      vector.putByteArray(i, topN.serialize(counter))
+      topN.merge(rowWiseTopN, topN.deserialize(topN.serialize(counter)))
+    }
+    vector.putNull(rows)
+    val mergedTopN = topN.mergeBatch(topN.createAggregationBuffer(), vector, 0, rows + 1)
+    assert(topN.eval(mergedTopN) == topN.eval(rowWiseTopN))
+    vector.close()
+  }
 }
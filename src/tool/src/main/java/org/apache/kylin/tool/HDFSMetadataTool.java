@@ -19,6 +19,9 @@ package org.apache.kylin.tool;
 
 import java.io.IOException;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.hadoop.fs.FileStatus;
@@ -26,29 +29,75 @@ import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.HadoopUtil;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import lombok.val;
+import lombok.var;
 
 public class HDFSMetadataTool {
-    public static void cleanBeforeBackup(KylinConfig kylinConfig) throws IOException {
+
+    /**
+     * Removes the oldest backups until there is room for a new one. An incremental backup is useless without the
+     * backups it is based on, so only whole chains are removed, from the full backup to its last incremental backup.
+     * The chain of the latest backup is never removed, as the next incremental backup is based on it.
+     *
+     * @return false if the chain of the latest backup alone fills the threshold, then the next backup must be a full
+     * one, so that the chain can be removed by the next cleanup
+     */
+    public static boolean cleanBeforeBackup(KylinConfig kylinConfig) throws IOException {
         val rootMetadataBackupPath = new Path(HadoopUtil.getBackupFolder(KylinConfig.getInstanceFromEnv()));
         val fs = HadoopUtil.getWorkingFileSystem();
         if (!fs.exists(rootMetadataBackupPath)) {
             fs.mkdirs(rootMetadataBackupPath);
-            return;
+            return true;
         }
 
-        int childrenSize = fs.listStatus(rootMetadataBackupPath).length;
+        int threshold = kylinConfig.getMetadataBackupCountThreshold();
+        val backups = Stream.of(fs.listStatus(rootMetadataBackupPath))
+                .sorted(Comparator.comparing(FileStatus::getModificationTime)).collect(Collectors.toList());
+        int childrenSize = backups.size();
+        if (childrenSize < threshold) {
+            return true;
+        }
 
-        while (childrenSize >= kylinConfig.getMetadataBackupCountThreshold()) {
-            // remove the oldest backup metadata dir
-            val maybeOldest = Stream.of(fs.listStatus(rootMetadataBackupPath))
-                    .min(Comparator.comparing(FileStatus::getModificationTime));
-            if (maybeOldest.isPresent()) {
-                fs.delete(maybeOldest.get().getPath(), true);
+        val chains = groupByChain(backups);
+        val latestChain = chains.get(chains.size() - 1);
+        for (List<FileStatus> chain : chains) {
+            if (childrenSize < threshold || chain == latestChain) {
+                break;
+            }
+            // remove the oldest backup metadata chain
+            for (FileStatus backup : chain) {
+                fs.delete(backup.getPath(), true);
             }
+            childrenSize -= chain.size();
+        }
+        return childrenSize < threshold;
+    }
 
-            childrenSize--;
+    /**
+     * @return the chains of the backups, ordered by their oldest backups
+     */
+    private static List<List<FileStatus>> groupByChain(List<FileStatus> backups) throws IOException {
+        Map<String, List<FileStatus>> chainByBackup = Maps.newHashMap();
+        List<List<FileStatus>> chains = Lists.newArrayList();
+        for (FileStatus backup : backups) {
+            // only the small delta descriptor is read, not the metadata of the backup
+            val delta = MetadataTool.readBackupDelta(backup.getPath());
+            var chain = delta == null ? null : chainByBackup.get(pathOf(new Path(delta.getBasePath())));
+            if (chain == null) {
+                // a full backup, or an incremental one whose base is gone
+                chain = Lists.newArrayList();
+                chains.add(chain);
+            }
+            chain.add(backup);
+            chainByBackup.put(pathOf(backup.getPath()), chain);
         }
+        return chains;
+    }
 
+    private static String pathOf(Path path) {
+        return Path.getPathWithoutSchemeAndAuthority(path).toString();
     }
 }
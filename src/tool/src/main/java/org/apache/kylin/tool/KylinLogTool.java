@@ -58,6 +58,7 @@ import org.apache.kylin.common.util.JsonUtil;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.common.util.RandomUtil;
 import org.apache.kylin.query.util.ILogExtractor;
+import org.apache.kylin.tool.util.LogFileIndex;
 import org.apache.kylin.tool.util.ToolUtil;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
@@ -95,7 +96,7 @@ public class KylinLogTool {
             "kylin.smart.log", "kylin.build.log");
 
     private static ExtractLogByRangeTool DEFAULT_EXTRACT_LOG_BY_RANGE = new ExtractLogByRangeTool(LOG_PATTERN,
-            LOG_TIME_PATTERN, SECOND_DATE_FORMAT);
+            LOG_TIME_PATTERN, SECOND_DATE_FORMAT, true);
 
     private KylinLogTool() {
     }
@@ -256,11 +257,34 @@ public class KylinLogTool {
         return getTimeRangeFromLogFileByJobId(jobId, logFile, false);
     }
 
+    private static LogFileIndex getLogFileIndex(File logFile) {
+        if (!KylinConfig.getInstanceFromEnv().isDiagLogIndexEnabled()) {
+            return null;
+        }
+        return LogFileIndex.loadOrBuild(logFile);
+    }
+
+    private static void cleanupStaleLogIndexes(File logsDir) {
+        if (KylinConfig.getInstanceFromEnv().isDiagLogIndexEnabled()) {
+            LogFileIndex.cleanupStaleIndexes(logsDir);
+        }
+    }
+
     private static Pair<String, String> getTimeRangeFromLogFileByJobId(String jobId, File logFile,
             boolean onlyStartTime) {
         Preconditions.checkNotNull(jobId);
         Preconditions.checkNotNull(logFile);
 
+        val index = getLogFileIndex(logFile);
+        if (index != null) {
+            try {
+                return getTimeRangeFromIndexByJobId(jobId, logFile, index, onlyStartTime);
+            } catch (IOException e) {
+                logger.warn("Failed to get time range from index of logFile:{}, jobId:{}",
+                        logFile.getAbsolutePath(), jobId, e);
+            }
+        }
+
         String dateStart = null;
         String dateEnd = null;
         try (InputStream in = new FileInputStream(logFile);
@@ -287,6 +311,27 @@ public class KylinLogTool {
         return new Pair<>(dateStart, dateEnd);
     }
 
+    private static Pair<String, String> getTimeRangeFromIndexByJobId(String jobId, File logFile, LogFileIndex index,
+            boolean onlyStartTime) throws IOException {
+        long first = Long.MAX_VALUE;
+        long last = -1;
+        for (String id : new String[] { "jobid:" + jobId.substring(0, 8), jobId }) {
+            val range = index.getIdRange(id);
+            if (range != null) {
+                first = Math.min(first, range[0]);
+                last = Math.max(last, range[1]);
+            }
+        }
+        if (last < 0) {
+            return new Pair<>(null, null);
+        }
+        String dateStart = LogFileIndex.readTimeAt(logFile, first);
+        if (onlyStartTime) {
+            return new Pair<>(dateStart, dateStart);
+        }
+        return new Pair<>(dateStart, LogFileIndex.readTimeAt(logFile, last));
+    }
+
     private static Pair<String, String> getTimeRangeFromLogFileByJobId(String jobId, File[] kylinLogs) {
         Preconditions.checkNotNull(jobId);
         Preconditions.checkNotNull(kylinLogs);
@@ -351,6 +396,9 @@ public class KylinLogTool {
         Preconditions.checkNotNull(queryLogFile);
         Preconditions.checkNotNull(queryId);
         Preconditions.checkNotNull(distFile);
+        if (extractQueryLogByIndex(queryLogFile, queryId, distFile)) {
+            return;
+        }
         final String charsetName = Charset.defaultCharset().name();
         try (InputStream in = new FileInputStream(queryLogFile);
                 OutputStream out = new FileOutputStream(distFile);
@@ -384,6 +432,52 @@ public class KylinLogTool {
         }
     }
 
+    /**
+     * extract kylin query log by queryId, seek to the first line of the query with the log index
+     *
+     * @return false if there is no index of the log file, the caller should scan the whole file
+     */
+    private static boolean extractQueryLogByIndex(File queryLogFile, String queryId, File distFile) {
+        val index = getLogFileIndex(queryLogFile);
+        if (index == null) {
+            return false;
+        }
+        try (OutputStream out = new FileOutputStream(distFile);
+                BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out, CHARSET_NAME))) {
+            // lines before the first standard log line are always extracted
+            LogFileIndex.copyRange(queryLogFile, 0, index.getHeaderLength(), out);
+            val range = index.getIdRange(queryId);
+            if (range == null) {
+                return true;
+            }
+            try (val reader = LogFileIndex.LineReader.open(queryLogFile, range[0])) {
+                boolean extract = false;
+                Pattern pattern = Pattern.compile(QUERY_LOG_PATTERN);
+                long offset = reader.getPosition();
+                String queryLog;
+                while ((queryLog = reader.readLine()) != null) {
+                    Matcher matcher = pattern.matcher(queryLog);
+                    if (matcher.find()) {
+                        extract = queryId.equals(matcher.group(1));
+                        if (!extract && offset > range[1]) {
+                            break;
+                        }
+                    }
+                    if (extract) {
+                        bw.write(queryLog);
+                        bw.write('\n');
+                    }
+                    offset = reader.getPosition();
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            logger.warn("Failed to extract query log from {} by index, fall back to scan the file",
+                    queryLogFile.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
     /**
      * extract sparder log by time range
      * for query diagnosis
@@ -528,6 +622,7 @@ public class KylinLogTool {
                 logger.error("Can not find the kylin.log file!");
                 return;
             }
+            cleanupStaleLogIndexes(logsDir);
 
             Pair<String, String> timeRange;
             if (null != jobId) {
@@ -576,6 +671,7 @@ public class KylinLogTool {
             if (kylinQueryLogs == null || kylinQueryLogs.length == 0) {
                 logger.error("Can not fond the kylin.query.log file!");
             }
+            cleanupStaleLogIndexes(logsDir);
 
             for (File kylinQueryLog : kylinQueryLogs) {
                 extractQueryLogByQueryId(kylinQueryLog, queryId, new File(destLogDir, kylinQueryLog.getName()));
@@ -926,11 +1022,19 @@ public class KylinLogTool {
         private String logPattern;
         private String logTimePattern;
         private String secondDateFormat;
+        // whether the log lines start with LOG_TIME_PATTERN, so that LogFileIndex applies
+        private boolean useLogIndex;
 
         public ExtractLogByRangeTool(String logPattern, String logTimePattern, String secondDateFormat) {
+            this(logPattern, logTimePattern, secondDateFormat, false);
+        }
+
+        public ExtractLogByRangeTool(String logPattern, String logTimePattern, String secondDateFormat,
+                boolean useLogIndex) {
             this.logPattern = logPattern;
             this.logTimePattern = logTimePattern;
             this.secondDateFormat = secondDateFormat;
+            this.useLogIndex = useLogIndex;
         }
 
         public ExtractLogByRangeTool(String logPattern, String secondDateFormat) {
@@ -981,6 +1085,9 @@ public class KylinLogTool {
             Preconditions.checkNotNull(distFile);
             Preconditions.checkArgument(timeRange.getFirst().compareTo(timeRange.getSecond()) <= 0);
 
+            if (useLogIndex && extractLogByTimeRangeWithIndex(logFile, timeRange, distFile)) {
+                return;
+            }
             final String charsetName = Charset.defaultCharset().name();
             try (InputStream in = new FileInputStream(logFile);
                     OutputStream out = new FileOutputStream(distFile);
@@ -1017,5 +1124,46 @@ public class KylinLogTool {
                         distFile.getAbsolutePath(), e);
             }
         }
+
+        private boolean extractLogByTimeRangeWithIndex(File logFile, Pair<String, String> timeRange, File distFile) {
+            val index = getLogFileIndex(logFile);
+            if (index == null) {
+                return false;
+            }
+            try (OutputStream out = new FileOutputStream(distFile);
+                    BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out, CHARSET_NAME))) {
+                // lines before the first standard log line are always extracted
+                LogFileIndex.copyRange(logFile, 0, index.getHeaderLength(), out);
+                val from = index.getOffsetFrom(timeRange.getFirst());
+                if (from == null) {
+                    return true;
+                }
+                try (val reader = LogFileIndex.LineReader.open(logFile, from)) {
+                    boolean extract = false;
+                    Pattern pattern = Pattern.compile(logPattern);
+                    int extraLines = EXTRA_LINES;
+                    String log;
+                    while ((log = reader.readLine()) != null) {
+                        Matcher matcher = pattern.matcher(log);
+                        if (matcher.find()) {
+                            String logDate = matcher.group(1);
+                            if (logDate.compareTo(timeRange.getSecond()) > 0 && --extraLines < 1) {
+                                break;
+                            }
+                            extract = extract || logDate.compareTo(timeRange.getFirst()) >= 0;
+                        }
+                        if (extract) {
+                            bw.write(log);
+                            bw.write('\n');
+                        }
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                logger.warn("Failed to extract log from {} by index, fall back to scan the file",
+                        logFile.getAbsolutePath(), e);
+                return false;
+            }
+        }
     }
 }
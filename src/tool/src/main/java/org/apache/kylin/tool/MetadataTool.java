@@ -29,16 +29,25 @@ import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.OptionGroup;
 import org.apache.commons.cli.Options;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.KylinConfigBase;
@@ -52,12 +61,18 @@ import org.apache.kylin.metadata.project.ProjectInstance;
 import org.apache.kylin.common.metrics.MetricsCategory;
 import org.apache.kylin.common.metrics.MetricsGroup;
 import org.apache.kylin.common.metrics.MetricsName;
+import org.apache.kylin.common.persistence.BackupDeltaDesc;
 import org.apache.kylin.common.persistence.ImageDesc;
+import org.apache.kylin.common.persistence.RawResource;
 import org.apache.kylin.common.persistence.metadata.AuditLogStore;
+import org.apache.kylin.common.persistence.metadata.JdbcAuditLogStore;
+import org.apache.kylin.common.persistence.metadata.MetadataStore;
 import org.apache.kylin.common.persistence.transaction.UnitOfWork;
 import org.apache.kylin.common.persistence.transaction.UnitOfWorkParams;
 import org.apache.kylin.common.util.AddressUtil;
+import org.apache.kylin.common.util.ExecutorServiceUtil;
 import org.apache.kylin.common.util.MetadataChecker;
+import org.apache.kylin.common.util.NamedThreadFactory;
 import org.apache.kylin.common.util.OptionBuilder;
 import org.apache.kylin.common.util.Unsafe;
 import org.apache.kylin.tool.util.ScreenPrintUtil;
@@ -65,6 +80,8 @@ import org.apache.kylin.tool.util.ToolMainWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import io.kyligence.kap.guava20.shaded.common.io.ByteSource;
@@ -76,7 +93,7 @@ public class MetadataTool extends ExecutableApplication {
     public static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss",
             Locale.getDefault(Locale.Category.FORMAT));
     private static final Logger logger = LoggerFactory.getLogger("diag");
-    private static final String HDFS_METADATA_URL_FORMATTER = "kylin_metadata@hdfs,path=%s";
+    static final String HDFS_METADATA_URL_FORMATTER = "kylin_metadata@hdfs,path=%s";
 
     private static final String GLOBAL = "global";
 
@@ -103,6 +120,10 @@ public class MetadataTool extends ExecutableApplication {
     private static final Option FOLDER_NAME = OptionBuilder.getInstance().hasArg().withArgName("FOLDER_NAME")
             .withDescription("Specify the folder name for backup").isRequired(false).create("folder");
 
+    private static final Option OPTION_INCREMENTAL = OptionBuilder.getInstance()
+            .withDescription("Only backup the metadata changed since the latest backup in the target directory")
+            .isRequired(false).create("incremental");
+
     private static final Option OPTION_EXCLUDE_TABLE_EXD = OptionBuilder.getInstance()
             .withDescription("Exclude metadata {project}/table_exd directory").isRequired(false)
             .create("excludeTableExd");
@@ -129,8 +150,11 @@ public class MetadataTool extends ExecutableApplication {
     }
 
     public static void backup(KylinConfig kylinConfig) throws IOException {
-        HDFSMetadataTool.cleanBeforeBackup(kylinConfig);
-        String[] args = new String[] { "-backup", "-compress", "-dir", HadoopUtil.getBackupFolder(kylinConfig) };
+        val incrementalAllowed = HDFSMetadataTool.cleanBeforeBackup(kylinConfig);
+        String[] args = kylinConfig.isMetadataIncrementalBackupEnabled() && incrementalAllowed
+                ? new String[] { "-backup", "-compress", "-incremental", "-dir",
+                        HadoopUtil.getBackupFolder(kylinConfig) }
+                : new String[] { "-backup", "-compress", "-dir", HadoopUtil.getBackupFolder(kylinConfig) };
         val backupTool = new MetadataTool(kylinConfig);
         backupTool.execute(args);
     }
@@ -179,7 +203,8 @@ public class MetadataTool extends ExecutableApplication {
 
             for (String projectPath : projectFolders) {
                 if (projectPath.equals(ResourceStore.METASTORE_UUID_TAG)
-                        || projectPath.equals(ResourceStore.METASTORE_IMAGE)) {
+                        || projectPath.equals(ResourceStore.METASTORE_IMAGE)
+                        || projectPath.equals(ResourceStore.METASTORE_BACKUP_DELTA)) {
                     continue;
                 }
                 val projectName = Paths.get(projectPath).getName(0).toString();
@@ -266,6 +291,7 @@ public class MetadataTool extends ExecutableApplication {
         options.addOption(FOLDER_NAME);
         options.addOption(OPERATE_COMPRESS);
         options.addOption(OPTION_EXCLUDE_TABLE_EXD);
+        options.addOption(OPTION_INCREMENTAL);
         options.addOption(OPTION_AFTER_TRUNCATE);
     }
 
@@ -336,6 +362,7 @@ public class MetadataTool extends ExecutableApplication {
         var folder = optionsHelper.getOptionValue(FOLDER_NAME);
         var compress = optionsHelper.hasOption(OPERATE_COMPRESS);
         val excludeTableExd = optionsHelper.hasOption(OPTION_EXCLUDE_TABLE_EXD);
+        val incremental = optionsHelper.hasOption(OPTION_INCREMENTAL);
         if (StringUtils.isBlank(path)) {
             path = KylinConfigBase.getKylinHome() + File.separator + "meta_backups";
         }
@@ -349,6 +376,7 @@ public class MetadataTool extends ExecutableApplication {
         abortIfAlreadyExists(backupPath);
         logger.info("The backup metadataUrl is {} and backup path is {}", backupMetadataUrl, backupPath);
 
+        BackupDeltaDesc backupDelta = null;
         try (val backupResourceStore = ResourceStore.getKylinMetaStore(backupConfig)) {
 
             val backupMetadataStore = backupResourceStore.getMetadataStore();
@@ -357,17 +385,28 @@ public class MetadataTool extends ExecutableApplication {
                 logger.info("start to copy all projects from ResourceStore.");
                 val auditLogStore = resourceStore.getAuditLogStore();
                 long finalOffset = getOffset(auditLogStore);
+                val deltaDesc = incremental ? prepareDelta(path, folder, auditLogStore, finalOffset) : null;
                 backupResourceStore.putResourceWithoutCheck(ResourceStore.METASTORE_IMAGE,
                         ByteSource.wrap(JsonUtil.writeValueAsBytes(new ImageDesc(finalOffset))),
                         System.currentTimeMillis(), -1);
-                var projectFolders = resourceStore.listResources("/");
-                if (projectFolders == null) {
-                    return;
+                if (deltaDesc != null) {
+                    UnitOfWork.doInTransactionWithRetry(() -> {
+                        backupDelta(deltaDesc, auditLogStore, backupResourceStore, excludeTableExd);
+                        return null;
+                    }, UnitOfWork.GLOBAL_UNIT);
+                    backupResourceStore.putResourceWithoutCheck(ResourceStore.METASTORE_BACKUP_DELTA,
+                            ByteSource.wrap(JsonUtil.writeValueAsBytes(deltaDesc)), System.currentTimeMillis(), -1);
+                    backupDelta = deltaDesc;
+                } else {
+                    var projectFolders = resourceStore.listResources("/");
+                    if (projectFolders == null) {
+                        return;
+                    }
+                    UnitOfWork.doInTransactionWithRetry(() -> {
+                        backupProjects(projectFolders, backupResourceStore, excludeTableExd);
+                        return null;
+                    }, UnitOfWork.GLOBAL_UNIT);
                 }
-                UnitOfWork.doInTransactionWithRetry(() -> {
-                    backupProjects(projectFolders, backupResourceStore, excludeTableExd);
-                    return null;
-                }, UnitOfWork.GLOBAL_UNIT);
 
                 val uuid = resourceStore.getResource(ResourceStore.METASTORE_UUID_TAG);
                 if (uuid != null) {
@@ -393,10 +432,49 @@ public class MetadataTool extends ExecutableApplication {
             }
             backupResourceStore.deleteResource(ResourceStore.METASTORE_TRASH_RECORD);
             backupMetadataStore.dump(backupResourceStore);
+            if (backupDelta != null) {
+                writeBackupDelta(backupDelta);
+            }
             logger.info("backup successfully at {}", backupPath);
         }
     }
 
+    /**
+     * A compressed backup keeps its delta descriptor in the archive too, so the descriptor is also written as a plain
+     * file next to the archive, to be read without loading the archive.
+     */
+    private void writeBackupDelta(BackupDeltaDesc deltaDesc) throws IOException {
+        val file = new Path(toBackupPath(backupPath), ResourceStore.METASTORE_BACKUP_DELTA.substring(1));
+        val fs = HadoopUtil.getFileSystem(file);
+        if (fs.exists(file)) {
+            return;
+        }
+        try (val out = fs.create(file)) {
+            JsonUtil.writeValue(out, deltaDesc);
+        }
+    }
+
+    /**
+     * Reads the delta descriptor of a backup from the plain file in the backup folder, without loading the backup.
+     *
+     * @return null if the backup is a full one
+     */
+    static BackupDeltaDesc readBackupDelta(Path backupFolder) throws IOException {
+        val file = new Path(backupFolder, ResourceStore.METASTORE_BACKUP_DELTA.substring(1));
+        val fs = HadoopUtil.getFileSystem(file);
+        if (!fs.exists(file)) {
+            return null;
+        }
+        try (val in = fs.open(file)) {
+            return JsonUtil.readValue(in, BackupDeltaDesc.class);
+        }
+    }
+
+    private static Path toBackupPath(String backupFolder) {
+        return HadoopUtil.makeURI(backupFolder).isAbsolute() ? new Path(backupFolder)
+                : new Path(new File(backupFolder).toURI());
+    }
+
     private long getOffset(AuditLogStore auditLogStore) {
         long offset = 0;
         if (kylinConfig.isUTEnv())
@@ -406,11 +484,232 @@ public class MetadataTool extends ExecutableApplication {
         return offset;
     }
 
+    /**
+     * Decide whether an incremental backup can be taken on top of the latest backup under the given directory.
+     * Returns null when a full backup is required: the audit logs are not kept in the JDBC audit log store, no usable
+     * previous backup, a broken or too long delta chain, or audit logs of the range are no longer available.
+     */
+    private BackupDeltaDesc prepareDelta(String path, String folder, AuditLogStore auditLogStore, long finalOffset)
+            throws IOException {
+        if (!(auditLogStore instanceof JdbcAuditLogStore)) {
+            logger.info("Audit logs are not kept by {}, take a full backup", auditLogStore.getClass().getSimpleName());
+            return null;
+        }
+        val basePath = findLatestBackup(path, folder);
+        if (basePath == null) {
+            logger.info("No previous backup found in {}, take a full backup", path);
+            return null;
+        }
+        val baseStore = openBackup(basePath);
+        val baseImage = readBackupResource(baseStore, ResourceStore.METASTORE_IMAGE, ImageDesc.class);
+        if (baseImage == null || baseImage.getOffset() == null) {
+            logger.info("Previous backup {} has no image offset, take a full backup", basePath);
+            return null;
+        }
+        long fromOffset = baseImage.getOffset();
+        if (fromOffset > finalOffset || (fromOffset < finalOffset && auditLogStore.getMinId() > fromOffset + 1)) {
+            logger.info("Audit logs in ({}, {}] are not available, take a full backup", fromOffset, finalOffset);
+            return null;
+        }
+        val baseDelta = readBackupDelta(toBackupPath(basePath));
+        int chainLength = baseDelta == null ? 1 : baseDelta.getChainLength() + 1;
+        if (chainLength > kylinConfig.getMetadataIncrementalBackupMaxChainLength()) {
+            logger.info("Incremental backup chain reaches {}, take a full backup", chainLength - 1);
+            return null;
+        }
+        try {
+            resolveBackupChain(basePath, baseDelta);
+        } catch (IllegalStateException e) {
+            logger.warn("Previous backup chain is broken, take a full backup", e);
+            return null;
+        }
+        return new BackupDeltaDesc(basePath, fromOffset, finalOffset, chainLength, Sets.newTreeSet());
+    }
+
+    private void backupDelta(BackupDeltaDesc deltaDesc, AuditLogStore auditLogStore,
+            ResourceStore backupResourceStore, boolean excludeTableExd) throws InterruptedException {
+        logger.info("start to copy resources changed in audit log range ({}, {}] from ResourceStore.",
+                deltaDesc.getFromOffset(), deltaDesc.getToOffset());
+        Set<String> changedResources = Sets.newTreeSet();
+        long batchSize = kylinConfig.getMetadataIncrementalBackupFetchBatchSize();
+        long currentId = deltaDesc.getFromOffset();
+        while (currentId < deltaDesc.getToOffset()) {
+            long size = Math.min(batchSize, deltaDesc.getToOffset() - currentId);
+            auditLogStore.fetch(currentId, size).forEach(log -> changedResources.add(log.getResPath()));
+            currentId += size;
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("metadata task is interrupt");
+            }
+        }
+
+        Set<String> deletedResources = deltaDesc.getDeletedResources();
+        deletedResources.clear();
+        for (String resPath : changedResources) {
+            if (excludeTableExd && isTableExdResource(resPath)) {
+                continue;
+            }
+            val raw = resourceStore.getResource(resPath);
+            if (raw == null) {
+                deletedResources.add(resPath);
+                continue;
+            }
+            backupResourceStore.putResourceWithoutCheck(resPath, raw.getByteSource(), raw.getTimestamp(),
+                    raw.getMvcc());
+        }
+        logger.info("{} resources changed and {} resources deleted since backup {}",
+                changedResources.size() - deletedResources.size(), deletedResources.size(),
+                deltaDesc.getBasePath());
+    }
+
+    private static boolean isTableExdResource(String resPath) {
+        val path = Paths.get(resPath);
+        return path.getNameCount() > 1 && ("/" + path.getName(1)).equals(ResourceStore.TABLE_EXD_RESOURCE_ROOT);
+    }
+
+    private String findLatestBackup(String path, String excludedFolder) throws IOException {
+        URI uri = HadoopUtil.makeURI(path);
+        if (!uri.isAbsolute()) {
+            File[] folders = new File(path)
+                    .listFiles(f -> f.isDirectory() && !f.getName().equals(excludedFolder));
+            if (folders == null) {
+                return null;
+            }
+            return Stream.of(folders).max(Comparator.comparing(File::lastModified)).map(File::getAbsolutePath)
+                    .orElse(null);
+        }
+        val fs = HadoopUtil.getFileSystem(path);
+        if (!fs.exists(new Path(path))) {
+            return null;
+        }
+        return Stream.of(fs.listStatus(new Path(path)))
+                .filter(f -> f.isDirectory() && !f.getPath().getName().equals(excludedFolder))
+                .max(Comparator.comparing(FileStatus::getModificationTime))
+                .map(f -> "file".equals(f.getPath().toUri().getScheme()) ? f.getPath().toUri().getPath()
+                        : f.getPath().toString())
+                .orElse(null);
+    }
+
+    /**
+     * Opens the metadata store of a backup, to read the resources of the backup by one store.
+     */
+    private MetadataStore openBackup(String backupFolder) {
+        val config = KylinConfig.createKylinConfig(kylinConfig);
+        config.setMetadataUrl(getMetadataUrl(backupFolder, false));
+        return MetadataStore.createMetadataStore(config);
+    }
+
+    private static <T> T readBackupResource(MetadataStore backupStore, String resPath, Class<T> clz)
+            throws IOException {
+        RawResource raw;
+        try {
+            raw = backupStore.load(resPath);
+        } catch (IOException e) {
+            // the hdfs metadata store throws on a resource not found
+            logger.trace("Resource {} not found in backup", resPath, e);
+            return null;
+        }
+        if (raw == null || raw.getByteSource() == null) {
+            return null;
+        }
+        return JsonUtil.readValue(raw.getByteSource().read(), clz);
+    }
+
+    private List<String> resolveBackupChain(String backupFolder) throws IOException {
+        return resolveBackupChain(backupFolder, readBackupDelta(toBackupPath(backupFolder)));
+    }
+
+    /**
+     * Walk back from an incremental backup to the full backup it depends on, by the delta descriptors only.
+     *
+     * @return the full backup first, followed by the incremental backups in the order they should be replayed
+     */
+    private List<String> resolveBackupChain(String backupFolder, BackupDeltaDesc delta) throws IOException {
+        List<String> chain = Lists.newArrayList(backupFolder);
+        while (delta != null) {
+            val basePath = delta.getBasePath();
+            val baseFolder = toBackupPath(basePath);
+            if (chain.contains(basePath) || !HadoopUtil.getFileSystem(baseFolder).exists(baseFolder)) {
+                throw new IllegalStateException(
+                        String.format(Locale.ROOT, "The base backup %s of %s is missing", basePath, chain.get(0)));
+            }
+            chain.add(0, basePath);
+            delta = readBackupDelta(baseFolder);
+        }
+        return chain;
+    }
+
+    /**
+     * Load every backup of the chain concurrently, then replay the incremental ones on top of the full backup.
+     */
+    private ResourceStore replayBackupChain(List<String> chain) throws IOException {
+        logger.info("Replay incremental backup chain {}", chain);
+        Map<String, Future<ResourceStore>> loaded = Maps.newLinkedHashMap();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(chain.size(), kylinConfig.getMetadataRestoreParallelism())),
+                new NamedThreadFactory("MetadataRestore"));
+        try {
+            for (String folder : chain) {
+                loaded.put(folder, executor.submit(() -> {
+                    val config = KylinConfig.createKylinConfig(kylinConfig);
+                    config.setMetadataUrl(getMetadataUrl(folder, false));
+                    return ResourceStore.getKylinMetaStore(config);
+                }));
+            }
+            val stores = Lists.<ResourceStore> newArrayList();
+            for (val future : loaded.values()) {
+                stores.add(future.get());
+            }
+            // a delta backup only holds the changed resources, the chain is checked after it is replayed
+            val baseStore = stores.get(0);
+            for (val deltaStore : stores.subList(1, stores.size())) {
+                val deltaDesc = JsonUtil.readValue(
+                        deltaStore.getResource(ResourceStore.METASTORE_BACKUP_DELTA).getByteSource().read(),
+                        BackupDeltaDesc.class);
+                deltaDesc.getDeletedResources().stream().filter(baseStore::exists)
+                        .forEach(baseStore::deleteResource);
+                val resources = deltaStore.listResourcesRecursively("/");
+                if (resources == null) {
+                    continue;
+                }
+                for (String resPath : resources) {
+                    if (resPath.equals(ResourceStore.METASTORE_BACKUP_DELTA)) {
+                        continue;
+                    }
+                    val raw = deltaStore.getResource(resPath);
+                    if (baseStore.exists(resPath)) {
+                        baseStore.deleteResource(resPath);
+                    }
+                    baseStore.putResourceWithoutCheck(resPath, raw.getByteSource(), raw.getTimestamp(),
+                            raw.getMvcc());
+                }
+            }
+            return baseStore;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("metadata restore is interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to load backup", e.getCause());
+        } finally {
+            ExecutorServiceUtil.forceShutdown(executor);
+        }
+    }
+
+    private void verifyRestoreMetadata(MetadataStore restoreMetadataStore) {
+        verifyRestoreMetadata(new MetadataChecker(restoreMetadataStore).verify());
+    }
+
+    private void verifyRestoreMetadata(MetadataChecker.VerifyResult verifyResult) {
+        if (!verifyResult.isQualified()) {
+            throw new RuntimeException(verifyResult.getResultMessage() + "\n the metadata dir is not qualified");
+        }
+    }
+
     private void backupProjects(NavigableSet<String> projectFolders, ResourceStore backupResourceStore,
             boolean excludeTableExd) throws InterruptedException {
         for (String projectPath : projectFolders) {
             if (projectPath.equals(ResourceStore.METASTORE_UUID_TAG)
-                    || projectPath.equals(ResourceStore.METASTORE_IMAGE)) {
+                    || projectPath.equals(ResourceStore.METASTORE_IMAGE)
+                    || projectPath.equals(ResourceStore.METASTORE_BACKUP_DELTA)) {
                 continue;
             }
             // The "_global" directory is already included in the full backup
@@ -452,13 +751,13 @@ public class MetadataTool extends ExecutableApplication {
         restoreConfig.setMetadataUrl(restoreMetadataUrl);
         logger.info("The restore metadataUrl is {} and restore path is {} ", restoreMetadataUrl, restorePath);
 
-        val restoreResourceStore = ResourceStore.getKylinMetaStore(restoreConfig);
-        val restoreMetadataStore = restoreResourceStore.getMetadataStore();
-        MetadataChecker metadataChecker = new MetadataChecker(restoreMetadataStore);
-
-        val verifyResult = metadataChecker.verify();
-        if (!verifyResult.isQualified()) {
-            throw new RuntimeException(verifyResult.getResultMessage() + "\n the metadata dir is not qualified");
+        var restoreResourceStore = ResourceStore.getKylinMetaStore(restoreConfig);
+        if (restoreResourceStore.exists(ResourceStore.METASTORE_BACKUP_DELTA)) {
+            restoreResourceStore = replayBackupChain(resolveBackupChain(restorePath));
+            verifyRestoreMetadata(new MetadataChecker(restoreResourceStore.getMetadataStore())
+                    .verify(restoreResourceStore.listResourcesRecursively("/")));
+        } else {
+            verifyRestoreMetadata(restoreResourceStore.getMetadataStore());
         }
         restore(resourceStore, restoreResourceStore, project, delete);
         backup(kylinConfig);
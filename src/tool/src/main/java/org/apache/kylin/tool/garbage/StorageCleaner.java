@@ -37,13 +37,20 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.kylin.common.KapConfig;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.RawResource;
@@ -51,6 +58,7 @@ import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.RootPersistentEntity;
 import org.apache.kylin.common.util.CliCommandExecutor;
 import org.apache.kylin.common.util.CliCommandExecutor.CliCmdExecResult;
+import org.apache.kylin.common.util.ExecutorServiceUtil;
 import org.apache.kylin.common.util.HadoopUtil;
 import org.apache.kylin.common.util.JsonUtil;
 import org.apache.kylin.common.util.Pair;
@@ -109,6 +117,14 @@ public class StorageCleaner {
     @Getter
     private Set<StorageItem> outdatedItems = Sets.newHashSet();
     private Set<StorageItem> allFileSystems = Sets.newHashSet();
+    // size of the folders known from flat listing, keyed by the full path
+    private final Map<String, Long> knownFolderSizes = Maps.newConcurrentMap();
+    private final Map<String, Long> outdatedItemSizes = Maps.newHashMap();
+    private final AtomicLong listedFiles = new AtomicLong();
+    private long listDuration;
+    private long reclaimedBytes;
+    private long unknownSizeItems;
+    private ExecutorService listExecutor;
 
     public StorageCleaner() throws Exception {
         this(true);
@@ -161,11 +177,19 @@ public class StorageCleaner {
         allFileSystems.add(new StorageItem(FileSystemDecorator.getInstance(HadoopUtil.getWorkingFileSystem()),
                 config.getHdfsWorkingDirectory()));
         log.info("all file systems are {}", allFileSystems);
-        for (StorageItem allFileSystem : allFileSystems) {
-            log.debug("start to collect HDFS from {}", allFileSystem.getPath());
-            collectFromHDFS(allFileSystem);
-            log.debug("folder {} is collected，detailed -> {}", allFileSystem.getPath(), allFileSystems);
+        long listStart = System.currentTimeMillis();
+        listExecutor = Executors.newWorkStealingPool(Math.max(1, kylinConfig.getStorageGarbageListParallelism()));
+        try {
+            for (StorageItem allFileSystem : allFileSystems) {
+                log.debug("start to collect HDFS from {}", allFileSystem.getPath());
+                collectFromHDFS(allFileSystem);
+                log.debug("folder {} is collected，detailed -> {}", allFileSystem.getPath(), allFileSystems);
+            }
+        } finally {
+            ExecutorServiceUtil.forceShutdown(listExecutor);
         }
+        listDuration = System.currentTimeMillis() - listStart;
+        log.info("listed {} files in {} ms", listedFiles.get(), listDuration);
         UnitOfWork.doInTransactionWithRetry(() -> {
             collectDeletedProject();
             for (ProjectInstance project : projects) {
@@ -186,7 +210,7 @@ public class StorageCleaner {
                 }
                 try {
                     log.debug("start to add item {}", path);
-                    addItem(item.getFs(), path, protectionTime);
+                    addItem(item.getFs(), path, protectionTime, knownFolderSizes.get(path.toString()));
                 } catch (FileNotFoundException e) {
                     log.warn("{} not found", path);
                 }
@@ -207,6 +231,10 @@ public class StorageCleaner {
             System.out.println(ANSI_BLUE + "Dry run mode, no data is deleted." + ANSI_RESET);
             jobName = "Storage GC check job ";
         }
+        double filesPerSecond = listDuration == 0 ? listedFiles.get() : listedFiles.get() * 1000D / listDuration;
+        System.out.println(String.format(Locale.ROOT,
+                "  Listed %d files in %d ms (%.1f files/s), reclaimed %d bytes and %d items of unknown size.",
+                listedFiles.get(), listDuration, filesPerSecond, reclaimedBytes, unknownSizeItems));
         if (!success) {
             System.out.println(ANSI_RED + jobName + "FAILED." + ANSI_RESET);
             System.out.println(ANSI_RED + jobName + "finished in " + duration + " ms." + ANSI_RESET);
@@ -253,6 +281,7 @@ public class StorageCleaner {
                 try {
                     stats.onItemStart(item);
                     item.getFs().delete(new Path(item.getPath()), true);
+                    onItemReclaimed(item);
                     if (timeMachineEnabled) {
                         trashRecord.remove(item.getPath());
                     }
@@ -289,7 +318,21 @@ public class StorageCleaner {
         return project + FLAT_TABLE_STORAGE_ROOT + "/" + dataFlowId;
     }
 
-    private void addItem(FileSystemDecorator fs, Path itemPath, long protectionTime) throws IOException {
+    /**
+     * Only the sizes known from listing are counted, a folder listed level by level has no size without
+     * another request to the file system.
+     */
+    private void onItemReclaimed(StorageItem item) {
+        val knownSize = outdatedItemSizes.get(item.getPath());
+        if (knownSize != null) {
+            reclaimedBytes += knownSize;
+        } else {
+            unknownSizeItems++;
+        }
+    }
+
+    private void addItem(FileSystemDecorator fs, Path itemPath, long protectionTime, Long knownSize)
+            throws IOException {
         val status = fs.getFileStatus(itemPath);
         if (status.getPath().getName().startsWith(".")) {
             return;
@@ -302,6 +345,11 @@ public class StorageCleaner {
         }
 
         outdatedItems.add(new StorageCleaner.StorageItem(fs, status.getPath().toString()));
+        if (knownSize != null) {
+            outdatedItemSizes.put(status.getPath().toString(), knownSize);
+        } else if (status.isFile()) {
+            outdatedItemSizes.put(status.getPath().toString(), status.getLen());
+        }
     }
 
     private String getDictDir(String project) {
@@ -325,52 +373,173 @@ public class StorageCleaner {
     private void collectFromHDFS(StorageItem item) throws Exception {
         val projectFolders = item.getFs().listStatus(new Path(item.getPath()), path -> !path.getName().startsWith("_")
                 && (this.projectNames.isEmpty() || this.projectNames.contains(path.getName())));
+        val flatListing = isFlatListingSupported(item);
         for (FileStatus projectFolder : projectFolders) {
             List<FileTreeNode> tableSnapshotParents = Lists.newArrayList();
             val projectNode = new ProjectFileTreeNode(projectFolder.getPath().getName());
-            for (Pair<String, List<FileTreeNode>> pair : Arrays.asList(
-                    Pair.newPair(JOB_TMP_ROOT.substring(1), projectNode.getJobTmps()),
+            val topLevelSlots = Arrays.asList(Pair.newPair(JOB_TMP_ROOT.substring(1), projectNode.getJobTmps()),
                     Pair.newPair(GLOBAL_DICT_STORAGE_ROOT.substring(1), projectNode.getGlobalDictTables()),
                     Pair.newPair(PARQUET_STORAGE_ROOT.substring(1), projectNode.getDataflows()),
                     Pair.newPair(TABLE_EXD_STORAGE_ROOT.substring(1), projectNode.getTableExds()),
                     Pair.newPair(SNAPSHOT_STORAGE_ROOT.substring(1), tableSnapshotParents),
-                    Pair.newPair(FLAT_TABLE_STORAGE_ROOT.substring(1), projectNode.getDfFlatTables()))) {
-                val treeNode = new FileTreeNode(pair.getFirst(), projectNode);
-                try {
-                    log.debug("collect files from {}", pair.getFirst());
-                    Stream.of(item.getFs().listStatus(new Path(item.getPath(), treeNode.getRelativePath())))
-                            .forEach(x -> pair.getSecond().add(new FileTreeNode(x.getPath().getName(), treeNode)));
-                } catch (FileNotFoundException e) {
-                    log.info("folder {} not found", new Path(item.getPath(), treeNode.getRelativePath()));
-                }
+                    Pair.newPair(FLAT_TABLE_STORAGE_ROOT.substring(1), projectNode.getDfFlatTables()));
+            val topLevelNodes = topLevelSlots.stream().map(pair -> new FileTreeNode(pair.getFirst(), projectNode))
+                    .collect(Collectors.toList());
+            log.debug("collect files from {}", projectNode.getName());
+            val topLevelChildren = listConcurrently(item, topLevelNodes, true);
+            for (int i = 0; i < topLevelSlots.size(); i++) {
+                val treeNode = topLevelNodes.get(i);
+                val slot = topLevelSlots.get(i).getSecond();
+                Stream.of(topLevelChildren.get(i))
+                        .forEach(x -> slot.add(new FileTreeNode(x.getPath().getName(), treeNode)));
             }
             item.getProjectNodes().add(projectNode);
             item.getProjects().put(projectNode.getName(), projectNode);
-            for (Pair<List<FileTreeNode>, List<FileTreeNode>> pair : Arrays.asList(
+
+            Map<String, List<String>> layoutChildFolders = null;
+            val childLevels = Lists.<Pair<List<FileTreeNode>, List<FileTreeNode>>> newArrayList(
                     Pair.newPair(tableSnapshotParents, projectNode.getSnapshots()), //
                     Pair.newPair(projectNode.getGlobalDictTables(), projectNode.getGlobalDictColumns()), //
-                    Pair.newPair(projectNode.getDataflows(), projectNode.getSegments()), //
-                    Pair.newPair(projectNode.getSegments(), projectNode.getLayouts()),
-                    Pair.newPair(projectNode.getDfFlatTables(), projectNode.getSegmentFlatTables()))) {
+                    Pair.newPair(projectNode.getDfFlatTables(), projectNode.getSegmentFlatTables()));
+            if (flatListing) {
+                layoutChildFolders = collectDataflowsByFlatListing(item, projectNode);
+            } else {
+                childLevels.add(Pair.newPair(projectNode.getDataflows(), projectNode.getSegments()));
+                childLevels.add(Pair.newPair(projectNode.getSegments(), projectNode.getLayouts()));
+            }
+            for (Pair<List<FileTreeNode>, List<FileTreeNode>> pair : childLevels) {
                 val slot = pair.getSecond();
-                for (FileTreeNode node : pair.getFirst()) {
+                val parents = pair.getFirst();
+                val children = listConcurrently(item, parents, false).iterator();
+                for (FileTreeNode node : parents) {
                     log.debug("collect from {} -> {}", node.getName(), node);
-                    Stream.of(item.getFs().listStatus(new Path(item.getPath(), node.getRelativePath())))
-                            .forEach(x -> slot.add(new FileTreeNode(x.getPath().getName(), node)));
+                    Stream.of(children.next()).forEach(x -> slot.add(new FileTreeNode(x.getPath().getName(), node)));
+                }
+            }
+            collectMultiPartitions(item, projectNode, layoutChildFolders);
+        }
+
+    }
+
+    private boolean isFlatListingSupported(StorageItem item) {
+        val scheme = item.getFs().makeQualified(new Path(item.getPath())).toUri().getScheme();
+        return scheme != null && Arrays.asList(kylinConfig.getStorageGarbageFlatListingSchemas()).contains(scheme);
+    }
+
+    /**
+     * List the children of all the given folders on the shared listing pool, the results are in the same order
+     * as the folders. The rate limiter of FileSystemDecorator still applies to every request.
+     */
+    private List<FileStatus[]> listConcurrently(StorageItem item, List<FileTreeNode> folders, boolean ignoreNotFound)
+            throws IOException {
+        List<Future<FileStatus[]>> futures = Lists.newArrayListWithCapacity(folders.size());
+        for (FileTreeNode folder : folders) {
+            futures.add(listExecutor.submit(() -> {
+                val path = new Path(item.getPath(), folder.getRelativePath());
+                try {
+                    val statuses = item.getFs().listStatus(path);
+                    listedFiles.addAndGet(statuses.length);
+                    return statuses;
+                } catch (FileNotFoundException e) {
+                    if (!ignoreNotFound) {
+                        throw e;
+                    }
+                    log.info("folder {} not found", path);
+                    return new FileStatus[0];
                 }
+            }));
+        }
+        List<FileStatus[]> results = Lists.newArrayListWithCapacity(folders.size());
+        try {
+            for (Future<FileStatus[]> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted when listing " + item.getPath(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
             }
-            collectMultiPartitions(item, projectNode);
+            throw new IOException("Failed to list " + item.getPath(), e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
         }
+        return results;
+    }
 
+    /**
+     * Build the segment and layout nodes of a project with one recursive listing of its parquet folder,
+     * which is a single paged request on object stores instead of one request per folder.
+     * Empty folders are not visible to the recursive listing, so an empty segment or layout folder of a live
+     * dataflow is not cleaned up. It holds no data, and is deleted together with its dataflow.
+     *
+     * @return child folders of every layout, keyed by the relative path of the layout
+     */
+    private Map<String, List<String>> collectDataflowsByFlatListing(StorageItem item, ProjectFileTreeNode projectNode)
+            throws IOException {
+        val dataflowNodes = projectNode.getDataflows().stream()
+                .collect(Collectors.toMap(FileTreeNode::getName, node -> node, (a, b) -> a));
+        val parquetNode = new FileTreeNode(PARQUET_STORAGE_ROOT.substring(1), projectNode);
+        val parquetPath = item.getFs().makeQualified(new Path(item.getPath(), parquetNode.getRelativePath()));
+        val parquetRoot = parquetPath.toUri().getPath() + "/";
+        Map<String, FileTreeNode> segments = Maps.newLinkedHashMap();
+        Map<String, FileTreeNode> layouts = Maps.newLinkedHashMap();
+        Map<String, List<String>> layoutChildFolders = Maps.newHashMap();
+        Map<String, Long> folderSizes = Maps.newHashMap();
+        List<LocatedFileStatus> files;
+        try {
+            files = item.getFs().listFiles(parquetPath, true);
+        } catch (FileNotFoundException e) {
+            log.info("folder {} not found", parquetPath);
+            return layoutChildFolders;
+        }
+        listedFiles.addAndGet(files.size());
+        for (LocatedFileStatus file : files) {
+            val filePath = file.getPath().toUri().getPath();
+            if (!filePath.startsWith(parquetRoot)) {
+                continue;
+            }
+            val names = filePath.substring(parquetRoot.length()).split("/");
+            val dataflowNode = dataflowNodes.get(names[0]);
+            if (names.length < 2 || dataflowNode == null) {
+                continue;
+            }
+            val segmentNode = segments.computeIfAbsent(names[0] + "/" + names[1],
+                    key -> new FileTreeNode(names[1], dataflowNode));
+            folderSizes.merge(segmentNode.getRelativePath(), file.getLen(), Long::sum);
+            folderSizes.merge(dataflowNode.getRelativePath(), file.getLen(), Long::sum);
+            if (names.length < 3) {
+                continue;
+            }
+            val layoutNode = layouts.computeIfAbsent(segmentNode.getRelativePath() + "/" + names[2],
+                    key -> new FileTreeNode(names[2], segmentNode));
+            folderSizes.merge(layoutNode.getRelativePath(), file.getLen(), Long::sum);
+            if (names.length > 4) {
+                val childFolders = layoutChildFolders.computeIfAbsent(layoutNode.getRelativePath(),
+                        key -> Lists.newArrayList());
+                if (!childFolders.contains(names[3])) {
+                    childFolders.add(names[3]);
+                }
+                folderSizes.merge(layoutNode.getRelativePath() + "/" + names[3], file.getLen(), Long::sum);
+            }
+        }
+        projectNode.getSegments().addAll(segments.values());
+        projectNode.getLayouts().addAll(layouts.values());
+        folderSizes.forEach((relativePath, size) -> knownFolderSizes
+                .put(new Path(item.getPath(), relativePath).toString(), size));
+        return layoutChildFolders;
     }
 
-    private void collectMultiPartitions(StorageItem item, ProjectFileTreeNode projectNode) throws IOException {
+    private void collectMultiPartitions(StorageItem item, ProjectFileTreeNode projectNode,
+            Map<String, List<String>> layoutChildFolders) throws IOException {
         String project = projectNode.getName();
         NDataflowManager manager = NDataflowManager.getInstance(kylinConfig, project);
         Map<String, Boolean> cached = new HashMap<>();
         // Buckets do not certainly exist.
         // Only multi level partition model should do this.
         val buckets = projectNode.getBuckets();
+        List<FileTreeNode> multiPartitionLayouts = Lists.newArrayList();
         for (FileTreeNode node : projectNode.getLayouts()) {
             String dataflowId = node.getParent() // segment
                     .getParent().getName(); // dataflow
@@ -386,16 +555,30 @@ public class StorageCleaner {
             }
 
             if (Boolean.TRUE.equals(cached.get(dataflowId))) {
-                Stream.of(item.getFs().listStatus(new Path(item.getPath(), node.getRelativePath())))
-                        .filter(FileStatus::isDirectory) // Essential check in case of bad design.
-                        .forEach(x -> buckets.add(new FileTreeNode(x.getPath().getName(), node)));
+                multiPartitionLayouts.add(node);
             }
         }
+
+        if (layoutChildFolders != null) {
+            // the child folders are already known from the flat listing
+            multiPartitionLayouts.forEach(node -> layoutChildFolders
+                    .getOrDefault(node.getRelativePath(), Collections.emptyList())
+                    .forEach(name -> buckets.add(new FileTreeNode(name, node))));
+            return;
+        }
+        val children = listConcurrently(item, multiPartitionLayouts, false);
+        for (int i = 0; i < multiPartitionLayouts.size(); i++) {
+            val node = multiPartitionLayouts.get(i);
+            Stream.of(children.get(i)).filter(FileStatus::isDirectory) // Essential check in case of bad design.
+                    .forEach(x -> buckets.add(new FileTreeNode(x.getPath().getName(), node)));
+        }
     }
 
     @AllArgsConstructor
     public static class FileSystemDecorator {
         private static int retryTimes = 3;
+        // the max keys of a listing request of object stores
+        private static final int LISTING_PAGE_SIZE = 1000;
         @NonNull
         private FileSystem fs;
 
@@ -439,6 +622,28 @@ public class StorageCleaner {
             return sleepAndRetry(() -> fs.getFileStatus(f));
         }
 
+        /**
+         * A recursive listing is served page by page, every page takes a permit of the rate limiter as a
+         * listStatus call does.
+         */
+        public List<LocatedFileStatus> listFiles(Path f, boolean recursive) throws IOException {
+            return sleepAndRetry(() -> {
+                List<LocatedFileStatus> files = Lists.newArrayList();
+                RemoteIterator<LocatedFileStatus> iterator = fs.listFiles(f, recursive);
+                while (iterator.hasNext()) {
+                    if (!files.isEmpty() && files.size() % LISTING_PAGE_SIZE == 0) {
+                        rateLimiter.acquire();
+                    }
+                    files.add(iterator.next());
+                }
+                return files;
+            });
+        }
+
+        public Path makeQualified(Path f) {
+            return fs.makeQualified(f);
+        }
+
         public boolean delete(Path f, boolean recursive) throws IOException {
             return sleepAndRetry(() -> fs.delete(f, recursive));
         }
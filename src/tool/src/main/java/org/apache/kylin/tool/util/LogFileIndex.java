@@ -0,0 +1,449 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.tool.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
+/**
+ * A sidecar index of a kylin log file, which maps every minute and every job/query id found in the file to
+ * byte offsets, so that diagnosis can seek to the interesting part instead of scanning the whole file.
+ *
+ * The index is named after a fingerprint of the head of the log file, so it is still valid after the file
+ * is rolled (renamed), and it is extended incrementally while the file grows.
+ *
+ * A query log holds a lot of ids, so the ids are not loaded in memory. They are kept in the index file as
+ * records of (id, first offset, last offset), which are scanned when an id is looked up. The ids found when
+ * the index is extended are spilled to a temporary file once there are too many of them, an id may then
+ * have several records.
+ */
+public class LogFileIndex {
+    private static final Logger logger = LoggerFactory.getLogger("diag");
+
+    public static final String INDEX_DIR = ".log_index";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String SPILL_SUFFIX = ".spill";
+    private static final int VERSION = 2;
+    private static final int FINGERPRINT_LENGTH = 4096;
+    // the length of "yyyy-MM-ddTHH:mm", which is the time bucket of a log line
+    private static final int BUCKET_LENGTH = 16;
+    // the length of "yyyy-MM-ddTHH:mm:ss"
+    private static final int TIME_LENGTH = 19;
+
+    private static final Pattern TIME_PATTERN = Pattern
+            .compile("^[0-9]{4}-[0-9]{2}-[0-9]{2}T[0-9]{2}:[0-9]{2}:[0-9]{2}");
+    private static final Pattern ID_PATTERN = Pattern
+            .compile("[0-9a-z]{8}-[0-9a-z]{4}-[0-9a-z]{4}-[0-9a-z]{4}-[0-9a-z]{12}|jobid:[0-9a-z]{8}");
+    private static final String SHORT_JOB_ID_PREFIX = "jobid:";
+    // the short job id is only logged by the thread name of a job worker
+    private static final String JOB_WORKER = "JobWorker";
+
+    @VisibleForTesting
+    static int maxPendingIds = 100_000;
+
+    private long indexedLength;
+    // offset of the first line starting with a timestamp, lines before it have no time
+    private long headerLength = -1;
+    private final TreeMap<String, Long> buckets = new TreeMap<>();
+    // the ids found since the index is written
+    private final Map<String, long[]> ids = new HashMap<>();
+    private File indexFile;
+    // offset of the id records in the index file
+    private long idsOffset;
+    private File spillFile;
+    private DataOutputStream spill;
+
+    /**
+     * Load the index of the log file and extend it to the current end of the file.
+     *
+     * @return null if the index can not be built, callers should fall back to scanning the file
+     */
+    public static LogFileIndex loadOrBuild(File logFile) {
+        try {
+            String fingerprint = fingerprint(logFile);
+            File indexFile = new File(new File(logFile.getParentFile(), INDEX_DIR), fingerprint + INDEX_SUFFIX);
+            LogFileIndex index = indexFile.exists() ? read(indexFile) : null;
+            if (index == null || index.indexedLength > logFile.length()) {
+                index = new LogFileIndex();
+            }
+            if (index.indexedLength < logFile.length()) {
+                long before = index.indexedLength;
+                try {
+                    index.extend(logFile, indexFile.getParentFile());
+                    if (index.indexedLength > before) {
+                        index.write(indexFile);
+                    }
+                } finally {
+                    index.closeSpill();
+                }
+            }
+            return index;
+        } catch (Exception e) {
+            logger.warn("Failed to build the index of log file {}", logFile.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Remove the indexes whose log files have been deleted by log rolling.
+     */
+    public static void cleanupStaleIndexes(File logsDir) {
+        File[] indexFiles = new File(logsDir, INDEX_DIR).listFiles((dir, name) -> name.endsWith(INDEX_SUFFIX));
+        File[] logFiles = logsDir.listFiles(File::isFile);
+        if (indexFiles == null || logFiles == null) {
+            return;
+        }
+        Set<String> fingerprints = new HashSet<>();
+        for (File logFile : logFiles) {
+            try {
+                fingerprints.add(fingerprint(logFile) + INDEX_SUFFIX);
+            } catch (IOException e) {
+                logger.warn("Failed to get fingerprint of {}", logFile.getAbsolutePath(), e);
+                return;
+            }
+        }
+        for (File indexFile : indexFiles) {
+            if (!fingerprints.contains(indexFile.getName())) {
+                try {
+                    Files.deleteIfExists(indexFile.toPath());
+                } catch (IOException e) {
+                    logger.warn("Failed to delete stale log index {}", indexFile.getAbsolutePath(), e);
+                }
+            }
+        }
+    }
+
+    static String fingerprint(File logFile) throws IOException {
+        byte[] head = new byte[(int) Math.min(FINGERPRINT_LENGTH, logFile.length())];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(logFile))) {
+            in.readFully(head);
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(head);
+        return String.format(Locale.ROOT, "%08x_%d", crc32.getValue(), head.length);
+    }
+
+    private void extend(File logFile, File indexDir) throws IOException {
+        try (LineReader reader = LineReader.open(logFile, indexedLength)) {
+            String line;
+            long offset = reader.getPosition();
+            while ((line = reader.readLine()) != null) {
+                if (!reader.isLineTerminated()) {
+                    // the last line is still being written, index it next time
+                    break;
+                }
+                if (TIME_PATTERN.matcher(line).find()) {
+                    final long lineOffset = offset;
+                    if (headerLength < 0) {
+                        headerLength = lineOffset;
+                    }
+                    buckets.putIfAbsent(line.substring(0, BUCKET_LENGTH), lineOffset);
+                    Matcher matcher = ID_PATTERN.matcher(line);
+                    while (matcher.find()) {
+                        if (matcher.group().startsWith(SHORT_JOB_ID_PREFIX)
+                                && line.lastIndexOf(JOB_WORKER, matcher.start()) < 0) {
+                            continue;
+                        }
+                        long[] range = ids.computeIfAbsent(matcher.group(),
+                                key -> new long[] { lineOffset, lineOffset });
+                        range[1] = lineOffset;
+                    }
+                    if (ids.size() >= maxPendingIds) {
+                        spillIds(indexDir);
+                    }
+                }
+                offset = reader.getPosition();
+                indexedLength = offset;
+            }
+        }
+    }
+
+    public long getHeaderLength() {
+        return headerLength < 0 ? indexedLength : headerLength;
+    }
+
+    public long getIndexedLength() {
+        return indexedLength;
+    }
+
+    /**
+     * @return offset of the first line logged at or after the minute of the given time, null if there is none
+     */
+    public Long getOffsetFrom(String time) {
+        String bucket = time.length() > BUCKET_LENGTH ? time.substring(0, BUCKET_LENGTH) : time;
+        Map.Entry<String, Long> entry = buckets.ceilingEntry(bucket);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * @return offsets of the first and the last timestamped line containing the id, null if there is none
+     */
+    public long[] getIdRange(String id) throws IOException {
+        long[] pending = ids.get(id);
+        long[] range = pending == null ? null : pending.clone();
+        if (indexFile == null) {
+            return range;
+        }
+        try (DataInputStream in = openIdRecords(indexFile, idsOffset)) {
+            while (true) {
+                String recordId = in.readUTF();
+                long first = in.readLong();
+                long last = in.readLong();
+                if (id.equals(recordId)) {
+                    range = range == null ? new long[] { first, last }
+                            : new long[] { Math.min(range[0], first), Math.max(range[1], last) };
+                }
+            }
+        } catch (EOFException e) {
+            // all the records are read
+        }
+        return range;
+    }
+
+    private static DataInputStream openIdRecords(File file, long offset) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            in.getChannel().position(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+    }
+
+    private void spillIds(File indexDir) throws IOException {
+        if (spill == null) {
+            if (!indexDir.exists() && !indexDir.mkdirs()) {
+                throw new IOException("Failed to create log index dir " + indexDir.getAbsolutePath());
+            }
+            spillFile = File.createTempFile("ids", SPILL_SUFFIX, indexDir);
+            spill = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+        }
+        writeIds(spill);
+        ids.clear();
+    }
+
+    private void writeIds(DataOutputStream out) throws IOException {
+        for (Map.Entry<String, long[]> entry : ids.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue()[0]);
+            out.writeLong(entry.getValue()[1]);
+        }
+    }
+
+    private void closeSpill() throws IOException {
+        if (spill != null) {
+            spill.close();
+            spill = null;
+        }
+        if (spillFile != null) {
+            Files.deleteIfExists(spillFile.toPath());
+            spillFile = null;
+        }
+    }
+
+    public static String readTimeAt(File logFile, long offset) throws IOException {
+        try (LineReader reader = LineReader.open(logFile, offset)) {
+            String line = reader.readLine();
+            return line == null || line.length() < TIME_LENGTH ? null : line.substring(0, TIME_LENGTH);
+        }
+    }
+
+    public static void copyRange(File logFile, long start, long end, OutputStream out) throws IOException {
+        try (InputStream in = new FileInputStream(logFile)) {
+            long skipped = 0;
+            while (skipped < start) {
+                long n = in.skip(start - skipped);
+                if (n <= 0) {
+                    return;
+                }
+                skipped += n;
+            }
+            byte[] buffer = new byte[8192];
+            long remaining = end - start;
+            int n;
+            while (remaining > 0 && (n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) > 0) {
+                out.write(buffer, 0, n);
+                remaining -= n;
+            }
+        }
+    }
+
+    private static LogFileIndex read(File indexFile) {
+        try (CountingInputStream counting = new CountingInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)));
+                DataInputStream in = new DataInputStream(counting)) {
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            LogFileIndex index = new LogFileIndex();
+            index.indexedLength = in.readLong();
+            index.headerLength = in.readLong();
+            int bucketCount = in.readInt();
+            for (int i = 0; i < bucketCount; i++) {
+                index.buckets.put(in.readUTF(), in.readLong());
+            }
+            index.indexFile = indexFile;
+            index.idsOffset = counting.getCount();
+            return index;
+        } catch (IOException e) {
+            logger.warn("Failed to read log index {}, rebuild it", indexFile.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    private void write(File indexFile) throws IOException {
+        File dir = indexFile.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create log index dir " + dir.getAbsolutePath());
+        }
+        File tmpFile = File.createTempFile(indexFile.getName(), ".tmp", dir);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(VERSION);
+                out.writeLong(indexedLength);
+                out.writeLong(headerLength);
+                out.writeInt(buckets.size());
+                for (Map.Entry<String, Long> entry : buckets.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+                out.flush();
+                long newIdsOffset = out.size();
+                // the records of the old index, then the spilled and the pending ones
+                if (this.indexFile != null) {
+                    try (InputStream in = openIdRecords(this.indexFile, idsOffset)) {
+                        ByteStreams.copy(in, out);
+                    }
+                }
+                if (spill != null) {
+                    spill.close();
+                    spill = null;
+                    Files.copy(spillFile.toPath(), out);
+                }
+                writeIds(out);
+                idsOffset = newIdsOffset;
+            }
+            // concurrent diagnosis may build the same index, the last one wins
+            Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            this.indexFile = indexFile;
+            ids.clear();
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    /**
+     * Reads lines like BufferedReader#readLine, and keeps track of the byte offset of the next line.
+     */
+    public static class LineReader implements Closeable {
+        private static final Charset CHARSET = Charset.defaultCharset();
+
+        private final InputStream in;
+        private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(256);
+        private long position;
+        private boolean lineTerminated;
+
+        private LineReader(InputStream in, long position) {
+            this.in = in;
+            this.position = position;
+        }
+
+        public static LineReader open(File file, long offset) throws IOException {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                in.getChannel().position(offset);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+            return new LineReader(new BufferedInputStream(in, 64 * 1024), offset);
+        }
+
+        public String readLine() throws IOException {
+            lineBuffer.reset();
+            lineTerminated = false;
+            int b;
+            boolean read = false;
+            while ((b = in.read()) != -1) {
+                read = true;
+                position++;
+                if (b == '\n') {
+                    lineTerminated = true;
+                    break;
+                }
+                lineBuffer.write(b);
+            }
+            if (!read) {
+                return null;
+            }
+            byte[] bytes = lineBuffer.toByteArray();
+            int length = bytes.length;
+            if (length > 0 && bytes[length - 1] == '\r') {
+                length--;
+            }
+            return new String(bytes, 0, length, CHARSET);
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public boolean isLineTerminated() {
+            return lineTerminated;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
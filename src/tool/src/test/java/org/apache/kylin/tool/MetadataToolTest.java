@@ -53,6 +53,7 @@ import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.StorageURL;
 import org.apache.kylin.common.exception.KylinException;
+import org.apache.kylin.common.persistence.BackupDeltaDesc;
 import org.apache.kylin.common.persistence.ImageDesc;
 import org.apache.kylin.common.persistence.RawResource;
 import org.apache.kylin.common.persistence.ResourceStore;
@@ -709,6 +710,147 @@ public class MetadataToolTest extends NLocalFileMetadataTestCase {
         Assert.assertEquals("/just/a/path/", simpleMetadataUrl);
     }
 
+    @Test
+    public void testIncrementalBackup() throws Exception {
+        val resourceStore = getStore();
+        val jdbcTemplate = getJdbcTemplate();
+        resourceStore.getMetadataStore().setAuditLogStore(new JdbcAuditLogStore(getTestConfig(), jdbcTemplate,
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource()), "test_audit_log"));
+        val junitFolder = temporaryFolder.getRoot();
+        val tool = new MetadataTool(getTestConfig());
+        tool.execute(new String[] { "-backup", "-dir", junitFolder.getAbsolutePath(), "-folder", "full" });
+
+        val deletedResource = resourceStore.listResourcesRecursively("/default/model_desc").first();
+        UnitOfWork.doInTransactionWithRetry(() -> {
+            val store = ResourceStore.getKylinMetaStore(getTestConfig());
+            store.checkAndPutResource("/default/rule/incremental.json",
+                    ByteSource.wrap("{}".getBytes(Charset.defaultCharset())), -1L);
+            store.deleteResource(deletedResource);
+            return null;
+        }, "default");
+
+        tool.execute(new String[] { "-backup", "-incremental", "-dir", junitFolder.getAbsolutePath(), "-folder",
+                "delta" });
+        val deltaFolder = new File(junitFolder, "delta");
+        Assertions.assertThat(deltaFolder.list()).containsOnly("default", "UUID", "_image", "_backup_delta");
+        Assertions.assertThat(new File(deltaFolder, "default").list()).containsOnly("rule");
+
+        val deltaDesc = JsonUtil.readValue(new File(deltaFolder, "_backup_delta"), BackupDeltaDesc.class);
+        Assert.assertEquals(new File(junitFolder, "full").getAbsolutePath(), deltaDesc.getBasePath());
+        Assert.assertEquals(1, deltaDesc.getChainLength());
+        Assertions.assertThat(deltaDesc.getDeletedResources()).containsOnly(deletedResource);
+    }
+
+    @Test
+    public void testIncrementalBackupRestore() throws Exception {
+        val resourceStore = getStore();
+        val jdbcTemplate = getJdbcTemplate();
+        resourceStore.getMetadataStore().setAuditLogStore(new JdbcAuditLogStore(getTestConfig(), jdbcTemplate,
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource()), "test_audit_log"));
+        val junitFolder = temporaryFolder.getRoot();
+        val updatedPath = "/default/rule/updated.json";
+        val addedPath = "/default/rule/added.json";
+        UnitOfWork.doInTransactionWithRetry(() -> {
+            ResourceStore.getKylinMetaStore(getTestConfig()).checkAndPutResource(updatedPath,
+                    ByteSource.wrap("{\"version\":1}".getBytes(Charset.defaultCharset())), -1L);
+            return null;
+        }, "default");
+        val tool = new MetadataTool(getTestConfig());
+        tool.execute(new String[] { "-backup", "-dir", junitFolder.getAbsolutePath(), "-folder", "full" });
+
+        val deletedPath = resourceStore.listResourcesRecursively("/default/model_desc").first();
+        UnitOfWork.doInTransactionWithRetry(() -> {
+            val store = ResourceStore.getKylinMetaStore(getTestConfig());
+            store.checkAndPutResource(updatedPath,
+                    ByteSource.wrap("{\"version\":2}".getBytes(Charset.defaultCharset())),
+                    store.getResource(updatedPath).getMvcc());
+            store.checkAndPutResource(addedPath, ByteSource.wrap("{}".getBytes(Charset.defaultCharset())), -1L);
+            store.deleteResource(deletedPath);
+            return null;
+        }, "default");
+        tool.execute(new String[] { "-backup", "-incremental", "-dir", junitFolder.getAbsolutePath(), "-folder",
+                "delta" });
+        Assert.assertEquals(new File(junitFolder, "full").getAbsolutePath(),
+                MetadataTool.readBackupDelta(new Path(new File(junitFolder, "delta").toURI())).getBasePath());
+        Assert.assertNull(MetadataTool.readBackupDelta(new Path(new File(junitFolder, "full").toURI())));
+        val backedUp = resourceStore.listResourcesRecursively("/default");
+
+        // change the metadata after the incremental backup, the restore brings it back
+        UnitOfWork.doInTransactionWithRetry(() -> {
+            val store = ResourceStore.getKylinMetaStore(getTestConfig());
+            store.checkAndPutResource(updatedPath,
+                    ByteSource.wrap("{\"version\":3}".getBytes(Charset.defaultCharset())),
+                    store.getResource(updatedPath).getMvcc());
+            store.deleteResource(addedPath);
+            return null;
+        }, "default");
+
+        tool.execute(new String[] { "-restore", "-dir", new File(junitFolder, "delta").getAbsolutePath(),
+                "--after-truncate" });
+        val restoredStore = ResourceStore.getKylinMetaStore(getTestConfig());
+        Assert.assertEquals(backedUp, restoredStore.listResourcesRecursively("/default"));
+        Assert.assertNull(restoredStore.getResource(deletedPath));
+        Assert.assertNotNull(restoredStore.getResource(addedPath));
+        Assert.assertEquals("{\"version\":2}",
+                new String(restoredStore.getResource(updatedPath).getByteSource().read(), Charset.defaultCharset()));
+        Assertions.assertThat(NProjectManager.getInstance(getTestConfig()).getProject("default")).isNotNull();
+    }
+
+    @Test
+    public void testIncrementalBackupFallbackToFull() throws Exception {
+        val junitFolder = temporaryFolder.getRoot();
+        val tool = new MetadataTool(getTestConfig());
+        tool.execute(new String[] { "-backup", "-incremental", "-dir", junitFolder.getAbsolutePath(), "-folder",
+                "first" });
+        val firstFolder = new File(junitFolder, "first");
+        Assertions.assertThat(firstFolder.list()).doesNotContain("_backup_delta").contains("default", "_global");
+    }
+
+    @Test
+    public void testIncrementalBackupWithoutAuditLog() throws Exception {
+        val junitFolder = temporaryFolder.getRoot();
+        val tool = new MetadataTool(getTestConfig());
+        tool.execute(new String[] { "-backup", "-dir", junitFolder.getAbsolutePath(), "-folder", "full" });
+        // the audit logs of the test store are not kept, an incremental backup would miss every change
+        tool.execute(new String[] { "-backup", "-incremental", "-dir", junitFolder.getAbsolutePath(), "-folder",
+                "second" });
+        Assertions.assertThat(new File(junitFolder, "second").list()).doesNotContain("_backup_delta")
+                .contains("default", "_global");
+    }
+
+    @Test
+    public void testCleanBeforeBackupKeepsChains() throws Exception {
+        val resourceStore = getStore();
+        val jdbcTemplate = getJdbcTemplate();
+        resourceStore.getMetadataStore().setAuditLogStore(new JdbcAuditLogStore(getTestConfig(), jdbcTemplate,
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource()), "test_audit_log"));
+        val kylinConfig = getTestConfig();
+        kylinConfig.setProperty("kylin.env.hdfs-working-dir", temporaryFolder.getRoot().getAbsolutePath());
+        kylinConfig.setProperty("kylin.metadata.backup-count-threshold", "3");
+        val backupFolder = new File(
+                Path.getPathWithoutSchemeAndAuthority(new Path(HadoopUtil.getBackupFolder(kylinConfig))).toString());
+        val tool = new MetadataTool(kylinConfig);
+        long time = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        for (String folder : new String[] { "full", "delta1", "delta2" }) {
+            String[] args = folder.equals("full")
+                    ? new String[] { "-backup", "-dir", backupFolder.getAbsolutePath(), "-folder", folder }
+                    : new String[] { "-backup", "-incremental", "-dir", backupFolder.getAbsolutePath(), "-folder",
+                            folder };
+            tool.execute(args);
+            Assert.assertTrue(new File(backupFolder, folder).setLastModified(time += 1000));
+        }
+        Assertions.assertThat(new File(backupFolder, "delta2").list()).contains("_backup_delta");
+
+        // the chain alone fills the threshold, it is kept and the next backup must be a full one
+        Assert.assertFalse(HDFSMetadataTool.cleanBeforeBackup(kylinConfig));
+        Assertions.assertThat(backupFolder.list()).containsOnly("full", "delta1", "delta2");
+
+        tool.execute(new String[] { "-backup", "-dir", backupFolder.getAbsolutePath(), "-folder", "full2" });
+        Assert.assertTrue(new File(backupFolder, "full2").setLastModified(time + 1000));
+        Assert.assertTrue(HDFSMetadataTool.cleanBeforeBackup(kylinConfig));
+        Assertions.assertThat(backupFolder.list()).containsOnly("full2");
+    }
+
     @Test
     public void testExecute_throwsException() {
         MetadataTool metadataTool = new MetadataTool();
@@ -221,6 +221,19 @@ public class StorageCleanerTest extends NLocalFileMetadataTestCase {
         Assert.assertTrue(snapshots.iterator().next().getAbsolutePath().contains(countryTableSnapshotPath));
     }
 
+    @Test
+    public void testCleanupWithFlatListing() throws Exception {
+        val cleaner = new StorageCleaner(false);
+        cleaner.execute();
+        val expected = normalizeGarbages(cleaner.getOutdatedItems());
+
+        getTestConfig().setProperty("kylin.garbage.storage.flat-listing-schemas", "file");
+        getTestConfig().setProperty("kylin.garbage.storage.list-parallelism", "2");
+        val flatListingCleaner = new StorageCleaner(false);
+        flatListingCleaner.execute();
+        Assert.assertEquals(expected, normalizeGarbages(flatListingCleaner.getOutdatedItems()));
+    }
+
     @Test
     public void testStorageCleanerWithRateLimiter() throws Exception {
         boolean cleanup = true;
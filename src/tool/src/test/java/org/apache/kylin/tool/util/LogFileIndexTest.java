@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.tool.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LogFileIndexTest {
+
+    private static final String LOG = "header line\n"
+            + "2019-09-02T02:35:19,868 INFO  [JobWorker(prj:p1,jobid:d0f45b72)-1] job.Runner : start\n"
+            + "continued line\n"
+            + "2019-09-02T02:36:19,868 INFO  [Query 14f61937-e8fd-174c-c0d0-93b01f04173e-65] service.QueryService : q\n"
+            + "2019-09-02T02:37:00,000 INFO  [main] job.Runner : d0f45b72-db2f-407b-9d6f-7cfe6f6624e8 finished\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testBuildAndLookup() throws IOException {
+        File logFile = new File(temporaryFolder.getRoot(), "kylin.log");
+        FileUtils.writeStringToFile(logFile, LOG, Charset.defaultCharset());
+
+        LogFileIndex index = LogFileIndex.loadOrBuild(logFile);
+        Assert.assertNotNull(index);
+        Assert.assertEquals("header line\n".length(), index.getHeaderLength());
+        Assert.assertEquals(logFile.length(), index.getIndexedLength());
+
+        long[] jobRange = index.getIdRange("jobid:d0f45b72");
+        Assert.assertEquals("2019-09-02T02:35:19", LogFileIndex.readTimeAt(logFile, jobRange[0]));
+        long[] fullJobRange = index.getIdRange("d0f45b72-db2f-407b-9d6f-7cfe6f6624e8");
+        Assert.assertEquals("2019-09-02T02:37:00", LogFileIndex.readTimeAt(logFile, fullJobRange[1]));
+        Assert.assertNotNull(index.getIdRange("14f61937-e8fd-174c-c0d0-93b01f04173e"));
+        Assert.assertNull(index.getIdRange("00000000-0000-0000-0000-000000000000"));
+
+        Assert.assertEquals(index.getIdRange("14f61937-e8fd-174c-c0d0-93b01f04173e")[0],
+                index.getOffsetFrom("2019-09-02T02:36:00").longValue());
+        Assert.assertNull(index.getOffsetFrom("2019-09-02T02:38:00"));
+    }
+
+    @Test
+    public void testExtendAfterAppendAndCleanup() throws IOException {
+        File logFile = new File(temporaryFolder.getRoot(), "kylin.log");
+        FileUtils.writeStringToFile(logFile, LOG + "2019-09-02T02:38:00,000 INFO  [main] job.Runner : unfinished",
+                Charset.defaultCharset());
+
+        LogFileIndex index = LogFileIndex.loadOrBuild(logFile);
+        Assert.assertNotNull(index);
+        // the last line is still being written
+        Assert.assertEquals(LOG.length(), index.getIndexedLength());
+        Assert.assertNull(index.getOffsetFrom("2019-09-02T02:38:00"));
+
+        FileUtils.writeStringToFile(logFile, "\n", Charset.defaultCharset(), true);
+        index = LogFileIndex.loadOrBuild(logFile);
+        Assert.assertNotNull(index);
+        Assert.assertEquals(logFile.length(), index.getIndexedLength());
+        Assert.assertEquals(LOG.length(), index.getOffsetFrom("2019-09-02T02:38:00").longValue());
+
+        File indexDir = new File(temporaryFolder.getRoot(), LogFileIndex.INDEX_DIR);
+        Assert.assertEquals(2, indexDir.list().length);
+        LogFileIndex.cleanupStaleIndexes(temporaryFolder.getRoot());
+        Assert.assertEquals(1, indexDir.list().length);
+    }
+
+    @Test
+    public void testShortJobIdOfJobWorkerOnly() throws IOException {
+        File logFile = new File(temporaryFolder.getRoot(), "kylin.log");
+        FileUtils.writeStringToFile(logFile,
+                LOG + "2019-09-02T02:38:00,000 INFO  [main] job.Runner : jobid:d0f45b72 mentioned\n"
+                        + "2019-09-02T02:39:00,000 INFO  [main] job.Runner : jobid:a1b2c3d4 mentioned\n",
+                Charset.defaultCharset());
+
+        LogFileIndex index = LogFileIndex.loadOrBuild(logFile);
+        Assert.assertNotNull(index);
+        long[] jobRange = index.getIdRange("jobid:d0f45b72");
+        Assert.assertEquals("2019-09-02T02:35:19", LogFileIndex.readTimeAt(logFile, jobRange[1]));
+        Assert.assertNull(index.getIdRange("jobid:a1b2c3d4"));
+    }
+
+    @Test
+    public void testSpillIds() throws IOException {
+        int maxPendingIds = LogFileIndex.maxPendingIds;
+        LogFileIndex.maxPendingIds = 1;
+        try {
+            File logFile = new File(temporaryFolder.getRoot(), "kylin.log");
+            FileUtils.writeStringToFile(logFile, LOG, Charset.defaultCharset());
+            LogFileIndex index = LogFileIndex.loadOrBuild(logFile);
+            Assert.assertNotNull(index);
+            FileUtils.writeStringToFile(logFile,
+                    "2019-09-02T02:38:00,000 INFO  [main] job.Runner : d0f45b72-db2f-407b-9d6f-7cfe6f6624e8 cleaned\n",
+                    Charset.defaultCharset(), true);
+            index = LogFileIndex.loadOrBuild(logFile);
+            Assert.assertNotNull(index);
+
+            // the records of an id written in several times are merged
+            long[] fullJobRange = index.getIdRange("d0f45b72-db2f-407b-9d6f-7cfe6f6624e8");
+            Assert.assertEquals("2019-09-02T02:37:00", LogFileIndex.readTimeAt(logFile, fullJobRange[0]));
+            Assert.assertEquals("2019-09-02T02:38:00", LogFileIndex.readTimeAt(logFile, fullJobRange[1]));
+            Assert.assertNotNull(index.getIdRange("jobid:d0f45b72"));
+            Assert.assertNotNull(index.getIdRange("14f61937-e8fd-174c-c0d0-93b01f04173e"));
+            // the spilled ids are merged into the index
+            for (String name : new File(temporaryFolder.getRoot(), LogFileIndex.INDEX_DIR).list()) {
+                Assert.assertTrue(name.endsWith(".idx"));
+            }
+        } finally {
+            LogFileIndex.maxPendingIds = maxPendingIds;
+        }
+    }
+}